@@ -0,0 +1,58 @@
+package com.bachir;
+
+import com.bachir.customer.transfer.CustomerCopyService;
+import com.bachir.customer.transfer.CustomerImportResult;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Command line entry point for bulk customer transfers, used to migrate data between environments
+ * without going through the REST API.
+ *
+ * Usage:
+ *   import <file.csv> [--spring.datasource.url=...]   Streams the CSV file into the customer table.
+ *   export <file.csv> [--spring.datasource.url=...]   Streams every customer into the CSV file.
+ *
+ * Any extra arguments are passed on to Spring, so the target database can be chosen with the usual
+ * --spring.datasource.* properties. The application context is started without a web server.
+ */
+public class CustomerTransferCli {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("import") || args[0].equals("export"))) {
+            System.err.println("Usage: CustomerTransferCli (import|export) <file.csv> [--spring.property=value ...]");
+            System.exit(2);
+        }
+        String command = args[0];
+        Path file = Path.of(args[1]);
+        String[] springArgs = Arrays.copyOfRange(args, 2, args.length);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .run(springArgs)) {
+            CustomerCopyService customerCopyService = context.getBean(CustomerCopyService.class);
+
+            if (command.equals("import")) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    CustomerImportResult result = customerCopyService.importCsv(in);
+                    System.out.printf("Imported %d rows (%d customers inserted or updated)%n",
+                            result.rowsRead(), result.rowsMerged());
+                }
+            } else {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                    long rows = customerCopyService.exportCsv(out);
+                    System.out.printf("Exported %d customers to %s%n", rows, file);
+                }
+            }
+        }
+    }
+}
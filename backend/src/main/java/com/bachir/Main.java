@@ -3,11 +3,13 @@ package com.bachir;
 
 import com.bachir.customer.Customer;
 import com.bachir.customer.CustomerRepository;
+import com.bachir.startup.BootPhaseTimingListener;
 import com.github.javafaker.Faker;
 import com.github.javafaker.Name;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 
 import java.util.Random;
@@ -31,7 +33,10 @@ public class Main {
           It sets up the default configuration, starts the Spring application context,
           and performs class path scanning, among other things.
           */
-        SpringApplication.run(Main.class, args);
+        SpringApplication application = new SpringApplication(Main.class);
+        // Times the boot phases; added here because it has to exist before the application context does.
+        application.addListeners(new BootPhaseTimingListener());
+        application.run(args);
     }
 
     /**
@@ -39,11 +44,15 @@ public class Main {
      * a bean in the Spring application context. Here, a CommandLineRunner is used,
      * which indicates that the code within the method will run after all the beans are created and registered.
      *
+     * It only runs when customer.seed.enabled is true: every other boot would otherwise add a write and
+     * a random row. To fill the database for load testing, use the 'datagen' profile (CustomerDataGenerator).
+     *
      * @param customerRepository The repository object allowing interaction with the database.
      * @return CommandLineRunner This is expected to be a functional interface, with a single run method
      * that gets invoked with command line arguments as its parameters.
      */
     @Bean
+    @ConditionalOnProperty(name = "customer.seed.enabled", havingValue = "true")
     CommandLineRunner runner(CustomerRepository customerRepository){
         return args -> { // Utilizing a Java 8 lambda to keep the code more readable and concise.
             // Creating an instance of Faker, a library used to generate realistic and random data.
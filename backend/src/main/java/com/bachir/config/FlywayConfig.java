@@ -0,0 +1,23 @@
+package com.bachir.config;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * Flyway settings that have no spring.flyway property.
+ *
+ * By default Flyway holds its migration lock with a transaction-scoped advisory lock, on a connection that stays
+ * in a transaction for the whole run. CREATE INDEX CONCURRENTLY waits for every open transaction to finish, so
+ * it would wait for that one forever. A session-level lock lets concurrent index builds run in migrations.
+ */
+@Configuration(proxyBeanMethods = false)
+public class FlywayConfig {
+
+    @Bean
+    FlywayConfigurationCustomizer sessionLevelMigrationLock() {
+        return configuration -> configuration.configuration(Map.of("flyway.postgresql.transactional.lock", "false"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.bachir.config;
+
+import com.bachir.customer.codec.CustomerJsonHttpMessageConverter;
+import com.bachir.customer.codec.CustomerProtobufHttpMessageConverter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Web MVC configuration for content negotiation.
+ *
+ * Besides JSON, every customer endpoint can answer in a compact binary format chosen by the
+ * client's Accept header:
+ * - application/x-jackson-smile: binary JSON, same data model as the JSON responses.
+ * - application/cbor: binary JSON as standardized in RFC 8949.
+ * - application/x-protobuf: schema-based, see src/main/proto/customer.proto.
+ *
+ * JSON stays the default when the client sends no Accept header or accepts anything.
+ * For the customer types it is encoded by CustomerJsonCodec instead of ObjectMapper data binding.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    // Declared as beans so they replace Spring's default Smile/CBOR converters in place (after JSON),
+    // and are built from Boot's Jackson builder so spring.jackson.* settings apply to every format.
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Put the hand-written JSON codec for the customer types right before the generic Jackson converter,
+        // sharing its JsonFactory so spring.jackson.* parser and generator settings still apply.
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2HttpMessageConverter jackson) {
+                if (CustomerJsonHttpMessageConverter.isCompatibleWith(jackson.getObjectMapper())) {
+                    converters.add(i, new CustomerJsonHttpMessageConverter(jackson.getObjectMapper().getFactory()));
+                }
+                break;
+            }
+        }
+        // Added last so it is only picked when a client explicitly asks for protobuf.
+        converters.add(new CustomerProtobufHttpMessageConverter());
+    }
+}
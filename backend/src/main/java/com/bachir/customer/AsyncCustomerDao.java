@@ -0,0 +1,152 @@
+package com.bachir.customer;
+
+import com.bachir.datasource.PrimaryStickiness;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous counterpart of the CustomerDao: every method runs the same CustomerDao call on a worker thread
+ * and returns a CompletableFuture, so independent queries can run at the same time.
+ *
+ * The workers are bounded by the size of the connection pool, since each running query holds a connection.
+ * When all workers are busy and the queue is full, the caller runs the query itself, which slows callers down
+ * instead of failing them.
+ *
+ * Each call runs in its own transaction on its worker thread, not in the caller's transaction.
+ * Do not wait for these futures inside a transaction: the caller would hold a connection while the workers
+ * wait for one, and a busy pool would deadlock until the connection timeout.
+ *
+ * The worker reads from the primary database (when read replicas are enabled) if the caller would,
+ * or always when obtained through onPrimary().
+ */
+@Component
+public class AsyncCustomerDao implements AutoCloseable {
+
+    private final CustomerDao customerDao;
+    private final Executor executor;
+    private final boolean primary;
+
+    @Autowired
+    public AsyncCustomerDao(@Qualifier("customerDao") CustomerDao customerDao,
+                            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                            @Value("${customer.async-dao.queue-capacity:1000}") int queueCapacity) {
+        this(customerDao, newExecutor(poolSize, queueCapacity), false);
+    }
+
+    /**
+     * @param executor Runs the queries. A direct executor (Runnable::run) runs them one after another in the caller.
+     */
+    public AsyncCustomerDao(CustomerDao customerDao, Executor executor) {
+        this(customerDao, executor, false);
+    }
+
+    private AsyncCustomerDao(CustomerDao customerDao, Executor executor, boolean primary) {
+        this.customerDao = customerDao;
+        this.executor = executor;
+        this.primary = primary;
+    }
+
+    /**
+     * @return a view of this DAO, sharing its workers, whose reads always go to the primary database.
+     * For checks made before a write, which must not miss a recent write because of replication lag.
+     */
+    public AsyncCustomerDao onPrimary() {
+        return primary ? this : new AsyncCustomerDao(customerDao, executor, true);
+    }
+
+    public CompletableFuture<List<Customer>> selectAllCustomers() {
+        return supply(customerDao::selectAllCustomers);
+    }
+
+    public CompletableFuture<Optional<Customer>> selectCustomerById(Long id) {
+        return supply(() -> customerDao.selectCustomerById(id));
+    }
+
+    public CompletableFuture<Optional<Customer>> selectCustomerByEmail(String email) {
+        return supply(() -> customerDao.selectCustomerByEmail(email));
+    }
+
+    public CompletableFuture<Boolean> existsPersonWithEmail(String email) {
+        return supply(() -> customerDao.existsPersonWithEmail(email));
+    }
+
+    public CompletableFuture<Boolean> existsPersonWithId(long id) {
+        return supply(() -> customerDao.existsPersonWithId(id));
+    }
+
+    public CompletableFuture<Customer> insertCustomer(Customer customer) {
+        return supply(() -> customerDao.insertCustomer(customer));
+    }
+
+    public CompletableFuture<Void> updateCustomer(Customer customer) {
+        return run(() -> customerDao.updateCustomer(customer));
+    }
+
+    public CompletableFuture<Boolean> deleteCustomerById(long id) {
+        return supply(() -> customerDao.deleteCustomerById(id));
+    }
+
+    /**
+     * Stops the workers once the queries already submitted are done. Views from onPrimary() share them.
+     */
+    @Override
+    public void close() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    private CompletableFuture<Void> run(Runnable query) {
+        return supply(() -> {
+            query.run();
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> query) {
+        // Decided on the caller's thread: a worker has neither the caller's transaction nor its stickiness.
+        boolean readFromPrimary = primary || PrimaryStickiness.isSticky()
+                || (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+        return CompletableFuture.supplyAsync(() -> {
+            if (!readFromPrimary) {
+                return query.get();
+            }
+            boolean wasSticky = PrimaryStickiness.isSticky();
+            PrimaryStickiness.stick();
+            try {
+                return query.get();
+            } finally {
+                if (!wasSticky) {
+                    PrimaryStickiness.clear();
+                }
+            }
+        }, executor);
+    }
+
+    private static ExecutorService newExecutor(int poolSize, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "customer-dao-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
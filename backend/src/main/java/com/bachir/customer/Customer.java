@@ -1,6 +1,9 @@
 package com.bachir.customer;
 
+import com.bachir.rowmapper.GenerateRowMapper;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.util.Objects;
 
 /**
@@ -8,16 +11,21 @@ import java.util.Objects;
  * This class is a JPA entity with a corresponding table in the database.
  */
 @Entity  // This tells JPA that this class's instances should be persisted in the database.
+// Emails are unique through the customer_email table (migrations V5 and V6), not a constraint of this table:
+// the table is partitioned by id, and a unique constraint of a partitioned table must contain the id.
+// Declaring one here would make ddl-auto try to add it at every startup.
 @Table(
-        name = "customer",  // Specifies the name of the table in the database.
-        uniqueConstraints = {
-                @UniqueConstraint(
-                        name = "customer_unique_email",  // Name of the unique constraint.
-                        columnNames = "email"  // Column in the table that is constrained to unique values.
-                )
-        }
+        name = "customer"  // Specifies the name of the table in the database.
 )
+// Second-level cache region, only used when the cache is enabled (l2cache profile, see ehcache.xml).
+// READ_WRITE keeps the cache consistent with concurrent transactions using soft locks.
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Customer.CACHE_REGION)
 public class Customer {
+
+    // Name of the second-level cache region holding Customer entities.
+    public static final String CACHE_REGION = "customer";
+
     // These are the columns in the customer database table.
     @Id  // Marks this field as the primary key.
     @SequenceGenerator(
@@ -40,11 +48,23 @@ public class Customer {
     @Column(nullable = false)  // Column configuration, stating that this field can never be null in the database.
     private Integer age;  // The age of the customer.
 
+    // Derived from the email (see CustomerEmails) for case-insensitive lookups on a compact index.
+    // Only computed before JPA writes the row (the JDBC DAO computes its own), not on every setEmail:
+    // row mappers and Jackson set the email of every customer they read. There are no getters, so they are
+    // not part of the JSON.
+    @Column(name = "email_normalized")
+    private String emailNormalized;
+
+    @Column(name = "email_hash")
+    private Long emailHash;
+
     // Default constructor required by JPA.
     public Customer() {
     }
 
-    // Constructor that accepts all field values. This is used to create new instances of the Customer class.
+    // Constructor that accepts all field values. This is used to create new instances of the Customer class,
+    // and by the generated CustomerIndexedRowMapper to map the rows of a SELECT of id, name, email, age.
+    @GenerateRowMapper
     public Customer(Long id, String name, String email, Integer age) {
         this.id = id;
         this.name = name;
@@ -59,6 +79,11 @@ public class Customer {
         this.age = age;
     }
 
+    // A customer read through a CustomerView rather than loaded as an entity.
+    static Customer fromView(CustomerView view) {
+        return new Customer(view.id(), view.name(), view.email(), view.age());
+    }
+
     // Below are the standard getters and setters used for accessing and mutating the fields of instances.
     // These methods adhere to the Java Bean naming convention, making them compatible with various libraries.
 
@@ -86,6 +111,15 @@ public class Customer {
         this.email = email;
     }
 
+    // Run by JPA before every insert and update, so a row written by JPA always has the columns in line with its
+    // email, even when the entity was loaded before they were backfilled.
+    @PrePersist
+    @PreUpdate
+    private void fillEmailColumns() {
+        emailNormalized = CustomerEmails.normalize(email);
+        emailHash = emailNormalized == null ? null : CustomerEmails.hash(emailNormalized);
+    }
+
     public Integer getAge() {
         return age;
     }
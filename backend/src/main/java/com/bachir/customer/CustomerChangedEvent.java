@@ -0,0 +1,43 @@
+package com.bachir.customer;
+
+/**
+ * Application event published by the CustomerDao implementations after every write.
+ *
+ * Caches and other derived state listen to it to stay in sync with the data store, whichever
+ * DAO performed the write. Listeners should use @TransactionalEventListener(fallbackExecution = true)
+ * so that, when the write runs inside a transaction, they only react once it has committed.
+ *
+ * Attributes:
+ * - customerId: The id of the customer that changed, or null when it is not known
+ *   (for example an insert through a DAO that does not return generated keys) or for bulk changes.
+ * - type: What kind of change happened.
+ */
+public record CustomerChangedEvent(
+        Long customerId,
+        ChangeType type
+) {
+
+    public enum ChangeType {
+        INSERTED,
+        UPDATED,
+        DELETED,
+        // Many rows changed at once (e.g. a bulk import); listeners should drop everything they derived.
+        BULK
+    }
+
+    public static CustomerChangedEvent inserted(Long customerId) {
+        return new CustomerChangedEvent(customerId, ChangeType.INSERTED);
+    }
+
+    public static CustomerChangedEvent updated(Long customerId) {
+        return new CustomerChangedEvent(customerId, ChangeType.UPDATED);
+    }
+
+    public static CustomerChangedEvent deleted(Long customerId) {
+        return new CustomerChangedEvent(customerId, ChangeType.DELETED);
+    }
+
+    public static CustomerChangedEvent bulk() {
+        return new CustomerChangedEvent(null, ChangeType.BULK);
+    }
+}
@@ -1,6 +1,10 @@
 package com.bachir.customer;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
 import java.util.List;
 
 // The @RestController annotation marks this class as a controller where every method returns a domain object instead of a view.
@@ -27,6 +31,21 @@ public class CustomerController {
         return customerService.getAllCustomers();  // Delegates the processing to the service layer and returns the result as JSON.
     }
 
+    // Same list, with only the fields named in the 'fields' query parameter, e.g. ?fields=id,email.
+    // The 'params' attribute routes requests carrying the parameter here; only those columns are read.
+    @GetMapping(value = "", params = "fields")
+    public List<CustomerProjection> getCustomers(@RequestParam("fields") String fields) {
+        return customerService.getAllCustomers(CustomerField.parse(fields));
+    }
+
+    // Handler for paging through the customers in id order: GET api/v1/customers/page?afterId=0&limit=100.
+    // Pass the id of the last customer of a page as afterId to get the next one.
+    @GetMapping("page")
+    public List<Customer> getCustomersPage(@RequestParam(name = "afterId", defaultValue = "0") long afterId,
+                                           @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        return customerService.getCustomersPage(afterId, limit);
+    }
+
     // Handler for getting a single customer by their ID.
     // The @PathVariable annotation indicates that a method parameter should be bound to a URI template variable.
     @GetMapping("{CustomerID}")
@@ -34,12 +53,33 @@ public class CustomerController {
         return customerService.getCustomerById(customerID);  // Retrieves the customer with the specified ID.
     }
 
+    // Same customer, with only the fields named in the 'fields' query parameter.
+    @GetMapping(value = "{CustomerID}", params = "fields")
+    public CustomerProjection getCustomer(@PathVariable("CustomerID") Integer customerID,
+                                          @RequestParam("fields") String fields) {
+        return customerService.getCustomerById(customerID, CustomerField.parse(fields));
+    }
+
+    // Handler for finding a customer by email, ignoring case: GET api/v1/customers/search?email=...
+    // The @RequestParam annotation binds a query parameter to a method parameter.
+    @GetMapping("search")
+    public Customer getCustomerByEmail(@RequestParam("email") String email) {
+        return customerService.getCustomerByEmail(email);  // Looks the customer up through the email hash index.
+    }
+
     // Handler for registering a new customer.
     // The @PostMapping annotation is a shortcut for @RequestMapping(method = POST).
     // The @RequestBody annotation indicates a method parameter should be bound to the body of the HTTP request.
+    // Responds 201 Created with the new customer and its URI in the Location header,
+    // so clients do not have to look the customer up to learn its id.
     @PostMapping()
-    public void registerCustomer(@RequestBody CustomerRegistrationRequest request) {
-        customerService.addCustomer(request);  // Delegates the processing of saving the customer to the service layer.
+    public ResponseEntity<Customer> registerCustomer(@RequestBody CustomerRegistrationRequest request) {
+        Customer customer = customerService.addCustomer(request);  // Delegates the processing of saving the customer to the service layer.
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{CustomerID}")
+                .buildAndExpand(customer.getId())
+                .toUri();
+        return ResponseEntity.created(location).body(customer);
     }
 
     // Handler for deleting a specific customer by their ID.
@@ -1,7 +1,9 @@
 package com.bachir.customer;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 // Defines the DAO (Data Access Object) interface for performing operations related to 'Customer' entities.
 // Implementations of this interface would typically interact with a database to store and retrieve customer information.
@@ -13,6 +15,31 @@ public interface CustomerDao {
      */
     List<Customer> selectAllCustomers();
 
+    /**
+     * Retrieves all customers, reading only the given fields where the data store allows it (?fields=).
+     * The default reads every field; callers must not rely on the other fields being null or set.
+     * @param fields the fields the caller needs.
+     * @return a list of all customers.
+     */
+    default List<Customer> selectAllCustomers(Set<CustomerField> fields) {
+        return selectAllCustomers();
+    }
+
+    /**
+     * Retrieves a page of customers in id order: the first ones with an id greater than afterId.
+     * The default reads every customer and keeps the page; the database DAOs run a keyset query instead.
+     * @param afterId the last id of the previous page, 0 for the first page.
+     * @param limit the maximum number of customers.
+     * @return the customers of the page.
+     */
+    default List<Customer> selectCustomersPage(long afterId, int limit) {
+        return selectAllCustomers().stream()
+                .filter(customer -> customer.getId() > afterId)
+                .sorted(Comparator.comparing(Customer::getId))
+                .limit(limit)
+                .toList();
+    }
+
     /**
      * Retrieves a customer by their unique identifier (ID).
      * @param id the unique identifier of the customer to retrieve.
@@ -21,14 +48,33 @@ public interface CustomerDao {
      */
     Optional<Customer> selectCustomerById(Long id);
 
+    /**
+     * Retrieves a customer by ID, reading only the given fields where the data store allows it (?fields=).
+     * The default reads every field; callers must not rely on the other fields being null or set.
+     * @param id the unique identifier of the customer to retrieve.
+     * @param fields the fields the caller needs.
+     * @return an 'Optional' of 'Customer', empty if no customer has that ID.
+     */
+    default Optional<Customer> selectCustomerById(Long id, Set<CustomerField> fields) {
+        return selectCustomerById(id);
+    }
+
+    /**
+     * Retrieves a customer by their email, ignoring case and surrounding spaces (see CustomerEmails).
+     * @param email the email address of the customer to retrieve.
+     * @return an 'Optional' of 'Customer', empty if no customer has that email.
+     */
+    Optional<Customer> selectCustomerByEmail(String email);
+
     /**
      * Inserts a new customer record into the data store.
      * @param customer the 'Customer' object representing the customer record to store.
+     * @return the same 'Customer' object, with the ID generated by the data store set.
      */
-    void insertCustomer(Customer customer);
+    Customer insertCustomer(Customer customer);
 
     /**
-     * Checks whether a customer with the given email exists in the data store.
+     * Checks whether a customer with the given email exists in the data store, ignoring case and surrounding spaces.
      * @param email the email address to check against existing customer records.
      * @return 'true' if a customer with the given email exists, 'false' otherwise.
      */
@@ -44,8 +90,9 @@ public interface CustomerDao {
     /**
      * Deletes a customer record from the data store using their unique identifier (ID).
      * @param id the unique identifier of the customer record to delete.
+     * @return 'true' if a customer was deleted, 'false' if there was no customer with that ID.
      */
-    void deleteCustomerById(long id);
+    boolean deleteCustomerById(long id);
 
     /**
      * Updates an existing customer's information in the data store.
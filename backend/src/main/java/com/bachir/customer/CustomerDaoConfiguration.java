@@ -0,0 +1,29 @@
+package com.bachir.customer;
+
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Chooses the CustomerDao used by the CustomerService with the customer.data-access property:
+ * jpa (default), jdbc, list, sharded, log, or routing (a backend per operation, see CustomerRoutingDataAccessService).
+ *
+ * The chosen implementation gets the alias "customerDao", which is the qualifier the service asks for. With
+ * customer.near-cache.enabled, it gets the alias "customerDaoStore" instead, and the CustomerNearCache in front of
+ * it is the "customerDao".
+ */
+@Configuration(proxyBeanMethods = false)
+public class CustomerDaoConfiguration {
+
+    public static final String CUSTOMER_DAO = "customerDao";
+    public static final String CUSTOMER_DAO_STORE = "customerDaoStore";
+
+    // Static, like every BeanFactoryPostProcessor bean, so it runs before the other beans are created.
+    @Bean
+    static BeanFactoryPostProcessor customerDaoAlias(Environment environment) {
+        boolean nearCache = environment.getProperty("customer.near-cache.enabled", Boolean.class, false);
+        return beanFactory -> beanFactory.registerAlias(
+                environment.getProperty("customer.data-access", "jpa"), nearCache ? CUSTOMER_DAO_STORE : CUSTOMER_DAO);
+    }
+}
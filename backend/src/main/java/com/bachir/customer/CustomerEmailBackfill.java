@@ -0,0 +1,129 @@
+package com.bachir.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Fills email_normalized and email_hash for customers that have none: rows written before the columns existed,
+ * and rows loaded in bulk (datagen, CSV import) without them.
+ *
+ * Starts in the background once the application is ready, and works through the table by id in chunks:
+ * - each chunk is read without locks, hashed in Java (like the DAOs do, see CustomerEmails), and written back
+ *   in its own short transaction, so row locks are held for one chunk only;
+ * - a row whose email changed in the meantime is skipped, the DAO that changed it wrote its hash already;
+ * - a pause between chunks leaves the database to the regular traffic.
+ *
+ * Until a row is backfilled, email lookups still find it through the customer_email_lookup_unhashed_idx index,
+ * and the chunks are found through customer_unhashed_idx. Both indexes empty as the backfill progresses.
+ */
+@Component
+@ConditionalOnProperty(name = "customer.email-backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerEmailBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerEmailBackfill.class);
+
+    private static final String SELECT_CHUNK = """
+            SELECT id, email FROM customer
+            WHERE email_hash IS NULL AND id > ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private static final String UPDATE_ROW = """
+            UPDATE customer SET email_normalized = ?, email_hash = ?
+            WHERE id = ? AND email = ? AND email_hash IS NULL
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration pause;
+
+    public CustomerEmailBackfill(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${customer.email-backfill.chunk-size:1000}") int chunkSize,
+                                 @Value("${customer.email-backfill.pause:10ms}") Duration pause) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startInBackground() {
+        Thread thread = new Thread(() -> {
+            try {
+                backfill();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.warn("Email backfill stopped, it resumes at the next start", e);
+            }
+        }, "customer-email-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Backfills every customer without an email hash.
+     *
+     * @return the number of customers backfilled.
+     */
+    public long backfill() throws InterruptedException {
+        long start = System.nanoTime();
+        long afterId = 0;
+        long backfilled = 0;
+        while (true) {
+            List<Row> chunk = jdbcTemplate.query(SELECT_CHUNK,
+                    (rs, rowNum) -> new Row(rs.getLong("id"), rs.getString("email")), afterId, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            backfilled += writeChunk(chunk);
+            afterId = chunk.get(chunk.size() - 1).id();
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            Thread.sleep(pause.toMillis());
+        }
+        if (backfilled > 0) {
+            log.info("Backfilled the normalized email of {} customers in {} ms",
+                    backfilled, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+        return backfilled;
+    }
+
+    private int writeChunk(List<Row> chunk) {
+        Integer updated = transactionTemplate.execute(status -> {
+            int[][] counts = jdbcTemplate.batchUpdate(UPDATE_ROW, chunk, chunk.size(), (ps, row) -> {
+                String normalized = CustomerEmails.normalize(row.email());
+                ps.setString(1, normalized);
+                ps.setLong(2, CustomerEmails.hash(normalized));
+                ps.setLong(3, row.id());
+                ps.setString(4, row.email());
+            });
+            int sum = 0;
+            for (int[] batch : counts) {
+                for (int count : batch) {
+                    sum += Math.max(count, 0);
+                }
+            }
+            return sum;
+        });
+        return updated == null ? 0 : updated;
+    }
+
+    private record Row(long id, String email) {
+    }
+}
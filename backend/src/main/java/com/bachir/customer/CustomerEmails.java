@@ -0,0 +1,38 @@
+package com.bachir.customer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Normalized form and hash of customer emails, stored in the email_normalized and email_hash columns.
+ *
+ * Two emails that only differ in case or surrounding spaces belong to the same customer.
+ * The hash is the first 8 bytes of the SHA-256 of the normalized email: a fixed-width index key
+ * whatever the length of the email. Different emails can share a hash, so lookups also compare
+ * the normalized email.
+ */
+public final class CustomerEmails {
+
+    private CustomerEmails() {
+    }
+
+    public static String normalize(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param normalizedEmail An email returned by normalize.
+     */
+    public static long hash(String normalizedEmail) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalizedEmail.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform provides SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.bachir.customer;
+
+import com.bachir.exception.RequestValidationException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The fields of a customer a client can ask for with ?fields=, e.g. ?fields=id,email.
+ * Each has the same name as JSON property, Customer attribute and column of the customer table.
+ * They are always read and written in this order, whatever the order of the request.
+ */
+public enum CustomerField {
+    ID("id"),
+    NAME("name"),
+    EMAIL("email"),
+    AGE("age");
+
+    public static final Set<CustomerField> ALL = Collections.unmodifiableSet(EnumSet.allOf(CustomerField.class));
+
+    private final String property;
+
+    CustomerField(String property) {
+        this.property = property;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    /**
+     * Parses the value of a fields parameter: property names separated by commas, spaces allowed.
+     *
+     * @param fields e.g. "id,email"; null or blank for every field.
+     * @return the selected fields.
+     * @throws RequestValidationException (400) for a name that is not a customer field.
+     */
+    public static Set<CustomerField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        EnumSet<CustomerField> selected = EnumSet.noneOf(CustomerField.class);
+        for (String name : fields.split(",")) {
+            String property = name.trim();
+            selected.add(Arrays.stream(values())
+                    .filter(field -> field.property.equals(property))
+                    .findFirst()
+                    .orElseThrow(() -> new RequestValidationException(
+                            "Unknown field [%s], expected some of id, name, email, age".formatted(property))));
+        }
+        if (selected.isEmpty()) {
+            throw new RequestValidationException("No field in [%s], expected some of id, name, email, age".formatted(fields));
+        }
+        return Collections.unmodifiableSet(selected);
+    }
+
+    /**
+     * @return the column list of a SELECT of these fields, e.g. "id, email".
+     */
+    public static String columns(Set<CustomerField> fields) {
+        return Arrays.stream(values()).filter(fields::contains).map(CustomerField::property).collect(Collectors.joining(", "));
+    }
+}
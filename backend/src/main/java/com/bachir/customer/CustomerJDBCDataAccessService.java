@@ -1,19 +1,38 @@
 package com.bachir.customer;
 
+import com.bachir.rowmapper.IndexedRowMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * JDBC implementation of the CustomerDao repository. This class performs CRUD operations
  * for the 'Customer' entities in the database using JdbcTemplate.
  *
  * Annotated with @Repository, marking it as a Spring component for DAO-style data access operations.
+ *
+ * @Lazy: only created when something injects it (the service uses the JPA implementation by default),
+ * so it does not add to startup time.
+ *
+ * The read methods are read-only transactions, like the Spring Data repository methods of the JPA
+ * implementation, so they can be served by a read replica when replicas are enabled.
+ *
+ * The customers are mapped by position (see CustomerRowMapper): the constructor checks that every SELECT
+ * returns the columns in the order of the mapper, and fails at startup rather than mixing up fields.
  */
+@Lazy
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDao {
 
+    private static final Logger log = LoggerFactory.getLogger(CustomerJDBCDataAccessService.class);
+
     // JdbcTemplate is a central class in Spring's JDBC support and is used to execute SQL queries.
     private final JdbcTemplate jdbcTemplate;
 
@@ -21,15 +40,29 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
     // responsible for mapping rows of a ResultSet on a per-row basis.
     private final CustomerRowMapper customerRowMapper;
 
+    // Used to announce every write with a CustomerChangedEvent.
+    private final ApplicationEventPublisher eventPublisher;
+
+    // The SELECTs of whole customers, mapped by customerRowMapper.
+    private static final String SELECT_ALL_SQL = "SELECT " + CustomerIndexedRowMapper.SELECT_LIST + " FROM customer";
+    private static final String SELECT_BY_ID_SQL = SELECT_ALL_SQL + " WHERE id = ?";
+    private static final String SELECT_PAGE_SQL = SELECT_ALL_SQL + " WHERE id > ? ORDER BY id LIMIT ?";
+
     /**
      * Constructs a new CustomerJDBCDataAccessService with the specified JdbcTemplate and CustomerRowMapper.
      *
      * @param jdbcTemplate The JdbcTemplate used for querying the database.
      * @param customerRowMapper The CustomerRowMapper used for mapping rows of a ResultSet to Customer objects.
+     * @param eventPublisher The publisher used to announce writes to listeners such as caches.
      */
-    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
+    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper,
+                                         ApplicationEventPublisher eventPublisher) {
         this.jdbcTemplate = jdbcTemplate;
         this.customerRowMapper = customerRowMapper;
+        this.eventPublisher = eventPublisher;
+        for (String sql : List.of(SELECT_ALL_SQL, SELECT_BY_ID_SQL, SELECT_PAGE_SQL, SELECT_BY_EMAIL_SQL)) {
+            IndexedRowMapper.check(jdbcTemplate, sql, customerRowMapper);
+        }
     }
 
     /**
@@ -38,14 +71,40 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
      * @return A list of customers, represented as Customer objects.
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Customer> selectAllCustomers() {
         // SQL query to fetch all customers.
-        final var sql = """
-                SELECT id, name, email, age FROM customer
-                """;
+        final var sql = SELECT_ALL_SQL;
         return jdbcTemplate.query(sql, customerRowMapper); // Query the database and get the results mapped as Customer objects.
     }
 
+    /**
+     * Retrieves all customers from the database, selecting only the given columns.
+     *
+     * @param fields The fields to read; the others are null in the returned customers.
+     * @return A list of customers, represented as Customer objects.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectAllCustomers(Set<CustomerField> fields) {
+        // The column names come from CustomerField, never from the request itself.
+        final var sql = "SELECT " + CustomerField.columns(fields) + " FROM customer";
+        return jdbcTemplate.query(sql, CustomerRowMapper.forFields(fields));
+    }
+
+    /**
+     * Retrieves a page of customers in id order, with a keyset query: every page is a range scan of the id index.
+     *
+     * @param afterId The last id of the previous page, 0 for the first page.
+     * @param limit The maximum number of customers.
+     * @return A list of customers, represented as Customer objects.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomersPage(long afterId, int limit) {
+        return jdbcTemplate.query(SELECT_PAGE_SQL, customerRowMapper, afterId, limit);
+    }
+
     /**
      * Retrieves a customer by their ID from the database.
      *
@@ -53,54 +112,103 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
      * @return An Optional containing the found customer, if any.
      */
     @Override
+    @Transactional(readOnly = true)
     public Optional<Customer> selectCustomerById(Long id) {
         // SQL query to fetch a customer by ID.
-        final var sql = """
-                SELECT id, name, email, age FROM customer WHERE id = ?
-                """;
+        final var sql = SELECT_BY_ID_SQL;
         return jdbcTemplate.query(sql, customerRowMapper, id)
                 .stream()
                 .findFirst(); // Execute the query and return the result, if any, as an Optional.
     }
 
+    /**
+     * Retrieves a customer by their ID from the database, selecting only the given columns.
+     *
+     * @param id The unique identifier of the customer.
+     * @param fields The fields to read; the others are null in the returned customer.
+     * @return An Optional containing the found customer, if any.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Customer> selectCustomerById(Long id, Set<CustomerField> fields) {
+        final var sql = "SELECT " + CustomerField.columns(fields) + " FROM customer WHERE id = ?";
+        return jdbcTemplate.query(sql, CustomerRowMapper.forFields(fields), id)
+                .stream()
+                .findFirst();
+    }
+
+    // Matches a hashed row on hash and normalized email (different emails can share a hash), or a row that was not
+    // backfilled yet on its email. The second condition is served by the partial customer_email_lookup_unhashed_idx index.
+    // Applied to customer_email: the customer table is partitioned by id, so emails are looked up there, and
+    // customers are then read by id from a single partition.
+    private static final String NORMALIZED_EMAIL_CONDITION = """
+            (e.email_hash = ? AND e.email_normalized = ?)
+            OR (e.email_hash IS NULL AND lower(trim(e.email)) = ?)
+            """;
+
+    // Oldest first, for customers registered twice with different case before emails were normalized.
+    // The id is a parameter of the outer query, known before the partitions are scanned, so only one is read.
+    private static final String SELECT_BY_EMAIL_SQL = SELECT_ALL_SQL + " WHERE id = (SELECT e.customer_id FROM customer_email e WHERE "
+            + NORMALIZED_EMAIL_CONDITION + " ORDER BY e.customer_id LIMIT 1)";
+
+    /**
+     * Retrieves a customer by their email, ignoring case and surrounding spaces, through the email hash index.
+     *
+     * @param email The email of the customer.
+     * @return An Optional containing the found customer, if any.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        String normalized = CustomerEmails.normalize(email);
+        final var sql = SELECT_BY_EMAIL_SQL;
+        return jdbcTemplate.query(sql, customerRowMapper, CustomerEmails.hash(normalized), normalized, normalized)
+                .stream()
+                .findFirst();
+    }
+
     /**
      * Inserts a new customer into the database.
      *
      * @param customer The Customer object containing information about the customer to be inserted.
      */
     @Override
-    public void insertCustomer(Customer customer) {
-        // SQL query to insert a new customer.
+    public Customer insertCustomer(Customer customer) {
+        // SQL query to insert a new customer, returning the id generated by the database.
         final var sql = """
-                INSERT INTO customer(name, email, age) VALUES (?, ?, ?)
+                INSERT INTO customer(name, email, age, email_normalized, email_hash) VALUES (?, ?, ?, ?, ?)
+                RETURNING id
                 """;
-        // Inserting a new customer record in the database and logging the operation's result.
-        int result = jdbcTemplate.update(
+        // Inserting a new customer record in the database, in the same round trip as reading back its id.
+        String normalized = CustomerEmails.normalize(customer.getEmail());
+        Long id = jdbcTemplate.queryForObject(
                 sql,
+                Long.class,
                 customer.getName(),
                 customer.getEmail(),
-                customer.getAge());
+                customer.getAge(),
+                normalized,
+                CustomerEmails.hash(normalized));
 
-        System.out.println("insertCustomer result = " + result); // Logging the number of rows affected by the update.
+        customer.setId(id);
+        eventPublisher.publishEvent(CustomerChangedEvent.inserted(id));
+        return customer;
     }
 
     /**
      * Checks if a customer with the specified email exists in the database.
      *
      * @param email The email to search for.
-     * @return true if a customer with the given email exists, false otherwise.
+     * @return true if a customer with the given email exists, ignoring case and surrounding spaces, false otherwise.
      */
     @Override
+    @Transactional(readOnly = true)
     public boolean existsPersonWithEmail(String email) {
-        // SQL query to count customers with the specified email.
-        final var sql = """
-                SELECT count(id)
-                FROM customer
-                WHERE email = ?
-                """;
-        // Querying the database for the number of customers with the given email.
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, email);
-        return count != null && count > 0; // Return true if at least one match was found.
+        String normalized = CustomerEmails.normalize(email);
+        // EXISTS stops at the first match; the hash index keeps it to one index probe.
+        final var sql = "SELECT EXISTS (SELECT 1 FROM customer_email e WHERE " + NORMALIZED_EMAIL_CONDITION + ")";
+        Boolean exists = jdbcTemplate.queryForObject(sql, Boolean.class, CustomerEmails.hash(normalized), normalized, normalized);
+        return Boolean.TRUE.equals(exists);
     }
 
     /**
@@ -110,6 +218,7 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
      * @return true if a customer with the given ID exists, false otherwise.
      */
     @Override
+    @Transactional(readOnly = true)
     public boolean existsPersonWithId(long id) {
         // SQL query to count customers with the specified ID.
         final var sql = """
@@ -128,7 +237,7 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
      * @param id The unique identifier of the customer to be deleted.
      */
     @Override
-    public void deleteCustomerById(long id) {
+    public boolean deleteCustomerById(long id) {
         // Define the SQL query to delete the customer with the given ID.
         var sql = """
             DELETE
@@ -138,7 +247,12 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
 
         // Execute the update and log the result, indicating how many rows in the database were affected.
         int result = jdbcTemplate.update(sql, id);
-        System.out.println("deleteCustomerById result = " + result); // Logging the number of rows affected by the update.
+        log.debug("deleteCustomerById result = {}", result); // Logging the number of rows affected by the update.
+        if (result == 0) {
+            return false;
+        }
+        eventPublisher.publishEvent(CustomerChangedEvent.deleted(id));
+        return true;
     }
 
     /**
@@ -160,7 +274,7 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
 
             // Execute the SQL query.
             int result = jdbcTemplate.update(sql, customer.getName(), customer.getId());
-            System.out.println("update customer name result = " + result);
+            log.debug("update customer name result = {}", result);
         }
 
         // Update the customer's age if it has been changed.
@@ -174,21 +288,24 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
 
             // Execute the SQL query.
             int result = jdbcTemplate.update(sql, customer.getAge(), customer.getId());
-            System.out.println("update customer age result = " + result);
+            log.debug("update customer age result = {}", result);
         }
 
         // Update the customer's email if it has been changed.
         if (customer.getEmail() != null) {
             // SQL query to update the customer's email based on their ID.
+            // The normalized email and its hash change with it.
             String sql = """
                 UPDATE customer
-                SET email = ?
+                SET email = ?, email_normalized = ?, email_hash = ?
                 WHERE id = ?;
                 """;
 
             // Execute the SQL query.
-            int result = jdbcTemplate.update(sql, customer.getEmail(), customer.getId());
-            System.out.println("update customer email result = " + result);
+            String normalized = CustomerEmails.normalize(customer.getEmail());
+            int result = jdbcTemplate.update(sql, customer.getEmail(), normalized, CustomerEmails.hash(normalized), customer.getId());
+            log.debug("update customer email result = {}", result);
         }
+        eventPublisher.publishEvent(CustomerChangedEvent.updated(customer.getId()));
     }
 }
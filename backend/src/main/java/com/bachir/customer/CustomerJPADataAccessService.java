@@ -1,8 +1,13 @@
 package com.bachir.customer;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * A CustomerDao implementation using JPA for data access.
@@ -10,6 +15,11 @@ import java.util.Optional;
  * It provides the mechanism for storage, retrieval, and search behavior
  * which emulates a collection of objects.
  *
+ * The reads (all, by id, by email, pages) return customers built from CustomerView records, in read-only
+ * transactions: Hibernate does not manage, snapshot or flush anything for them. With customer.jpa.read-views=false
+ * (set by the l2cache profile) all but the pages load entities instead, so they are served from the second-level
+ * cache.
+ *
  * @author "jpa" indicates that the JPA (Java Persistence API) is used for data access.
  */
 @Repository("jpa")
@@ -18,13 +28,24 @@ public class CustomerJPADataAccessService implements CustomerDao {
     // The repository responsible for handling customer data.
     private final CustomerRepository customerRepository;
 
+    // Used to announce every write with a CustomerChangedEvent.
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Whether the reads select CustomerView records rather than entities.
+    private final boolean readViews;
+
     /**
      * Constructor used for injecting the repository.
      *
      * @param customerRepository The CustomerRepository used for customer data access.
+     * @param eventPublisher The publisher used to announce writes to listeners such as caches.
+     * @param readViews Whether the reads select CustomerView records rather than managed entities.
      */
-    public CustomerJPADataAccessService(CustomerRepository customerRepository) {
+    public CustomerJPADataAccessService(CustomerRepository customerRepository, ApplicationEventPublisher eventPublisher,
+                                        @Value("${customer.jpa.read-views:true}") boolean readViews) {
         this.customerRepository = customerRepository;
+        this.eventPublisher = eventPublisher;
+        this.readViews = readViews;
     }
 
     /**
@@ -33,10 +54,27 @@ public class CustomerJPADataAccessService implements CustomerDao {
      * @return List of Customer objects.
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Customer> selectAllCustomers() {
+        if (readViews) {
+            return customerRepository.findAllViews().stream().map(CustomerView::toCustomer).toList();
+        }
         return customerRepository.findAll(); // JPA repository method for fetching all records.
     }
 
+    /**
+     * Retrieve all customers, reading only the given fields.
+     *
+     * @param fields The fields to read. With every field, the customers are entities as usual (and cached,
+     *               with the l2cache profile); otherwise a projection query reads only these columns.
+     * @return List of Customer objects.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectAllCustomers(Set<CustomerField> fields) {
+        return fields.containsAll(CustomerField.ALL) ? selectAllCustomers() : customerRepository.findAllProjected(fields);
+    }
+
     /**
      * Find a customer by ID.
      *
@@ -44,18 +82,71 @@ public class CustomerJPADataAccessService implements CustomerDao {
      * @return An Optional object which may contain a Customer if they exist.
      */
     @Override
+    @Transactional(readOnly = true)
     public Optional<Customer> selectCustomerById(Long id) {
+        if (readViews) {
+            return customerRepository.findViewById(id).map(CustomerView::toCustomer);
+        }
         return customerRepository.findById(Math.toIntExact(id)); // JPA repository method for finding an entity by its ID.
     }
 
+    /**
+     * Find a customer by ID, reading only the given fields.
+     *
+     * @param id A unique identifier for the customer.
+     * @param fields The fields to read, see selectAllCustomers(Set).
+     * @return An Optional object which may contain a Customer if they exist.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Customer> selectCustomerById(Long id, Set<CustomerField> fields) {
+        return fields.containsAll(CustomerField.ALL) ? selectCustomerById(id) : customerRepository.findProjectedById(id, fields);
+    }
+
+    /**
+     * Find a customer by email, ignoring case and surrounding spaces.
+     *
+     * @param email The email of the customer.
+     * @return An Optional object which may contain a Customer if they exist.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        String normalized = CustomerEmails.normalize(email);
+        if (readViews) {
+            return customerRepository.findCustomerIdByNormalizedEmail(CustomerEmails.hash(normalized), normalized)
+                    .flatMap(customerRepository::findViewById)
+                    .map(CustomerView::toCustomer);
+        }
+        return customerRepository.findCustomersByNormalizedEmail(CustomerEmails.hash(normalized), normalized)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Retrieve a page of customers in id order.
+     *
+     * @param afterId The last id of the previous page, 0 for the first page.
+     * @param limit The maximum number of customers.
+     * @return List of Customer objects.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomersPage(long afterId, int limit) {
+        return customerRepository.findViewsAfter(afterId, Pageable.ofSize(limit)).stream().map(CustomerView::toCustomer).toList();
+    }
+
     /**
      * Insert a new customer into the database.
      *
      * @param customer The Customer object to be saved.
+     * @return The persisted customer, with its generated ID.
      */
     @Override
-    public void insertCustomer(Customer customer) {
-        customerRepository.save(customer); // JPA repository method for saving an entity.
+    public Customer insertCustomer(Customer customer) {
+        Customer saved = customerRepository.save(customer); // JPA repository method for saving an entity, it also sets the generated ID.
+        eventPublisher.publishEvent(CustomerChangedEvent.inserted(saved.getId()));
+        return saved;
     }
 
     /**
@@ -66,7 +157,8 @@ public class CustomerJPADataAccessService implements CustomerDao {
      */
     @Override
     public boolean existsPersonWithEmail(String email) {
-        return customerRepository.existsCustomerByEmail(email); // Custom repository method to check existence by email.
+        String normalized = CustomerEmails.normalize(email);
+        return customerRepository.existsCustomerByNormalizedEmail(CustomerEmails.hash(normalized), normalized); // Case-insensitive, through the email hash index.
     }
 
     /**
@@ -84,10 +176,18 @@ public class CustomerJPADataAccessService implements CustomerDao {
      * Delete a customer from the database using their ID.
      *
      * @param id The unique identifier for the customer to be deleted.
+     * @return true if the customer existed.
      */
     @Override
-    public void deleteCustomerById(long id) {
-        customerRepository.deleteById((int) id); // JPA repository method for deleting an entity by its ID.
+    public boolean deleteCustomerById(long id) {
+        // What the repository's deleteById does too, but it does not tell whether the customer existed.
+        Optional<Customer> customer = customerRepository.findById((int) id);
+        if (customer.isEmpty()) {
+            return false;
+        }
+        customerRepository.delete(customer.get()); // JPA repository method for deleting an entity.
+        eventPublisher.publishEvent(CustomerChangedEvent.deleted(id));
+        return true;
     }
 
     /**
@@ -100,5 +200,6 @@ public class CustomerJPADataAccessService implements CustomerDao {
         // JPA repository method for saving an entity, works for both insert and update.
         // In this case, it performs an update if the row exists, based on the entity's ID.
         customerRepository.save(customerUpdate);
+        eventPublisher.publishEvent(CustomerChangedEvent.updated(customerUpdate.getId()));
     }
 }
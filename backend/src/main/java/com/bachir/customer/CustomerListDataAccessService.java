@@ -1,5 +1,7 @@
 package com.bachir.customer;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Repository;
 import java.util.ArrayList;
 import java.util.List;
@@ -14,7 +16,11 @@ import java.util.Optional;
  * persist data and will lose all information if the application restarts.
  *
  * @author "list" signifies that this is the list-based implementation of CustomerDao.
+ *
+ * @Lazy: only created when something injects it (the service uses the JPA implementation by default),
+ * so it does not add to startup time.
  */
+@Lazy
 @Repository("list")
 public class CustomerListDataAccessService implements CustomerDao {
 
@@ -29,6 +35,13 @@ public class CustomerListDataAccessService implements CustomerDao {
         customers.add(new Customer(2L, "Jamila", "jamila@mail.com", 24));
     }
 
+    // Used to announce every write with a CustomerChangedEvent.
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CustomerListDataAccessService(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
     /**
      * Retrieves all customers from the mock database.
      *
@@ -56,10 +69,14 @@ public class CustomerListDataAccessService implements CustomerDao {
      * Inserts a new customer into the 'database'.
      *
      * @param customer The customer object to add.
+     * @return The customer, with the next free ID.
      */
     @Override
-    public void insertCustomer(Customer customer) {
+    public Customer insertCustomer(Customer customer) {
+        customer.setId(customers.stream().mapToLong(Customer::getId).max().orElse(0) + 1);
         customers.add(customer);
+        eventPublisher.publishEvent(CustomerChangedEvent.inserted(customer.getId()));
+        return customer;
     }
 
     /**
@@ -70,8 +87,21 @@ public class CustomerListDataAccessService implements CustomerDao {
      */
     @Override
     public boolean existsPersonWithEmail(String email) {
+        return selectCustomerByEmail(email).isPresent();
+    }
+
+    /**
+     * Finds a customer by email, ignoring case and surrounding spaces.
+     *
+     * @param email The email to search for.
+     * @return an Optional containing the customer if found, or an empty Optional if not.
+     */
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        String normalized = CustomerEmails.normalize(email);
         return customers.stream()
-                .anyMatch(customer -> customer.getEmail().equals(email));
+                .filter(customer -> CustomerEmails.normalize(customer.getEmail()).equals(normalized))
+                .findFirst();
     }
 
     /**
@@ -90,10 +120,15 @@ public class CustomerListDataAccessService implements CustomerDao {
      * Deletes a customer based on their ID.
      *
      * @param id The ID of the customer to delete.
+     * @return true if the customer was in the list.
      */
     @Override
-    public void deleteCustomerById(long id) {
-        customers.removeIf(customer -> customer.getId().equals(id));
+    public boolean deleteCustomerById(long id) {
+        if (!customers.removeIf(customer -> customer.getId().equals(id))) {
+            return false;
+        }
+        eventPublisher.publishEvent(CustomerChangedEvent.deleted(id));
+        return true;
     }
 
     /**
@@ -116,5 +151,6 @@ public class CustomerListDataAccessService implements CustomerDao {
             // Record not found, for the purpose of this mock, we're just adding as new record.
             customers.add(customerUpdate);
         }
+        eventPublisher.publishEvent(CustomerChangedEvent.updated(customerUpdate.getId()));
     }
 }
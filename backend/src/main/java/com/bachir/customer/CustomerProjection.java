@@ -0,0 +1,54 @@
+package com.bachir.customer;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A customer reduced to the fields a client asked for with ?fields=.
+ *
+ * Serialized with only those properties, in CustomerField order: by CustomerJsonCodec for JSON, and through the
+ * map below by the ObjectMapper (Smile, CBOR, or JSON when the codec is off). Protobuf leaves out the other
+ * fields like any unset field.
+ *
+ * @param customer The customer as read by the DAO. Fields that were not asked for may be null or not; they are
+ *                 never written.
+ * @param fields The fields to write.
+ */
+public record CustomerProjection(Customer customer, Set<CustomerField> fields) {
+
+    public Long id() {
+        return fields.contains(CustomerField.ID) ? customer.getId() : null;
+    }
+
+    public String name() {
+        return fields.contains(CustomerField.NAME) ? customer.getName() : null;
+    }
+
+    public String email() {
+        return fields.contains(CustomerField.EMAIL) ? customer.getEmail() : null;
+    }
+
+    public Integer age() {
+        return fields.contains(CustomerField.AGE) ? customer.getAge() : null;
+    }
+
+    @JsonValue
+    Map<String, Object> properties() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (CustomerField field : CustomerField.values()) {
+            if (!fields.contains(field)) {
+                continue;
+            }
+            properties.put(field.property(), switch (field) {
+                case ID -> customer.getId();
+                case NAME -> customer.getName();
+                case EMAIL -> customer.getEmail();
+                case AGE -> customer.getAge();
+            });
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,26 @@
+package com.bachir.customer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Queries of CustomerRepository that read only some fields of the customers (?fields=).
+ * A custom Spring Data fragment, implemented with Criteria tuple queries in CustomerProjectionRepositoryImpl:
+ * the field list is only known per request, which derived and '@Query' methods cannot express.
+ */
+public interface CustomerProjectionRepository {
+
+    /**
+     * @param fields the fields to select.
+     * @return every customer, with only these fields set. The customers are not managed entities.
+     */
+    List<Customer> findAllProjected(Set<CustomerField> fields);
+
+    /**
+     * @param id the ID of the customer.
+     * @param fields the fields to select.
+     * @return the customer, with only these fields set, if it exists. It is not a managed entity.
+     */
+    Optional<Customer> findProjectedById(long id, Set<CustomerField> fields);
+}
@@ -0,0 +1,69 @@
+package com.bachir.customer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Implementation of CustomerProjectionRepository, picked up by Spring Data through its Impl suffix.
+ *
+ * The queries select the chosen attributes of Customer as a Tuple (SELECT c.id, c.email FROM Customer c), so
+ * Hibernate only reads those columns and never builds, or tracks, a managed entity for the rows. Each tuple is
+ * copied into a plain Customer.
+ *
+ * Read-only transactions, like the Spring Data repository methods, so they can be served by a read replica.
+ */
+@Transactional(readOnly = true)
+public class CustomerProjectionRepositoryImpl implements CustomerProjectionRepository {
+
+    private final EntityManager entityManager;
+
+    public CustomerProjectionRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Customer> findAllProjected(Set<CustomerField> fields) {
+        CriteriaQuery<Tuple> query = projection(fields);
+        return entityManager.createQuery(query).getResultStream().map(tuple -> toCustomer(tuple, fields)).toList();
+    }
+
+    @Override
+    public Optional<Customer> findProjectedById(long id, Set<CustomerField> fields) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = projection(fields);
+        @SuppressWarnings("unchecked")
+        Root<Customer> customer = (Root<Customer>) query.getRoots().iterator().next();
+        query.where(builder.equal(customer.get("id"), id));
+        return entityManager.createQuery(query).getResultStream().findFirst().map(tuple -> toCustomer(tuple, fields));
+    }
+
+    // SELECT the fields, in CustomerField order, each aliased with its property name.
+    private CriteriaQuery<Tuple> projection(Set<CustomerField> fields) {
+        CriteriaQuery<Tuple> query = entityManager.getCriteriaBuilder().createTupleQuery();
+        Root<Customer> customer = query.from(Customer.class);
+        List<Selection<?>> selections = Arrays.stream(CustomerField.values())
+                .filter(fields::contains)
+                .<Selection<?>>map(field -> customer.get(field.property()).alias(field.property()))
+                .toList();
+        return query.multiselect(selections);
+    }
+
+    private static Customer toCustomer(Tuple tuple, Set<CustomerField> fields) {
+        Customer customer = new Customer();
+        if (fields.contains(CustomerField.ID)) customer.setId(tuple.get("id", Long.class));
+        if (fields.contains(CustomerField.NAME)) customer.setName(tuple.get("name", String.class));
+        if (fields.contains(CustomerField.EMAIL)) customer.setEmail(tuple.get("email", String.class));
+        if (fields.contains(CustomerField.AGE)) customer.setAge(tuple.get("age", Integer.class));
+        return customer;
+    }
+}
@@ -1,6 +1,15 @@
 package com.bachir.customer;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for Customer entities, extending the JpaRepository interface provided by Spring Data JPA.
@@ -21,19 +30,31 @@ import org.springframework.data.jpa.repository.JpaRepository;
  *
  * 1. existsCustomerByEmail(String email):
  *    - Check whether a customer exists with the specified email.
- *    - This is a derived query method provided by Spring Data JPA, allowing for dynamic query generation
- *      based on method names.
+ *    - A native query on the customer_email table, which keeps emails unique across the partitions of the
+ *      customer table.
  *
  * 2. existsCustomerById(Long id):
  *    - Check whether a customer exists with the specified ID.
- *    - Similar to 'existsCustomerByEmail', this is a derived query, with the query details inferred from the method name.
+ *    - This is a derived query method provided by Spring Data JPA, allowing for dynamic query generation
+ *      based on method names.
+ *
+ * 3. existsCustomerByNormalizedEmail and findCustomersByNormalizedEmail:
+ *    - Case-insensitive email lookups through the email_hash index of customer_email (see CustomerEmails).
+ *    - Native '@Query' methods, as rows that were not backfilled yet (no hash) must be matched on the email itself.
+ *
+ * 4. findAllProjected and findProjectedById (from CustomerProjectionRepository):
+ *    - Read only the fields a client asked for with ?fields=, through Criteria tuple queries.
+ *
+ * 5. findAllViews, findViewById, findViewsAfter and findCustomerIdByNormalizedEmail:
+ *    - The read paths of the JPA DAO: immutable CustomerView records built by JPQL constructor expressions,
+ *      which Hibernate neither manages nor snapshots (see CustomerView).
  *
  * Usage:
  * The repository can be injected into a service class and used to handle database operations such as saving,
  * deleting, and querying Customer entities.
  *
  * Note:
- * - Although the methods 'existsCustomerByEmail' and 'existsCustomerById' are auto-generated by Spring Data JPA's
+ * - Although the method 'existsCustomerById' is auto-generated by Spring Data JPA's
  *   method query derivation, it's a good practice to ensure their correctness, especially in complex scenarios or
  *   when joining multiple conditions.
  * - For custom queries beyond the capabilities of method query derivation, you can use the '@Query' annotation
@@ -41,7 +62,21 @@ import org.springframework.data.jpa.repository.JpaRepository;
  *
  * @author CustomerRepository
  */
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+public interface CustomerRepository extends JpaRepository<Customer, Integer>, CustomerProjectionRepository {
+
+    // Query cache region for the queries below. The hints only take effect when the query cache is enabled
+    // (l2cache profile); the cached results are ids, the entities themselves come from the 'customer' region.
+    String QUERY_CACHE_REGION = "customer-queries";
+
+    /**
+     * Returns all customers. Redeclared only to make the query cacheable.
+     */
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION)
+    })
+    List<Customer> findAll();
 
     /**
      * Checks if a customer exists with the specified email in the database.
@@ -49,7 +84,13 @@ public interface CustomerRepository extends JpaRepository<Customer, Integer> {
      * @param email the email of the customer.
      * @return true if a customer with the email exists, false otherwise.
      */
-    boolean existsCustomerByEmail(String email);
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM customer_email WHERE email = :email)", nativeQuery = true)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "customer")
+    })
+    boolean existsCustomerByEmail(@Param("email") String email);
 
     /**
      * Checks if a customer exists with the specified ID in the database.
@@ -57,8 +98,89 @@ public interface CustomerRepository extends JpaRepository<Customer, Integer> {
      * @param id the ID of the customer.
      * @return true if a customer with the ID exists, false otherwise.
      */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION)
+    })
     boolean existsCustomerById(Long id);
 
+    // Matches a hashed row on hash and normalized email (different emails can share a hash), or a row that was not
+    // backfilled yet on its email. The second condition is served by the partial customer_email_lookup_unhashed_idx index.
+    // SQL on customer_email rather than JPQL on Customer: the customer table is partitioned by id, so only a lookup
+    // by id reads a single partition. The native spaces hint ties the cached results to writes to customer, which
+    // are what change customer_email (through a trigger).
+    String NORMALIZED_EMAIL_CONDITION = """
+            (e.email_hash = :hash AND e.email_normalized = :normalized)
+            OR (e.email_hash IS NULL AND lower(trim(e.email)) = :normalized)
+            """;
+
+    /**
+     * Checks if a customer exists with the specified email, ignoring case and surrounding spaces.
+     *
+     * @param hash CustomerEmails.hash of the normalized email.
+     * @param normalized CustomerEmails.normalize of the email.
+     * @return true if such a customer exists, false otherwise.
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM customer_email e WHERE " + NORMALIZED_EMAIL_CONDITION + ")", nativeQuery = true)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "customer")
+    })
+    boolean existsCustomerByNormalizedEmail(@Param("hash") long hash, @Param("normalized") String normalized);
+
+    /**
+     * Finds the customers with the specified email, ignoring case and surrounding spaces.
+     * More than one only for customers registered before emails were normalized.
+     *
+     * @param hash CustomerEmails.hash of the normalized email.
+     * @param normalized CustomerEmails.normalize of the email.
+     * @return the matching customers, oldest first.
+     */
+    // A join rather than IN or = ANY: in a nested loop, each customer is read from the one partition of its id.
+    @Query(value = "SELECT c.* FROM customer_email e JOIN customer c ON c.id = e.customer_id WHERE "
+            + NORMALIZED_EMAIL_CONDITION + " ORDER BY c.id", nativeQuery = true)
+    List<Customer> findCustomersByNormalizedEmail(@Param("hash") long hash, @Param("normalized") String normalized);
+
+
+    // The SELECT of the CustomerView queries: a constructor expression, so the rows never become entities.
+    String VIEW_SELECT = "SELECT new com.bachir.customer.CustomerView(c.id, c.name, c.email, c.age) FROM Customer c";
+
+    /**
+     * @return every customer, as views.
+     */
+    @Query(VIEW_SELECT)
+    List<CustomerView> findAllViews();
+
+    /**
+     * @param id the ID of the customer.
+     * @return the customer, as a view, if it exists.
+     */
+    @Query(VIEW_SELECT + " WHERE c.id = :id")
+    Optional<CustomerView> findViewById(@Param("id") long id);
+
+    /**
+     * Returns a page of customers in id order: the first ones with an id greater than afterId.
+     *
+     * @param afterId the last id of the previous page, 0 for the first page.
+     * @param page only its size is used, e.g. Pageable.ofSize(100); the position comes from afterId.
+     * @return the customers of the page, as views.
+     */
+    // Keyset paging: every page is an index range scan of the id, however deep it is.
+    @Query(VIEW_SELECT + " WHERE c.id > :afterId ORDER BY c.id")
+    List<CustomerView> findViewsAfter(@Param("afterId") long afterId, Pageable page);
+
+    /**
+     * Finds the id of the oldest customer with the specified email, ignoring case and surrounding spaces.
+     * The customer is then read with findViewById, from the one partition of its id.
+     *
+     * @param hash CustomerEmails.hash of the normalized email.
+     * @param normalized CustomerEmails.normalize of the email.
+     * @return the id of the customer, if there is one.
+     */
+    @Query(value = "SELECT e.customer_id FROM customer_email e WHERE " + NORMALIZED_EMAIL_CONDITION
+            + " ORDER BY e.customer_id LIMIT 1", nativeQuery = true)
+    Optional<Long> findCustomerIdByNormalizedEmail(@Param("hash") long hash, @Param("normalized") String normalized);
 
     /**These two are auto-generate, so no need to be tested.
      * BUt always test when there are custom complex query I created.
@@ -1,13 +1,16 @@
 package com.bachir.customer;
 
+import com.bachir.rowmapper.IndexedRowMapper;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
 
 /**
- * The CustomerRowMapper class implements the RowMapper interface, providing
+ * The CustomerRowMapper class implements the IndexedRowMapper interface, providing
  * a component that maps rows from a ResultSet to instances of the Customer class.
  * This class is typically used in JDBC template queries to convert SQL query results
  * into objects that can be used within the application.
@@ -22,7 +25,12 @@ import java.sql.SQLException;
  *    - This method is an override from the RowMapper interface.
  *    - It is called for each row in the ResultSet of a SQL query.
  *    - It creates and returns a Customer object by extracting the data
- *      from the ResultSet.
+ *      from the ResultSet, through CustomerIndexedRowMapper: the mapper generated
+ *      at compile time from the @GenerateRowMapper constructor of Customer.
+ *    - The columns are read by position, so the SELECT must list them in the order
+ *      of columns(): use CustomerIndexedRowMapper.SELECT_LIST. The DAOs check their
+ *      SELECTs at startup with IndexedRowMapper.check.
+ *    - A NULL age or id stays null, instead of becoming 0.
  *    - The rowNum argument indicates the number of the current row.
  *      It can be used for more complex mappings, if needed.
  *
@@ -34,11 +42,16 @@ import java.sql.SQLException;
  * an argument to map each row of the ResultSet to a Customer object.
  *
  * Example:
- *   jdbcTemplate.query("SELECT * FROM customer", new CustomerRowMapper());
+ *   jdbcTemplate.query("SELECT " + CustomerIndexedRowMapper.SELECT_LIST + " FROM customer", new CustomerRowMapper());
  *
  * The mapRow method doesn't need to be called directly by the developer.
  * It is called internally by the JdbcTemplate for each row of the ResultSet.
  *
+ * 2. forFields(Set<CustomerField> fields):
+ *    - Returns a RowMapper for a SELECT of only some columns (see CustomerField.columns), used by ?fields=.
+ *    - Only the selected columns are read, by position in the order of CustomerField.columns;
+ *      the other fields of the Customer stay null.
+ *
  * Handling SQLException:
  * SQLException can occur while interacting with the database. This is a
  * checked exception, so the method explicitly declares that it might be thrown.
@@ -46,25 +59,40 @@ import java.sql.SQLException;
  * by translating it into a DataAccessException (in a Spring application).
  */
 @Component // Tells Spring to manage this bean.
-public class CustomerRowMapper implements RowMapper<Customer> {
+public class CustomerRowMapper implements IndexedRowMapper<Customer> {
 
     // This method is called for each row in the results of a SQL query.
     @Override
     public Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return CustomerIndexedRowMapper.INSTANCE.mapRow(rs, rowNum);
+    }
 
-        // Return a new Customer object.
-        return new Customer(
-                // Get the value of the `id` column from the ResultSet.
-                rs.getLong("id"),
-
-                // Get the value of the `name` column from the ResultSet.
-                rs.getString("name"),
-
-                // Get the value of the `email` column from the ResultSet.
-                rs.getString("email"),
+    // The columns read by mapRow, in order.
+    @Override
+    public List<String> columns() {
+        return CustomerIndexedRowMapper.COLUMNS;
+    }
 
-                // Get the value of the `age` column from the ResultSet.
-                rs.getInt("age")
-        );
+    // Maps rows of a SELECT of only the given columns; the other fields are left null.
+    public static RowMapper<Customer> forFields(Set<CustomerField> fields) {
+        boolean id = fields.contains(CustomerField.ID);
+        boolean name = fields.contains(CustomerField.NAME);
+        boolean email = fields.contains(CustomerField.EMAIL);
+        boolean age = fields.contains(CustomerField.AGE);
+        return (rs, rowNum) -> {
+            Customer customer = new Customer();
+            int column = 1;
+            if (id) {
+                long value = rs.getLong(column++);
+                customer.setId(rs.wasNull() ? null : value);
+            }
+            if (name) customer.setName(rs.getString(column++));
+            if (email) customer.setEmail(rs.getString(column++));
+            if (age) {
+                int value = rs.getInt(column);
+                customer.setAge(rs.wasNull() ? null : value);
+            }
+            return customer;
+        };
     }
 }
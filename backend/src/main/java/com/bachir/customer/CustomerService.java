@@ -1,36 +1,116 @@
 package com.bachir.customer;
 
 
+import com.bachir.customer.audit.AuditAction;
+import com.bachir.customer.audit.AuditEntry;
+import com.bachir.customer.audit.CustomerAuditLog;
+import com.bachir.customer.hotkey.CustomerHotKeys;
+import com.bachir.customer.index.CustomerIdIndex;
 import com.bachir.exception.DuplicateResourceException;
 import com.bachir.exception.RequestValidationException;
 import com.bachir.exception.ResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class CustomerService {
 
+    private static final int ALL_FIELDS = AuditEntry.mask(CustomerField.NAME) | AuditEntry.mask(CustomerField.EMAIL)
+            | AuditEntry.mask(CustomerField.AGE);
+
+    static final int MAX_PAGE_SIZE = 1000;
+
     private final CustomerDao customerDao;
 
-    public CustomerService(@Qualifier("jpa") CustomerDao customerDao) {
+    //Runs independent lookups in parallel, on the same CustomerDao
+    private final AsyncCustomerDao asyncCustomerDao;
+
+    //Counts the ids and emails looked up, to find the hottest ones (see GET /api/v1/admin/hot-keys)
+    private final CustomerHotKeys hotKeys;
+
+    //Ids of every customer in memory, to answer for ids that do not exist without a query
+    private final CustomerIdIndex idIndex;
+
+    //Audit trail of the creates, updates and deletes, written in the background
+    private final CustomerAuditLog auditLog;
+
+    //Runs the write of updateCustomer, which looks up the customer outside of a transaction
+    private final TransactionTemplate transactionTemplate;
+
+    //The CustomerDao implementation is chosen with customer.data-access (see CustomerDaoConfiguration)
+    public CustomerService(@Qualifier("customerDao") CustomerDao customerDao, AsyncCustomerDao asyncCustomerDao,
+                           CustomerHotKeys hotKeys, CustomerIdIndex idIndex, CustomerAuditLog auditLog,
+                           PlatformTransactionManager transactionManager) {
         this.customerDao = customerDao;
+        this.asyncCustomerDao = asyncCustomerDao;
+        this.hotKeys = hotKeys;
+        this.idIndex = idIndex;
+        this.auditLog = auditLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public List<Customer> getAllCustomers(){
         return customerDao.selectAllCustomers();
     }
 
+    //Only the given fields are read where the data store allows it (?fields=)
+    public List<CustomerProjection> getAllCustomers(Set<CustomerField> fields){
+        return customerDao.selectAllCustomers(fields).stream()
+                .map(customer -> new CustomerProjection(customer, fields))
+                .toList();
+    }
+
+    //Pages of at most MAX_PAGE_SIZE customers, in id order
+    public List<Customer> getCustomersPage(long afterId, int limit){
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new RequestValidationException("limit must be between 1 and %d".formatted(MAX_PAGE_SIZE));
+        }
+        return customerDao.selectCustomersPage(afterId, limit);
+    }
+
      public Customer getCustomerById(Integer id){
+        hotKeys.recordCustomerId(id);
+        if (idIndex.lookup(id) == CustomerIdIndex.Lookup.ABSENT) {
+            throw new ResourceNotFoundException("Customer with id [%s] not found".formatted(id));
+        }
         return customerDao.selectCustomerById(Long.valueOf(id))
                 .orElseThrow(()->new ResourceNotFoundException("Customer with id [%s] not found".formatted(id)));
     }
 
+    public CustomerProjection getCustomerById(Integer id, Set<CustomerField> fields){
+        hotKeys.recordCustomerId(id);
+        if (idIndex.lookup(id) == CustomerIdIndex.Lookup.ABSENT) {
+            throw new ResourceNotFoundException("Customer with id [%s] not found".formatted(id));
+        }
+        return customerDao.selectCustomerById(Long.valueOf(id), fields)
+                .map(customer -> new CustomerProjection(customer, fields))
+                .orElseThrow(()->new ResourceNotFoundException("Customer with id [%s] not found".formatted(id)));
+    }
+
+    //Emails are matched ignoring case and surrounding spaces
+    public Customer getCustomerByEmail(String email){
+        hotKeys.recordEmail(email);
+        return customerDao.selectCustomerByEmail(email)
+                .orElseThrow(()->new ResourceNotFoundException("Customer with email [%s] not found".formatted(email)));
+    }
+
     //Add a customer
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
+    //The write methods are transactional so their checks and the write run on the primary database,
+    //even when read replicas are enabled (see ReplicaRoutingDataSource)
+    @Transactional
+    public Customer addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
         //Check if email exists, if yes then throw exception
         String email = customerRegistrationRequest.email();
+        hotKeys.recordEmail(email);
         if (customerDao.existsPersonWithEmail(email)){
             throw new DuplicateResourceException("Email already taken");
         }
@@ -40,49 +120,88 @@ public class CustomerService {
                 customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
                 customerRegistrationRequest.age());
-        customerDao.insertCustomer(customer);
+        //The DAO sets the generated id, so the caller can point the client at the new customer
+        Customer inserted = customerDao.insertCustomer(customer);
+        auditLog.record(AuditAction.CREATE, inserted.getId(), ALL_FIELDS);
+        return inserted;
     }
 
+    @Transactional
     public void deleteCustomerById(Integer id){
-        //Check if customer with that id exist, if no then throw exception
-        if (!customerDao.existsPersonWithId(id)){
+        //The id index answers for ids it knows are absent without a query.
+        //PRESENT is only a hint (the customer may have been deleted since), so any other id goes to the delete,
+        //and what it deleted tells whether the customer existed
+        if (idIndex.lookup(id) == CustomerIdIndex.Lookup.ABSENT
+                || !customerDao.deleteCustomerById(id)){
             throw new ResourceNotFoundException("Customer with id [%s] not found".formatted(id));
         }
-        //If yes, then remove
-        customerDao.deleteCustomerById(id);
+        auditLog.record(AuditAction.DELETE, id, 0);
     }
 
+    //The customer and the new email are looked up in parallel, on worker threads, outside of any transaction:
+    //waiting for them while holding a transaction's connection could exhaust the pool.
+    //The lookups read from the primary database. The write then runs in a short transaction of its own,
+    //as it can take several statements (the JDBC DAO updates each changed column, the sharded DAO may move the email).
     public void updateCustomer(Integer id, CustomerUpdateRequest updateRequest) {
-        //
-        Customer customer = getCustomerById(id);
+        //The email check is started before we know whether the email changed: a wasted query when it did not,
+        //but one round trip less when it did
+        hotKeys.recordEmail(updateRequest.email());
+        AsyncCustomerDao primary = asyncCustomerDao.onPrimary();
+        CompletableFuture<Optional<Customer>> customerLookup = primary.selectCustomerById(Long.valueOf(id));
+        CompletableFuture<Boolean> emailTaken = updateRequest.email() == null
+                ? CompletableFuture.completedFuture(false)
+                : primary.existsPersonWithEmail(updateRequest.email());
+
+        Customer customer = join(customerLookup)
+                .orElseThrow(()->new ResourceNotFoundException("Customer with id [%s] not found".formatted(id)));
 
-        boolean changes = false;
+        //The changed fields, as AuditEntry masks
+        int changes = 0;
 
         if (updateRequest.name() !=null && !updateRequest.name().equals(customer.getName())){
             customer.setName(updateRequest.name());
-            changes = true;
+            changes |= AuditEntry.mask(CustomerField.NAME);
         }
 
         if (updateRequest.email() !=null && !updateRequest.email().equals(customer.getEmail())){
 
-            //Check if the new email already exist, if yes throw DuplicateResourceException
-            if (customerDao.existsPersonWithEmail(updateRequest.email())){
+            //Check if the new email already exist, if yes throw DuplicateResourceException.
+            //A change of case only finds the customer itself, which is fine.
+            boolean caseChangeOnly = CustomerEmails.normalize(updateRequest.email())
+                    .equals(CustomerEmails.normalize(customer.getEmail()));
+            if (join(emailTaken) && !caseChangeOnly){
                 throw new DuplicateResourceException("Email already taken");
             }
             //If not, then update
             customer.setEmail(updateRequest.email());
-            changes = true;
+            changes |= AuditEntry.mask(CustomerField.EMAIL);
         }
 
         if (updateRequest.age() !=null && !updateRequest.age().equals(customer.getAge())){
             customer.setAge(updateRequest.age());
-            changes = true;
+            changes |= AuditEntry.mask(CustomerField.AGE);
         }
 
-        if(!changes){
+        if(changes == 0){
             throw new RequestValidationException("no data changes found");
         }
 
-        customerDao.updateCustomer(customer);
+        int changed = changes;
+        transactionTemplate.executeWithoutResult(status -> {
+            customerDao.updateCustomer(customer);
+            auditLog.record(AuditAction.UPDATE, id, changed);
+        });
+    }
+
+    //Rethrows what the DAO threw, such as a DataAccessException, rather than the CompletionException wrapping it
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 }
@@ -0,0 +1,19 @@
+package com.bachir.customer;
+
+/**
+ * A customer as the JPA DAO reads it: an immutable record rather than a managed entity.
+ *
+ * The CustomerRepository view queries select it with a JPQL constructor expression
+ * (SELECT new CustomerView(c.id, c.name, c.email, c.age) FROM Customer c), so Hibernate builds it straight from
+ * the row: no entity instance, no entry or snapshot in the persistence context, nothing to dirty check or flush.
+ * Reads that only serialize their result have no use for any of it.
+ */
+public record CustomerView(Long id, String name, String email, Integer age) {
+
+    /**
+     * @return a Customer with the same fields, detached: saving it is an update like any other.
+     */
+    public Customer toCustomer() {
+        return Customer.fromView(this);
+    }
+}
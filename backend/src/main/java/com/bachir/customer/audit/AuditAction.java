@@ -0,0 +1,10 @@
+package com.bachir.customer.audit;
+
+/**
+ * The customer mutations that are audited, one per write method of CustomerService.
+ */
+public enum AuditAction {
+    CREATE,
+    UPDATE,
+    DELETE
+}
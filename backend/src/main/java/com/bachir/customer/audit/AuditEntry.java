@@ -0,0 +1,70 @@
+package com.bachir.customer.audit;
+
+import com.bachir.customer.CustomerField;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * One audited mutation, in a slot of the AuditRingBuffer.
+ *
+ * Slots are allocated once, when the buffer is created, and overwritten for every mutation, so recording one
+ * allocates nothing. A sink must therefore copy what it keeps of an entry: the slot is reused as soon as every
+ * sink has finished the batch it belongs to.
+ */
+public final class AuditEntry {
+
+    private long sequence;
+    private long timestampMillis;
+    private AuditAction action;
+    private long customerId;
+    private int changedFields;
+
+    void set(long sequence, long timestampMillis, AuditAction action, long customerId, int changedFields) {
+        this.sequence = sequence;
+        this.timestampMillis = timestampMillis;
+        this.action = action;
+        this.customerId = customerId;
+        this.changedFields = changedFields;
+    }
+
+    /**
+     * @return the position of the entry in the buffer since the application started: entries are written in
+     *         this order, and a gap means entries were dropped or sampled out in between.
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    public long timestampMillis() {
+        return timestampMillis;
+    }
+
+    public AuditAction action() {
+        return action;
+    }
+
+    public long customerId() {
+        return customerId;
+    }
+
+    /**
+     * @return the fields an UPDATE changed; every field for a CREATE, none for a DELETE.
+     */
+    public Set<CustomerField> changedFields() {
+        EnumSet<CustomerField> fields = EnumSet.noneOf(CustomerField.class);
+        for (CustomerField field : CustomerField.values()) {
+            if ((changedFields & mask(field)) != 0) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return the bit of a field in the changedFields argument of CustomerAuditLog.record.
+     */
+    public static int mask(CustomerField field) {
+        return 1 << field.ordinal();
+    }
+}
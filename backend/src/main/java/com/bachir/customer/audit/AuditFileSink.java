@@ -0,0 +1,94 @@
+package com.bachir.customer.audit;
+
+import com.bachir.customer.CustomerField;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Appends the audit entries to a file, one JSON object per line:
+ * {"sequence":42,"time":"2026-10-19T18:00:00.123Z","action":"UPDATE","customerId":7,"fields":["name","age"]}
+ *
+ * A batch is encoded into one buffer and written with one write, then forced to disk if fsync is on, so the
+ * cost of the flush is shared by the whole batch. The file is only ever appended to; rotating and shipping it
+ * is left to the usual log tooling.
+ */
+public class AuditFileSink implements AuditSink {
+
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final StringBuilder lines = new StringBuilder();
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    // Whether pending holds an encoded batch not fully written yet
+    private boolean encoded;
+
+    public AuditFileSink(Path file, boolean fsync) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.fsync = fsync;
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public void append(AuditEntry entry) {
+        lines.append("{\"sequence\":").append(entry.sequence())
+                .append(",\"time\":\"").append(Instant.ofEpochMilli(entry.timestampMillis()))
+                .append("\",\"action\":\"").append(entry.action().name())
+                .append("\",\"customerId\":").append(entry.customerId())
+                .append(",\"fields\":[");
+        boolean first = true;
+        for (CustomerField field : entry.changedFields()) {
+            lines.append(first ? "\"" : ",\"").append(field.property()).append('"');
+            first = false;
+        }
+        lines.append("]}\n");
+    }
+
+    @Override
+    public void endOfBatch() throws IOException {
+        if (!encoded) {
+            encode();
+        }
+        // After a failed write, carries on from where it stopped
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        encoded = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void encode() {
+        int maxBytes = (int) (lines.length() * (double) encoder.maxBytesPerChar());
+        if (pending.capacity() < maxBytes) {
+            pending = ByteBuffer.allocate(maxBytes);
+        }
+        pending.clear();
+        encoder.reset().encode(CharBuffer.wrap(lines), pending, true);
+        encoder.flush(pending);
+        pending.flip();
+        lines.setLength(0);
+        encoded = true;
+    }
+}
@@ -0,0 +1,26 @@
+package com.bachir.customer.audit;
+
+/**
+ * What a request does when the audit buffer is full because the sinks cannot keep up
+ * (customer.audit.overflow). Counted in the customer.audit.entries metric, by outcome.
+ */
+public enum AuditOverflowPolicy {
+
+    /**
+     * The request waits for a free slot. No entry is lost, but the mutations are slowed down to the pace of the
+     * slowest sink: the default, as an audit trail with holes is of little use.
+     */
+    BLOCK,
+
+    /**
+     * The entry is dropped, and the request goes on. Mutations never wait for the sinks.
+     */
+    DROP,
+
+    /**
+     * Once the buffer is more than customer.audit.sample-threshold full, only one entry in
+     * customer.audit.sample-rate is kept, so the sinks catch up while the trail keeps a trace of every period.
+     * Entries that find the buffer full anyway are dropped.
+     */
+    SAMPLE
+}
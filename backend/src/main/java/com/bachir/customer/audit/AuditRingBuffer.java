@@ -0,0 +1,143 @@
+package com.bachir.customer.audit;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded buffer of preallocated AuditEntry slots, in the style of the LMAX Disruptor: request threads claim
+ * the next sequence number with a CAS, fill the slot in place and publish it; every sink writer reads all the
+ * entries, in sequence order, at its own pace.
+ *
+ * - Slot i holds sequences i, i + capacity, i + 2 * capacity... A sequence is only claimed once every writer is
+ *   done with the one a full round before it in the same slot.
+ * - Published entries are flagged per slot with the round of their sequence, so a writer knows which of the
+ *   claimed sequences are complete without a lock, even when requests publish out of order.
+ * - Writers take every published entry at once (a batch), and release the slots at the end of the batch.
+ *
+ * Nothing is allocated once the buffer exists, and claiming and publishing take a few atomic operations.
+ */
+final class AuditRingBuffer {
+
+    private final AuditEntry[] entries;
+    private final int mask;
+    private final int roundShift;
+    // Round (sequence / capacity) of the entry last published in each slot
+    private final AtomicIntegerArray publishedRounds;
+    // Last sequence claimed by a request
+    private final AtomicLong cursor = new AtomicLong(-1);
+    // Last sequence written by each writer
+    private final AtomicLong[] writerSequences;
+    // The lowest writer sequence, as last computed: saves reading every writer sequence on every claim
+    private final AtomicLong writerSequenceCache = new AtomicLong(-1);
+    private final AuditWaitStrategy.Waiter waiter;
+
+    /**
+     * @param capacity The number of slots, a power of two.
+     * @param writers The number of writers (sinks) that read every entry.
+     */
+    AuditRingBuffer(int capacity, int writers, AuditWaitStrategy waitStrategy) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Audit buffer size must be a power of two, not " + capacity);
+        }
+        this.entries = new AuditEntry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new AuditEntry();
+        }
+        this.mask = capacity - 1;
+        this.roundShift = Integer.numberOfTrailingZeros(capacity);
+        this.publishedRounds = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            publishedRounds.set(i, -1);
+        }
+        this.writerSequences = new AtomicLong[writers];
+        for (int i = 0; i < writers; i++) {
+            writerSequences[i] = new AtomicLong(-1);
+        }
+        this.waiter = waitStrategy.newWaiter();
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * @return the next sequence, claimed for the caller, or -1 if the buffer is full.
+     */
+    long tryClaim() {
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - entries.length;
+            if (wrapPoint > writerSequenceCache.get()) {
+                long lowest = lowestWriterSequence();
+                writerSequenceCache.set(lowest);
+                if (wrapPoint > lowest) {
+                    return -1;
+                }
+            }
+            if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries claimed but not written by every writer yet.
+     */
+    long used() {
+        return cursor.get() - lowestWriterSequence();
+    }
+
+    AuditEntry get(long sequence) {
+        return entries[(int) sequence & mask];
+    }
+
+    /**
+     * Makes a claimed entry visible to the writers, once it is filled.
+     */
+    void publish(long sequence) {
+        publishedRounds.set((int) sequence & mask, (int) (sequence >>> roundShift));
+        waiter.signal();
+    }
+
+    long cursor() {
+        return cursor.get();
+    }
+
+    /**
+     * @return the last sequence of the run of published entries that starts at from, or from - 1 if from itself
+     *         is not published yet.
+     */
+    long highestPublished(long from) {
+        long claimed = cursor.get();
+        for (long sequence = from; sequence <= claimed; sequence++) {
+            if (publishedRounds.get((int) sequence & mask) != (int) (sequence >>> roundShift)) {
+                return sequence - 1;
+            }
+        }
+        return claimed;
+    }
+
+    long writerSequence(int writer) {
+        return writerSequences[writer].get();
+    }
+
+    /**
+     * Releases the slots of every sequence up to the given one, for the given writer.
+     */
+    void writerDone(int writer, long sequence) {
+        writerSequences[writer].set(sequence);
+    }
+
+    AuditWaitStrategy.Waiter waiter() {
+        return waiter;
+    }
+
+    private long lowestWriterSequence() {
+        long lowest = Long.MAX_VALUE;
+        for (AtomicLong sequence : writerSequences) {
+            lowest = Math.min(lowest, sequence.get());
+        }
+        return lowest;
+    }
+}
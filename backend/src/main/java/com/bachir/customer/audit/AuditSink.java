@@ -0,0 +1,30 @@
+package com.bachir.customer.audit;
+
+/**
+ * Where audit entries end up (customer.audit.sinks). Each sink is called by its own writer thread only, so an
+ * implementation needs no synchronization.
+ *
+ * The writer hands over every entry available at once, one append() each, then calls endOfBatch(): a sink
+ * buffers the entries and writes them all there, in one file write or one database batch.
+ */
+public interface AuditSink extends AutoCloseable {
+
+    /**
+     * @return the name of the sink, in logs and metrics.
+     */
+    String name();
+
+    /**
+     * Adds an entry to the current batch. The entry is reused after the batch: copy what is kept.
+     */
+    void append(AuditEntry entry) throws Exception;
+
+    /**
+     * Writes the current batch. If it throws, the writer calls it again later with the same batch, and the
+     * entries wait in the buffer meanwhile.
+     */
+    void endOfBatch() throws Exception;
+
+    @Override
+    void close() throws Exception;
+}
@@ -0,0 +1,137 @@
+package com.bachir.customer.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The thread that feeds one sink from the buffer: it takes every published entry at once, appends them to the
+ * sink, ends the batch, then releases their slots.
+ *
+ * A batch that fails is retried with a growing delay, up to MAX_RETRY_DELAY, until the sink recovers or the
+ * application stops. The entries wait in the buffer meanwhile; once it is full, the overflow policy applies to
+ * the requests.
+ */
+final class AuditSinkWriter implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditSinkWriter.class);
+
+    private static final Duration FIRST_RETRY_DELAY = Duration.ofMillis(100);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final AuditRingBuffer buffer;
+    private final int writer;
+    private final AuditSink sink;
+    private final Thread thread;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean running = true;
+
+    AuditSinkWriter(AuditRingBuffer buffer, int writer, AuditSink sink) {
+        this.buffer = buffer;
+        this.writer = writer;
+        this.sink = sink;
+        this.thread = new Thread(this, "customer-audit-" + sink.name());
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        long next = buffer.writerSequence(writer) + 1;
+        int idle = 0;
+        try {
+            while (true) {
+                long available = buffer.highestPublished(next);
+                if (available >= next) {
+                    for (long sequence = next; sequence <= available; sequence++) {
+                        sink.append(buffer.get(sequence));
+                    }
+                    endOfBatch();
+                    buffer.writerDone(writer, available);
+                    written.add(available - next + 1);
+                    batches.increment();
+                    next = available + 1;
+                    idle = 0;
+                } else if (!running && next > buffer.cursor()) {
+                    // Stopped, and every claimed entry is written
+                    break;
+                } else {
+                    long from = next;
+                    buffer.waiter().idle(idle++, () -> !running || buffer.highestPublished(from) >= from);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.warn("Audit sink {} interrupted, {} entries not written", sink.name(), buffer.cursor() - next + 1);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Audit sink {} failed, it is stopped", sink.name(), e);
+        }
+    }
+
+    /**
+     * Stops after writing the entries claimed so far, for at most the given time, and closes the sink.
+     */
+    void stop(Duration timeout) {
+        running = false;
+        buffer.waiter().signalAll();
+        try {
+            thread.join(timeout.toMillis());
+            if (thread.isAlive()) {
+                log.warn("Audit sink {} did not finish within {}, stopping it", sink.name(), timeout);
+                thread.interrupt();
+                thread.join(timeout.toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sink.close();
+        } catch (Exception e) {
+            log.warn("Closing audit sink {} failed", sink.name(), e);
+        }
+    }
+
+    boolean isAlive() {
+        return thread.isAlive();
+    }
+
+    String sinkName() {
+        return sink.name();
+    }
+
+    long written() {
+        return written.sum();
+    }
+
+    long batches() {
+        return batches.sum();
+    }
+
+    long failures() {
+        return failures.sum();
+    }
+
+    private void endOfBatch() throws InterruptedException {
+        long delayNanos = FIRST_RETRY_DELAY.toNanos();
+        while (true) {
+            try {
+                sink.endOfBatch();
+                return;
+            } catch (Exception e) {
+                failures.increment();
+                log.warn("Audit sink {} failed to write a batch, retrying in {} ms", sink.name(),
+                        TimeUnit.NANOSECONDS.toMillis(delayNanos), e);
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+                delayNanos = Math.min(delayNanos * 2, MAX_RETRY_DELAY.toNanos());
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.bachir.customer.audit;
+
+import com.bachir.customer.CustomerField;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts the audit entries into the customer_audit table (V9), one JDBC batch per batch of entries: a single
+ * round trip, and a single implicit transaction, so a failed batch is retried whole without duplicates.
+ */
+public class AuditTableSink implements AuditSink {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO customer_audit (sequence, occurred_at, action, customer_id, changed_fields)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final List<Object[]> rows = new ArrayList<>();
+
+    public AuditTableSink(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public String name() {
+        return "table";
+    }
+
+    @Override
+    public void append(AuditEntry entry) {
+        rows.add(new Object[]{
+                entry.sequence(),
+                new Timestamp(entry.timestampMillis()),
+                entry.action().name(),
+                entry.customerId(),
+                entry.changedFields().stream().map(CustomerField::property).collect(Collectors.joining(","))
+        });
+    }
+
+    @Override
+    public void endOfBatch() {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            rows.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
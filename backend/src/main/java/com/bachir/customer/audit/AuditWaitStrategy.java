@@ -0,0 +1,125 @@
+package com.bachir.customer.audit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * How the sink writers wait for new entries (customer.audit.wait-strategy). A trade-off between how soon an
+ * entry is written and how much CPU an idle writer burns, and what a recorded mutation costs the request.
+ */
+public enum AuditWaitStrategy {
+
+    /**
+     * Writers sleep on a lock and are woken by the request threads. No CPU when idle, but a request that
+     * records an entry while a writer sleeps pays for waking it up (a few microseconds).
+     */
+    BLOCKING,
+
+    /**
+     * Writers spin, then yield, then sleep a few microseconds at a time. Requests never wake anybody; entries
+     * wait up to the sleep time. Little CPU when idle: the default.
+     */
+    SLEEPING,
+
+    /**
+     * Writers spin, then yield the CPU to other threads. The lowest latency that leaves the CPU to the
+     * request threads, but idle writers keep a core busy when nothing else runs.
+     */
+    YIELDING,
+
+    /**
+     * Writers spin. Only for machines with a spare core per sink.
+     */
+    BUSY_SPIN;
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    // A signal lost between the check of a blocked writer and its sleep delays an entry by this much at most.
+    private static final long BLOCKED_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * @return the waiting state shared by the writers and the request threads of one buffer.
+     */
+    Waiter newWaiter() {
+        return new Waiter(this);
+    }
+
+    static final class Waiter {
+
+        private final AuditWaitStrategy strategy;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition published = lock.newCondition();
+        private volatile int blockedWriters;
+
+        private Waiter(AuditWaitStrategy strategy) {
+            this.strategy = strategy;
+        }
+
+        /**
+         * Called by a writer that found no entry, for the attempt-th time in a row.
+         */
+        void idle(int attempt, BooleanSupplier hasEntries) throws InterruptedException {
+            switch (strategy) {
+                case BUSY_SPIN -> Thread.onSpinWait();
+                case YIELDING -> {
+                    if (attempt < SPIN_TRIES) {
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                case SLEEPING -> {
+                    if (attempt < SPIN_TRIES) {
+                        Thread.onSpinWait();
+                    } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(SLEEP_NANOS);
+                    }
+                }
+                case BLOCKING -> {
+                    lock.lock();
+                    try {
+                        blockedWriters++;
+                        if (!hasEntries.getAsBoolean()) {
+                            published.awaitNanos(BLOCKED_NANOS);
+                        }
+                    } finally {
+                        blockedWriters--;
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Called by a request thread after it published an entry. Free unless a BLOCKING writer sleeps.
+         */
+        void signal() {
+            if (blockedWriters > 0) {
+                lock.lock();
+                try {
+                    published.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Wakes every blocked writer, to stop.
+         */
+        void signalAll() {
+            lock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
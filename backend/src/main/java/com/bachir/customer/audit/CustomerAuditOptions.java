@@ -0,0 +1,30 @@
+package com.bachir.customer.audit;
+
+/**
+ * Settings of the audit buffer (customer.audit).
+ *
+ * @param bufferSize Number of slots of the buffer, a power of two. Entries wait there while the sinks are slow
+ *                   or down; the overflow policy applies once it is full.
+ * @param waitStrategy How the sink writers wait for new entries.
+ * @param overflow What a request does when the buffer is full.
+ * @param sampleThreshold Fraction of the buffer in use above which the SAMPLE policy starts sampling.
+ * @param sampleRate With the SAMPLE policy, one entry in this many is kept above the threshold.
+ */
+public record CustomerAuditOptions(int bufferSize,
+                                   AuditWaitStrategy waitStrategy,
+                                   AuditOverflowPolicy overflow,
+                                   double sampleThreshold,
+                                   int sampleRate) {
+
+    public CustomerAuditOptions {
+        if (bufferSize < 2 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Audit buffer size must be a power of two, not " + bufferSize);
+        }
+        if (sampleThreshold <= 0 || sampleThreshold > 1) {
+            throw new IllegalArgumentException("Audit sample threshold must be in (0, 1], not " + sampleThreshold);
+        }
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Audit sample rate must be at least 1, not " + sampleRate);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.bachir.customer.cache;
+
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.hotkey.CustomerHotKeys;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of ready-to-send response bodies for the hottest customer reads:
+ * GET /api/v1/customers/{id} and the full list at GET /api/v1/customers.
+ *
+ * Each entry holds the exact JSON bytes the controller produced plus a gzip-compressed copy,
+ * so a hit skips the database, Jackson and compression entirely.
+ *
+ * Consistency:
+ * - Every entry is stamped with a version. Versions are bumped by CustomerChangedEvent, which the
+ *   CustomerDao implementations publish after every write, so entries are dropped on change and the
+ *   list snapshot is rebuilt by the next request after a change.
+ * - A response is only stored if its version did not move while it was being computed, so a
+ *   read racing a write can never put stale bytes back into the cache.
+ * - Entries expire after customer.response-cache.ttl (30s). That bounds how long the writes this instance does
+ *   not hear about are missed: rows loaded by CustomerTransferCli or psql, or the writes of other instances
+ *   when the invalidation bus is down (see CustomerInvalidationBus).
+ *
+ * Memory is bounded by customer.response-cache.max-bytes. When the budget is exceeded, entries are
+ * evicted with a CLOCK sweep: entries hit since the last sweep get a second chance.
+ *
+ * Once the budget is used up, a customer is only admitted if it was requested at least
+ * customer.response-cache.admission.min-frequency times recently (see CustomerHotKeys), so that customers
+ * requested once do not evict the ones requested all the time.
+ */
+@Component
+@ConditionalOnProperty(name = "customer.response-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerResponseCache {
+
+    // Number of version stripes; customer ids are spread over them by their low bits.
+    private static final int VERSION_STRIPES = 1024;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final CustomerHotKeys hotKeys;
+    private final long minAdmissionFrequency;
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<Long, CachedResponse> customers = new ConcurrentHashMap<>();
+    private volatile CachedResponse customerList;
+
+    private final AtomicLongArray customerVersions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLong listVersion = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    @Autowired
+    public CustomerResponseCache(@Value("${customer.response-cache.max-bytes:67108864}") long maxBytes,
+                                 CustomerHotKeys hotKeys,
+                                 @Value("${customer.response-cache.admission.min-frequency:2}") long minAdmissionFrequency,
+                                 @Value("${customer.response-cache.ttl:30s}") Duration ttl) {
+        this.maxBytes = maxBytes;
+        // A single response may not take more than an eighth of the budget, otherwise it would flush everything else.
+        this.maxEntryBytes = maxBytes / 8;
+        this.hotKeys = hotKeys;
+        this.minAdmissionFrequency = minAdmissionFrequency;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * A cache that admits every response, and keeps them for ttl.
+     */
+    public CustomerResponseCache(long maxBytes, Duration ttl) {
+        this(maxBytes, null, 0, ttl);
+    }
+
+    /**
+     * @return the cached response for a customer, or null on a miss.
+     */
+    public CachedResponse getCustomer(long id) {
+        CachedResponse response = customers.get(id);
+        if (response == null) {
+            return null;
+        }
+        if (expired(response)) {
+            remove(id, response);
+            return null;
+        }
+        response.referenced = true;
+        return response;
+    }
+
+    /**
+     * @return the cached full-list response, or null on a miss.
+     */
+    public CachedResponse getCustomerList() {
+        CachedResponse response = customerList;
+        if (response != null && expired(response)) {
+            removeCustomerList(response);
+            return null;
+        }
+        return response;
+    }
+
+    /**
+     * @return the current version of a customer entry, to be passed back to putCustomer.
+     */
+    public long customerVersion(long id) {
+        return customerVersions.get(stripe(id));
+    }
+
+    public long customerListVersion() {
+        return listVersion.get();
+    }
+
+    /**
+     * Stores the response body of a customer, unless the customer changed since {@code version} was read.
+     */
+    public void putCustomer(long id, long version, byte[] json) {
+        if (json.length > maxEntryBytes || customerVersion(id) != version || !admit(id, json.length)) {
+            return;
+        }
+        CachedResponse response = CachedResponse.of(version, json);
+        CachedResponse previous = customers.put(id, response);
+        usedBytes.addAndGet(response.size() - (previous == null ? 0 : previous.size()));
+        // Re-check after publishing: an invalidation may have run between the version check and the put.
+        if (customerVersion(id) != version) {
+            remove(id, response);
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Stores the full-list response body, unless any customer changed since {@code version} was read.
+     */
+    public synchronized void putCustomerList(long version, byte[] json) {
+        if (json.length > maxEntryBytes || listVersion.get() != version) {
+            return;
+        }
+        CachedResponse response = CachedResponse.of(version, json);
+        CachedResponse previous = customerList;
+        customerList = response;
+        usedBytes.addAndGet(response.size() - (previous == null ? 0 : previous.size()));
+        if (listVersion.get() != version) {
+            invalidateCustomerList();
+        }
+        evictIfNeeded();
+    }
+
+    public void invalidateCustomer(long id) {
+        customerVersions.incrementAndGet(stripe(id));
+        CachedResponse removed = customers.remove(id);
+        if (removed != null) {
+            usedBytes.addAndGet(-removed.size());
+        }
+    }
+
+    public synchronized void invalidateCustomerList() {
+        listVersion.incrementAndGet();
+        CachedResponse removed = customerList;
+        customerList = null;
+        if (removed != null) {
+            usedBytes.addAndGet(-removed.size());
+        }
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            customerVersions.incrementAndGet(i);
+        }
+        customers.keySet().forEach(this::invalidateCustomer);
+        invalidateCustomerList();
+    }
+
+    /**
+     * Keeps the cache in sync with every write made through a CustomerDao.
+     * Runs after commit when the write is transactional, so readers cannot re-cache uncommitted state.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (event.type() == CustomerChangedEvent.ChangeType.BULK) {
+            invalidateAll();
+            return;
+        }
+        if (event.customerId() != null) {
+            invalidateCustomer(event.customerId());
+        }
+        invalidateCustomerList();
+    }
+
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    public int size() {
+        return customers.size() + (customerList == null ? 0 : 1);
+    }
+
+    // While there is room, everything is admitted; once full, only the customers requested often enough.
+    private boolean admit(long id, int jsonBytes) {
+        return hotKeys == null
+                || usedBytes.get() + jsonBytes <= maxBytes
+                || hotKeys.customerIdFrequency(id) >= minAdmissionFrequency;
+    }
+
+    private boolean expired(CachedResponse response) {
+        return System.nanoTime() - response.createdAtNanos >= ttlNanos;
+    }
+
+    private synchronized void removeCustomerList(CachedResponse response) {
+        if (customerList == response) {
+            customerList = null;
+            usedBytes.addAndGet(-response.size());
+        }
+    }
+
+    private void remove(long id, CachedResponse response) {
+        if (customers.remove(id, response)) {
+            usedBytes.addAndGet(-response.size());
+        }
+    }
+
+    // CLOCK eviction: clear the reference bit of recently hit entries, evict the others, until under budget.
+    private void evictIfNeeded() {
+        if (usedBytes.get() <= maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            for (int pass = 0; pass < 2 && usedBytes.get() > maxBytes; pass++) {
+                Iterator<Map.Entry<Long, CachedResponse>> entries = customers.entrySet().iterator();
+                while (entries.hasNext() && usedBytes.get() > maxBytes) {
+                    Map.Entry<Long, CachedResponse> entry = entries.next();
+                    CachedResponse response = entry.getValue();
+                    if (response.referenced) {
+                        response.referenced = false;
+                    } else {
+                        remove(entry.getKey(), response);
+                    }
+                }
+            }
+            // Only the list is left and it still does not fit.
+            if (usedBytes.get() > maxBytes) {
+                invalidateCustomerList();
+            }
+        }
+    }
+
+    private static int stripe(long id) {
+        return (int) (id & (VERSION_STRIPES - 1));
+    }
+
+    /**
+     * A ready-to-send response body, raw and gzip-compressed.
+     */
+    public static final class CachedResponse {
+        private final long version;
+        private final byte[] json;
+        private final byte[] gzip;
+        private final long createdAtNanos = System.nanoTime();
+        // CLOCK reference bit, set on every hit.
+        private volatile boolean referenced;
+
+        private CachedResponse(long version, byte[] json, byte[] gzip) {
+            this.version = version;
+            this.json = json;
+            this.gzip = gzip;
+        }
+
+        static CachedResponse of(long version, byte[] json) {
+            return new CachedResponse(version, json, gzip(json));
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public byte[] json() {
+            return json;
+        }
+
+        public byte[] gzip() {
+            return gzip;
+        }
+
+        long size() {
+            return (long) json.length + gzip.length;
+        }
+
+        private static byte[] gzip(byte[] json) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 2 + 32);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.bachir.customer.cache;
+
+import com.bachir.customer.cache.CustomerResponseCache.CachedResponse;
+import com.bachir.customer.hotkey.CustomerHotKeys;
+import com.bachir.datasource.PrimaryStickiness;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Serves GET /api/v1/customers and GET /api/v1/customers/{id} from the CustomerResponseCache.
+ *
+ * On a hit, the stored bytes (gzip-compressed when the client accepts it) are written straight
+ * to the response without touching the controller. On a miss, the request goes through the normal
+ * controller path and the JSON body it produced is captured and stored for the next request.
+ *
+ * Only plain JSON requests are cached: requests asking for another format, or carrying query
+ * parameters, always go to the controller.
+ */
+@Component
+@ConditionalOnProperty(name = "customer.response-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerResponseCacheFilter extends OncePerRequestFilter implements Ordered {
+
+    private static final String CUSTOMERS_PATH = "/api/v1/customers";
+    private static final String GZIP = "gzip";
+    private static final String VARY_VALUE = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+
+    private final CustomerResponseCache cache;
+    // Hits never reach CustomerService, which counts the other requests
+    private final CustomerHotKeys hotKeys;
+
+    public CustomerResponseCacheFilter(CustomerResponseCache cache, CustomerHotKeys hotKeys) {
+        this.cache = cache;
+        this.hotKeys = hotKeys;
+    }
+
+    // Before the concurrency limit, so cache hits are served even while the limit sheds requests.
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 10;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod())
+                || request.getQueryString() != null
+                || !request.getRequestURI().startsWith(CUSTOMERS_PATH, request.getContextPath().length())
+                || !acceptsJson(request.getHeader(HttpHeaders.ACCEPT));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.length() == CUSTOMERS_PATH.length()) {
+            serveCustomerList(request, response, chain);
+            return;
+        }
+        long id = parseCustomerId(path);
+        if (id < 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        serveCustomer(id, request, response, chain);
+    }
+
+    private void serveCustomerList(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CachedResponse cached = cache.getCustomerList();
+        if (cached != null) {
+            write(cached, request, response);
+            return;
+        }
+        long version = cache.customerListVersion();
+        byte[] body = captureJson(request, response, chain);
+        if (body != null) {
+            cache.putCustomerList(version, body);
+        }
+    }
+
+    private void serveCustomer(long id, HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CachedResponse cached = cache.getCustomer(id);
+        if (cached != null) {
+            hotKeys.recordCustomerId(id);
+            write(cached, request, response);
+            return;
+        }
+        long version = cache.customerVersion(id);
+        byte[] body = captureJson(request, response, chain);
+        if (body != null) {
+            cache.putCustomer(id, version, body);
+        }
+    }
+
+    // Runs the controller, sends its response on, and returns the body if it is a cacheable JSON 200.
+    // The controller reads from the primary: a body read from a lagging read replica would stay cached
+    // until the next write, long after the replica caught up.
+    private byte[] captureJson(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        wrapper.setHeader(HttpHeaders.VARY, VARY_VALUE);
+        boolean wasSticky = PrimaryStickiness.isSticky();
+        PrimaryStickiness.stick();
+        try {
+            chain.doFilter(request, wrapper);
+        } finally {
+            if (!wasSticky) {
+                PrimaryStickiness.clear();
+            }
+        }
+        byte[] body = null;
+        String contentType = wrapper.getContentType();
+        if (wrapper.getStatus() == HttpStatus.OK.value()
+                && contentType != null && contentType.startsWith(MediaType.APPLICATION_JSON_VALUE)) {
+            body = wrapper.getContentAsByteArray();
+        }
+        wrapper.copyBodyToResponse();
+        return body;
+    }
+
+    private static void write(CachedResponse cached, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        byte[] body = cached.json();
+        if (acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            body = cached.gzip();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.VARY, VARY_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    // Whether an Accept-Encoding header allows gzip: listed with a quality above 0, or not listed and "*" is
+    // (RFC 9110). "gzip;q=0" refuses it.
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!name.equals(GZIP) && !name.equals("*")) {
+                continue;
+            }
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase(Locale.ROOT);
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals(GZIP)) {
+                gzip = quality;
+            } else {
+                any = quality;
+            }
+        }
+        Double quality = gzip != null ? gzip : any;
+        return quality != null && quality > 0;
+    }
+
+    // Returns the id of a /api/v1/customers/{id} path, or -1 for any other path below /api/v1/customers.
+    private static long parseCustomerId(String path) {
+        int start = CUSTOMERS_PATH.length() + 1;
+        if (path.length() <= start || path.charAt(start - 1) != '/' || path.length() - start > 18) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = start; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+
+    // JSON is the default representation, so only requests that cannot end up in another format are cached.
+    private static boolean acceptsJson(String accept) {
+        if (accept == null || accept.equals(MediaType.ALL_VALUE) || accept.equals(MediaType.APPLICATION_JSON_VALUE)) {
+            return true;
+        }
+        try {
+            List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+            return mediaTypes.stream().allMatch(mediaType -> mediaType.includes(MediaType.APPLICATION_JSON));
+        } catch (InvalidMediaTypeException e) {
+            return false; // Let Spring MVC reject the header as usual.
+        }
+    }
+}
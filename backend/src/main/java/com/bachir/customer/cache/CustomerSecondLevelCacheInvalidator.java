@@ -0,0 +1,45 @@
+package com.bachir.customer.cache;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.CustomerRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Keeps the Hibernate second-level and query cache consistent with writes that bypass Hibernate,
+ * such as the 'jdbc' CustomerDao and the bulk CSV import.
+ *
+ * Hibernate already maintains both caches for writes made through the 'jpa' DAO. The event does not
+ * say which DAO wrote, so those writes are evicted as well; the only cost is one extra database read
+ * on the next lookup. Writes made outside this application are covered by the region TTLs in ehcache.xml.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.cache.use_second_level_cache", havingValue = "true")
+public class CustomerSecondLevelCacheInvalidator {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public CustomerSecondLevelCacheInvalidator(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        if (event.type() == CustomerChangedEvent.ChangeType.BULK
+                || (event.customerId() == null && event.type() != CustomerChangedEvent.ChangeType.INSERTED)) {
+            // Unknown rows changed: drop every cached customer.
+            cache.evictEntityData(Customer.class);
+        } else if (event.customerId() != null) {
+            cache.evictEntityData(Customer.class, event.customerId());
+        }
+        // Any write can change the result of findAll and the exists queries.
+        cache.evictQueryRegion(CustomerRepository.QUERY_CACHE_REGION);
+        cache.evictDefaultQueryRegion();
+    }
+}
@@ -0,0 +1,65 @@
+package com.bachir.customer.cache;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Exposes per-region statistics of the Hibernate second-level and query cache (l2cache profile),
+ * to check the regions in ehcache.xml are sized well: a low hit ratio with many puts usually means
+ * the region is too small or its TTL too short.
+ */
+@RestController
+@RequestMapping("api/v1/admin/cache")
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.cache.use_second_level_cache", havingValue = "true")
+public class SecondLevelCacheStatisticsController {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SecondLevelCacheStatisticsController(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @GetMapping("regions")
+    public List<CacheRegionStats> getRegionStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(region -> CacheRegionStats.of(region, statistics.getCacheRegionStatistics(region)))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Statistics of one cache region since startup.
+     *
+     * Attributes:
+     * - hitRatio: hits / (hits + misses), or 0 when the region was never read.
+     */
+    public record CacheRegionStats(
+            String region,
+            long hits,
+            long misses,
+            long puts,
+            double hitRatio
+    ) {
+        static CacheRegionStats of(String region, CacheRegionStatistics statistics) {
+            if (statistics == null) {
+                return null;
+            }
+            long hits = statistics.getHitCount();
+            long misses = statistics.getMissCount();
+            double hitRatio = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+            return new CacheRegionStats(region, hits, misses, statistics.getPutCount(), hitRatio);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.bachir.customer.changes;
+
+import com.bachir.exception.RequestValidationException;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Incremental sync of the customers: a client without a token gets every customer, then only what changed.
+ */
+@RestController
+@RequestMapping("api/v1/customers/changes")
+public class CustomerChangeController {
+
+    private static final int MAX_LIMIT = 10_000;
+
+    private final CustomerChangeFeed changeFeed;
+
+    public CustomerChangeController(CustomerChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    @GetMapping
+    public CustomerChanges getChanges(@RequestParam(name = "since", required = false) String since,
+                                      @RequestParam(name = "limit", defaultValue = "1000") int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new RequestValidationException("limit must be between 1 and %d".formatted(MAX_LIMIT));
+        }
+        return changeFeed.changesSince(CustomerChangeToken.parse(since), limit);
+    }
+}
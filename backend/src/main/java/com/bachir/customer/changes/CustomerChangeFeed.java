@@ -0,0 +1,211 @@
+package com.bachir.customer.changes;
+
+import com.bachir.customer.Customer;
+import com.bachir.exception.ResourceGoneException;
+import com.bachir.exception.ResourceNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The changes of the customer table since a CustomerChangeToken, for clients that keep a copy of the customers
+ * (GET /api/v1/customers/changes).
+ *
+ * - The table triggers of V7 stamp every inserted or updated row with the id of the writing transaction
+ *   (change_xid), and record every delete in customer_tombstone. Every CustomerDao write path of the jpa and jdbc
+ *   data access goes through them, bulk loads included, without any change to the DAOs.
+ * - A page is the rows and tombstones after the token, in (change_xid, id) order, read from the (change_xid, id)
+ *   indexes: its cost depends on the number of changes since the token, not on the size of the table.
+ * - Only changes of transactions below the oldest running transaction (the snapshot xmin) are returned: those are
+ *   all committed, or aborted, so a transaction that commits later always has a larger id than the token it
+ *   would otherwise be skipped by.
+ * - Tombstones are purged after customer.changes.tombstone-retention. A token from before a purged tombstone gets
+ *   410 Gone, and its client starts over without a token.
+ *
+ * Only used with customer.data-access=jpa or jdbc, where the customer table is the data store.
+ */
+@Component
+public class CustomerChangeFeed implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerChangeFeed.class);
+
+    private static final String XMIN_SQL = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint";
+
+    // Ordered by the indexed columns themselves, so that the partitions and the tombstones are merged from their
+    // indexes and the scan stops at the limit.
+    static final String CHANGES_SQL = """
+            SELECT change_xid, id, name, email, age, false AS deleted
+            FROM customer
+            WHERE (change_xid, id) > (CAST(CAST(? AS text) AS xid8), ?) AND change_xid < CAST(CAST(? AS text) AS xid8)
+            UNION ALL
+            SELECT change_xid, customer_id, NULL, NULL, NULL, true
+            FROM customer_tombstone
+            WHERE (change_xid, customer_id) > (CAST(CAST(? AS text) AS xid8), ?) AND change_xid < CAST(CAST(? AS text) AS xid8)
+            ORDER BY change_xid, id
+            LIMIT ?
+            """;
+
+    private static final String PURGED_XID_SQL = "SELECT purged_xid::text::bigint FROM customer_change_horizon";
+
+    // Deletes the expired tombstones, and moves the horizon past them, in one statement.
+    private static final String PURGE_SQL = """
+            WITH purged AS (
+                DELETE FROM customer_tombstone WHERE deleted_at < now() - make_interval(secs => ?) RETURNING change_xid
+            ), horizon AS (
+                UPDATE customer_change_horizon SET purged_xid = greatest(purged_xid, (SELECT max(change_xid) FROM purged))
+                WHERE EXISTS (SELECT 1 FROM purged)
+            )
+            SELECT count(*) FROM purged
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Duration tombstoneRetention;
+    private final Duration purgeInterval;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public CustomerChangeFeed(JdbcTemplate jdbcTemplate,
+                              @Value("${customer.data-access:jpa}") String dataAccess,
+                              @Value("${customer.changes.tombstone-retention:30d}") Duration tombstoneRetention,
+                              @Value("${customer.changes.purge-interval:1h}") Duration purgeInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = "jpa".equals(dataAccess) || "jdbc".equals(dataAccess);
+        this.tombstoneRetention = tombstoneRetention;
+        this.purgeInterval = purgeInterval;
+    }
+
+    /**
+     * @param since The token of the previous page; START for a full sync.
+     * @param limit The maximum number of changes in the page.
+     * @throws ResourceGoneException (410) if tombstones the client has not seen were purged since its token.
+     * @throws ResourceNotFoundException (404) with a data access other than jpa and jdbc.
+     */
+    public CustomerChanges changesSince(CustomerChangeToken since, int limit) {
+        if (!enabled) {
+            throw new ResourceNotFoundException("The customer change feed needs customer.data-access jpa or jdbc");
+        }
+        Long xmin = jdbcTemplate.queryForObject(XMIN_SQL, Long.class);
+        List<Change> changes = jdbcTemplate.query(CHANGES_SQL, (rs, rowNum) -> new Change(
+                        Long.parseLong(rs.getString("change_xid")),
+                        rs.getBoolean("deleted")
+                                ? null
+                                : new Customer(rs.getLong("id"), rs.getString("name"), rs.getString("email"), rs.getInt("age")),
+                        rs.getLong("id")),
+                since.changeXid(), since.customerId(), xmin,
+                since.changeXid(), since.customerId(), xmin,
+                limit);
+        // After the read: a purge that ran before it moved the horizon past the token.
+        checkNotPurged(since);
+
+        boolean hasMore = changes.size() == limit;
+        CustomerChangeToken next;
+        if (hasMore) {
+            Change last = changes.get(changes.size() - 1);
+            next = new CustomerChangeToken(last.changeXid(), last.customerId());
+        } else {
+            // Everything below xmin was read: skip ahead, so the next request of an idle client starts there.
+            next = new CustomerChangeToken(Math.max(since.changeXid(), xmin - 1), Long.MAX_VALUE);
+        }
+        return toPage(changes, next, hasMore);
+    }
+
+    /**
+     * Deletes the tombstones older than customer.changes.tombstone-retention.
+     *
+     * @return the number of tombstones deleted.
+     */
+    public int purgeTombstones() {
+        long start = System.nanoTime();
+        Integer purged = jdbcTemplate.queryForObject(PURGE_SQL, Integer.class, tombstoneRetention.toSeconds());
+        if (purged == null || purged == 0) {
+            return 0;
+        }
+        log.info("Purged {} customer tombstones older than {} in {} ms", purged, tombstoneRetention,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return purged;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void startPurging() {
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-tombstone-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purgeInBackground, 0, purgeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void purgeInBackground() {
+        try {
+            purgeTombstones();
+        } catch (RuntimeException e) {
+            log.warn("Purging the customer tombstones failed, it is retried in {}", purgeInterval, e);
+        }
+    }
+
+    private void checkNotPurged(CustomerChangeToken since) {
+        if (since.equals(CustomerChangeToken.START)) {
+            // A full sync reads every row; the tombstones of rows it never had do not matter.
+            return;
+        }
+        Long purgedXid = jdbcTemplate.queryForObject(PURGED_XID_SQL, Long.class);
+        if (purgedXid != null && purgedXid > 0 && since.changeXid() <= purgedXid) {
+            throw new ResourceGoneException("Change token is older than the retained deletes, sync again without a token");
+        }
+    }
+
+    // The last change of each customer in the page wins. Within a transaction, a row wins over a tombstone: the
+    // customer was deleted, then inserted again with the same id.
+    static CustomerChanges toPage(List<Change> changes, CustomerChangeToken next, boolean hasMore) {
+        Map<Long, Change> latest = new LinkedHashMap<>();
+        for (Change change : changes) {
+            Change previous = latest.remove(change.customerId());
+            if (previous != null && change.customer() == null && previous.customer() != null
+                    && previous.changeXid() == change.changeXid()) {
+                change = previous;
+            }
+            latest.put(change.customerId(), change);
+        }
+        List<Customer> updated = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        for (Change change : latest.values()) {
+            if (change.customer() == null) {
+                deleted.add(change.customerId());
+            } else {
+                updated.add(change.customer());
+            }
+        }
+        return new CustomerChanges(updated, deleted, next.encode(), hasMore);
+    }
+
+    /**
+     * A row of the customer table, or a tombstone (customer null).
+     */
+    record Change(long changeXid, Customer customer, long customerId) {
+    }
+}
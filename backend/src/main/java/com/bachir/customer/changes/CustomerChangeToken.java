@@ -0,0 +1,45 @@
+package com.bachir.customer.changes;
+
+import com.bachir.exception.RequestValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of a client in the change feed: every change up to (changeXid, customerId), in that order, was sent.
+ * Opaque to clients, which get it as a URL-safe string and send it back as ?since=.
+ *
+ * @param changeXid The transaction id (xid8) of the last change sent.
+ * @param customerId The customer id of the last change sent, among the changes of that transaction.
+ */
+public record CustomerChangeToken(long changeXid, long customerId) {
+
+    // Before every change.
+    public static final CustomerChangeToken START = new CustomerChangeToken(0, 0);
+
+    private static final String VERSION = "1";
+
+    public String encode() {
+        String token = VERSION + ":" + changeXid + ":" + customerId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param token A token from a previous response; null or blank to start from the beginning.
+     * @throws RequestValidationException (400) if it is not such a token.
+     */
+    public static CustomerChangeToken parse(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.US_ASCII).split(":");
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("unknown token format");
+            }
+            return new CustomerChangeToken(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException("Invalid change token [%s]".formatted(token));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.bachir.customer.changes;
+
+import com.bachir.customer.Customer;
+
+import java.util.List;
+
+/**
+ * A page of the change feed.
+ *
+ * Attributes:
+ * - updated: Customers inserted or updated since the token, as they are now.
+ * - deleted: Ids of the customers deleted since the token.
+ * - token: The token to send as ?since= next time.
+ * - hasMore: Whether more changes are waiting: ask again with the new token right away.
+ *
+ * A change can be sent twice (a customer updated again, or a page boundary inside a transaction), so clients
+ * apply them as upserts and deletes by id.
+ */
+public record CustomerChanges(List<Customer> updated, List<Long> deleted, String token, boolean hasMore) {
+}
@@ -0,0 +1,239 @@
+package com.bachir.customer.codec;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerField;
+import com.bachir.customer.CustomerProjection;
+import com.bachir.customer.CustomerRegistrationRequest;
+import com.bachir.customer.CustomerUpdateRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Encodes and decodes the customer API types as JSON with Jackson's streaming API.
+ *
+ * This is what the generic ObjectMapper data binding does for these types, minus the reflection:
+ * no bean introspection, no serializer lookup per value and no boxed intermediate values. Fields are
+ * written in the same order and with the same names as the ObjectMapper output (id, name, email, age),
+ * and strings go through the same JsonGenerator escaping, so the bytes are identical.
+ *
+ * Reading follows the leniency of Spring Boot's ObjectMapper: unknown fields are skipped, missing
+ * fields are null, and scalars are coerced the way Jackson does it (e.g. "age": "22").
+ *
+ * The field names are pre-encoded SerializedStrings, so they are copied to the output buffer as
+ * ready-made bytes. The methods work with any JsonGenerator, including Smile and CBOR ones.
+ */
+public final class CustomerJsonCodec {
+
+    static final SerializedString ID = new SerializedString("id");
+    static final SerializedString NAME = new SerializedString("name");
+    static final SerializedString EMAIL = new SerializedString("email");
+    static final SerializedString AGE = new SerializedString("age");
+
+    private CustomerJsonCodec() {
+    }
+
+    /**
+     * Writes a Customer object. Null fields are written as JSON null, like the ObjectMapper does by default.
+     */
+    public static void writeCustomer(JsonGenerator generator, Long id, String name, String email, Integer age) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        if (id == null) generator.writeNull(); else generator.writeNumber(id.longValue());
+        writeStringField(generator, NAME, name);
+        writeStringField(generator, EMAIL, email);
+        generator.writeFieldName(AGE);
+        if (age == null) generator.writeNull(); else generator.writeNumber(age.intValue());
+        generator.writeEndObject();
+    }
+
+    public static void writeCustomer(JsonGenerator generator, Customer customer) throws IOException {
+        if (customer == null) {
+            generator.writeNull();
+            return;
+        }
+        writeCustomer(generator, customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+    /**
+     * Writes a list of Customer or of CustomerProjection objects.
+     */
+    public static void writeCustomerList(JsonGenerator generator, List<?> customers) throws IOException {
+        generator.writeStartArray();
+        for (int i = 0, size = customers.size(); i < size; i++) {
+            Object customer = customers.get(i);
+            if (customer instanceof CustomerProjection projection) {
+                writeProjection(generator, projection);
+            } else {
+                writeCustomer(generator, (Customer) customer);
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Writes only the selected fields of a customer, in CustomerField order, like the ObjectMapper writes the
+     * CustomerProjection map.
+     */
+    public static void writeProjection(JsonGenerator generator, CustomerProjection projection) throws IOException {
+        if (projection == null) {
+            generator.writeNull();
+            return;
+        }
+        Set<CustomerField> fields = projection.fields();
+        Customer customer = projection.customer();
+        generator.writeStartObject();
+        if (fields.contains(CustomerField.ID)) {
+            generator.writeFieldName(ID);
+            if (customer.getId() == null) generator.writeNull(); else generator.writeNumber(customer.getId().longValue());
+        }
+        if (fields.contains(CustomerField.NAME)) {
+            writeStringField(generator, NAME, customer.getName());
+        }
+        if (fields.contains(CustomerField.EMAIL)) {
+            writeStringField(generator, EMAIL, customer.getEmail());
+        }
+        if (fields.contains(CustomerField.AGE)) {
+            generator.writeFieldName(AGE);
+            if (customer.getAge() == null) generator.writeNull(); else generator.writeNumber(customer.getAge().intValue());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Reads a Customer object, or returns null for a JSON null.
+     * The parser must be positioned before the object (no current token) or on its START_OBJECT.
+     */
+    public static Customer readCustomer(JsonParser parser) throws IOException {
+        if (!startObject(parser)) {
+            return null;
+        }
+        Customer customer = new Customer();
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (field) {
+                case "id" -> customer.setId(readLong(parser));
+                case "name" -> customer.setName(readString(parser));
+                case "email" -> customer.setEmail(readString(parser));
+                case "age" -> customer.setAge(readInteger(parser));
+                default -> parser.skipChildren();
+            }
+        }
+        return customer;
+    }
+
+    public static CustomerRegistrationRequest readRegistrationRequest(JsonParser parser) throws IOException {
+        if (!startObject(parser)) {
+            return null;
+        }
+        RequestFields fields = readRequestFields(parser);
+        return new CustomerRegistrationRequest(fields.name, fields.email, fields.age);
+    }
+
+    public static CustomerUpdateRequest readUpdateRequest(JsonParser parser) throws IOException {
+        if (!startObject(parser)) {
+            return null;
+        }
+        RequestFields fields = readRequestFields(parser);
+        return new CustomerUpdateRequest(fields.name, fields.email, fields.age);
+    }
+
+    private static void writeStringField(JsonGenerator generator, SerializableString fieldName, String value) throws IOException {
+        generator.writeFieldName(fieldName);
+        if (value == null) generator.writeNull(); else generator.writeString(value);
+    }
+
+    // Both request records have the same three fields.
+    private static RequestFields readRequestFields(JsonParser parser) throws IOException {
+        RequestFields fields = new RequestFields();
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (field) {
+                case "name" -> fields.name = readString(parser);
+                case "email" -> fields.email = readString(parser);
+                case "age" -> fields.age = readInteger(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        return fields;
+    }
+
+    // Returns false for a JSON null, true when positioned on the START_OBJECT of the value to read.
+    private static boolean startObject(JsonParser parser) throws IOException {
+        JsonToken token = parser.hasCurrentToken() ? parser.currentToken() : parser.nextToken();
+        if (token == null) {
+            throw new JsonParseException(parser, "No content to map due to end-of-input");
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object but found " + token);
+        }
+        return true;
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a string for field '%s'".formatted(parser.currentName()));
+        }
+        return parser.getText();
+    }
+
+    private static Integer readInteger(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NULL -> null;
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getIntValue();
+            case VALUE_STRING -> {
+                Long value = parseLong(parser, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                yield value == null ? null : value.intValue();
+            }
+            default -> throw new JsonParseException(parser, "Expected a number for field '%s'".formatted(parser.currentName()));
+        };
+    }
+
+    private static Long readLong(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NULL -> null;
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getLongValue();
+            case VALUE_STRING -> parseLong(parser, Long.MIN_VALUE, Long.MAX_VALUE);
+            default -> throw new JsonParseException(parser, "Expected a number for field '%s'".formatted(parser.currentName()));
+        };
+    }
+
+    // Numbers sent as strings, e.g. "22", which the ObjectMapper accepts as well.
+    private static Long parseLong(JsonParser parser, long min, long max) throws IOException {
+        String text = parser.getText().trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        try {
+            long value = Long.parseLong(text);
+            if (value < min || value > max) {
+                throw new JsonParseException(parser, "Numeric value (%s) out of range for field '%s'".formatted(text, parser.currentName()));
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(parser, "Cannot parse '%s' as a number for field '%s'".formatted(text, parser.currentName()));
+        }
+    }
+
+    private static final class RequestFields {
+        String name;
+        String email;
+        Integer age;
+    }
+}
@@ -0,0 +1,148 @@
+package com.bachir.customer.codec;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerProjection;
+import com.bachir.customer.CustomerRegistrationRequest;
+import com.bachir.customer.CustomerUpdateRequest;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * HttpMessageConverter for the JSON representation of the customer types, backed by CustomerJsonCodec.
+ *
+ * It is registered ahead of Spring's MappingJackson2HttpMessageConverter, so Customer, CustomerProjection
+ * (?fields=), lists of either and the registration and update requests skip reflective data binding; every other
+ * type (error responses, the import result, ...) still goes through the ObjectMapper.
+ *
+ * Generators and parsers come from the application's JsonFactory, whose BufferRecycler hands each
+ * thread pooled byte and char buffers: the response is encoded straight into a recycled buffer
+ * which is flushed to the response stream, without an intermediate String or tree.
+ */
+public class CustomerJsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    private static final Set<Class<?>> READABLE_TYPES = Set.of(
+            Customer.class, CustomerRegistrationRequest.class, CustomerUpdateRequest.class);
+
+    private static final Set<Class<?>> WRITABLE_TYPES = Set.of(Customer.class, CustomerProjection.class);
+
+    private final JsonFactory jsonFactory;
+
+    public CustomerJsonHttpMessageConverter(JsonFactory jsonFactory) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * The codec hard-codes the default ObjectMapper output. If spring.jackson.* settings change it
+     * (pretty printing, leaving out nulls), keep everything on the ObjectMapper so responses do not
+     * depend on which converter handled them.
+     */
+    public static boolean isCompatibleWith(ObjectMapper objectMapper) {
+        SerializationConfig config = objectMapper.getSerializationConfig();
+        JsonInclude.Include inclusion = config.getDefaultPropertyInclusion().getValueInclusion();
+        return !config.isEnabled(SerializationFeature.INDENT_OUTPUT)
+                && (inclusion == JsonInclude.Include.ALWAYS || inclusion == JsonInclude.Include.USE_DEFAULTS)
+                && config.getPropertyNamingStrategy() == null;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return READABLE_TYPES.contains(clazz) || WRITABLE_TYPES.contains(clazz);
+    }
+
+    // Lists are only supported through their generic type (checked in canWrite below),
+    // but Spring asks for the media types with the raw value class, e.g. ArrayList.
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz) || supports(clazz) ? getSupportedMediaTypes() : List.of();
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return READABLE_TYPES.contains(ResolvableType.forType(type).resolve()) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, @Nullable MediaType mediaType) {
+        return WRITABLE_TYPES.contains(clazz) && canWrite(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        ResolvableType resolved = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        boolean writable = WRITABLE_TYPES.contains(resolved.resolve()) || isCustomerList(resolved);
+        return writable && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return readInternal(ResolvableType.forType(type).toClass(), inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try (JsonParser parser = createParser(inputMessage)) {
+            if (clazz == Customer.class) {
+                return CustomerJsonCodec.readCustomer(parser);
+            }
+            if (clazz == CustomerRegistrationRequest.class) {
+                return CustomerJsonCodec.readRegistrationRequest(parser);
+            }
+            if (clazz == CustomerUpdateRequest.class) {
+                return CustomerJsonCodec.readUpdateRequest(parser);
+            }
+            throw new HttpMessageNotReadableException("Cannot read %s as JSON".formatted(clazz.getName()), inputMessage);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputMessage.getBody(), JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            if (object instanceof List<?> customers) {
+                CustomerJsonCodec.writeCustomerList(generator, customers);
+            } else if (object instanceof CustomerProjection projection) {
+                CustomerJsonCodec.writeProjection(generator, projection);
+            } else {
+                CustomerJsonCodec.writeCustomer(generator, (Customer) object);
+            }
+        }
+    }
+
+    // The byte stream is handed to Jackson as is (it detects UTF-8/16/32 itself) unless another charset is declared.
+    private JsonParser createParser(HttpInputMessage inputMessage) throws IOException {
+        MediaType contentType = inputMessage.getHeaders().getContentType();
+        Charset charset = contentType != null ? contentType.getCharset() : null;
+        if (charset == null || charset.name().startsWith("UTF-")) {
+            return jsonFactory.createParser(inputMessage.getBody());
+        }
+        return jsonFactory.createParser(new InputStreamReader(inputMessage.getBody(), charset));
+    }
+
+    private static boolean isCustomerList(ResolvableType type) {
+        return List.class.isAssignableFrom(type.toClass()) && WRITABLE_TYPES.contains(type.getGeneric(0).resolve());
+    }
+}
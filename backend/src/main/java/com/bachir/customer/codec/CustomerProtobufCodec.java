@@ -0,0 +1,182 @@
+package com.bachir.customer.codec;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerProjection;
+import com.bachir.customer.CustomerRegistrationRequest;
+import com.bachir.customer.CustomerUpdateRequest;
+import com.bachir.customer.transfer.CustomerImportResult;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes and decodes the customer API types in the protobuf wire format described by
+ * src/main/proto/customer.proto.
+ *
+ * The messages are written field by field with protobuf's CodedOutputStream instead of going
+ * through generated message classes, so no intermediate message objects are built: a Customer
+ * goes straight from its getters to the output buffer. Null fields are simply omitted, which is
+ * how proto3 'optional' fields represent absence.
+ */
+public final class CustomerProtobufCodec {
+
+    // Field numbers of the Customer message.
+    static final int CUSTOMER_ID = 1;
+    static final int CUSTOMER_NAME = 2;
+    static final int CUSTOMER_EMAIL = 3;
+    static final int CUSTOMER_AGE = 4;
+
+    // Field number of the repeated 'customers' field of the CustomerList message.
+    public static final int CUSTOMER_LIST_CUSTOMERS = 1;
+
+    // Field numbers shared by CustomerRegistrationRequest and CustomerUpdateRequest.
+    static final int REQUEST_NAME = 1;
+    static final int REQUEST_EMAIL = 2;
+    static final int REQUEST_AGE = 3;
+
+    // Field numbers of the CustomerImportResult message.
+    static final int IMPORT_ROWS_READ = 1;
+    static final int IMPORT_ROWS_MERGED = 2;
+
+    // Tags (field number and wire type) the readers accept. A known field number with another wire type is
+    // skipped like an unknown field, rather than decoded as the wrong type.
+    private static final int CUSTOMER_ID_TAG = CUSTOMER_ID << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int CUSTOMER_NAME_TAG = CUSTOMER_NAME << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int CUSTOMER_EMAIL_TAG = CUSTOMER_EMAIL << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int CUSTOMER_AGE_TAG = CUSTOMER_AGE << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int CUSTOMER_LIST_CUSTOMERS_TAG = CUSTOMER_LIST_CUSTOMERS << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int REQUEST_NAME_TAG = REQUEST_NAME << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int REQUEST_EMAIL_TAG = REQUEST_EMAIL << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int REQUEST_AGE_TAG = REQUEST_AGE << 3 | WireFormat.WIRETYPE_VARINT;
+
+    private CustomerProtobufCodec() {
+    }
+
+    /**
+     * Computes the encoded size of a Customer message, needed to length-prefix it inside a list.
+     */
+    public static int customerSize(Long id, String name, String email, Integer age) {
+        int size = 0;
+        if (id != null) size += CodedOutputStream.computeInt64Size(CUSTOMER_ID, id);
+        if (name != null) size += CodedOutputStream.computeStringSize(CUSTOMER_NAME, name);
+        if (email != null) size += CodedOutputStream.computeStringSize(CUSTOMER_EMAIL, email);
+        if (age != null) size += CodedOutputStream.computeInt32Size(CUSTOMER_AGE, age);
+        return size;
+    }
+
+    /**
+     * Writes the fields of a Customer message (without any length prefix).
+     */
+    public static void writeCustomerFields(CodedOutputStream out, Long id, String name, String email, Integer age) throws IOException {
+        if (id != null) out.writeInt64(CUSTOMER_ID, id);
+        if (name != null) out.writeString(CUSTOMER_NAME, name);
+        if (email != null) out.writeString(CUSTOMER_EMAIL, email);
+        if (age != null) out.writeInt32(CUSTOMER_AGE, age);
+    }
+
+    /**
+     * Writes a Customer as an embedded message under the given field number (tag, length, fields).
+     * Used for the entries of a CustomerList, including the row-by-row streaming export.
+     */
+    public static void writeEmbeddedCustomer(CodedOutputStream out, int fieldNumber,
+                                             Long id, String name, String email, Integer age) throws IOException {
+        out.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(customerSize(id, name, email, age));
+        writeCustomerFields(out, id, name, email, age);
+    }
+
+    public static void writeCustomer(CodedOutputStream out, Customer customer) throws IOException {
+        writeCustomerFields(out, customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+    // Fields that were not asked for are left out, like any unset field.
+    public static void writeProjection(CodedOutputStream out, CustomerProjection projection) throws IOException {
+        writeCustomerFields(out, projection.id(), projection.name(), projection.email(), projection.age());
+    }
+
+    /**
+     * Writes a CustomerList of Customer or of CustomerProjection objects.
+     */
+    public static void writeCustomerList(CodedOutputStream out, List<?> customers) throws IOException {
+        for (Object element : customers) {
+            if (element instanceof CustomerProjection projection) {
+                writeEmbeddedCustomer(out, CUSTOMER_LIST_CUSTOMERS,
+                        projection.id(), projection.name(), projection.email(), projection.age());
+                continue;
+            }
+            Customer customer = (Customer) element;
+            writeEmbeddedCustomer(out, CUSTOMER_LIST_CUSTOMERS,
+                    customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+        }
+    }
+
+    public static void writeImportResult(CodedOutputStream out, CustomerImportResult result) throws IOException {
+        out.writeInt64(IMPORT_ROWS_READ, result.rowsRead());
+        out.writeInt64(IMPORT_ROWS_MERGED, result.rowsMerged());
+    }
+
+    public static Customer readCustomer(CodedInputStream in) throws IOException {
+        Customer customer = new Customer();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (tag) {
+                case CUSTOMER_ID_TAG -> customer.setId(in.readInt64());
+                case CUSTOMER_NAME_TAG -> customer.setName(in.readString());
+                case CUSTOMER_EMAIL_TAG -> customer.setEmail(in.readString());
+                case CUSTOMER_AGE_TAG -> customer.setAge(in.readInt32());
+                default -> in.skipField(tag); // Unknown fields are skipped by their wire type, as protobuf requires.
+            }
+        }
+        return customer;
+    }
+
+    public static List<Customer> readCustomerList(CodedInputStream in) throws IOException {
+        List<Customer> customers = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            if (tag == CUSTOMER_LIST_CUSTOMERS_TAG) {
+                int oldLimit = in.pushLimit(in.readRawVarint32());
+                customers.add(readCustomer(in));
+                in.popLimit(oldLimit);
+            } else {
+                in.skipField(tag);
+            }
+        }
+        return customers;
+    }
+
+    public static CustomerRegistrationRequest readRegistrationRequest(CodedInputStream in) throws IOException {
+        RequestFields fields = readRequestFields(in);
+        return new CustomerRegistrationRequest(fields.name, fields.email, fields.age);
+    }
+
+    public static CustomerUpdateRequest readUpdateRequest(CodedInputStream in) throws IOException {
+        RequestFields fields = readRequestFields(in);
+        return new CustomerUpdateRequest(fields.name, fields.email, fields.age);
+    }
+
+    private static RequestFields readRequestFields(CodedInputStream in) throws IOException {
+        RequestFields fields = new RequestFields();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (tag) {
+                case REQUEST_NAME_TAG -> fields.name = in.readString();
+                case REQUEST_EMAIL_TAG -> fields.email = in.readString();
+                case REQUEST_AGE_TAG -> fields.age = in.readInt32();
+                default -> in.skipField(tag);
+            }
+        }
+        return fields;
+    }
+
+    // Both request messages share the same layout, so they are decoded through one holder.
+    private static final class RequestFields {
+        String name;
+        String email;
+        Integer age;
+    }
+}
@@ -0,0 +1,124 @@
+package com.bachir.customer.codec;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerProjection;
+import com.bachir.customer.CustomerRegistrationRequest;
+import com.bachir.customer.CustomerUpdateRequest;
+import com.bachir.customer.transfer.CustomerImportResult;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * HttpMessageConverter for the application/x-protobuf representation of the customer API.
+ *
+ * It only handles the customer types (Customer, List of Customer, the registration and update
+ * requests, the import result, and CustomerProjection and lists of it, written as a Customer without
+ * the fields that were not asked for); anything else falls through to the other converters.
+ * Encoding is done by CustomerProtobufCodec, see src/main/proto/customer.proto for the schema.
+ */
+public class CustomerProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+    private static final Set<Class<?>> READABLE_TYPES = Set.of(
+            Customer.class, CustomerRegistrationRequest.class, CustomerUpdateRequest.class);
+    private static final Set<Class<?>> WRITABLE_TYPES = Set.of(
+            Customer.class, CustomerImportResult.class, CustomerProjection.class);
+
+    // Size of the buffer CodedOutputStream fills before writing to the response stream.
+    private static final int BUFFER_SIZE = 8192;
+
+    public CustomerProtobufHttpMessageConverter() {
+        super(APPLICATION_PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return READABLE_TYPES.contains(clazz) || WRITABLE_TYPES.contains(clazz);
+    }
+
+    // Lists are only supported through their generic type (checked in canRead/canWrite below),
+    // but Spring asks for the media types with the raw value class, e.g. ArrayList.
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz) || supports(clazz) ? getSupportedMediaTypes() : List.of();
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        ResolvableType resolved = ResolvableType.forType(type);
+        boolean readable = READABLE_TYPES.contains(resolved.resolve()) || isCustomerList(resolved);
+        return readable && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        ResolvableType resolved = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        boolean writable = WRITABLE_TYPES.contains(resolved.resolve()) || isCustomerList(resolved)
+                || isList(resolved, CustomerProjection.class);
+        return writable && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        ResolvableType resolved = ResolvableType.forType(type);
+        CodedInputStream in = CodedInputStream.newInstance(inputMessage.getBody());
+        if (isCustomerList(resolved)) {
+            return CustomerProtobufCodec.readCustomerList(in);
+        }
+        return readInternal(resolved.toClass(), in, inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return readInternal(clazz, CodedInputStream.newInstance(inputMessage.getBody()), inputMessage);
+    }
+
+    private Object readInternal(Class<?> clazz, CodedInputStream in, HttpInputMessage inputMessage) throws IOException {
+        if (clazz == Customer.class) {
+            return CustomerProtobufCodec.readCustomer(in);
+        }
+        if (clazz == CustomerRegistrationRequest.class) {
+            return CustomerProtobufCodec.readRegistrationRequest(in);
+        }
+        if (clazz == CustomerUpdateRequest.class) {
+            return CustomerProtobufCodec.readUpdateRequest(in);
+        }
+        throw new HttpMessageNotReadableException("Cannot read %s as protobuf".formatted(clazz.getName()), inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object object, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(outputMessage.getBody(), BUFFER_SIZE);
+        if (object instanceof Customer customer) {
+            CustomerProtobufCodec.writeCustomer(out, customer);
+        } else if (object instanceof List<?> customers) {
+            CustomerProtobufCodec.writeCustomerList(out, customers);
+        } else if (object instanceof CustomerProjection projection) {
+            CustomerProtobufCodec.writeProjection(out, projection);
+        } else if (object instanceof CustomerImportResult result) {
+            CustomerProtobufCodec.writeImportResult(out, result);
+        }
+        out.flush();
+    }
+
+    private static boolean isCustomerList(ResolvableType type) {
+        return isList(type, Customer.class);
+    }
+
+    private static boolean isList(ResolvableType type, Class<?> elementType) {
+        return List.class.isAssignableFrom(type.toClass()) && type.getGeneric(0).resolve() == elementType;
+    }
+}
@@ -0,0 +1,129 @@
+package com.bachir.customer.datagen;
+
+import com.bachir.customer.transfer.CustomerCopyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills the customer table with synthetic data for load testing. Only active in the 'datagen' profile,
+ * which also starts the application without a web server, so the process exits once the data is loaded:
+ *
+ *   java -jar bachir.api.jar --spring.profiles.active=datagen --customer.datagen.rows=10000000
+ *
+ * Settings (see application-datagen.yml):
+ * - customer.datagen.rows: how many customers to generate.
+ * - customer.datagen.seed: the same seed always generates the same customers.
+ * - customer.datagen.producers: how many rows are generated and loaded in parallel, each producer
+ *   running its own COPY on its own connection (keep it below the connection pool size).
+ * - customer.datagen.batch-size: rows per COPY statement; each batch commits on its own, so an
+ *   interrupted run keeps what it loaded so far.
+ * - customer.datagen.truncate: empty the table (and restart the id sequence) before loading.
+ *
+ * Rows are produced by CustomerRowGenerator while COPY reads them, so nothing is staged in memory or on disk.
+ */
+@Component
+@Profile("datagen")
+public class CustomerDataGenerator implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerDataGenerator.class);
+
+    private static final String COPY_SQL = "COPY customer (name, email, age) FROM STDIN WITH (FORMAT csv)";
+
+    private final CustomerCopyService customerCopyService;
+    private final JdbcTemplate jdbcTemplate;
+    private final long rows;
+    private final long seed;
+    private final int producers;
+    private final int batchSize;
+    private final boolean truncate;
+
+    public CustomerDataGenerator(CustomerCopyService customerCopyService,
+                                 JdbcTemplate jdbcTemplate,
+                                 @Value("${customer.datagen.rows:1000000}") long rows,
+                                 @Value("${customer.datagen.seed:42}") long seed,
+                                 @Value("${customer.datagen.producers:4}") int producers,
+                                 @Value("${customer.datagen.batch-size:100000}") int batchSize,
+                                 @Value("${customer.datagen.truncate:false}") boolean truncate) {
+        this.customerCopyService = customerCopyService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.rows = rows;
+        this.seed = seed;
+        this.producers = producers;
+        this.batchSize = batchSize;
+        this.truncate = truncate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        CustomerRowGenerator generator = new CustomerRowGenerator(seed);
+        prepareTable(generator);
+
+        log.info("Generating {} customers with seed {} ({} producers, {} rows per batch)", rows, seed, producers, batchSize);
+        long start = System.nanoTime();
+        AtomicLong nextBatchStart = new AtomicLong();
+        AtomicLong loaded = new AtomicLong();
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>(producers);
+            for (int i = 0; i < producers; i++) {
+                // Each producer keeps claiming the next batch of row indexes until all rows are taken.
+                futures.add(executor.submit(() -> {
+                    long from;
+                    while ((from = nextBatchStart.getAndAdd(batchSize)) < rows) {
+                        long to = Math.min(from + batchSize, rows);
+                        customerCopyService.copyIn(COPY_SQL, generator.rows(from, to));
+                        logProgress(loaded.addAndGet(to - from), start);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Customer data generation failed after %d rows".formatted(loaded.get()), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("Generated {} customers in {} s ({} rows/s)", loaded.get(), Math.round(seconds), Math.round(loaded.get() / seconds));
+        // Fresh statistics so the planner knows about the new rows before the load test starts.
+        jdbcTemplate.execute("ANALYZE customer");
+    }
+
+    // Emails are derived from the row index, so a second run with the same settings would collide with the first.
+    private void prepareTable(CustomerRowGenerator generator) {
+        if (truncate) {
+            log.info("Truncating the customer table");
+            jdbcTemplate.execute("TRUNCATE customer RESTART IDENTITY");
+            return;
+        }
+        String firstEmail = generator.row(0).split(",")[1];
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM customer_email WHERE email = ?)", Boolean.class, firstEmail);
+        if (Boolean.TRUE.equals(exists)) {
+            throw new IllegalStateException(
+                    "Generated customers are already loaded; set customer.datagen.truncate=true to reload them");
+        }
+    }
+
+    private void logProgress(long loadedRows, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("{} / {} customers loaded ({} rows/s)", loadedRows, rows, Math.round(loadedRows / seconds));
+    }
+}
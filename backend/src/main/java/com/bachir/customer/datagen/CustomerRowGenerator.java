@@ -0,0 +1,211 @@
+package com.bachir.customer.datagen;
+
+import com.github.javafaker.Faker;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Generates realistic, deterministic customer rows as CSV (name,email,age) for bulk loading.
+ *
+ * Faker is far too slow to call ten million times, so it is only used once, up front, to fill pools
+ * of first names, last names and email domains. Each row then picks from the pools with a hash of
+ * (seed, row index):
+ * - the same seed always produces the same rows, however the work is split between producers;
+ * - emails embed the row index (e.g. jane.doe.12345@example.com), so they are unique without any
+ *   coordination between producers.
+ *
+ * Rows are encoded straight to bytes from pre-encoded pool entries, so generating a row allocates nothing.
+ */
+public class CustomerRowGenerator {
+
+    private static final int FIRST_NAME_POOL_SIZE = 2048;
+    private static final int LAST_NAME_POOL_SIZE = 2048;
+    private static final int DOMAIN_POOL_SIZE = 64;
+    private static final int MIN_AGE = 16;
+    private static final int MAX_AGE = 99;
+
+    // Upper bound for one encoded row: two names of at most 40 characters, the email built from them, the index and the age.
+    private static final int MAX_ROW_BYTES = 1024;
+
+    private final long seed;
+    private final byte[][] firstNames;
+    private final byte[][] lastNames;
+    // Lower-case, letters-only versions of the names, used in the email local part.
+    private final byte[][] firstNameEmailParts;
+    private final byte[][] lastNameEmailParts;
+    private final byte[][] domains;
+
+    public CustomerRowGenerator(long seed) {
+        this.seed = seed;
+        Faker faker = new Faker(Locale.ENGLISH, new Random(seed));
+        List<String> first = pool(FIRST_NAME_POOL_SIZE, () -> faker.name().firstName());
+        List<String> last = pool(LAST_NAME_POOL_SIZE, () -> faker.name().lastName());
+        List<String> domainNames = pool(DOMAIN_POOL_SIZE, () -> faker.internet().domainName());
+        this.firstNames = encode(first, false);
+        this.lastNames = encode(last, false);
+        this.firstNameEmailParts = encode(first, true);
+        this.lastNameEmailParts = encode(last, true);
+        this.domains = encode(domainNames, false);
+    }
+
+    /**
+     * @return a stream of the CSV rows with index {@code fromIndex} (inclusive) to {@code toIndex} (exclusive),
+     * generated lazily as the stream is read.
+     */
+    public InputStream rows(long fromIndex, long toIndex) {
+        return new RowInputStream(this, fromIndex, toIndex);
+    }
+
+    /**
+     * @return the CSV row with the given index, e.g. "Jane Doe,jane.doe.0@example.com,42".
+     */
+    public String row(long index) {
+        byte[] buffer = new byte[MAX_ROW_BYTES];
+        // Without the trailing newline
+        return new String(buffer, 0, writeRow(index, buffer, 0) - 1, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the CSV row with the given index, followed by a newline, into {@code buffer} at {@code offset}.
+     *
+     * @return the offset right after the row.
+     */
+    int writeRow(long index, byte[] buffer, int offset) {
+        long hash = mix(seed + index * 0x9E3779B97F4A7C15L);
+        int first = (int) ((hash & 0xFFFF) % firstNames.length);
+        int last = (int) (((hash >>> 16) & 0xFFFF) % lastNames.length);
+        int domain = (int) (((hash >>> 32) & 0xFFFF) % domains.length);
+        int age = MIN_AGE + (int) (((hash >>> 48) & 0xFFFF) % (MAX_AGE - MIN_AGE));
+
+        // name
+        offset = put(firstNames[first], buffer, offset);
+        buffer[offset++] = ' ';
+        offset = put(lastNames[last], buffer, offset);
+        buffer[offset++] = ',';
+        // email: first.last.index@domain
+        offset = put(firstNameEmailParts[first], buffer, offset);
+        buffer[offset++] = '.';
+        offset = put(lastNameEmailParts[last], buffer, offset);
+        buffer[offset++] = '.';
+        offset = putDigits(index, buffer, offset);
+        buffer[offset++] = '@';
+        offset = put(domains[domain], buffer, offset);
+        buffer[offset++] = ',';
+        // age
+        offset = putDigits(age, buffer, offset);
+        buffer[offset++] = '\n';
+        return offset;
+    }
+
+    private static int put(byte[] value, byte[] buffer, int offset) {
+        System.arraycopy(value, 0, buffer, offset, value.length);
+        return offset + value.length;
+    }
+
+    private static int putDigits(long value, byte[] buffer, int offset) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+    // SplitMix64 finalizer: spreads consecutive indexes over the whole 64-bit range.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Distinct Faker values, skipping the rare ones that would need CSV quoting or are unusually long.
+    private static List<String> pool(int size, Supplier<String> supplier) {
+        Set<String> values = new LinkedHashSet<>();
+        for (int attempts = 0; values.size() < size && attempts < size * 20; attempts++) {
+            String value = supplier.get();
+            if (value.length() <= 40 && value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) {
+                values.add(value);
+            }
+        }
+        return new ArrayList<>(values);
+    }
+
+    private static byte[][] encode(List<String> values, boolean emailPart) {
+        byte[][] encoded = new byte[values.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            String value = values.get(i);
+            if (emailPart) {
+                value = value.toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "");
+                if (value.isEmpty()) {
+                    value = "customer";
+                }
+            }
+            encoded[i] = value.getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    /**
+     * Produces the rows of a range on demand, one buffer at a time, so a COPY can stream any number
+     * of rows in constant memory without a separate producer thread.
+     */
+    private static final class RowInputStream extends InputStream {
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final CustomerRowGenerator generator;
+        private final long toIndex;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private long nextIndex;
+        private int position;
+        private int limit;
+
+        RowInputStream(CustomerRowGenerator generator, long fromIndex, long toIndex) {
+            this.generator = generator;
+            this.nextIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+
+        @Override
+        public int read() {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private boolean fill() {
+            position = 0;
+            limit = 0;
+            while (nextIndex < toIndex && limit <= BUFFER_SIZE - MAX_ROW_BYTES) {
+                limit = generator.writeRow(nextIndex++, buffer, limit);
+            }
+            return limit > 0;
+        }
+    }
+}
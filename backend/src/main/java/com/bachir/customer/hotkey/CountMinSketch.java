@@ -0,0 +1,87 @@
+package com.bachir.customer.hotkey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate counts of a stream of keys in fixed memory: depth rows of width counters. A key increments one
+ * counter per row, chosen by a different hash in each row, and its count is estimated by the smallest of them.
+ * Other keys sharing a counter can only add to it, so an estimate is never below the real count, and is above it
+ * by at most about (total count * e / width) with high probability.
+ *
+ * Lock-free: counters are atomic, and concurrent increments are never lost. halve() may interleave with
+ * increments, which only makes the estimates a little less exact for that moment.
+ */
+public final class CountMinSketch {
+
+    private static final int DEPTH = 4;
+    // One seed per row, so that keys colliding in one row are unlikely to collide in the others.
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x27D4EB2F165667C5L};
+
+    private final AtomicLongArray counters;
+    private final int mask;
+
+    /**
+     * @param width Counters per row, rounded up to a power of two.
+     */
+    public CountMinSketch(int width) {
+        if (width < 1 || width > 1 << 26) {
+            throw new IllegalArgumentException("Sketch width must be between 1 and 2^26");
+        }
+        int rowWidth = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.counters = new AtomicLongArray(DEPTH * rowWidth);
+        this.mask = rowWidth - 1;
+    }
+
+    /**
+     * Counts one occurrence of a key.
+     *
+     * @param hash A hash of the key.
+     * @return the estimated count of the key, this occurrence included.
+     */
+    public long increment(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * @param hash A hash of the key.
+     * @return the estimated count of the key: at least its real count.
+     */
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves every counter, so that old occurrences weigh half as much as new ones.
+     */
+    public void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.updateAndGet(i, count -> count >>> 1);
+        }
+    }
+
+    public int width() {
+        return mask + 1;
+    }
+
+    private int index(long hash, int row) {
+        return row * (mask + 1) + (int) (mix(hash ^ SEEDS[row]) & mask);
+    }
+
+    // Final step of MurmurHash3 (fmix64): every bit of the input changes about half of the output bits.
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB93FE1A85A53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,40 @@
+package com.bachir.customer.hotkey;
+
+import com.bachir.customer.hotkey.HeavyHitters.HotKey;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * The customer ids and emails that dominate the read traffic, to size caches and spot abusive clients.
+ */
+@RestController
+@RequestMapping("api/v1/admin/hot-keys")
+public class CustomerHotKeyController {
+
+    private final CustomerHotKeys hotKeys;
+
+    public CustomerHotKeyController(CustomerHotKeys hotKeys) {
+        this.hotKeys = hotKeys;
+    }
+
+    @GetMapping
+    public HotKeys getHotKeys(@RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return new HotKeys(first(hotKeys.topCustomerIds(), limit), first(hotKeys.topEmails(), limit));
+    }
+
+    private static <K> List<HotKey<K>> first(List<HotKey<K>> keys, int limit) {
+        return keys.subList(0, Math.max(0, Math.min(limit, keys.size())));
+    }
+
+    /**
+     * Attributes:
+     * - customerIds: The most requested customer ids, most requested first.
+     * - emails: The most requested emails, normalized, most requested first.
+     */
+    public record HotKeys(List<HotKey<Long>> customerIds, List<HotKey<String>> emails) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.bachir.customer.hotkey;
+
+import com.bachir.customer.CustomerEmails;
+import com.bachir.customer.hotkey.HeavyHitters.HotKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Which customer ids and emails are requested the most, from a HeavyHitters tracker each:
+ * - ids are recorded by CustomerService.getCustomerById and by the response cache on a hit;
+ * - emails, normalized (see CustomerEmails), by the email lookups and checks of CustomerService.
+ *
+ * Recording is lock-free. A daemon thread moves the recorded keys into the top-k heaps every second, and halves
+ * every count every customer.hot-keys.decay-interval, so the counts reflect the last few intervals.
+ * Shown at GET /api/v1/admin/hot-keys. Caches can ask for the frequency of an id before admitting it.
+ */
+@Component
+public class CustomerHotKeys implements AutoCloseable {
+
+    private static final Duration DRAIN_INTERVAL = Duration.ofSeconds(1);
+
+    private final HeavyHitters<Long> customerIds;
+    private final HeavyHitters<String> emails;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public CustomerHotKeys(@Value("${customer.hot-keys.top-k:100}") int topK,
+                           @Value("${customer.hot-keys.sketch-width:16384}") int sketchWidth,
+                           @Value("${customer.hot-keys.decay-interval:1m}") Duration decayInterval) {
+        this.customerIds = new HeavyHitters<>(topK, sketchWidth, Long::longValue);
+        this.emails = new HeavyHitters<>(topK, sketchWidth, String::hashCode);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-hot-keys");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            customerIds.drain();
+            emails.drain();
+        }, DRAIN_INTERVAL.toMillis(), DRAIN_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(() -> {
+            customerIds.decay();
+            emails.decay();
+        }, decayInterval.toMillis(), decayInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * With the defaults: the top 100 keys, and counts halved every minute.
+     */
+    public CustomerHotKeys() {
+        this(100, 16384, Duration.ofMinutes(1));
+    }
+
+    public void recordCustomerId(long id) {
+        customerIds.record(id);
+    }
+
+    public void recordEmail(String email) {
+        if (email != null) {
+            emails.record(CustomerEmails.normalize(email));
+        }
+    }
+
+    /**
+     * @return the estimated (decayed) number of requests for a customer id.
+     */
+    public long customerIdFrequency(long id) {
+        return customerIds.estimate(id);
+    }
+
+    public List<HotKey<Long>> topCustomerIds() {
+        return customerIds.top();
+    }
+
+    public List<HotKey<String>> topEmails() {
+        return emails.top();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,137 @@
+package com.bachir.customer.hotkey;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * The most frequent keys of a stream (heavy hitters), in fixed memory: a CountMinSketch counts every key, and
+ * a min-heap keeps the k keys with the highest counts.
+ *
+ * record() is lock-free, for the request path: it increments the sketch, and a key whose count reaches the
+ * smallest count of the heap is also dropped into a small ring buffer. The heap is only updated from that buffer,
+ * by drain(), on a background thread or when the top keys are read. The buffer is lossy: when it fills up between
+ * two drains, older keys are overwritten, but a key that really is frequent is offered again and again.
+ *
+ * decay() halves every count, so that the top keys follow the traffic: a key that stops being requested
+ * loses half of its weight at every decay, and is soon overtaken by the keys that are requested now.
+ */
+public final class HeavyHitters<K> {
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private final CountMinSketch sketch;
+    private final ToLongFunction<K> hasher;
+    private final int k;
+
+    private final AtomicReferenceArray<K> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+    private final AtomicLong bufferWrites = new AtomicLong();
+    // Smallest count in the heap once it holds k keys, 0 before: keys below it cannot enter the heap.
+    private volatile long admissionCount;
+
+    // Guarded by this
+    private final PriorityQueue<HotKey<K>> heap = new PriorityQueue<>(Comparator.comparingLong(HotKey::count));
+    private final Map<K, HotKey<K>> heapEntries = new HashMap<>();
+
+    /**
+     * @param k Number of top keys to keep.
+     * @param sketchWidth Counters per row of the sketch; larger means more exact counts.
+     * @param hasher Hash of a key, spread over 64 bits or not (the sketch mixes it).
+     */
+    public HeavyHitters(int k, int sketchWidth, ToLongFunction<K> hasher) {
+        this.sketch = new CountMinSketch(sketchWidth);
+        this.hasher = hasher;
+        this.k = k;
+    }
+
+    /**
+     * Counts one occurrence of a key. Lock-free.
+     */
+    public void record(K key) {
+        long count = sketch.increment(hasher.applyAsLong(key));
+        if (count >= admissionCount) {
+            int slot = (int) (bufferWrites.getAndIncrement() & (BUFFER_SIZE - 1));
+            buffer.lazySet(slot, key);
+        }
+    }
+
+    /**
+     * @return the estimated number of occurrences of a key, decayed: at least its real (decayed) count.
+     */
+    public long estimate(K key) {
+        return sketch.estimate(hasher.applyAsLong(key));
+    }
+
+    /**
+     * TinyLFU admission: whether a cache full of entries should evict {@code victim} to make room for
+     * {@code candidate}, that is whether the candidate is requested more often.
+     */
+    public boolean admit(K candidate, K victim) {
+        return estimate(candidate) > estimate(victim);
+    }
+
+    /**
+     * @return the top keys, most frequent first, with their estimated counts.
+     */
+    public synchronized List<HotKey<K>> top() {
+        drain();
+        List<HotKey<K>> top = new ArrayList<>(heap);
+        top.sort(Comparator.comparingLong(HotKey<K>::count).reversed());
+        return top;
+    }
+
+    /**
+     * Moves the keys offered by record() into the heap.
+     */
+    public synchronized void drain() {
+        for (int slot = 0; slot < BUFFER_SIZE; slot++) {
+            K key = buffer.getAndSet(slot, null);
+            if (key != null) {
+                offer(key);
+            }
+        }
+        admissionCount = heap.size() < k ? 0 : heap.peek().count();
+    }
+
+    /**
+     * Halves every count, in the sketch and in the heap.
+     */
+    public synchronized void decay() {
+        sketch.halve();
+        List<K> keys = new ArrayList<>(heapEntries.keySet());
+        heap.clear();
+        heapEntries.clear();
+        keys.forEach(this::offer);
+        drain();
+    }
+
+    // Guarded by this
+    private void offer(K key) {
+        HotKey<K> entry = new HotKey<>(key, estimate(key));
+        HotKey<K> previous = heapEntries.get(key);
+        if (previous != null) {
+            heap.remove(previous);
+        } else if (heap.size() >= k) {
+            if (entry.count() <= heap.peek().count()) {
+                return;
+            }
+            heapEntries.remove(heap.poll().key());
+        }
+        heap.add(entry);
+        heapEntries.put(key, entry);
+    }
+
+    /**
+     * Attributes:
+     * - key: The customer id or email.
+     * - count: Estimated number of requests, halved at every decay.
+     */
+    public record HotKey<K>(K key, long count) {
+    }
+}
@@ -0,0 +1,261 @@
+package com.bachir.customer.index;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compressed set of customer ids, laid out like a Roaring bitmap: ids are grouped by their high 48 bits into
+ * chunks of 65536 ids, and each chunk picks the smaller of two representations:
+ * - up to 4096 ids: a sorted array of their low 16 bits (2 bytes per id);
+ * - more: a bitmap of 65536 bits (8 KB, less than 2 bytes per id).
+ * Ids from a sequence are dense, so 10 million customers take about 1.2 MB.
+ *
+ * contains() is lock-free. Writes are serialized; an array chunk is replaced by a new copy on every write, so
+ * readers never see it half-updated, and bits of a bitmap chunk are set and cleared atomically.
+ */
+public final class CustomerIdBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    // A bitmap chunk shrinks back to an array well below ARRAY_MAX, so that ids added and removed around the
+    // limit do not convert the chunk back and forth.
+    private static final int BITMAP_MIN = ARRAY_MAX / 2;
+
+    private final Map<Long, Chunk> chunks = new ConcurrentHashMap<>();
+
+    public boolean contains(long id) {
+        Chunk chunk = chunks.get(id >>> 16);
+        return chunk != null && chunk.contains((char) id);
+    }
+
+    public synchronized void add(long id) {
+        Chunk chunk = chunks.get(id >>> 16);
+        Chunk updated = chunk == null ? new ArrayChunk(new char[]{(char) id}) : chunk.add((char) id);
+        if (updated != chunk) {
+            chunks.put(id >>> 16, updated);
+        }
+    }
+
+    public synchronized void remove(long id) {
+        Chunk chunk = chunks.get(id >>> 16);
+        if (chunk == null) {
+            return;
+        }
+        Chunk updated = chunk.remove((char) id);
+        if (updated == null) {
+            chunks.remove(id >>> 16);
+        } else if (updated != chunk) {
+            chunks.put(id >>> 16, updated);
+        }
+    }
+
+    /**
+     * @return the number of ids in the set.
+     */
+    public long cardinality() {
+        return chunks.values().stream().mapToLong(Chunk::cardinality).sum();
+    }
+
+    /**
+     * @return the approximate memory used by the ids, without the map of chunks.
+     */
+    public long sizeInBytes() {
+        return chunks.values().stream().mapToLong(Chunk::sizeInBytes).sum();
+    }
+
+    /**
+     * Builds a bitmap from ids in ascending order, one chunk at a time.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+
+        private final CustomerIdBitmap bitmap = new CustomerIdBitmap();
+        private final long[] words = new long[1024];
+        private long chunkKey = -1;
+        private int cardinality;
+        private long lastId = -1;
+
+        private Builder() {
+        }
+
+        /**
+         * @param id Greater than the previous id.
+         */
+        public void add(long id) {
+            if (id <= lastId) {
+                throw new IllegalArgumentException("Ids must be added in ascending order, %d came after %d".formatted(id, lastId));
+            }
+            lastId = id;
+            if (id >>> 16 != chunkKey) {
+                flush();
+                chunkKey = id >>> 16;
+            }
+            int low = (char) id;
+            words[low >>> 6] |= 1L << low;
+            cardinality++;
+        }
+
+        public CustomerIdBitmap build() {
+            flush();
+            return bitmap;
+        }
+
+        private void flush() {
+            if (cardinality > 0) {
+                bitmap.chunks.put(chunkKey, BitmapChunk.fromWords(words, cardinality));
+                Arrays.fill(words, 0);
+                cardinality = 0;
+            }
+        }
+    }
+
+    private sealed interface Chunk permits ArrayChunk, BitmapChunk {
+
+        boolean contains(char low);
+
+        /**
+         * @return this chunk, or the chunk replacing it.
+         */
+        Chunk add(char low);
+
+        /**
+         * @return this chunk, the chunk replacing it, or null once it is empty.
+         */
+        Chunk remove(char low);
+
+        int cardinality();
+
+        long sizeInBytes();
+    }
+
+    private record ArrayChunk(char[] values) implements Chunk {
+
+        @Override
+        public boolean contains(char low) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+
+        @Override
+        public Chunk add(char low) {
+            int index = Arrays.binarySearch(values, low);
+            if (index >= 0) {
+                return this;
+            }
+            if (values.length == ARRAY_MAX) {
+                BitmapChunk bitmap = BitmapChunk.fromArray(values);
+                bitmap.add(low);
+                return bitmap;
+            }
+            int insertAt = -index - 1;
+            char[] updated = new char[values.length + 1];
+            System.arraycopy(values, 0, updated, 0, insertAt);
+            updated[insertAt] = low;
+            System.arraycopy(values, insertAt, updated, insertAt + 1, values.length - insertAt);
+            return new ArrayChunk(updated);
+        }
+
+        @Override
+        public Chunk remove(char low) {
+            int index = Arrays.binarySearch(values, low);
+            if (index < 0) {
+                return this;
+            }
+            if (values.length == 1) {
+                return null;
+            }
+            char[] updated = new char[values.length - 1];
+            System.arraycopy(values, 0, updated, 0, index);
+            System.arraycopy(values, index + 1, updated, index, values.length - index - 1);
+            return new ArrayChunk(updated);
+        }
+
+        @Override
+        public int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 2L * values.length;
+        }
+    }
+
+    private static final class BitmapChunk implements Chunk {
+
+        private final AtomicLongArray words = new AtomicLongArray(1024);
+        private volatile int cardinality;
+
+        static Chunk fromWords(long[] words, int cardinality) {
+            if (cardinality <= ARRAY_MAX) {
+                char[] values = new char[cardinality];
+                int next = 0;
+                for (int word = 0; word < words.length; word++) {
+                    for (long bits = words[word]; bits != 0; bits &= bits - 1) {
+                        values[next++] = (char) (word * 64 + Long.numberOfTrailingZeros(bits));
+                    }
+                }
+                return new ArrayChunk(values);
+            }
+            BitmapChunk chunk = new BitmapChunk();
+            for (int word = 0; word < words.length; word++) {
+                chunk.words.set(word, words[word]);
+            }
+            chunk.cardinality = cardinality;
+            return chunk;
+        }
+
+        static BitmapChunk fromArray(char[] values) {
+            BitmapChunk chunk = new BitmapChunk();
+            for (char value : values) {
+                chunk.add(value);
+            }
+            return chunk;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return (words.get(low >>> 6) & (1L << low)) != 0;
+        }
+
+        // Writes are serialized by CustomerIdBitmap, so the cardinality needs no atomic increment.
+        @Override
+        public Chunk add(char low) {
+            long bit = 1L << low;
+            if ((words.getAndUpdate(low >>> 6, word -> word | bit) & bit) == 0) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Chunk remove(char low) {
+            long bit = 1L << low;
+            if ((words.getAndUpdate(low >>> 6, word -> word & ~bit) & bit) == 0) {
+                return this;
+            }
+            cardinality--;
+            if (cardinality >= BITMAP_MIN) {
+                return this;
+            }
+            long[] copy = new long[1024];
+            for (int word = 0; word < copy.length; word++) {
+                copy[word] = words.get(word);
+            }
+            return fromWords(copy, cardinality);
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 8L * 1024;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.bachir.customer.index;
+
+import com.bachir.customer.CustomerChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ids of every customer, in memory (see CustomerIdBitmap), so that lookups of ids that do not exist are
+ * answered without a database query: crawlers requesting random ids, and the existence check before a delete.
+ *
+ * - Loaded from the customer table in the background once the application is ready, then reloaded every
+ *   customer.id-index.reconcile-interval to pick up the writes of other instances.
+ * - Kept in sync with the writes of this instance through CustomerChangedEvent, after commit.
+ * - An id is only reported absent if it is not above the highest id of the load before the last one. An id
+ *   above it may belong to a customer another instance inserted since, so it is looked up in the database as
+ *   before. Taking the previous load, not the last one, covers transactions that had their id from the
+ *   sequence before the last load but committed after it read the table.
+ * - A customer deleted by another instance is still reported present until the next reload, which only costs
+ *   the database query that would have run anyway.
+ *
+ * Only used with customer.data-access=jpa or jdbc, where the customer table is the data store.
+ */
+@Component
+public class CustomerIdIndex implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerIdIndex.class);
+
+    public enum Lookup {
+        PRESENT,
+        ABSENT,
+        // Not loaded yet, or an id too recent to be known: ask the database
+        UNKNOWN
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Duration reconcileInterval;
+    private ScheduledExecutorService scheduler;
+
+    private volatile CustomerIdBitmap ids;
+    // Ids above it are UNKNOWN; -1 until two loads have completed.
+    private volatile long highWaterMark = -1;
+    private long lastLoadMaxId = -1;
+
+    // Guarded by this: writes of this instance while a load runs, applied to the new bitmap before it is swapped in.
+    private List<CustomerChangedEvent> changesDuringLoad;
+
+    @Autowired
+    public CustomerIdIndex(JdbcTemplate jdbcTemplate,
+                           @Value("${customer.id-index.enabled:true}") boolean enabled,
+                           @Value("${customer.data-access:jpa}") String dataAccess,
+                           @Value("${customer.id-index.reconcile-interval:1m}") Duration reconcileInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled && ("jpa".equals(dataAccess) || "jdbc".equals(dataAccess));
+        this.reconcileInterval = reconcileInterval;
+    }
+
+    /**
+     * An index that is never loaded: every lookup is UNKNOWN.
+     */
+    public static CustomerIdIndex disabled() {
+        return new CustomerIdIndex(null, false, "jpa", Duration.ofMinutes(1));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void startInBackground() {
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-id-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::loadInBackground, 0, reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public Lookup lookup(long id) {
+        CustomerIdBitmap current = ids;
+        if (current == null || id > highWaterMark) {
+            return Lookup.UNKNOWN;
+        }
+        return current.contains(id) ? Lookup.PRESENT : Lookup.ABSENT;
+    }
+
+    /**
+     * Reads every id of the customer table into a new bitmap, and swaps it in.
+     */
+    public void load() {
+        synchronized (this) {
+            changesDuringLoad = new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        CustomerIdBitmap.Builder builder = CustomerIdBitmap.builder();
+        long[] maxId = {0};
+        // In id order, for the builder; the partitions are merged on their primary keys.
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT id FROM customer ORDER BY id");
+            statement.setFetchSize(10_000);
+            return statement;
+        }, resultSet -> {
+            maxId[0] = resultSet.getLong(1);
+            builder.add(maxId[0]);
+        });
+        CustomerIdBitmap loaded = builder.build();
+
+        synchronized (this) {
+            changesDuringLoad.forEach(change -> apply(loaded, change));
+            changesDuringLoad = null;
+            highWaterMark = lastLoadMaxId;
+            lastLoadMaxId = Math.max(lastLoadMaxId, maxId[0]);
+            ids = loaded;
+        }
+        log.info("Loaded the customer id index: {} ids, {} KB, in {} ms", loaded.cardinality(),
+                loaded.sizeInBytes() / 1024, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Keeps the index in sync with the writes of this instance, once they are committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCustomerChanged(CustomerChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.type() == CustomerChangedEvent.ChangeType.BULK) {
+            // Rows loaded in bulk may have any id: nothing is known until the next load
+            ids = null;
+            highWaterMark = -1;
+            lastLoadMaxId = -1;
+            if (scheduler != null) {
+                scheduler.execute(this::loadInBackground);
+            }
+            return;
+        }
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(event);
+        }
+        if (ids != null) {
+            apply(ids, event);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void loadInBackground() {
+        try {
+            load();
+        } catch (RuntimeException e) {
+            log.warn("Loading the customer id index failed, it is retried in {}", reconcileInterval, e);
+        }
+    }
+
+    private static void apply(CustomerIdBitmap bitmap, CustomerChangedEvent change) {
+        if (change.customerId() == null) {
+            return;
+        }
+        switch (change.type()) {
+            case INSERTED -> bitmap.add(change.customerId());
+            case DELETED -> bitmap.remove(change.customerId());
+            default -> {
+            }
+        }
+    }
+}
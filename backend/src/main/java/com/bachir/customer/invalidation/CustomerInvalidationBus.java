@@ -0,0 +1,400 @@
+package com.bachir.customer.invalidation;
+
+import com.bachir.customer.CustomerChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Broadcasts the customer writes of this instance to the other instances, and theirs to this one, over the Postgres
+ * channel customer_invalidation (LISTEN/NOTIFY), so that the in-process caches of every instance stay coherent.
+ * On whenever one of them is (see InvalidationBusCondition), or as set with customer.invalidation-bus.enabled.
+ *
+ * - Sending: the CustomerChangedEvents of this instance are queued after commit, and a publisher thread sends them
+ *   every customer.invalidation-bus.batch-window as one NOTIFY (several if the ids do not fit in 8000 bytes).
+ * - Receiving: a listener thread publishes the writes of the other instances as CustomerChangedEvents, so every
+ *   listener sees them as if they were local: the near-cache, the response cache, the id index...
+ * - Every message carries the id of the instance and its sequence number. A gap in the sequence of an instance,
+ *   or a lost connection (NOTIFY does not keep anything for a listener that is away), means invalidations were
+ *   missed: everything is then dropped, as for a bulk change.
+ *
+ * Payload: v1|instance|sequence|I12,U13,D14, or * for a bulk change.
+ * Each thread has its own connection to the primary (not from the pool), named in pg_stat_activity.
+ */
+@Component
+@Conditional(InvalidationBusCondition.class)
+public class CustomerInvalidationBus implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerInvalidationBus.class);
+
+    static final String CHANNEL = "customer_invalidation";
+    static final String VERSION = "v1";
+    static final String FLUSH = "*";
+    // NOTIFY payloads must be shorter than 8000 bytes; leaves room for the header.
+    static final int MAX_ENTRIES_LENGTH = 7800;
+
+    private static final int QUEUE_CAPACITY = 100_000;
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration CHECK_INTERVAL = Duration.ofSeconds(10);
+    private static final Duration FIRST_RETRY_DELAY = Duration.ofMillis(100);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Duration batchWindow;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final BlockingQueue<CustomerChangedEvent> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    // Set when the queue overflowed: the next message is a flush
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+    private final Map<String, Long> lastSequences = new ConcurrentHashMap<>();
+    // Set on the listener thread while it publishes received writes, which must not be sent back
+    private final ThreadLocal<Boolean> receiving = ThreadLocal.withInitial(() -> false);
+    private long sequence;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    private final Thread publisher;
+    private final Thread listener;
+    private volatile boolean running = true;
+    private volatile Connection listenerConnection;
+    private volatile Connection publisherConnection;
+
+    public CustomerInvalidationBus(@Value("${customer.invalidation-bus.url:${spring.datasource.url}}") String url,
+                                   @Value("${customer.invalidation-bus.username:${spring.datasource.username}}") String username,
+                                   @Value("${customer.invalidation-bus.password:${spring.datasource.password}}") String password,
+                                   @Value("${customer.invalidation-bus.batch-window:10ms}") Duration batchWindow,
+                                   ApplicationEventPublisher eventPublisher,
+                                   MeterRegistry meterRegistry) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.batchWindow = batchWindow;
+        this.eventPublisher = eventPublisher;
+        if (meterRegistry != null) {
+            registerMetrics(meterRegistry);
+        }
+        this.publisher = new Thread(this::publish, "customer-invalidation-publisher");
+        this.listener = new Thread(this::listen, "customer-invalidation-listener");
+        publisher.setDaemon(true);
+        listener.setDaemon(true);
+    }
+
+    /**
+     * Starts sending and receiving, once every listener of CustomerChangedEvent is registered. The writes made
+     * before are queued, and the first connection of the listener flushes what was read before.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (publisher.getState() == Thread.State.NEW) {
+            publisher.start();
+            listener.start();
+        }
+    }
+
+    /**
+     * Queues a write of this instance, once committed, for the next message.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (receiving.get()) {
+            return;
+        }
+        if (!queue.offer(event)) {
+            overflowed.set(true);
+        }
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public long sent() {
+        return sent.sum();
+    }
+
+    public long received() {
+        return received.sum();
+    }
+
+    public long missed() {
+        return missed.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        publisher.interrupt();
+        listener.interrupt();
+        try {
+            publisher.join(POLL_TIMEOUT.toMillis() * 2);
+            listener.join(POLL_TIMEOUT.toMillis() * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly(publisherConnection);
+        closeQuietly(listenerConnection);
+    }
+
+    /**
+     * Applies one message of the channel. Messages of this instance are skipped.
+     */
+    void receive(String payload) {
+        String[] parts = payload.split("\\|", 4);
+        if (parts.length != 4 || !VERSION.equals(parts[0])) {
+            log.warn("Skipping the invalidation message [{}] of an unknown format", payload);
+            return;
+        }
+        if (parts[1].equals(nodeId)) {
+            return;
+        }
+        received.increment();
+        long messageSequence = Long.parseLong(parts[2]);
+        Long last = lastSequences.put(parts[1], messageSequence);
+        if (last != null && messageSequence != last + 1) {
+            missed.increment();
+            log.warn("Missed invalidations {} to {} of instance {}, dropping every cached customer",
+                    last + 1, messageSequence - 1, parts[1]);
+            publishLocally(List.of(CustomerChangedEvent.bulk()));
+            return;
+        }
+        publishLocally(decode(parts[3]));
+    }
+
+    // The entries of the messages for a batch of events, in order; a single flush if the batch needs one.
+    static List<String> encode(List<CustomerChangedEvent> events, boolean flush) {
+        Map<Long, CustomerChangedEvent.ChangeType> changes = new LinkedHashMap<>();
+        for (CustomerChangedEvent event : events) {
+            if (event.type() == CustomerChangedEvent.ChangeType.BULK
+                    || (event.customerId() == null && event.type() != CustomerChangedEvent.ChangeType.INSERTED)) {
+                flush = true;
+            } else if (event.customerId() != null) {
+                // The last change of an id is the one that holds
+                changes.remove(event.customerId());
+                changes.put(event.customerId(), event.type());
+            }
+        }
+        if (flush) {
+            return List.of(FLUSH);
+        }
+        List<String> messages = new ArrayList<>();
+        StringBuilder entries = new StringBuilder();
+        for (Map.Entry<Long, CustomerChangedEvent.ChangeType> change : changes.entrySet()) {
+            String entry = change.getValue().name().charAt(0) + change.getKey().toString();
+            if (entries.length() + entry.length() + 1 > MAX_ENTRIES_LENGTH) {
+                messages.add(entries.toString());
+                entries.setLength(0);
+            }
+            if (!entries.isEmpty()) {
+                entries.append(',');
+            }
+            entries.append(entry);
+        }
+        if (!entries.isEmpty()) {
+            messages.add(entries.toString());
+        }
+        return messages;
+    }
+
+    static List<CustomerChangedEvent> decode(String entries) {
+        if (FLUSH.equals(entries)) {
+            return List.of(CustomerChangedEvent.bulk());
+        }
+        List<CustomerChangedEvent> events = new ArrayList<>();
+        for (String entry : entries.split(",")) {
+            long id = Long.parseLong(entry.substring(1));
+            events.add(switch (entry.charAt(0)) {
+                case 'I' -> CustomerChangedEvent.inserted(id);
+                case 'U' -> CustomerChangedEvent.updated(id);
+                case 'D' -> CustomerChangedEvent.deleted(id);
+                default -> throw new IllegalArgumentException("Unknown change [%s]".formatted(entry));
+            });
+        }
+        return events;
+    }
+
+    private void publishLocally(List<CustomerChangedEvent> events) {
+        receiving.set(true);
+        try {
+            events.forEach(eventPublisher::publishEvent);
+        } finally {
+            receiving.set(false);
+        }
+    }
+
+    private void publish() {
+        while (running) {
+            try {
+                CustomerChangedEvent first = queue.poll(POLL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null && !overflowed.get()) {
+                    continue;
+                }
+                // Waits for the writes that follow, to send them all in one message
+                TimeUnit.NANOSECONDS.sleep(batchWindow.toNanos());
+                List<CustomerChangedEvent> batch = new ArrayList<>();
+                if (first != null) {
+                    batch.add(first);
+                }
+                queue.drainTo(batch);
+                for (String entries : encode(batch, overflowed.getAndSet(false))) {
+                    send(entries);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Retries until it is sent, so that the other instances only miss messages when this one stops.
+    private void send(String entries) throws InterruptedException {
+        String payload = String.join("|", VERSION, nodeId, Long.toString(sequence), entries);
+        long delayNanos = FIRST_RETRY_DELAY.toNanos();
+        while (running) {
+            try {
+                if (publisherConnection == null) {
+                    publisherConnection = connect("customer-invalidation-publisher");
+                }
+                try (PreparedStatement statement = publisherConnection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                    statement.setString(1, CHANNEL);
+                    statement.setString(2, payload);
+                    statement.execute();
+                }
+                sequence++;
+                sent.increment();
+                return;
+            } catch (SQLException e) {
+                log.warn("Sending invalidations failed, retrying in {} ms", TimeUnit.NANOSECONDS.toMillis(delayNanos), e);
+                closeQuietly(publisherConnection);
+                publisherConnection = null;
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+                delayNanos = Math.min(delayNanos * 2, MAX_RETRY_DELAY.toNanos());
+            }
+        }
+    }
+
+    private void listen() {
+        long delayNanos = FIRST_RETRY_DELAY.toNanos();
+        while (running) {
+            try {
+                Connection connection = connect("customer-invalidation-listener");
+                listenerConnection = connection;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // Whatever was sent before this point was missed, at startup as after a lost connection
+                reconnects.increment();
+                lastSequences.clear();
+                publishLocally(List.of(CustomerChangedEvent.bulk()));
+                delayNanos = FIRST_RETRY_DELAY.toNanos();
+                receiveUntilDisconnected(connection);
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Listening for invalidations failed, reconnecting in {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(delayNanos), e);
+                closeQuietly(listenerConnection);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(delayNanos);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                delayNanos = Math.min(delayNanos * 2, MAX_RETRY_DELAY.toNanos());
+            }
+        }
+    }
+
+    private void receiveUntilDisconnected(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastCheck = System.nanoTime();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications((int) POLL_TIMEOUT.toMillis());
+            if (notifications != null && notifications.length > 0) {
+                for (PGNotification notification : notifications) {
+                    try {
+                        receive(notification.getParameter());
+                    } catch (RuntimeException e) {
+                        log.warn("Applying the invalidation message [{}] failed", notification.getParameter(), e);
+                    }
+                }
+            } else if (System.nanoTime() - lastCheck > CHECK_INTERVAL.toNanos()) {
+                // A connection dropped without an error (a network partition) only shows on use
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT 1");
+                }
+                lastCheck = System.nanoTime();
+            }
+        }
+    }
+
+    private Connection connect(String applicationName) throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", username);
+        properties.setProperty("password", password);
+        properties.setProperty("ApplicationName", applicationName);
+        properties.setProperty("tcpKeepAlive", "true");
+        return DriverManager.getConnection(url, properties);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Closing an invalidation connection failed", e);
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("customer.invalidation-bus.messages", sent, LongAdder::sum)
+                .description("Invalidation messages, by direction")
+                .tag("direction", "sent")
+                .register(registry);
+        FunctionCounter.builder("customer.invalidation-bus.messages", received, LongAdder::sum)
+                .description("Invalidation messages, by direction")
+                .tag("direction", "received")
+                .register(registry);
+        FunctionCounter.builder("customer.invalidation-bus.missed", missed, LongAdder::sum)
+                .description("Gaps in the invalidations of another instance, each followed by a flush")
+                .register(registry);
+        FunctionCounter.builder("customer.invalidation-bus.connects", reconnects, LongAdder::sum)
+                .description("Connections of the invalidation listener, each followed by a flush")
+                .register(registry);
+    }
+}
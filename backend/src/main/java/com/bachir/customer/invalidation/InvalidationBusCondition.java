@@ -0,0 +1,38 @@
+package com.bachir.customer.invalidation;
+
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.Map;
+
+/**
+ * Turns CustomerInvalidationBus on when customer.invalidation-bus.enabled says so, or, when it is not set, whenever
+ * one of the in-process caches of customers is on: without the bus, each of them would keep serving what the other
+ * instances changed.
+ */
+class InvalidationBusCondition extends SpringBootCondition {
+
+    // The property that turns each cache on, and whether it is on when the property is not set
+    private static final Map<String, Boolean> CACHES = Map.of(
+            "customer.response-cache.enabled", true,
+            "customer.id-index.enabled", true,
+            "customer.near-cache.enabled", false);
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        Environment environment = context.getEnvironment();
+        Boolean enabled = environment.getProperty("customer.invalidation-bus.enabled", Boolean.class);
+        if (enabled != null) {
+            return new ConditionOutcome(enabled, "customer.invalidation-bus.enabled is " + enabled);
+        }
+        for (Map.Entry<String, Boolean> cache : CACHES.entrySet()) {
+            if (environment.getProperty(cache.getKey(), Boolean.class, cache.getValue())) {
+                return ConditionOutcome.match(cache.getKey() + " is true");
+            }
+        }
+        return ConditionOutcome.noMatch("no cache of customers is on");
+    }
+}
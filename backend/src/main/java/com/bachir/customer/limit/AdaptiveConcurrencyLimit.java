@@ -0,0 +1,118 @@
+package com.bachir.customer.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrency limit that finds the number of requests the system can run at once from their latency,
+ * in the style of the gradient limit of Netflix's concurrency-limits library.
+ *
+ * While the system keeps up, latency stays close to the no-load latency (minRtt) and the limit grows.
+ * Once requests queue somewhere (typically for a database connection), latency grows with the number of
+ * requests in flight, and the limit is scaled down by the gradient minRtt * rttTolerance / rtt:
+ * - new limit = limit * gradient + sqrt(limit), where the sqrt term leaves room for a small queue,
+ * - smoothed so one slow request does not halve the limit,
+ * - a failed request (5xx, for example a database timeout) cuts the limit by 10% (multiplicative decrease).
+ *
+ * minRtt is the lowest latency seen, except that a request that ran with no more than minLimit requests in
+ * flight replaces it: so few requests do not queue, so their latency is the no-load latency of a database
+ * that became slower. Without that, the limit would stay pinned at minLimit after such a slowdown.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile double limit;
+
+    // Guarded by this.
+    private long minRttNanos;
+
+    /**
+     * A request admitted by tryAcquire. Pass it back to release when the request is done.
+     */
+    public record Permit(long startNanos, int inFlight) {
+    }
+
+    /**
+     * @param initialLimit Limit before any latency was measured.
+     * @param minLimit Lowest limit, kept even under heavy overload so the system still makes progress.
+     * @param maxLimit Highest limit.
+     * @param rttTolerance How much slower than the no-load latency requests may get before the limit shrinks (2 = twice as slow).
+     * @param smoothing Weight of each new limit estimate, between 0 and 1.
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double rttTolerance, double smoothing) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * @return a permit if the request may run now, or null if the limit is reached and the request should be shed.
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(System.nanoTime(), current + 1);
+            }
+        }
+    }
+
+    /**
+     * Ends a request and feeds its latency to the limit.
+     *
+     * @param failed Whether the request failed in a way that suggests overload.
+     */
+    public void release(Permit permit, boolean failed) {
+        inFlight.decrementAndGet();
+        onSample(System.nanoTime() - permit.startNanos(), permit.inFlight(), failed);
+    }
+
+    synchronized void onSample(long rttNanos, int inFlightAtStart, boolean failed) {
+        if (failed) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+        if (minRttNanos == 0 || rttNanos < minRttNanos || inFlightAtStart <= minLimit) {
+            minRttNanos = rttNanos;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * minRttNanos / rttNanos));
+        double estimate = limit * gradient + queueSize(limit);
+        // A request that ran with most of the limit unused says nothing about a higher limit.
+        if (estimate > limit && inFlightAtStart < limit / 2) {
+            return;
+        }
+        double smoothed = limit * (1 - smoothing) + estimate * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    private static double queueSize(double limit) {
+        return Math.max(1, Math.sqrt(limit));
+    }
+}
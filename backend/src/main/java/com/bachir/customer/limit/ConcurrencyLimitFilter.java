@@ -0,0 +1,119 @@
+package com.bachir.customer.limit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Sheds customer API requests above an AdaptiveConcurrencyLimit with 429 Too Many Requests and a Retry-After header,
+ * so that when the database slows down, requests fail fast instead of piling up on Tomcat threads.
+ *
+ * Reads (GET, HEAD) and writes have separate limits: writes hold database locks and run longer,
+ * and a burst of writes should not shed cheap reads, or the other way around.
+ *
+ * The limits are published as the customer.concurrency.limit, customer.concurrency.in-flight and
+ * customer.concurrency.rejected metrics, tagged with kind=read or kind=write.
+ *
+ * The bulk transfer endpoints (export and import) are left out: they run for seconds, so their latencies would
+ * shrink the limit of point reads and writes, and a streaming export returns its thread, and would give back
+ * its permit, long before the rows are written.
+ */
+@Component
+@ConditionalOnProperty(name = "customer.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter implements Ordered {
+
+    private static final String CUSTOMERS_PATH = "/api/v1/customers";
+    private static final Set<String> TRANSFER_PATHS = Set.of(CUSTOMERS_PATH + "/export", CUSTOMERS_PATH + "/import");
+
+    private final AdaptiveConcurrencyLimit readLimit;
+    private final AdaptiveConcurrencyLimit writeLimit;
+    private final String retryAfterSeconds;
+
+    public ConcurrencyLimitFilter(
+            MeterRegistry meterRegistry,
+            @Value("${customer.concurrency-limit.initial-limit:20}") int initialLimit,
+            @Value("${customer.concurrency-limit.min-limit:4}") int minLimit,
+            @Value("${customer.concurrency-limit.max-limit:200}") int maxLimit,
+            @Value("${customer.concurrency-limit.rtt-tolerance:2.0}") double rttTolerance,
+            @Value("${customer.concurrency-limit.smoothing:0.2}") double smoothing,
+            @Value("${customer.concurrency-limit.retry-after:1s}") Duration retryAfter) {
+        this.readLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, rttTolerance, smoothing);
+        this.writeLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, rttTolerance, smoothing);
+        this.retryAfterSeconds = Long.toString(Math.max(1, retryAfter.toSeconds()));
+        registerMetrics(meterRegistry, "read", readLimit);
+        registerMetrics(meterRegistry, "write", writeLimit);
+    }
+
+    // Runs after every other filter, so responses served from the response cache never count against the limit.
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith(CUSTOMERS_PATH) || TRANSFER_PATHS.contains(path);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdaptiveConcurrencyLimit limit = isRead(request) ? readLimit : writeLimit;
+        AdaptiveConcurrencyLimit.Permit permit = limit.tryAcquire();
+        if (permit == null) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many concurrent requests, retry later");
+            return;
+        }
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            limit.release(permit, failed);
+        }
+    }
+
+    AdaptiveConcurrencyLimit readLimit() {
+        return readLimit;
+    }
+
+    AdaptiveConcurrencyLimit writeLimit() {
+        return writeLimit;
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    }
+
+    private static void registerMetrics(MeterRegistry registry, String kind, AdaptiveConcurrencyLimit limit) {
+        Gauge.builder("customer.concurrency.limit", limit, AdaptiveConcurrencyLimit::limit)
+                .description("Requests allowed to run at once")
+                .tag("kind", kind)
+                .register(registry);
+        Gauge.builder("customer.concurrency.in-flight", limit, AdaptiveConcurrencyLimit::inFlight)
+                .description("Requests running now")
+                .tag("kind", kind)
+                .register(registry);
+        FunctionCounter.builder("customer.concurrency.rejected", limit, AdaptiveConcurrencyLimit::rejected)
+                .description("Requests shed with 429 Too Many Requests")
+                .tag("kind", kind)
+                .register(registry);
+    }
+}
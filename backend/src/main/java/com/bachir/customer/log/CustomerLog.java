@@ -0,0 +1,322 @@
+package com.bachir.customer.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of customer records, in segment files of a fixed size, plus snapshots of the whole state.
+ *
+ * Files in the directory:
+ * - 00000000000000000007.log: segment 7, memory-mapped, records appended from the start;
+ * - 00000000000000000007.snapshot: every customer as it was before segment 7, written when segment 7 was
+ *   started. Segments before 7 are no longer needed and are deleted.
+ *
+ * Recovery loads the latest snapshot and replays the segments from there. A record torn by a crash can only
+ * be at the end of the last segment; it is dropped. Anything else unreadable stops the recovery.
+ *
+ * The caller serializes append() and startSnapshot(), and applies each record to its own state under the same
+ * lock, so that a snapshot holds exactly the records of the segments it replaces.
+ */
+public final class CustomerLog implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerLog.class);
+
+    static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x43534E50; // "CSNP"
+
+    private final Path directory;
+    private final CustomerLogOptions options;
+    private final ScheduledExecutorService intervalFlusher;
+
+    private volatile CustomerLogSegment current;
+    private long bytesSinceSnapshot;
+
+    // Group commit: records are numbered as they are appended, and the number of the last one on disk is kept.
+    private final Object durability = new Object();
+    private volatile long appendedSequence;
+    private long durableSequence;
+    private boolean flushing;
+
+    private CustomerLog(Path directory, CustomerLogOptions options) {
+        this.directory = directory;
+        this.options = options;
+        if (options.fsync() == FsyncPolicy.INTERVAL) {
+            intervalFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "customer-log-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalNanos = options.fsyncInterval().toNanos();
+            intervalFlusher.scheduleWithFixedDelay(() -> current.force(), intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        } else {
+            intervalFlusher = null;
+        }
+    }
+
+    /**
+     * Opens the log in the given directory, creating it if needed, and replays its content.
+     *
+     * @param replay Receives every record of the latest snapshot, then of the segments after it, in order.
+     */
+    public static CustomerLog open(Path directory, CustomerLogOptions options, Consumer<CustomerLogRecord> replay) {
+        try {
+            Files.createDirectories(directory);
+            deleteFiles(directory, ".tmp", Long.MAX_VALUE);
+            CustomerLog customerLog = new CustomerLog(directory, options);
+            customerLog.recover(replay);
+            return customerLog;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends a record to the current segment, starting a new segment when it is full.
+     * With the PER_WRITE policy, the record is on disk when this returns.
+     *
+     * @return the number of the record, to wait for with awaitDurable.
+     */
+    public long append(CustomerLogRecord record) {
+        byte[] bytes = record.encode();
+        if (!current.fits(bytes.length)) {
+            roll();
+        }
+        current.append(bytes);
+        bytesSinceSnapshot += bytes.length;
+        if (options.fsync() == FsyncPolicy.PER_WRITE) {
+            current.force();
+        }
+        return ++appendedSequence;
+    }
+
+    /**
+     * With the GROUP_COMMIT policy, waits until the given record is on disk. Called without the caller's lock,
+     * so that other writers can append in the meantime and share the next flush.
+     */
+    public void awaitDurable(long sequence) {
+        if (options.fsync() != FsyncPolicy.GROUP_COMMIT) {
+            return;
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                long target;
+                synchronized (durability) {
+                    while (flushing && durableSequence < sequence) {
+                        try {
+                            durability.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (durableSequence >= sequence) {
+                        return;
+                    }
+                    // This writer flushes for everyone who appended so far
+                    flushing = true;
+                    target = appendedSequence;
+                }
+                // Earlier segments were forced when they were closed (see roll)
+                try {
+                    current.force();
+                } finally {
+                    synchronized (durability) {
+                        flushing = false;
+                        durableSequence = Math.max(durableSequence, target);
+                        durability.notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Size of the records appended since the last snapshot (or since the oldest segment, without snapshot).
+     */
+    public long bytesSinceSnapshot() {
+        return bytesSinceSnapshot;
+    }
+
+    /**
+     * Starts a new segment, for a snapshot of the state as it is now. Called under the caller's lock, at the
+     * same time as the caller copies its state.
+     *
+     * @return the number of the snapshot, to give to writeSnapshot.
+     */
+    public long startSnapshot() {
+        if (current.position() > 0) {
+            roll();
+        }
+        bytesSinceSnapshot = 0;
+        return current.sequence();
+    }
+
+    /**
+     * Writes a snapshot, then deletes the segments and snapshots it replaces. Runs without the caller's lock.
+     *
+     * @param sequence Returned by startSnapshot.
+     * @param records The state copied along with startSnapshot.
+     */
+    public void writeSnapshot(long sequence, Collection<CustomerLogRecord> records) {
+        Path snapshot = directory.resolve("%020d%s".formatted(sequence, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                for (CustomerLogRecord record : records) {
+                    out.write(record.encode());
+                }
+                // End marker and count: a snapshot that does not end with them is incomplete
+                out.writeInt(0);
+                out.writeLong(records.size());
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+            deleteFiles(directory, CustomerLogSegment.SUFFIX, sequence);
+            deleteFiles(directory, SNAPSHOT_SUFFIX, sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and stops the interval flusher.
+     */
+    @Override
+    public void close() {
+        if (intervalFlusher != null) {
+            intervalFlusher.shutdownNow();
+        }
+        current.force();
+    }
+
+    private void recover(Consumer<CustomerLogRecord> replay) throws IOException {
+        List<Long> snapshots = sequences(directory, SNAPSHOT_SUFFIX);
+        long first = 0;
+        if (!snapshots.isEmpty()) {
+            first = snapshots.get(snapshots.size() - 1);
+            readSnapshot(directory.resolve("%020d%s".formatted(first, SNAPSHOT_SUFFIX)), replay);
+        }
+        // Segments left over by a compaction that stopped before deleting them
+        deleteFiles(directory, CustomerLogSegment.SUFFIX, first);
+
+        List<Long> segments = sequences(directory, CustomerLogSegment.SUFFIX);
+        if (segments.isEmpty()) {
+            current = CustomerLogSegment.open(directory, first, options.segmentSize());
+            syncDirectory();
+            return;
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            long sequence = segments.get(i);
+            if (sequence != first + i) {
+                throw new IllegalStateException("Customer log segment %d is missing in %s".formatted(first + i, directory));
+            }
+            CustomerLogSegment segment = CustomerLogSegment.open(directory, sequence, options.segmentSize());
+            boolean clean = segment.replay(replay);
+            bytesSinceSnapshot += segment.position();
+            boolean last = i == segments.size() - 1;
+            if (!clean && !last) {
+                throw new IllegalStateException("Customer log segment %d is corrupt at offset %d".formatted(sequence, segment.position()));
+            }
+            if (!clean) {
+                log.warn("Dropped a torn record at the end of customer log segment {}, offset {}", sequence, segment.position());
+                segment.clearTail();
+                segment.force();
+            }
+            current = segment;
+        }
+    }
+
+    private void readSnapshot(Path snapshot, Consumer<CustomerLogRecord> replay) throws IOException {
+        try (InputStream file = Files.newInputStream(snapshot);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IllegalStateException("Not a customer log snapshot: " + snapshot);
+            }
+            long count = 0;
+            int payloadSize;
+            while ((payloadSize = in.readInt()) != 0) {
+                byte[] bytes = new byte[CustomerLogRecord.HEADER_SIZE + payloadSize];
+                ByteBuffer.wrap(bytes).putInt(payloadSize);
+                in.readFully(bytes, 4, bytes.length - 4);
+                CustomerLogRecord record = CustomerLogRecord.decode(ByteBuffer.wrap(bytes), 0);
+                if (record == null) {
+                    throw new IllegalStateException("Customer log snapshot %s is corrupt after %d records".formatted(snapshot, count));
+                }
+                replay.accept(record);
+                count++;
+            }
+            if (in.readLong() != count) {
+                throw new IllegalStateException("Customer log snapshot %s is incomplete".formatted(snapshot));
+            }
+        }
+    }
+
+    // The current segment is forced before the next one is started, so that group commit only has to force
+    // the current one.
+    private void roll() {
+        current.force();
+        current = CustomerLogSegment.open(directory, current.sequence() + 1, options.segmentSize());
+        syncDirectory();
+    }
+
+    // Makes the creation, renaming and deletion of files durable, not only their content.
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory (Windows cannot); files are still forced one by one.
+        }
+    }
+
+    private static List<Long> sequences(Path directory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(suffix))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - suffix.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void deleteFiles(Path directory, String suffix, long beforeSequence) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(path -> path.getFileName().toString().endsWith(suffix)).toList()) {
+                String name = path.getFileName().toString();
+                String prefix = name.substring(0, Math.min(20, name.length()));
+                if (suffix.equals(".tmp") || Long.parseLong(prefix) < beforeSequence) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}
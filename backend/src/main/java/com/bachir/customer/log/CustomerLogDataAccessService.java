@@ -0,0 +1,273 @@
+package com.bachir.customer.log;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.CustomerDao;
+import com.bachir.customer.CustomerEmails;
+import com.bachir.exception.DuplicateResourceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory CustomerDao that survives restarts: every write is appended to a CustomerLog on disk, and the
+ * customers are rebuilt from the log when the application starts.
+ *
+ * - Reads are served from two maps, customers by id and ids by normalized email, without locking.
+ * - Writes are serialized by one lock: the email check, the append to the log and the update of the maps happen
+ *   together. Waiting for the disk (customer.log-store.fsync) happens after the lock is released.
+ * - A background thread takes a snapshot once customer.log-store.compaction.threshold bytes were appended
+ *   since the last one; the segments the snapshot covers are then deleted, so the log on disk and the
+ *   recovery time stay proportional to the number of customers, not to the number of writes.
+ *
+ * @author "log" signifies that this is the log-structured implementation of CustomerDao.
+ *
+ * @Lazy: only created, and the log only replayed, when customer.data-access=log.
+ */
+@Lazy
+@Repository("log")
+public class CustomerLogDataAccessService implements CustomerDao, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerLogDataAccessService.class);
+
+    private final Map<Long, CustomerLogRecord> customers = new ConcurrentHashMap<>();
+    private final Map<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private long nextId = 1;
+
+    private final CustomerLog customerLog;
+    private final ScheduledExecutorService compaction;
+
+    // Used to announce every write with a CustomerChangedEvent.
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public CustomerLogDataAccessService(
+            @Value("${customer.log-store.directory:./data/customer-log}") Path directory,
+            @Value("${customer.log-store.segment-size:64MB}") DataSize segmentSize,
+            @Value("${customer.log-store.fsync:group-commit}") String fsync,
+            @Value("${customer.log-store.fsync-interval:1s}") Duration fsyncInterval,
+            @Value("${customer.log-store.compaction.threshold:256MB}") DataSize compactionThreshold,
+            @Value("${customer.log-store.compaction.check-interval:10s}") Duration compactionCheckInterval,
+            ApplicationEventPublisher eventPublisher) {
+        this(directory,
+                new CustomerLogOptions(segmentSize.toBytes(),
+                        FsyncPolicy.valueOf(fsync.trim().replace('-', '_').toUpperCase()),
+                        fsyncInterval,
+                        compactionThreshold.toBytes(),
+                        compactionCheckInterval),
+                eventPublisher);
+    }
+
+    public CustomerLogDataAccessService(Path directory, CustomerLogOptions options,
+                                        ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        long start = System.nanoTime();
+        this.customerLog = CustomerLog.open(directory, options, this::apply);
+        log.info("Replayed the customer log in {}: {} customers in {} ms",
+                directory, customers.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        this.compaction = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-log-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkMillis = options.compactionCheckInterval().toMillis();
+        compaction.scheduleWithFixedDelay(() -> {
+            try {
+                if (customerLog.bytesSinceSnapshot() >= options.compactionThreshold()) {
+                    snapshot();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Customer log compaction failed, it is retried at the next check", e);
+            }
+        }, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Retrieves all customers, ordered by id.
+     */
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return customers.values().stream()
+                .sorted(Comparator.comparingLong(CustomerLogRecord::id))
+                .map(CustomerLogRecord::toCustomer)
+                .toList();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return Optional.ofNullable(customers.get(id)).map(CustomerLogRecord::toCustomer);
+    }
+
+    /**
+     * Finds a customer by email, ignoring case and surrounding spaces.
+     */
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        return Optional.ofNullable(idsByEmail.get(CustomerEmails.normalize(email)))
+                .map(customers::get)
+                .map(CustomerLogRecord::toCustomer);
+    }
+
+    /**
+     * Inserts a new customer, with the next free id.
+     *
+     * @throws DuplicateResourceException if another customer has the same normalized email.
+     */
+    @Override
+    public Customer insertCustomer(Customer customer) {
+        long sequence;
+        writeLock.lock();
+        try {
+            checkEmailIsFree(customer.getEmail(), null);
+            customer.setId(nextId);
+            sequence = write(CustomerLogRecord.put(customer));
+        } finally {
+            writeLock.unlock();
+        }
+        customerLog.awaitDurable(sequence);
+        eventPublisher.publishEvent(CustomerChangedEvent.inserted(customer.getId()));
+        return customer;
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return idsByEmail.containsKey(CustomerEmails.normalize(email));
+    }
+
+    @Override
+    public boolean existsPersonWithId(long id) {
+        return customers.containsKey(id);
+    }
+
+    @Override
+    public boolean deleteCustomerById(long id) {
+        long sequence;
+        writeLock.lock();
+        try {
+            if (!customers.containsKey(id)) {
+                return false;
+            }
+            sequence = write(CustomerLogRecord.delete(id));
+        } finally {
+            writeLock.unlock();
+        }
+        customerLog.awaitDurable(sequence);
+        eventPublisher.publishEvent(CustomerChangedEvent.deleted(id));
+        return true;
+    }
+
+    /**
+     * Updates the non-null fields of an existing customer. Does nothing if there is no customer with that id.
+     *
+     * @throws DuplicateResourceException if another customer has the same normalized email.
+     */
+    @Override
+    public void updateCustomer(Customer update) {
+        long sequence;
+        writeLock.lock();
+        try {
+            CustomerLogRecord existing = customers.get(update.getId());
+            if (existing == null) {
+                return;
+            }
+            if (update.getEmail() != null) {
+                checkEmailIsFree(update.getEmail(), existing.id());
+            }
+            sequence = write(new CustomerLogRecord(CustomerLogRecord.Type.PUT, existing.id(),
+                    update.getName() != null ? update.getName() : existing.name(),
+                    update.getEmail() != null ? update.getEmail() : existing.email(),
+                    update.getAge() != null ? update.getAge() : existing.age()));
+        } finally {
+            writeLock.unlock();
+        }
+        customerLog.awaitDurable(sequence);
+        eventPublisher.publishEvent(CustomerChangedEvent.updated(update.getId()));
+    }
+
+    /**
+     * Writes a snapshot of every customer and deletes the log segments it replaces. Runs in the background when
+     * the log grows past the compaction threshold; writes only wait while the customers are copied.
+     */
+    public void snapshot() {
+        long sequence;
+        List<CustomerLogRecord> records;
+        writeLock.lock();
+        try {
+            sequence = customerLog.startSnapshot();
+            records = new ArrayList<>(customers.size() + 1);
+            records.addAll(customers.values());
+            // Keeps the highest id ever given out, so that ids of deleted customers are not given out again
+            if (nextId > 1 && !customers.containsKey(nextId - 1)) {
+                records.add(CustomerLogRecord.delete(nextId - 1));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        long start = System.nanoTime();
+        customerLog.writeSnapshot(sequence, records);
+        log.info("Wrote customer log snapshot {} ({} customers) in {} ms",
+                sequence, customers.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Stops the compaction and forces the log to disk. Called by Spring when the context closes.
+     */
+    @Override
+    public void close() {
+        compaction.shutdownNow();
+        try {
+            compaction.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        customerLog.close();
+    }
+
+    private void checkEmailIsFree(String email, Long ownerId) {
+        Long id = idsByEmail.get(CustomerEmails.normalize(email));
+        if (id != null && !id.equals(ownerId)) {
+            throw new DuplicateResourceException("Email already taken");
+        }
+    }
+
+    // Called under the write lock: the record is in the log before the maps show it.
+    private long write(CustomerLogRecord record) {
+        long sequence = customerLog.append(record);
+        apply(record);
+        return sequence;
+    }
+
+    // Applies a record to the maps, for writes and for the replay at startup.
+    private void apply(CustomerLogRecord record) {
+        CustomerLogRecord previous = record.type() == CustomerLogRecord.Type.PUT
+                ? customers.put(record.id(), record)
+                : customers.remove(record.id());
+        if (previous != null) {
+            idsByEmail.remove(CustomerEmails.normalize(previous.email()), previous.id());
+        }
+        if (record.type() == CustomerLogRecord.Type.PUT) {
+            idsByEmail.put(CustomerEmails.normalize(record.email()), record.id());
+        }
+        nextId = Math.max(nextId, record.id() + 1);
+    }
+}
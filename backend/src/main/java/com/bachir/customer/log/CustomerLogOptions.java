@@ -0,0 +1,26 @@
+package com.bachir.customer.log;
+
+import java.time.Duration;
+
+/**
+ * Settings of the customer log store (customer.log-store).
+ *
+ * @param segmentSize Size of a segment file. Segments are created at this size and mapped into memory whole.
+ * @param fsync When writes are forced to disk.
+ * @param fsyncInterval How often the log is forced to disk with the INTERVAL policy.
+ * @param compactionThreshold Log size since the last snapshot above which a new snapshot is taken and the
+ *                            segments it covers are deleted.
+ * @param compactionCheckInterval How often the background compaction checks the log size.
+ */
+public record CustomerLogOptions(long segmentSize,
+                                 FsyncPolicy fsync,
+                                 Duration fsyncInterval,
+                                 long compactionThreshold,
+                                 Duration compactionCheckInterval) {
+
+    public CustomerLogOptions {
+        if (segmentSize < CustomerLogRecord.MAX_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between %d bytes and 2 GB".formatted(CustomerLogRecord.MAX_SIZE));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.bachir.customer.log;
+
+import com.bachir.customer.Customer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * One entry of the customer log: the whole customer after an insert or update (PUT), or the id of a deleted
+ * customer (DELETE). Snapshots hold one PUT per customer.
+ *
+ * Encoded as:
+ *   int length of the payload | int CRC32C of the payload | payload
+ *   payload: byte type | long id | PUT only: int age | unsigned short + UTF-8 name | unsigned short + UTF-8 email
+ *
+ * A length of zero marks the end of a segment (segments are created filled with zeros). A record whose checksum
+ * does not match was torn by a crash while being written.
+ */
+public record CustomerLogRecord(Type type, long id, String name, String email, int age) {
+
+    public enum Type {
+        PUT, DELETE
+    }
+
+    static final int HEADER_SIZE = 8;
+    private static final int MAX_STRING_SIZE = 0xFFFF;
+    // Header, type, id, age and the two string lengths, plus the longest name and email
+    static final int MAX_SIZE = HEADER_SIZE + 1 + 8 + 4 + 2 + 2 + 2 * MAX_STRING_SIZE;
+
+    public static CustomerLogRecord put(Customer customer) {
+        return new CustomerLogRecord(Type.PUT, customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+    public static CustomerLogRecord delete(long id) {
+        return new CustomerLogRecord(Type.DELETE, id, null, null, 0);
+    }
+
+    public Customer toCustomer() {
+        return new Customer(id, name, email, age);
+    }
+
+    /**
+     * @return the record with its header, ready to be appended.
+     */
+    byte[] encode() {
+        byte[] nameBytes = type == Type.PUT ? bytes(name) : null;
+        byte[] emailBytes = type == Type.PUT ? bytes(email) : null;
+        int payloadSize = 1 + 8 + (type == Type.PUT ? 4 + 2 + nameBytes.length + 2 + emailBytes.length : 0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadSize);
+        buffer.position(HEADER_SIZE);
+        buffer.put((byte) type.ordinal());
+        buffer.putLong(id);
+        if (type == Type.PUT) {
+            buffer.putInt(age);
+            buffer.putShort((short) nameBytes.length).put(nameBytes);
+            buffer.putShort((short) emailBytes.length).put(emailBytes);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), HEADER_SIZE, payloadSize);
+        buffer.putInt(0, payloadSize);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Reads the record at the given index of the buffer.
+     *
+     * @return the record, or null at the end of the written data: a zero length, a record running past the
+     * limit of the buffer, or a checksum mismatch.
+     */
+    static CustomerLogRecord decode(ByteBuffer buffer, int index) {
+        if (index + HEADER_SIZE > buffer.limit()) {
+            return null;
+        }
+        int payloadSize = buffer.getInt(index);
+        if (payloadSize <= 0 || payloadSize > MAX_SIZE - HEADER_SIZE || index + HEADER_SIZE + payloadSize > buffer.limit()) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(index + HEADER_SIZE, payloadSize);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(index + 4)) {
+            return null;
+        }
+        try {
+            Type type = Type.values()[payload.get()];
+            long id = payload.getLong();
+            if (type == Type.DELETE) {
+                return delete(id);
+            }
+            int age = payload.getInt();
+            String name = string(payload);
+            String email = string(payload);
+            return new CustomerLogRecord(type, id, name, email, age);
+        } catch (RuntimeException e) {
+            // A checksum collision on garbage: as torn as a checksum mismatch
+            return null;
+        }
+    }
+
+    /**
+     * @return the size of the record encoded at the given index, header included.
+     */
+    static int sizeAt(ByteBuffer buffer, int index) {
+        return HEADER_SIZE + buffer.getInt(index);
+    }
+
+    private static byte[] bytes(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_SIZE) {
+            throw new IllegalArgumentException("Customer names and emails are limited to %d bytes".formatted(MAX_STRING_SIZE));
+        }
+        return bytes;
+    }
+
+    private static String string(ByteBuffer payload) {
+        byte[] bytes = new byte[Short.toUnsignedInt(payload.getShort())];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,105 @@
+package com.bachir.customer.log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * One file of the customer log, mapped into memory whole. Records are appended one after the other from the
+ * start; the rest of the file is zeros.
+ *
+ * Not thread-safe: appends are serialized by the caller. force() may run concurrently with appends.
+ */
+final class CustomerLogSegment {
+
+    static final String SUFFIX = ".log";
+
+    private final long sequence;
+    private final MappedByteBuffer buffer;
+    private int position;
+
+    private CustomerLogSegment(long sequence, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Creates an empty segment, or opens an existing one, mapped at the given size.
+     */
+    static CustomerLogSegment open(Path directory, long sequence, long size) {
+        Path path = path(directory, sequence);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Mapping past the end of the file grows it; the mapping stays valid once the channel is closed.
+            long mappedSize = Math.max(size, channel.size());
+            return new CustomerLogSegment(sequence, channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Path path(Path directory, long sequence) {
+        return directory.resolve("%020d%s".formatted(sequence, SUFFIX));
+    }
+
+    /**
+     * Reads the records of the segment in order, and positions the segment after the last complete one.
+     *
+     * @return true if the segment ends cleanly, false if non-zero bytes follow the last complete record:
+     * a record torn by a crash, or corruption.
+     */
+    boolean replay(Consumer<CustomerLogRecord> consumer) {
+        int index = 0;
+        CustomerLogRecord record;
+        while ((record = CustomerLogRecord.decode(buffer, index)) != null) {
+            consumer.accept(record);
+            index += CustomerLogRecord.sizeAt(buffer, index);
+        }
+        position = index;
+        return lastNonZeroByte() < position;
+    }
+
+    /**
+     * Zeros what follows the last complete record, so that records appended from there are not followed by
+     * leftovers of a torn record, which a later replay could read as valid records.
+     */
+    void clearTail() {
+        int end = lastNonZeroByte();
+        for (int index = position; index <= end; index++) {
+            buffer.put(index, (byte) 0);
+        }
+    }
+
+    boolean fits(int recordSize) {
+        return position + recordSize <= buffer.capacity();
+    }
+
+    void append(byte[] record) {
+        buffer.put(position, record);
+        position += record.length;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    int position() {
+        return position;
+    }
+
+    private int lastNonZeroByte() {
+        for (int index = buffer.capacity() - 1; index >= position; index--) {
+            if (buffer.get(index) != 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,29 @@
+package com.bachir.customer.log;
+
+/**
+ * When the writes of the customer log are forced to disk (customer.log-store.fsync).
+ *
+ * Every policy survives a crash of the application: the log is a memory-mapped file, so a write is in the
+ * operating system's page cache as soon as it returns. The policies differ when the machine itself goes down.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Every write is forced to disk before it returns, one at a time. Nothing is lost, at the cost of one disk
+     * flush per write.
+     */
+    PER_WRITE,
+
+    /**
+     * Every write is on disk before it returns, but concurrent writers share a flush: the first one to wait
+     * flushes everything written so far, the others wait for that flush. Nothing is lost, and under load there
+     * are far fewer flushes than writes.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Writes return at once and a background thread forces the log every fsync-interval. A machine crash loses
+     * at most the writes of the last interval.
+     */
+    INTERVAL
+}
@@ -0,0 +1,250 @@
+package com.bachir.customer.nearcache;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.CustomerDao;
+import com.bachir.customer.CustomerField;
+import com.bachir.customer.CustomerView;
+import com.bachir.datasource.PrimaryStickiness;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Near-cache of the customers read by id, in front of the CustomerDao chosen with customer.data-access. Enabled
+ * with customer.near-cache.enabled, it takes the place of that DAO as "customerDao" (see CustomerNearCacheConfiguration).
+ *
+ * Consistency:
+ * - Entries are dropped by CustomerChangedEvent: the writes of this instance, and the writes of the other
+ *   instances, which CustomerInvalidationBus receives over Postgres LISTEN/NOTIFY and publishes here as well.
+ * - Every entry is stamped with the version of its id (one of VERSION_STRIPES counters) and the flush epoch,
+ *   read before the database. An invalidation bumps the version, a flush the epoch, and an entry is only served
+ *   while both are unchanged: a read that raced a write can store what it read, but it is never served.
+ * - Reads that precede a write (primary stickiness, or a read-write transaction) always go to the store.
+ * - Entries expire after customer.near-cache.ttl, for the writes made outside the application.
+ *
+ * Only selectCustomerById is cached, as immutable CustomerView records: every hit returns a new Customer, which
+ * the caller may change. Every other call goes to the store.
+ */
+public class CustomerNearCache implements CustomerDao {
+
+    // Number of version stripes; customer ids are spread over them by their low bits.
+    private static final int VERSION_STRIPES = 1024;
+    private static final long SWEEP_INTERVAL_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final CustomerDao store;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLong lastSweepNanos = new AtomicLong(System.nanoTime() - SWEEP_INTERVAL_NANOS);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    private record Entry(CustomerView customer, long epoch, long version, long loadedAtNanos) {
+    }
+
+    /**
+     * @param store The CustomerDao the customers are read from and written to.
+     * @param maxEntries The most customers kept; once reached, new ones are only admitted after expired entries
+     *                   are swept out.
+     * @param ttl How long an entry is served without an invalidation.
+     */
+    public CustomerNearCache(CustomerDao store, int maxEntries, Duration ttl, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        if (meterRegistry != null) {
+            registerMetrics(meterRegistry);
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        if (mustReadStore()) {
+            bypassed.increment();
+            return store.selectCustomerById(id);
+        }
+        int stripe = stripe(id);
+        long epochBefore = epoch.get();
+        long versionBefore = versions.get(stripe);
+        long now = System.nanoTime();
+        Entry entry = entries.get(id);
+        if (entry != null && entry.epoch() == epochBefore && entry.version() == versionBefore
+                && now - entry.loadedAtNanos() < ttlNanos) {
+            hits.increment();
+            return Optional.of(entry.customer().toCustomer());
+        }
+        misses.increment();
+        Optional<Customer> customer = store.selectCustomerById(id);
+        customer.ifPresent(c -> admit(id, new Entry(
+                new CustomerView(c.getId(), c.getName(), c.getEmail(), c.getAge()), epochBefore, versionBefore, now)));
+        return customer;
+    }
+
+    /**
+     * Drops what a write changed. Runs after the commit of the write, on this instance or another one.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (event.type() == CustomerChangedEvent.ChangeType.BULK
+                || (event.customerId() == null && event.type() != CustomerChangedEvent.ChangeType.INSERTED)) {
+            flush();
+        } else if (event.customerId() != null && event.type() != CustomerChangedEvent.ChangeType.INSERTED) {
+            // A new customer is not cached anywhere: only ids that were found are
+            versions.incrementAndGet(stripe(event.customerId()));
+            entries.remove(event.customerId());
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void flush() {
+        epoch.incrementAndGet();
+        entries.clear();
+        flushes.increment();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long flushes() {
+        return flushes.sum();
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return store.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers(Set<CustomerField> fields) {
+        return store.selectAllCustomers(fields);
+    }
+
+    @Override
+    public List<Customer> selectCustomersPage(long afterId, int limit) {
+        return store.selectCustomersPage(afterId, limit);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id, Set<CustomerField> fields) {
+        return store.selectCustomerById(id, fields);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        return store.selectCustomerByEmail(email);
+    }
+
+    @Override
+    public Customer insertCustomer(Customer customer) {
+        return store.insertCustomer(customer);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return store.existsPersonWithEmail(email);
+    }
+
+    @Override
+    public boolean existsPersonWithId(long id) {
+        return store.existsPersonWithId(id);
+    }
+
+    @Override
+    public boolean deleteCustomerById(long id) {
+        return store.deleteCustomerById(id);
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        store.updateCustomer(customer);
+    }
+
+    private void admit(Long id, Entry entry) {
+        if (entries.size() >= maxEntries && !entries.containsKey(id)) {
+            sweep();
+            if (entries.size() >= maxEntries) {
+                return;
+            }
+        }
+        entries.put(id, entry);
+    }
+
+    // Drops the expired and invalidated entries, at most once a second.
+    private void sweep() {
+        long now = System.nanoTime();
+        long last = lastSweepNanos.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweepNanos.compareAndSet(last, now)) {
+            return;
+        }
+        long currentEpoch = epoch.get();
+        entries.values().removeIf(entry -> entry.epoch() != currentEpoch
+                || entry.version() != versions.get(stripe(entry.customer().id()))
+                || now - entry.loadedAtNanos() >= ttlNanos);
+    }
+
+    // Checks made before a write must see the latest committed data, like the reads sent to the primary.
+    private static boolean mustReadStore() {
+        return PrimaryStickiness.isSticky()
+                || (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+    }
+
+    private static int stripe(long id) {
+        return (int) (id & (VERSION_STRIPES - 1));
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("customer.near-cache.requests", hits, LongAdder::sum)
+                .description("Reads by id, by result")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("customer.near-cache.requests", misses, LongAdder::sum)
+                .description("Reads by id, by result")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("customer.near-cache.requests", bypassed, LongAdder::sum)
+                .description("Reads by id, by result")
+                .tag("result", "bypass")
+                .register(registry);
+        FunctionCounter.builder("customer.near-cache.invalidations", invalidations, LongAdder::sum)
+                .description("Customers dropped because they changed, here or on another instance")
+                .register(registry);
+        FunctionCounter.builder("customer.near-cache.flushes", flushes, LongAdder::sum)
+                .description("Times every customer was dropped: bulk changes, missed invalidations")
+                .register(registry);
+        Gauge.builder("customer.near-cache.size", entries, ConcurrentHashMap::size)
+                .description("Customers in the near-cache")
+                .register(registry);
+    }
+}
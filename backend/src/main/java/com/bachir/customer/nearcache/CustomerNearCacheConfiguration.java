@@ -0,0 +1,30 @@
+package com.bachir.customer.nearcache;
+
+import com.bachir.customer.CustomerDao;
+import com.bachir.customer.CustomerDaoConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Puts a CustomerNearCache in front of the CustomerDao chosen with customer.data-access, when
+ * customer.near-cache.enabled is true. CustomerDaoConfiguration then names the chosen DAO "customerDaoStore",
+ * and the near-cache is the "customerDao" the service asks for.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "customer.near-cache.enabled", havingValue = "true")
+public class CustomerNearCacheConfiguration {
+
+    @Bean(CustomerDaoConfiguration.CUSTOMER_DAO)
+    CustomerNearCache customerNearCache(@Qualifier(CustomerDaoConfiguration.CUSTOMER_DAO_STORE) CustomerDao store,
+                                        @Value("${customer.near-cache.max-entries:100000}") int maxEntries,
+                                        @Value("${customer.near-cache.ttl:5m}") Duration ttl,
+                                        MeterRegistry meterRegistry) {
+        return new CustomerNearCache(store, maxEntries, ttl, meterRegistry);
+    }
+}
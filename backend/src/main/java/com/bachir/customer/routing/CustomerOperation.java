@@ -0,0 +1,46 @@
+package com.bachir.customer.routing;
+
+import com.bachir.exception.RequestValidationException;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * The operations of CustomerDao that CustomerRoutingDataAccessService sends to a backend each, named like their
+ * customer.routing.routes property, e.g. customer.routing.routes.select-all=jdbc.
+ * The overloads reading only some fields (?fields=) go with the operation that reads every field.
+ */
+public enum CustomerOperation {
+    SELECT_ALL("select-all"),
+    SELECT_PAGE("select-page"),
+    SELECT_BY_ID("select-by-id"),
+    SELECT_BY_EMAIL("select-by-email"),
+    INSERT("insert"),
+    EXISTS_BY_EMAIL("exists-by-email"),
+    EXISTS_BY_ID("exists-by-id"),
+    DELETE("delete"),
+    UPDATE("update");
+
+    private final String key;
+
+    CustomerOperation(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    /**
+     * @param key e.g. "select-all".
+     * @return the operation with that key.
+     * @throws RequestValidationException (400) for a key that is not an operation.
+     */
+    public static CustomerOperation parse(String key) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new RequestValidationException("Unknown operation [%s], expected one of %s".formatted(
+                        key, Arrays.stream(values()).map(CustomerOperation::key).collect(Collectors.joining(", ")))));
+    }
+}
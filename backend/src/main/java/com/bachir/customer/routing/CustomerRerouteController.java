@@ -0,0 +1,37 @@
+package com.bachir.customer.routing;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Changes the routes of CustomerRoutingDataAccessService while the application runs. Changes apply to this
+ * instance only.
+ *
+ * The application has no authentication, and a route decides where customers are read and written, so this
+ * endpoint only exists when customer.routing.admin.enabled is true as well.
+ */
+@RestController
+@RequestMapping("api/v1/admin/routing")
+@ConditionalOnExpression("'${customer.data-access:jpa}' == 'routing' and ${customer.routing.admin.enabled:false}")
+public class CustomerRerouteController {
+
+    private final CustomerRoutingDataAccessService routing;
+
+    public CustomerRerouteController(CustomerRoutingDataAccessService routing) {
+        this.routing = routing;
+    }
+
+    // Changes the operations of the body, all or none, and returns every route.
+    @PutMapping
+    public Map<String, String> updateRoutes(@RequestBody Map<String, String> changes) {
+        Map<CustomerOperation, String> parsed = new LinkedHashMap<>();
+        changes.forEach((operation, backend) -> parsed.put(CustomerOperation.parse(operation), backend));
+        return CustomerRoutingController.byKey(routing.reroute(parsed));
+    }
+}
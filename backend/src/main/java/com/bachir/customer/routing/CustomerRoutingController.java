@@ -0,0 +1,36 @@
+package com.bachir.customer.routing;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The routes of CustomerRoutingDataAccessService, as operation -> backend objects,
+ * e.g. {"select-all": "jdbc", "exists-by-email": "jdbc"}. Changing them is CustomerRerouteController's job.
+ */
+@RestController
+@RequestMapping("api/v1/admin/routing")
+@ConditionalOnProperty(name = "customer.data-access", havingValue = "routing")
+public class CustomerRoutingController {
+
+    private final CustomerRoutingDataAccessService routing;
+
+    public CustomerRoutingController(CustomerRoutingDataAccessService routing) {
+        this.routing = routing;
+    }
+
+    @GetMapping
+    public Map<String, String> getRoutes() {
+        return byKey(routing.routes());
+    }
+
+    static Map<String, String> byKey(Map<CustomerOperation, String> routes) {
+        Map<String, String> byKey = new LinkedHashMap<>();
+        routes.forEach((operation, backend) -> byKey.put(operation.key(), backend));
+        return byKey;
+    }
+}
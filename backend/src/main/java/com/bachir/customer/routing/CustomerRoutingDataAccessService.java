@@ -0,0 +1,206 @@
+package com.bachir.customer.routing;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerDao;
+import com.bachir.customer.CustomerDaoConfiguration;
+import com.bachir.customer.CustomerField;
+import com.bachir.exception.RequestValidationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Repository;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An implementation of the CustomerDao interface that sends every operation to one of the other implementations,
+ * e.g. the list of every customer to jdbc and the rest to jpa. Used with customer.data-access=routing.
+ *
+ * - customer.routing.backends: The implementations operations may go to (jpa and jdbc by default). Only the
+ *   ones a route points to are created.
+ * - customer.routing.default: Where operations without a route go (jpa by default).
+ * - customer.routing.routes.<operation>: The backend of one operation (see CustomerOperation for the names).
+ *
+ * The routes can be changed while the application runs (PUT /api/v1/admin/routing, with
+ * customer.routing.admin.enabled): calls that already started finish on their backend, the next ones go to the
+ * new one. The changes are not kept across restarts.
+ * Every call is timed in customer.routing.latency, tagged with the operation and the backend.
+ *
+ * Only backends over the same data store may be listed together: jpa and jdbc read and write the same tables,
+ * but list, log and sharded each keep their own customers, and a route to one of them would hide the others.
+ *
+ * @Lazy: only created when customer.data-access=routing.
+ */
+@Lazy
+@Repository("routing")
+public class CustomerRoutingDataAccessService implements CustomerDao {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerRoutingDataAccessService.class);
+
+    // Names that resolve to this DAO, or to a DAO in front of it
+    private static final Set<String> SELF = Set.of("routing",
+            CustomerDaoConfiguration.CUSTOMER_DAO, CustomerDaoConfiguration.CUSTOMER_DAO_STORE);
+
+    // The backends that share a data store; any other backend is a data store of its own
+    private static final Map<String, String> DATA_STORES = Map.of("jpa", "database", "jdbc", "database");
+
+    private final BeanFactory beanFactory;
+    private final List<String> backends;
+    // The timers of every operation on every backend, created up front so that a call only looks them up
+    private final Map<String, Timer[]> timers = new HashMap<>();
+
+    // The route of every operation, by ordinal; replaced as a whole when routes change
+    private volatile Route[] routes;
+
+    private record Route(String backend, CustomerDao dao, Timer timer) {
+    }
+
+    public CustomerRoutingDataAccessService(BeanFactory beanFactory,
+                                            @Value("${customer.routing.backends:jpa,jdbc}") List<String> backends,
+                                            @Value("${customer.routing.default:jpa}") String defaultBackend,
+                                            Environment environment,
+                                            MeterRegistry meterRegistry) {
+        backends.stream().filter(SELF::contains).findFirst().ifPresent(backend -> {
+            throw new IllegalArgumentException("customer.routing.backends cannot contain [%s]".formatted(backend));
+        });
+        if (backends.stream().map(backend -> DATA_STORES.getOrDefault(backend, backend)).distinct().count() > 1) {
+            throw new IllegalArgumentException("customer.routing.backends %s do not share a data store".formatted(backends));
+        }
+        this.beanFactory = beanFactory;
+        this.backends = List.copyOf(backends);
+        for (String backend : backends) {
+            Timer[] backendTimers = new Timer[CustomerOperation.values().length];
+            for (CustomerOperation operation : CustomerOperation.values()) {
+                backendTimers[operation.ordinal()] = Timer.builder("customer.routing.latency")
+                        .description("Time of the customer data access operations, by operation and backend")
+                        .tags("operation", operation.key(), "backend", backend)
+                        .publishPercentiles(0.5, 0.99)
+                        .register(meterRegistry);
+            }
+            timers.put(backend, backendTimers);
+        }
+        Map<CustomerOperation, String> configured = new LinkedHashMap<>();
+        for (CustomerOperation operation : CustomerOperation.values()) {
+            configured.put(operation, environment.getProperty("customer.routing.routes." + operation.key(), defaultBackend));
+        }
+        this.routes = new Route[CustomerOperation.values().length];
+        reroute(configured);
+    }
+
+    /**
+     * @return the backend of every operation, in the order of CustomerOperation.
+     */
+    public Map<CustomerOperation, String> routes() {
+        Map<CustomerOperation, String> current = new LinkedHashMap<>();
+        for (Route route : routes) {
+            current.put(CustomerOperation.values()[current.size()], route.backend());
+        }
+        return current;
+    }
+
+    /**
+     * Changes the backend of some operations, all at once. The other operations keep theirs.
+     *
+     * @param changes the new backend of each operation to change.
+     * @return the backend of every operation after the change.
+     * @throws RequestValidationException (400) for a backend not in customer.routing.backends; nothing changes.
+     */
+    public synchronized Map<CustomerOperation, String> reroute(Map<CustomerOperation, String> changes) {
+        changes.values().stream().filter(backend -> !backends.contains(backend)).findFirst().ifPresent(backend -> {
+            throw new RequestValidationException("Unknown backend [%s], expected one of %s".formatted(
+                    backend, String.join(", ", backends)));
+        });
+        Route[] next = Arrays.copyOf(routes, routes.length);
+        changes.forEach((operation, backend) -> next[operation.ordinal()] = new Route(backend,
+                beanFactory.getBean(backend, CustomerDao.class), timers.get(backend)[operation.ordinal()]));
+        routes = next;
+        log.info("Customer operations routed to {}", routes());
+        return routes();
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return call(CustomerOperation.SELECT_ALL, CustomerDao::selectAllCustomers);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers(Set<CustomerField> fields) {
+        return call(CustomerOperation.SELECT_ALL, dao -> dao.selectAllCustomers(fields));
+    }
+
+    @Override
+    public List<Customer> selectCustomersPage(long afterId, int limit) {
+        return call(CustomerOperation.SELECT_PAGE, dao -> dao.selectCustomersPage(afterId, limit));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return call(CustomerOperation.SELECT_BY_ID, dao -> dao.selectCustomerById(id));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id, Set<CustomerField> fields) {
+        return call(CustomerOperation.SELECT_BY_ID, dao -> dao.selectCustomerById(id, fields));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        return call(CustomerOperation.SELECT_BY_EMAIL, dao -> dao.selectCustomerByEmail(email));
+    }
+
+    @Override
+    public Customer insertCustomer(Customer customer) {
+        return call(CustomerOperation.INSERT, dao -> dao.insertCustomer(customer));
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return call(CustomerOperation.EXISTS_BY_EMAIL, dao -> dao.existsPersonWithEmail(email));
+    }
+
+    @Override
+    public boolean existsPersonWithId(long id) {
+        return call(CustomerOperation.EXISTS_BY_ID, dao -> dao.existsPersonWithId(id));
+    }
+
+    @Override
+    public boolean deleteCustomerById(long id) {
+        return call(CustomerOperation.DELETE, dao -> dao.deleteCustomerById(id));
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        run(CustomerOperation.UPDATE, dao -> dao.updateCustomer(customer));
+    }
+
+    private <T> T call(CustomerOperation operation, Function<CustomerDao, T> call) {
+        Route route = routes[operation.ordinal()];
+        long start = System.nanoTime();
+        try {
+            return call.apply(route.dao());
+        } finally {
+            route.timer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void run(CustomerOperation operation, Consumer<CustomerDao> call) {
+        call(operation, dao -> {
+            call.accept(dao);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,157 @@
+package com.bachir.customer.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Online resharding: moves hash buckets between shards while the application keeps serving requests.
+ *
+ * To add shards, append their URLs to customer.sharding.shard-urls, restart, and call rebalance.
+ * Buckets then move a few at a time from the fullest shards to the emptiest ones. For each step:
+ * 1. The buckets are marked as moving. This waits for running writes on them; later writes get a 503.
+ * 2. Their customers are copied to the target shard.
+ * 3. The directory hands the buckets to the target shard, which opens them for writes again.
+ * 4. The customers are deleted from the source shard.
+ * Reads are never blocked: until step 3 they are served by the source shard, afterwards by the target
+ * (instances with an older bucket map retry there when the source no longer has the customer).
+ *
+ * Each step is idempotent, so an interrupted rebalance is finished by calling rebalance again.
+ */
+public class CustomerResharder {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerResharder.class);
+
+    // Buckets moved per step: small enough that each bucket only refuses writes for a short time.
+    static final int BUCKETS_PER_STEP = 16;
+
+    private final CustomerShardDirectory directory;
+    private final CustomerShards shards;
+
+    /**
+     * A planned move of buckets from one shard to another.
+     */
+    record Move(int fromShard, int toShard, List<Integer> buckets) {
+    }
+
+    /**
+     * Outcome of a rebalance.
+     *
+     * Attributes:
+     * - bucketsMoved: Number of hash buckets that changed shard.
+     * - customersMoved: Number of customers copied to another shard.
+     */
+    public record ReshardResult(int bucketsMoved, long customersMoved) {
+    }
+
+    public CustomerResharder(CustomerShardDirectory directory, CustomerShards shards) {
+        this.directory = directory;
+        this.shards = shards;
+    }
+
+    /**
+     * Moves buckets until every shard owns the same number of buckets (give or take one).
+     */
+    public synchronized ReshardResult rebalance() {
+        resumeInterruptedMoves();
+        int bucketsMoved = 0;
+        long customersMoved = 0;
+        for (Move move : plan(directory.bucketsByShard(), shards.size())) {
+            List<Integer> buckets = move.buckets();
+            for (int from = 0; from < buckets.size(); from += BUCKETS_PER_STEP) {
+                List<Integer> step = buckets.subList(from, Math.min(from + BUCKETS_PER_STEP, buckets.size()));
+                customersMoved += moveBuckets(move.fromShard(), move.toShard(), step);
+                bucketsMoved += step.size();
+            }
+            log.info("Moved {} buckets from shard {} to shard {}", buckets.size(), move.fromShard(), move.toShard());
+        }
+        return new ReshardResult(bucketsMoved, customersMoved);
+    }
+
+    /**
+     * Plans the moves that give every shard its share of the buckets, taking buckets only from shards
+     * that have more than their share.
+     *
+     * @param bucketsByShard The buckets currently owned by each shard.
+     * @param shardCount The number of shards to spread the buckets over.
+     */
+    static List<Move> plan(Map<Integer, List<Integer>> bucketsByShard, int shardCount) {
+        int share = CustomerShardDirectory.BUCKETS / shardCount;
+        int remainder = CustomerShardDirectory.BUCKETS % shardCount;
+        // Buckets to give away, and how many each shard is missing.
+        List<Integer> surplusShards = new ArrayList<>();
+        List<List<Integer>> surplus = new ArrayList<>();
+        int[] missing = new int[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            List<Integer> owned = bucketsByShard.getOrDefault(shard, List.of());
+            int target = share + (shard < remainder ? 1 : 0);
+            if (owned.size() > target) {
+                surplusShards.add(shard);
+                surplus.add(owned.subList(target, owned.size()));
+            } else {
+                missing[shard] = target - owned.size();
+            }
+        }
+
+        List<Move> moves = new ArrayList<>();
+        int to = 0;
+        for (int i = 0; i < surplusShards.size(); i++) {
+            List<Integer> giving = surplus.get(i);
+            int offset = 0;
+            while (offset < giving.size()) {
+                while (missing[to] == 0) {
+                    to++;
+                }
+                int count = Math.min(missing[to], giving.size() - offset);
+                moves.add(new Move(surplusShards.get(i), to, List.copyOf(giving.subList(offset, offset + count))));
+                missing[to] -= count;
+                offset += count;
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Moves buckets from one shard to another. Safe to repeat after an interruption.
+     *
+     * @return the number of customers copied.
+     */
+    long moveBuckets(int fromShard, int toShard, List<Integer> buckets) {
+        Integer[] bucketArray = buckets.toArray(Integer[]::new);
+        JdbcTemplate source = shards.shard(fromShard);
+        JdbcTemplate target = shards.shard(toShard);
+
+        directory.markMoving(buckets);
+        List<Object[]> rows = source.query("SELECT id, name, email, age, bucket FROM customer WHERE bucket = ANY(?)",
+                (rs, rowNum) -> new Object[]{
+                        rs.getLong("id"), rs.getString("name"), rs.getString("email"), rs.getInt("age"), rs.getShort("bucket")
+                },
+                (Object) bucketArray);
+        target.batchUpdate("""
+                INSERT INTO customer(id, name, email, age, bucket) VALUES (?, ?, ?, ?, ?)
+                ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, email = EXCLUDED.email, age = EXCLUDED.age
+                """, rows);
+        directory.assign(buckets, toShard);
+        source.update("DELETE FROM customer WHERE bucket = ANY(?)", (Object) bucketArray);
+        return rows.size();
+    }
+
+    // A bucket left moving by an interrupted rebalance is still owned by its source shard, which has all
+    // its customers. Drop any partial copy on other shards and open the bucket for writes again.
+    private void resumeInterruptedMoves() {
+        directory.movingBucketsByShard().forEach((owner, buckets) -> {
+            Integer[] bucketArray = buckets.toArray(Integer[]::new);
+            for (int shard = 0; shard < shards.size(); shard++) {
+                if (shard != owner) {
+                    shards.shard(shard).update("DELETE FROM customer WHERE bucket = ANY(?)", (Object) bucketArray);
+                }
+            }
+            directory.assign(buckets, owner);
+            log.info("Reopened {} buckets of shard {} left moving by an interrupted rebalance", buckets.size(), owner);
+        });
+    }
+}
@@ -0,0 +1,69 @@
+package com.bachir.customer.shard;
+
+import com.bachir.customer.shard.CustomerResharder.ReshardResult;
+import com.bachir.customer.shard.CustomerShardEmailReconciler.ReconcileResult;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Administration of the sharded customer store: how buckets and customers are spread over the shards,
+ * the online rebalance to run after adding shards, and the repair of the email index.
+ */
+@RestController
+@RequestMapping("api/v1/admin/shards")
+@ConditionalOnProperty(name = "customer.sharding.enabled", havingValue = "true")
+public class CustomerShardController {
+
+    private final CustomerShardDirectory directory;
+    private final CustomerShards shards;
+    private final CustomerResharder resharder;
+    private final CustomerShardEmailReconciler reconciler;
+
+    public CustomerShardController(CustomerShardDirectory directory, CustomerShards shards, CustomerResharder resharder,
+                                   CustomerShardEmailReconciler reconciler) {
+        this.directory = directory;
+        this.shards = shards;
+        this.resharder = resharder;
+        this.reconciler = reconciler;
+    }
+
+    @GetMapping
+    public List<ShardStats> getShards() {
+        Map<Integer, List<Integer>> bucketsByShard = directory.bucketsByShard();
+        List<Long> customerCounts = shards.queryAll(
+                shard -> shard.queryForObject("SELECT count(*) FROM customer", Long.class));
+        List<ShardStats> stats = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            stats.add(new ShardStats(shard, bucketsByShard.getOrDefault(shard, List.of()).size(), customerCounts.get(shard)));
+        }
+        return stats;
+    }
+
+    // Runs in the request thread and returns once every bucket is in place; it can take a while on large shards.
+    @PostMapping("rebalance")
+    public ReshardResult rebalance() {
+        return resharder.rebalance();
+    }
+
+    // Repairs the email index after failed writes, see CustomerShardEmailReconciler. Also runs in the request thread.
+    @PostMapping("reconcile")
+    public ReconcileResult reconcile() {
+        return reconciler.reconcile();
+    }
+
+    /**
+     * Attributes:
+     * - shard: The position of the shard in customer.sharding.shard-urls.
+     * - buckets: Number of hash buckets the shard owns.
+     * - customers: Number of customer rows stored on the shard.
+     */
+    public record ShardStats(int shard, int buckets, long customers) {
+    }
+}
@@ -0,0 +1,282 @@
+package com.bachir.customer.shard;
+
+import com.bachir.customer.CustomerEmails;
+import com.bachir.exception.DuplicateResourceException;
+import com.bachir.exception.ResourceUnavailableException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * The directory database of the sharded customer store. It holds everything that must be global:
+ * - the customer id sequence, so ids are unique across shards;
+ * - the email index, so email uniqueness is enforced across shards and existsPersonWithEmail is one lookup;
+ *   it is keyed by the normalized email (see CustomerEmails), so emails differing only in case are the same;
+ * - the bucket map, which says which shard owns each of the BUCKETS hash buckets of the id space.
+ *
+ * Writes to a customer hold a shared lock on its bucket row for the whole write (see write), while
+ * the CustomerResharder takes an exclusive lock to mark a bucket as moving. A bucket therefore never moves
+ * under a running write, and writes to a moving bucket are refused until the move is done.
+ *
+ * Reads use a cached copy of the bucket map, reloaded when the map version changed and the copy is
+ * older than refreshIntervalMillis, or on demand with reloadShardOf.
+ */
+public class CustomerShardDirectory implements AutoCloseable {
+
+    /**
+     * Number of hash buckets. Fixed for the lifetime of the data: resharding moves whole buckets.
+     */
+    public static final int BUCKETS = 1024;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final long refreshIntervalMillis;
+
+    private volatile ShardMap shardMap;
+
+    // Cached bucket map: shards[bucket] is the shard that owns the bucket.
+    private record ShardMap(long version, int[] shards, long loadedAtMillis) {
+    }
+
+    /**
+     * @param dataSource The directory database, already migrated with db/shard-directory.
+     * @param shardCount Number of shards; only used to spread the buckets the first time the directory is used.
+     * @param refreshIntervalMillis How long a cached bucket map is trusted before its version is checked again.
+     */
+    public CustomerShardDirectory(DataSource dataSource, int shardCount, long refreshIntervalMillis) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        // Spread the buckets round-robin on first use; later changes only come from the resharder.
+        jdbcTemplate.update("""
+                INSERT INTO customer_shard_bucket(bucket, shard)
+                SELECT b, b % ? FROM generate_series(0, ? - 1) AS b
+                ON CONFLICT (bucket) DO NOTHING
+                """, shardCount, BUCKETS);
+        this.shardMap = loadShardMap();
+    }
+
+    /**
+     * @return the hash bucket of a customer id. Ids are mixed first, as sequential ids would otherwise
+     * fill the buckets in order.
+     */
+    public static int bucketOf(long id) {
+        long z = id * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) Math.floorMod(z, (long) BUCKETS);
+    }
+
+    public long nextId() {
+        Long id = jdbcTemplate.queryForObject("SELECT nextval('customer_id_seq')", Long.class);
+        return id == null ? 0 : id;
+    }
+
+    public boolean emailExists(String email) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM customer_email_index WHERE email = ?)", Boolean.class,
+                CustomerEmails.normalize(email)));
+    }
+
+    /**
+     * @return the id of the customer with that email, ignoring case and surrounding spaces, if any.
+     */
+    public Optional<Long> customerIdOfEmail(String email) {
+        return jdbcTemplate.queryForList("SELECT customer_id FROM customer_email_index WHERE email = ?", Long.class,
+                CustomerEmails.normalize(email)).stream().findFirst();
+    }
+
+    /**
+     * @return the shard that owns a customer id, from the cached bucket map.
+     */
+    public int shardOf(long id) {
+        ShardMap map = shardMap;
+        if (System.currentTimeMillis() - map.loadedAtMillis() > refreshIntervalMillis) {
+            map = refreshIfChanged(map);
+        }
+        return map.shards()[bucketOf(id)];
+    }
+
+    /**
+     * Reloads the bucket map if it changed and returns the shard of the id, or -1 if it did not change.
+     * Used when a customer was not found on the shard the cached map pointed to.
+     */
+    public int reloadShardOf(long id) {
+        ShardMap map = shardMap;
+        ShardMap current = refreshIfChanged(map);
+        return current.version() == map.version() ? -1 : current.shards()[bucketOf(id)];
+    }
+
+    /**
+     * Runs a write to a customer: within a directory transaction that holds a shared lock on the customer's
+     * bucket, calls shardWrite with the shard owning it. Email claims and releases made by shardWrite join
+     * the transaction, so they are rolled back when the shard write fails.
+     *
+     * This is not a distributed transaction: the shard write commits on its own, before the directory
+     * transaction. If the directory commit fails after it (lost connection, crash), the email index and the
+     * shard disagree until CustomerShardEmailReconciler repairs them.
+     *
+     * @throws ResourceUnavailableException if the bucket is being moved to another shard.
+     */
+    public <T> T write(long id, IntFunction<T> shardWrite) {
+        int bucket = bucketOf(id);
+        return transactionTemplate.execute(status -> {
+            Map<String, Object> row = jdbcTemplate.queryForMap(
+                    "SELECT shard, moving FROM customer_shard_bucket WHERE bucket = ? FOR SHARE", bucket);
+            if ((Boolean) row.get("moving")) {
+                throw new ResourceUnavailableException(
+                        "Customer with id [%s] is being moved to another shard, retry shortly".formatted(id));
+            }
+            return shardWrite.apply((Integer) row.get("shard"));
+        });
+    }
+
+    /**
+     * Reserves an email for a customer. Call from within write.
+     */
+    public void claimEmail(String email, long customerId) {
+        try {
+            jdbcTemplate.update("INSERT INTO customer_email_index(email, customer_id) VALUES (?, ?)",
+                    CustomerEmails.normalize(email), customerId);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateResourceException("Email already taken");
+        }
+    }
+
+    /**
+     * Frees an email. Call from within write.
+     */
+    public void releaseEmail(String email) {
+        jdbcTemplate.update("DELETE FROM customer_email_index WHERE email = ?", CustomerEmails.normalize(email));
+    }
+
+    /**
+     * Reserves an email for a customer if no customer has it, outside of any write. Used by the
+     * CustomerShardEmailReconciler to index a customer whose claim was lost.
+     *
+     * @return the id of the customer that has the email now: customerId, or the one that already had it.
+     */
+    public long claimEmailIfFree(String normalizedEmail, long customerId) {
+        jdbcTemplate.update("INSERT INTO customer_email_index(email, customer_id) VALUES (?, ?) ON CONFLICT (email) DO NOTHING",
+                normalizedEmail, customerId);
+        Long owner = jdbcTemplate.queryForObject("SELECT customer_id FROM customer_email_index WHERE email = ?",
+                Long.class, normalizedEmail);
+        return owner == null ? customerId : owner;
+    }
+
+    /**
+     * Frees an email if it is still reserved for that customer. Call from within write.
+     *
+     * @return whether it was.
+     */
+    public boolean releaseEmailOf(String normalizedEmail, long customerId) {
+        return jdbcTemplate.update("DELETE FROM customer_email_index WHERE email = ? AND customer_id = ?",
+                normalizedEmail, customerId) > 0;
+    }
+
+    /**
+     * @return up to limit entries of the email index after afterEmail, in email order: email -> customer id.
+     */
+    public Map<String, Long> emailsAfter(String afterEmail, int limit) {
+        Map<String, Long> emails = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT email, customer_id FROM customer_email_index WHERE email > ? ORDER BY email LIMIT ?",
+                rs -> {
+                    emails.put(rs.getString("email"), rs.getLong("customer_id"));
+                }, afterEmail, limit);
+        return emails;
+    }
+
+    /**
+     * @return the buckets owned by each shard, including moving buckets (still owned by their source).
+     */
+    public Map<Integer, List<Integer>> bucketsByShard() {
+        Map<Integer, List<Integer>> buckets = new TreeMap<>();
+        jdbcTemplate.query("SELECT bucket, shard FROM customer_shard_bucket ORDER BY bucket", rs -> {
+            buckets.computeIfAbsent(rs.getInt("shard"), shard -> new ArrayList<>()).add(rs.getInt("bucket"));
+        });
+        return buckets;
+    }
+
+    /**
+     * @return the buckets left moving by an interrupted move, by the shard that still owns them.
+     */
+    public Map<Integer, List<Integer>> movingBucketsByShard() {
+        Map<Integer, List<Integer>> buckets = new TreeMap<>();
+        jdbcTemplate.query("SELECT bucket, shard FROM customer_shard_bucket WHERE moving ORDER BY bucket", rs -> {
+            buckets.computeIfAbsent(rs.getInt("shard"), shard -> new ArrayList<>()).add(rs.getInt("bucket"));
+        });
+        return buckets;
+    }
+
+    /**
+     * Stops writes to the buckets. Waits for the writes already running on them to commit.
+     */
+    public void markMoving(List<Integer> buckets) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE customer_shard_bucket SET moving = TRUE WHERE bucket = ANY(?)",
+                    (Object) buckets.toArray(Integer[]::new));
+            jdbcTemplate.update("UPDATE customer_shard_map_version SET version = version + 1");
+        });
+    }
+
+    /**
+     * Hands the buckets to a shard and opens them for writes again.
+     */
+    public void assign(List<Integer> buckets, int shard) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE customer_shard_bucket SET shard = ?, moving = FALSE WHERE bucket = ANY(?)",
+                    shard, buckets.toArray(Integer[]::new));
+            jdbcTemplate.update("UPDATE customer_shard_map_version SET version = version + 1");
+        });
+        shardMap = loadShardMap();
+    }
+
+    private ShardMap refreshIfChanged(ShardMap map) {
+        Long version = jdbcTemplate.queryForObject("SELECT version FROM customer_shard_map_version", Long.class);
+        ShardMap current = version != null && version != map.version()
+                ? loadShardMap()
+                : new ShardMap(map.version(), map.shards(), System.currentTimeMillis());
+        shardMap = current;
+        return current;
+    }
+
+    // Reads the version and the buckets in one snapshot, so the version always matches the buckets.
+    private ShardMap loadShardMap() {
+        return snapshotTemplate.execute(status -> {
+            Long version = jdbcTemplate.queryForObject("SELECT version FROM customer_shard_map_version", Long.class);
+            int[] shards = new int[BUCKETS];
+            jdbcTemplate.query("SELECT bucket, shard FROM customer_shard_bucket",
+                    rs -> { shards[rs.getInt("bucket")] = rs.getInt("shard"); });
+            return new ShardMap(version == null ? 0 : version, shards, System.currentTimeMillis());
+        });
+    }
+
+    /**
+     * Closes the connection pool of the directory database.
+     */
+    @Override
+    public void close() throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
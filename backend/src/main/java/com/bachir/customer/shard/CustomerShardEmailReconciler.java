@@ -0,0 +1,110 @@
+package com.bachir.customer.shard;
+
+import com.bachir.customer.CustomerEmails;
+import com.bachir.exception.ResourceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repairs the email index of the directory after a write whose shard part committed but whose directory
+ * part did not (see CustomerShardDirectory.write):
+ * 1. Every customer of a shard whose email is missing from the index is indexed again. If another customer
+ *    already has the email, both are left as they are and the conflict is logged, to be settled by hand.
+ * 2. Every index entry whose customer does not exist, or has another email, on the shard owning it is
+ *    released. The check runs within a directory write, so it never races a move of the bucket; entries of
+ *    moving buckets are skipped and left for the next run.
+ *
+ * Safe to run while the application serves requests: a write in flight commits its shard part first, so its
+ * index entry is never released before the customer exists, and a claim racing step 1 waits for it.
+ * Costs a query per customer and per index entry.
+ */
+public class CustomerShardEmailReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerShardEmailReconciler.class);
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final CustomerShardDirectory directory;
+    private final CustomerShards shards;
+
+    /**
+     * Outcome of a reconciliation.
+     *
+     * Attributes:
+     * - claimed: Customers whose email was missing from the index and was added.
+     * - released: Index entries removed, as their customer or its email no longer exists.
+     * - conflicts: Customers whose email belongs to another customer in the index.
+     * - skipped: Index entries not checked because their bucket was moving.
+     */
+    public record ReconcileResult(long claimed, long released, long conflicts, long skipped) {
+    }
+
+    public CustomerShardEmailReconciler(CustomerShardDirectory directory, CustomerShards shards) {
+        this.directory = directory;
+        this.shards = shards;
+    }
+
+    public synchronized ReconcileResult reconcile() {
+        AtomicLong claimed = new AtomicLong();
+        AtomicLong conflicts = new AtomicLong();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int owner = shard;
+            shards.shard(shard).query("SELECT id, email FROM customer", rs -> {
+                long id = rs.getLong("id");
+                // Copies of a moving bucket on its target shard are not customers yet
+                if (directory.shardOf(id) != owner) {
+                    return;
+                }
+                String email = CustomerEmails.normalize(rs.getString("email"));
+                Optional<Long> alreadyIndexed = directory.customerIdOfEmail(email);
+                long indexed = alreadyIndexed.orElseGet(() -> directory.claimEmailIfFree(email, id));
+                if (indexed == id) {
+                    if (alreadyIndexed.isEmpty()) {
+                        claimed.incrementAndGet();
+                    }
+                } else {
+                    conflicts.incrementAndGet();
+                    log.warn("Customers {} and {} both have the email [{}], fix one of them", indexed, id, email);
+                }
+            });
+        }
+
+        long released = 0;
+        long skipped = 0;
+        String afterEmail = "";
+        Map<String, Long> page;
+        do {
+            page = directory.emailsAfter(afterEmail, PAGE_SIZE);
+            for (Map.Entry<String, Long> entry : page.entrySet()) {
+                try {
+                    if (releaseIfStale(entry.getKey(), entry.getValue())) {
+                        released++;
+                    }
+                } catch (ResourceUnavailableException e) {
+                    skipped++;
+                }
+                afterEmail = entry.getKey();
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        ReconcileResult result = new ReconcileResult(claimed.get(), released, conflicts.get(), skipped);
+        log.info("Reconciled the email index with the shards: {}", result);
+        return result;
+    }
+
+    private boolean releaseIfStale(String email, long customerId) {
+        return directory.write(customerId, shard -> {
+            List<String> emails = shards.shard(shard).queryForList(
+                    "SELECT email FROM customer WHERE id = ?", String.class, customerId);
+            if (!emails.isEmpty() && email.equals(CustomerEmails.normalize(emails.get(0)))) {
+                return false;
+            }
+            return directory.releaseEmailOf(email, customerId);
+        });
+    }
+}
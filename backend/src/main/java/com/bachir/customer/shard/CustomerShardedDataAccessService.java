@@ -0,0 +1,187 @@
+package com.bachir.customer.shard;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.CustomerDao;
+import com.bachir.customer.CustomerIndexedRowMapper;
+import com.bachir.customer.CustomerRowMapper;
+import com.bachir.rowmapper.IndexedRowMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * CustomerDao implementation that spreads customers over several Postgres databases (shards) by a hash of their id.
+ *
+ * - Each id hashes to one of CustomerShardDirectory.BUCKETS buckets, and the directory maps every bucket to a shard.
+ * - Ids come from a sequence in the directory database, so they are unique across shards.
+ * - Emails are unique across shards thanks to the email index in the directory database;
+ *   existsPersonWithEmail is a single lookup there.
+ * - Lookups by id go to one shard. selectAllCustomers and selectCustomersPage query every shard in parallel
+ *   and merge the results.
+ *
+ * Enabled with customer.sharding.enabled=true (see CustomerShardingConfiguration), and used by the service
+ * with customer.data-access=sharded.
+ *
+ * @author "sharded" indicates the customers are spread over several databases.
+ */
+@Repository("sharded")
+@ConditionalOnProperty(name = "customer.sharding.enabled", havingValue = "true")
+public class CustomerShardedDataAccessService implements CustomerDao {
+
+    // Mapped by position by customerRowMapper: checked on every shard at startup.
+    private static final String SELECT_COLUMNS = "SELECT " + CustomerIndexedRowMapper.SELECT_LIST + " FROM customer";
+
+    private final CustomerShardDirectory directory;
+    private final CustomerShards shards;
+    private final CustomerRowMapper customerRowMapper;
+
+    // Used to announce every write with a CustomerChangedEvent.
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CustomerShardedDataAccessService(CustomerShardDirectory directory, CustomerShards shards,
+                                            CustomerRowMapper customerRowMapper,
+                                            ApplicationEventPublisher eventPublisher) {
+        this.directory = directory;
+        this.shards = shards;
+        this.customerRowMapper = customerRowMapper;
+        this.eventPublisher = eventPublisher;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            IndexedRowMapper.check(shards.shard(shard), SELECT_COLUMNS, customerRowMapper);
+        }
+    }
+
+    /**
+     * Retrieves all customers of all shards, ordered by id.
+     */
+    @Override
+    public List<Customer> selectAllCustomers() {
+        List<List<Customer>> perShard = shards.queryAll(shard -> shard.query(SELECT_COLUMNS, customerRowMapper));
+        return merge(perShard, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves one page of customers ordered by id (keyset paging): the first {@code limit} customers
+     * with an id greater than {@code afterId}. Pass the last id of a page to get the next one.
+     * Every shard returns at most {@code limit} rows, so a page costs the same whatever its position.
+     */
+    @Override
+    public List<Customer> selectCustomersPage(long afterId, int limit) {
+        List<List<Customer>> perShard = shards.queryAll(shard -> shard.query(
+                SELECT_COLUMNS + " WHERE id > ? ORDER BY id LIMIT ?", customerRowMapper, afterId, limit));
+        return merge(perShard, limit);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        Optional<Customer> customer = selectFromShard(directory.shardOf(id), id);
+        if (customer.isEmpty()) {
+            // The bucket may just have moved to another shard: retry once with a fresh bucket map.
+            int movedTo = directory.reloadShardOf(id);
+            if (movedTo >= 0) {
+                customer = selectFromShard(movedTo, id);
+            }
+        }
+        return customer;
+    }
+
+    @Override
+    public Customer insertCustomer(Customer customer) {
+        long id = directory.nextId();
+        directory.write(id, shard -> {
+            directory.claimEmail(customer.getEmail(), id);
+            return shards.shard(shard).update(
+                    "INSERT INTO customer(id, name, email, age, bucket) VALUES (?, ?, ?, ?, ?)",
+                    id, customer.getName(), customer.getEmail(), customer.getAge(), CustomerShardDirectory.bucketOf(id));
+        });
+        customer.setId(id);
+        eventPublisher.publishEvent(CustomerChangedEvent.inserted(id));
+        return customer;
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        return directory.customerIdOfEmail(email).flatMap(this::selectCustomerById);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return directory.emailExists(email);
+    }
+
+    @Override
+    public boolean existsPersonWithId(long id) {
+        return selectCustomerById(id).isPresent();
+    }
+
+    @Override
+    public boolean deleteCustomerById(long id) {
+        int deleted = directory.write(id, shard -> {
+            List<String> emails = shards.shard(shard).queryForList(
+                    "DELETE FROM customer WHERE id = ? RETURNING email", String.class, id);
+            emails.forEach(directory::releaseEmail);
+            return emails.size();
+        });
+        if (deleted == 0) {
+            return false;
+        }
+        eventPublisher.publishEvent(CustomerChangedEvent.deleted(id));
+        return true;
+    }
+
+    /**
+     * Updates the non-null fields of the customer, moving its email in the email index when it changed.
+     */
+    @Override
+    public void updateCustomer(Customer customer) {
+        long id = customer.getId();
+        directory.write(id, shard -> {
+            JdbcTemplate jdbcTemplate = shards.shard(shard);
+            if (customer.getEmail() != null) {
+                List<String> currentEmail = jdbcTemplate.queryForList(
+                        "SELECT email FROM customer WHERE id = ?", String.class, id);
+                if (!currentEmail.isEmpty() && !currentEmail.get(0).equals(customer.getEmail())) {
+                    directory.releaseEmail(currentEmail.get(0));
+                    directory.claimEmail(customer.getEmail(), id);
+                }
+            }
+            return jdbcTemplate.update("""
+                    UPDATE customer
+                    SET name = COALESCE(?, name), email = COALESCE(?, email), age = COALESCE(?, age)
+                    WHERE id = ?
+                    """, customer.getName(), customer.getEmail(), customer.getAge(), id);
+        });
+        eventPublisher.publishEvent(CustomerChangedEvent.updated(id));
+    }
+
+    private Optional<Customer> selectFromShard(int shard, long id) {
+        return shards.shard(shard).query(SELECT_COLUMNS + " WHERE id = ?", customerRowMapper, id)
+                .stream()
+                .findFirst();
+    }
+
+    // Merges the shard results by id and keeps the first limit customers.
+    // A customer can briefly be on two shards while its bucket moves; it is only returned once.
+    private static List<Customer> merge(List<List<Customer>> perShard, int limit) {
+        TreeMap<Long, Customer> byId = new TreeMap<>();
+        for (List<Customer> customers : perShard) {
+            for (Customer customer : customers) {
+                byId.putIfAbsent(customer.getId(), customer);
+            }
+        }
+        List<Customer> merged = new ArrayList<>(Math.min(byId.size(), limit));
+        for (Customer customer : byId.values()) {
+            if (merged.size() == limit) {
+                break;
+            }
+            merged.add(customer);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,78 @@
+package com.bachir.customer.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sharded customer store, enabled with customer.sharding.enabled=true.
+ *
+ * The directory and every shard are separate Postgres databases, reached with the spring.datasource
+ * credentials and spring.datasource.hikari.* pool settings. Their schemas are migrated at startup by
+ * Flyway, from db/shard-directory and db/shard. They are deliberately not exposed as DataSource beans,
+ * so the application's own DataSource, JPA and Flyway setup stay as they are.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "customer.sharding.enabled", havingValue = "true")
+public class CustomerShardingConfiguration {
+
+    @Bean
+    public CustomerShards customerShards(DataSourceProperties properties, Environment environment,
+                                         @Value("${customer.sharding.shard-urls}") List<String> shardUrls) {
+        List<DataSource> dataSources = new ArrayList<>();
+        for (String url : shardUrls) {
+            dataSources.add(migratedPool("customer-shard-" + dataSources.size(), url, "db/shard", properties, environment));
+        }
+        return new CustomerShards(dataSources);
+    }
+
+    @Bean
+    public CustomerShardDirectory customerShardDirectory(
+            DataSourceProperties properties, Environment environment, CustomerShards customerShards,
+            @Value("${customer.sharding.directory-url}") String directoryUrl,
+            @Value("${customer.sharding.map-refresh-interval:1s}") Duration mapRefreshInterval) {
+        DataSource dataSource = migratedPool("customer-shard-directory", directoryUrl, "db/shard-directory",
+                properties, environment);
+        return new CustomerShardDirectory(dataSource, customerShards.size(), mapRefreshInterval.toMillis());
+    }
+
+    @Bean
+    public CustomerResharder customerResharder(CustomerShardDirectory customerShardDirectory,
+                                               CustomerShards customerShards) {
+        return new CustomerResharder(customerShardDirectory, customerShards);
+    }
+
+    @Bean
+    public CustomerShardEmailReconciler customerShardEmailReconciler(CustomerShardDirectory customerShardDirectory,
+                                                                     CustomerShards customerShards) {
+        return new CustomerShardEmailReconciler(customerShardDirectory, customerShards);
+    }
+
+    private static HikariDataSource migratedPool(String poolName, String url, String migrations,
+                                                 DataSourceProperties properties, Environment environment) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url.trim())
+                .username(properties.determineUsername())
+                .password(properties.determinePassword())
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(poolName);
+        Flyway.configure().dataSource(dataSource).locations("classpath:" + migrations).load().migrate();
+        return dataSource;
+    }
+}
@@ -0,0 +1,77 @@
+package com.bachir.customer.shard;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * The shard databases of the sharded customer store, and a small thread pool to query all of them at once.
+ *
+ * Shard numbers are the positions in the list given to the constructor. Once data is stored, the order
+ * must not change; new shards are appended at the end and receive buckets from the CustomerResharder.
+ */
+public class CustomerShards implements AutoCloseable {
+
+    private final List<DataSource> dataSources;
+    private final List<JdbcTemplate> jdbcTemplates;
+    private final ExecutorService fanOutExecutor;
+
+    public CustomerShards(List<DataSource> dataSources) {
+        this.dataSources = List.copyOf(dataSources);
+        this.jdbcTemplates = this.dataSources.stream().map(JdbcTemplate::new).toList();
+        this.fanOutExecutor = Executors.newFixedThreadPool(this.dataSources.size(), runnable -> {
+            Thread thread = new Thread(runnable, "customer-shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int size() {
+        return jdbcTemplates.size();
+    }
+
+    public JdbcTemplate shard(int shard) {
+        return jdbcTemplates.get(shard);
+    }
+
+    /**
+     * Runs a query on every shard in parallel.
+     *
+     * @return the result of every shard, in shard order.
+     */
+    public <T> List<T> queryAll(Function<JdbcTemplate, T> query) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(jdbcTemplates.size());
+        for (JdbcTemplate jdbcTemplate : jdbcTemplates) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(jdbcTemplate), fanOutExecutor));
+        }
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            // Surface the shard's own exception (usually a DataAccessException), not the wrapper.
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the fan-out threads and closes the connection pools of the shards.
+     */
+    @Override
+    public void close() throws Exception {
+        fanOutExecutor.shutdownNow();
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
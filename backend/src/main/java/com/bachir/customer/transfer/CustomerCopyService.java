@@ -0,0 +1,214 @@
+package com.bachir.customer.transfer;
+
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.CustomerField;
+import com.bachir.exception.RequestValidationException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Bulk import and export of customers using PostgreSQL's COPY protocol.
+ *
+ * Rows are streamed straight between the client stream and the database through the
+ * driver's CopyManager, so memory use stays constant no matter how many rows are moved
+ * and no Customer objects are ever created.
+ *
+ * Imports are copied into a temporary staging table first and then merged into the
+ * customer table with a single set-based MERGE statement, so emails stay unique:
+ * a row whose email already exists updates the existing customer instead of failing
+ * the whole import.
+ */
+@Service
+public class CustomerCopyService {
+
+    // Columns a CSV file may contain. 'id' is accepted so that exported files can be re-imported,
+    // but it is ignored by the merge: the target environment always generates its own ids.
+    private static final Set<String> IMPORT_COLUMNS = Set.of("id", "name", "email", "age");
+    private static final List<String> REQUIRED_COLUMNS = List.of("name", "email", "age");
+
+    // Dropped automatically at the end of the import transaction.
+    private static final String CREATE_STAGING_TABLE_SQL = """
+            CREATE TEMP TABLE customer_import_staging (
+                id BIGINT,
+                name TEXT,
+                email TEXT,
+                age INT
+            ) ON COMMIT DROP
+            """;
+
+    // DISTINCT ON keeps a single row per email (the last one in the file), otherwise
+    // MERGE would insert the same email twice in one import.
+    // Existing customers are found through customer_email, and updated by id: the customer
+    // table is partitioned by id and has no unique constraint on email to use ON CONFLICT with.
+    private static final String MERGE_SQL = """
+            MERGE INTO customer c
+            USING (
+                SELECT s.*, e.customer_id
+                FROM (
+                    SELECT DISTINCT ON (email) name, email, age
+                    FROM customer_import_staging
+                    ORDER BY email, ctid DESC
+                ) s
+                LEFT JOIN customer_email e ON e.email = s.email
+            ) source
+            ON c.id = source.customer_id
+            WHEN MATCHED THEN UPDATE SET name = source.name, age = source.age
+            WHEN NOT MATCHED THEN INSERT (name, email, age) VALUES (source.name, source.email, source.age)
+            """;
+
+    // The column list comes from CustomerField, never from the request itself.
+    private static final String EXPORT_SQL =
+            "COPY (SELECT %s FROM customer ORDER BY id) TO STDOUT WITH (FORMAT csv, HEADER true)";
+
+    // Longest header line we are willing to buffer while detecting the column list.
+    private static final int MAX_HEADER_LENGTH = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CustomerCopyService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                               ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Imports customers from a CSV stream. The first line must be a header naming the columns
+     * (any order of name, email, age and optionally id).
+     *
+     * @param csv the CSV stream, read until the end but never buffered as a whole.
+     * @return how many rows were read from the file and how many customers were inserted or updated.
+     */
+    public CustomerImportResult importCsv(InputStream csv) {
+        BufferedInputStream input = new BufferedInputStream(csv);
+        List<String> columns = readHeader(input);
+        String copySql = "COPY customer_import_staging (%s) FROM STDIN WITH (FORMAT csv, HEADER true)"
+                .formatted(String.join(", ", columns));
+
+        CustomerImportResult result = transactionTemplate.execute(status -> jdbcTemplate.execute((ConnectionCallback<CustomerImportResult>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING_TABLE_SQL);
+            }
+            long copied = copyIn(connection, copySql, input);
+            long merged;
+            try (Statement statement = connection.createStatement()) {
+                merged = statement.executeUpdate(MERGE_SQL);
+            }
+            return new CustomerImportResult(copied, merged);
+        }));
+        eventPublisher.publishEvent(CustomerChangedEvent.bulk());
+        return result;
+    }
+
+    /**
+     * Writes every customer as CSV (with a header line) to the given stream.
+     *
+     * @param out the destination stream, e.g. the HTTP response body or a file.
+     * @return the number of rows written.
+     */
+    public long exportCsv(OutputStream out) {
+        return exportCsv(CustomerField.ALL, out);
+    }
+
+    /**
+     * Writes the given columns of every customer as CSV (with a header line) to the given stream.
+     *
+     * @param fields the columns to write, in CustomerField order.
+     * @param out the destination stream.
+     * @return the number of rows written.
+     */
+    public long exportCsv(Set<CustomerField> fields, OutputStream out) {
+        String copySql = EXPORT_SQL.formatted(CustomerField.columns(fields));
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return copyManager(connection).copyOut(copySql, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return rows == null ? 0 : rows;
+    }
+
+    /**
+     * Runs a raw COPY ... FROM STDIN statement. Used by bulk loaders that already guarantee
+     * their rows satisfy the table constraints and therefore do not need the staging merge.
+     *
+     * @param copySql the COPY statement to run.
+     * @param data the data stream in the format named by the statement.
+     * @return the number of rows copied.
+     */
+    public long copyIn(String copySql, InputStream data) {
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> copyIn(connection, copySql, data));
+        eventPublisher.publishEvent(CustomerChangedEvent.bulk());
+        return rows == null ? 0 : rows;
+    }
+
+    private static long copyIn(Connection connection, String copySql, InputStream data) throws SQLException {
+        try {
+            return copyManager(connection).copyIn(copySql, data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The pooled connection is a proxy, so unwrap it to reach the driver's COPY API.
+    private static CopyManager copyManager(Connection connection) throws SQLException {
+        return connection.unwrap(PGConnection.class).getCopyAPI();
+    }
+
+    // Peeks at the header line to build the COPY column list, then rewinds the stream so COPY can skip it itself.
+    private static List<String> readHeader(BufferedInputStream input) {
+        try {
+            input.mark(MAX_HEADER_LENGTH + 1);
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            int b;
+            while ((b = input.read()) != -1 && b != '\n') {
+                if (header.size() == MAX_HEADER_LENGTH) {
+                    throw new RequestValidationException("CSV header line is too long");
+                }
+                header.write(b);
+            }
+            input.reset();
+
+            List<String> columns = new ArrayList<>();
+            for (String column : header.toString(StandardCharsets.UTF_8).split(",")) {
+                String name = column.strip().replace("\"", "").toLowerCase(Locale.ROOT);
+                if (!IMPORT_COLUMNS.contains(name)) {
+                    throw new RequestValidationException("Unknown CSV column [%s]".formatted(name));
+                }
+                if (columns.contains(name)) {
+                    throw new RequestValidationException("Duplicate CSV column [%s]".formatted(name));
+                }
+                columns.add(name);
+            }
+            if (!columns.containsAll(REQUIRED_COLUMNS)) {
+                throw new RequestValidationException("CSV header must contain the columns " + REQUIRED_COLUMNS);
+            }
+            return columns;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
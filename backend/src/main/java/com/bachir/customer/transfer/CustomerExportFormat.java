@@ -0,0 +1,89 @@
+package com.bachir.customer.transfer;
+
+import com.bachir.customer.codec.CustomerProtobufHttpMessageConverter;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Output formats of the streaming customer export, negotiated from the Accept header.
+ * CSV comes first so it stays the default for clients that accept anything.
+ */
+public enum CustomerExportFormat {
+    CSV(new MediaType("text", "csv")),
+    JSON(MediaType.APPLICATION_JSON),
+    SMILE(new MediaType("application", "x-jackson-smile")),
+    CBOR(MediaType.APPLICATION_CBOR),
+    PROTOBUF(CustomerProtobufHttpMessageConverter.APPLICATION_PROTOBUF);
+
+    private final MediaType mediaType;
+
+    CustomerExportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Picks the export format for an Accept header value, honouring quality factors.
+     *
+     * @param accept the raw Accept header, may be null.
+     * @return the best matching format, CSV when the header is absent.
+     * @throws HttpMediaTypeNotAcceptableException (406) when none of the formats is acceptable, or the header
+     *                                             cannot be parsed.
+     */
+    public static CustomerExportFormat fromAcceptHeader(String accept) throws HttpMediaTypeNotAcceptableException {
+        if (accept == null || accept.isBlank()) {
+            return CSV;
+        }
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            throw new HttpMediaTypeNotAcceptableException("Invalid Accept header: " + e.getMessage());
+        }
+        // The quality of a format is the one of the most specific range that includes it (RFC 9110), so
+        // "text/csv;q=0, */*" accepts everything but CSV. Between equal qualities, the format named by the more
+        // specific range wins ("application/*, application/x-protobuf" is protobuf), then the order of the formats.
+        acceptedTypes.sort(Comparator.comparingInt(CustomerExportFormat::specificity).reversed());
+        CustomerExportFormat best = null;
+        double bestQuality = 0;
+        int bestRange = Integer.MAX_VALUE;
+        for (CustomerExportFormat format : values()) {
+            for (int range = 0; range < acceptedTypes.size(); range++) {
+                if (acceptedTypes.get(range).includes(format.mediaType)) {
+                    double quality = acceptedTypes.get(range).getQualityValue();
+                    if (quality > bestQuality || (quality == bestQuality && quality > 0 && range < bestRange)) {
+                        best = format;
+                        bestQuality = quality;
+                        bestRange = range;
+                    }
+                    break;
+                }
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        throw new HttpMediaTypeNotAcceptableException(Arrays.stream(values()).map(CustomerExportFormat::mediaType).toList());
+    }
+
+    // Specificity of a media range alone: MediaType's own ordering puts higher qualities first, which would let
+    // "*/*;q=0.1" override "text/csv;q=0".
+    private static int specificity(MediaType range) {
+        if (range.isWildcardType()) {
+            return 0;
+        }
+        if (range.isWildcardSubtype()) {
+            return 1;
+        }
+        int parameters = range.getParameters().size() - (range.getParameter("q") != null ? 1 : 0);
+        return 2 + parameters;
+    }
+}
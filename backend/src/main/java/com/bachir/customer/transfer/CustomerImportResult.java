@@ -0,0 +1,15 @@
+package com.bachir.customer.transfer;
+
+/**
+ * Outcome of a bulk CSV import.
+ *
+ * Attributes:
+ * - rowsRead: The number of data rows copied from the CSV file into the staging table.
+ * - rowsMerged: The number of customers inserted or updated by the merge. This can be lower than
+ *   rowsRead when the file contains the same email more than once.
+ */
+public record CustomerImportResult(
+        long rowsRead,
+        long rowsMerged
+) {
+}
@@ -0,0 +1,137 @@
+package com.bachir.customer.transfer;
+
+import com.bachir.customer.CustomerField;
+import com.bachir.customer.codec.CustomerProtobufCodec;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedOutputStream;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Streams every customer to an output stream in the negotiated export format.
+ *
+ * CSV is delegated to CustomerCopyService (COPY TO STDOUT). The other formats read the table
+ * through a server-side cursor and write each row with a streaming encoder as soon as it is
+ * fetched, so like the CSV export they run in constant memory and never build Customer objects.
+ *
+ * With ?fields=, only the selected columns are read, and written, in every format.
+ */
+@Service
+public class CustomerStreamingExporter {
+
+    // The column list comes from CustomerField, never from the request itself.
+    private static final String SELECT_SQL = "SELECT %s FROM customer ORDER BY id";
+
+    // Rows fetched per round trip. PostgreSQL only honours the fetch size inside a transaction,
+    // which is why the export runs in a read-only transaction.
+    private static final int FETCH_SIZE = 1000;
+
+    private static final int PROTOBUF_BUFFER_SIZE = 8192;
+
+    private final CustomerCopyService customerCopyService;
+    private final JdbcTemplate cursorJdbcTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final JsonFactory jsonFactory;
+    private final JsonFactory smileFactory;
+    private final JsonFactory cborFactory;
+
+    public CustomerStreamingExporter(CustomerCopyService customerCopyService,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     ObjectMapper objectMapper,
+                                     MappingJackson2SmileHttpMessageConverter smileConverter,
+                                     MappingJackson2CborHttpMessageConverter cborConverter) {
+        this.customerCopyService = customerCopyService;
+        this.cursorJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cursorJdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.jsonFactory = objectMapper.getFactory();
+        this.smileFactory = smileConverter.getObjectMapper().getFactory();
+        this.cborFactory = cborConverter.getObjectMapper().getFactory();
+    }
+
+    /**
+     * Writes the given fields of all customers in the given format.
+     *
+     * @param format the export format.
+     * @param fields the fields to read and write, in CustomerField order.
+     * @param out the destination stream; it is flushed but not closed.
+     */
+    public void export(CustomerExportFormat format, Set<CustomerField> fields, OutputStream out) throws IOException {
+        switch (format) {
+            case CSV -> customerCopyService.exportCsv(fields, out);
+            case JSON -> exportJackson(jsonFactory, fields, out);
+            case SMILE -> exportJackson(smileFactory, fields, out);
+            case CBOR -> exportJackson(cborFactory, fields, out);
+            case PROTOBUF -> exportProtobuf(fields, out);
+        }
+    }
+
+    // Writes a JSON array (or its Smile/CBOR equivalent) with the same field names and order as the JSON API.
+    private void exportJackson(JsonFactory factory, Set<CustomerField> fields, OutputStream out) throws IOException {
+        boolean id = fields.contains(CustomerField.ID);
+        boolean name = fields.contains(CustomerField.NAME);
+        boolean email = fields.contains(CustomerField.EMAIL);
+        boolean age = fields.contains(CustomerField.AGE);
+        try (JsonGenerator generator = factory.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartArray();
+            forEachRow(fields, rs -> {
+                generator.writeStartObject();
+                if (id) generator.writeNumberField("id", rs.getLong("id"));
+                if (name) generator.writeStringField("name", rs.getString("name"));
+                if (email) generator.writeStringField("email", rs.getString("email"));
+                if (age) generator.writeNumberField("age", rs.getInt("age"));
+                generator.writeEndObject();
+            });
+            generator.writeEndArray();
+        }
+    }
+
+    // Writes a CustomerList message one 'customers' entry at a time; fields that were not selected are left unset.
+    private void exportProtobuf(Set<CustomerField> fields, OutputStream out) throws IOException {
+        boolean id = fields.contains(CustomerField.ID);
+        boolean name = fields.contains(CustomerField.NAME);
+        boolean email = fields.contains(CustomerField.EMAIL);
+        boolean age = fields.contains(CustomerField.AGE);
+        CodedOutputStream output = CodedOutputStream.newInstance(out, PROTOBUF_BUFFER_SIZE);
+        forEachRow(fields, rs -> CustomerProtobufCodec.writeEmbeddedCustomer(output,
+                CustomerProtobufCodec.CUSTOMER_LIST_CUSTOMERS,
+                id ? rs.getLong("id") : null,
+                name ? rs.getString("name") : null,
+                email ? rs.getString("email") : null,
+                age ? rs.getInt("age") : null));
+        output.flush();
+    }
+
+    private void forEachRow(Set<CustomerField> fields, RowWriter rowWriter) {
+        String sql = SELECT_SQL.formatted(CustomerField.columns(fields));
+        readOnlyTransactionTemplate.executeWithoutResult(status ->
+                cursorJdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                    try {
+                        rowWriter.write(rs);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+}
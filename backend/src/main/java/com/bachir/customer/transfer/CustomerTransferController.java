@@ -0,0 +1,60 @@
+package com.bachir.customer.transfer;
+
+import com.bachir.customer.CustomerField;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.Set;
+
+// Bulk endpoints used to move customer data between environments.
+// They live next to the regular customer API but stream rows instead of mapping them to objects.
+@RestController
+@RequestMapping("api/v1/customers")
+public class CustomerTransferController {
+
+    static final String TEXT_CSV = "text/csv";
+
+    private final CustomerCopyService customerCopyService;
+    private final CustomerStreamingExporter customerStreamingExporter;
+
+    public CustomerTransferController(CustomerCopyService customerCopyService,
+                                      CustomerStreamingExporter customerStreamingExporter) {
+        this.customerCopyService = customerCopyService;
+        this.customerStreamingExporter = customerStreamingExporter;
+    }
+
+    // Handler for importing customers from a CSV request body.
+    // The body is handed to COPY as a stream, so it is never held in memory.
+    @PostMapping(value = "import", consumes = TEXT_CSV)
+    public CustomerImportResult importCustomers(HttpServletRequest request) throws IOException {
+        return customerCopyService.importCsv(request.getInputStream());
+    }
+
+    // Handler for exporting all customers.
+    // The format follows the Accept header (CSV by default, or JSON, Smile, CBOR and protobuf),
+    // and StreamingResponseBody writes the rows straight to the socket on an async thread.
+    // ?fields=id,email exports, and reads, only those columns.
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportCustomers(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(name = "fields", required = false) String fields) throws HttpMediaTypeNotAcceptableException {
+        CustomerExportFormat format = CustomerExportFormat.fromAcceptHeader(accept);
+        Set<CustomerField> selected = CustomerField.parse(fields);
+        StreamingResponseBody body = out -> customerStreamingExporter.export(format, selected, out);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(format.mediaType());
+        if (format == CustomerExportFormat.CSV) {
+            response.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"customers.csv\"");
+        }
+        return response.body(body);
+    }
+}
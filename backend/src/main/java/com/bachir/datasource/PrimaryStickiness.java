@@ -0,0 +1,28 @@
+package com.bachir.datasource;
+
+/**
+ * Per-thread switch that sends every read to the primary database, whatever the transaction says.
+ *
+ * The ReplicaRoutingDataSource checks it before picking a replica. It is set for the rest of a request
+ * once that request wrote something (read-your-writes), or by callers that must not see replication lag,
+ * such as the response cache when it fills an entry. PrimaryStickinessFilter clears it when the request ends.
+ */
+public final class PrimaryStickiness {
+
+    private static final ThreadLocal<Boolean> STICKY = new ThreadLocal<>();
+
+    private PrimaryStickiness() {
+    }
+
+    public static boolean isSticky() {
+        return STICKY.get() != null;
+    }
+
+    public static void stick() {
+        STICKY.set(Boolean.TRUE);
+    }
+
+    public static void clear() {
+        STICKY.remove();
+    }
+}
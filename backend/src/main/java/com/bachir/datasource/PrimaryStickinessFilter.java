@@ -0,0 +1,90 @@
+package com.bachir.datasource;
+
+import com.bachir.customer.CustomerChangedEvent;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Gives a client read-your-writes consistency while read replicas are enabled.
+ *
+ * Once a request wrote a customer, its remaining reads go to the primary, and the response carries a
+ * short-lived cookie so the same client's next requests also read from the primary for stickyWindow.
+ * The window should cover the usual replication lag; anything longer only costs replica offload.
+ */
+public class PrimaryStickinessFilter extends OncePerRequestFilter implements Ordered {
+
+    static final String COOKIE_NAME = "customer-read-primary-until";
+
+    private final Duration stickyWindow;
+
+    public PrimaryStickinessFilter(Duration stickyWindow) {
+        this.stickyWindow = stickyWindow;
+    }
+
+    // Runs around every other filter, so the stickiness is in place for filters that read, such as the response cache.
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (stickyUntil(request) > System.currentTimeMillis()) {
+            PrimaryStickiness.stick();
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            PrimaryStickiness.clear();
+        }
+    }
+
+    // Only for writes made while serving a request: the filter clears the stickiness once the request is done,
+    // and nothing would clear it on other threads (the invalidation bus, bulk imports, DAO workers).
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            PrimaryStickiness.stick();
+            HttpServletResponse response = servletAttributes.getResponse();
+            if (response != null && !response.isCommitted()) {
+                Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(System.currentTimeMillis() + stickyWindow.toMillis()));
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                cookie.setMaxAge((int) Math.max(1, stickyWindow.toSeconds()));
+                response.addCookie(cookie);
+            }
+        }
+    }
+
+    // The expiry is checked here as well, as clients do not all honour Max-Age to the second.
+    private static long stickyUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,82 @@
+package com.bachir.datasource;
+
+import com.bachir.datasource.ReplicaLagMonitor.Replica;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replica routing, enabled with customer.read-replicas.enabled=true.
+ *
+ * Replaces Spring Boot's DataSource with a LazyConnectionDataSourceProxy around a ReplicaRoutingDataSource.
+ * The primary is configured with the usual spring.datasource.* properties; every replica URL in
+ * customer.read-replicas.urls gets its own pool with the same credentials and spring.datasource.hikari.* settings.
+ * JPA, JdbcTemplate and Flyway all use the routed DataSource; Flyway runs outside a read-only
+ * transaction and therefore always migrates the primary.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "customer.read-replicas.enabled", havingValue = "true")
+public class ReadReplicaConfiguration {
+
+    private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            DataSourceProperties properties,
+            Environment environment,
+            @Value("${customer.read-replicas.urls}") List<String> replicaUrls,
+            @Value("${customer.read-replicas.max-lag:5s}") Duration maxLag,
+            @Value("${customer.read-replicas.check-interval:1s}") Duration checkInterval) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind(HIKARI_PREFIX, Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+
+        List<Replica> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            String name = "replica-" + replicas.size();
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            Binder.get(environment).bind(HIKARI_PREFIX, Bindable.ofInstance(replica));
+            replica.setPoolName(name);
+            replica.setReadOnly(true);
+            replicas.add(new Replica(name, replica));
+        }
+
+        ReplicaLagMonitor lagMonitor = new ReplicaLagMonitor(replicas, maxLag);
+        lagMonitor.start(checkInterval);
+        return new ReplicaRoutingDataSource(primary, lagMonitor);
+    }
+
+    // The DataSource everything else uses. The lazy proxy defers the routing decision to the first statement,
+    // when the read-only flag of the transaction is known.
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public PrimaryStickinessFilter primaryStickinessFilter(
+            @Value("${customer.read-replicas.sticky-window:5s}") Duration stickyWindow) {
+        return new PrimaryStickinessFilter(stickyWindow);
+    }
+}
@@ -0,0 +1,131 @@
+package com.bachir.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the replication lag of every read replica in the background and keeps the list of
+ * replicas that are close enough to the primary to serve reads.
+ *
+ * A replica is left out while it lags more than maxLag behind the primary, or while it cannot be
+ * reached. Replicas start out unusable until their first check passed, so a replica that is down at
+ * startup never receives a read.
+ */
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // Replay delay of the last transaction, or 0 when the replica has replayed everything it received.
+    // COALESCE covers a replica that has not replayed anything yet, and a "replica" that is not in recovery
+    // at all (for example the primary itself in a local setup).
+    private static final String LAG_QUERY = """
+            SELECT COALESCE(CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())
+            END, 0)
+            """;
+
+    /**
+     * A read replica.
+     *
+     * Attributes:
+     * - name: The routing key of the replica, also used in log messages.
+     * - dataSource: The connection pool of the replica.
+     */
+    public record Replica(String name, DataSource dataSource) {
+    }
+
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    // Last measured lag of every usable replica; a replica that is too far behind or down is absent.
+    private final Map<String, Duration> lags = new ConcurrentHashMap<>();
+    private volatile List<Replica> healthyReplicas = List.of();
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaLagMonitor(List<Replica> replicas, Duration maxLag) {
+        this.replicas = List.copyOf(replicas);
+        this.maxLag = maxLag;
+    }
+
+    /**
+     * Checks every replica now and then every checkInterval, on a daemon thread.
+     */
+    public synchronized void start(Duration checkInterval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkAll, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public List<Replica> replicas() {
+        return replicas;
+    }
+
+    /**
+     * @return the replicas that may serve reads right now, in configuration order.
+     */
+    public List<Replica> healthyReplicas() {
+        return healthyReplicas;
+    }
+
+    /**
+     * @return the last measured lag of every replica that may serve reads.
+     */
+    public Map<String, Duration> lags() {
+        return Map.copyOf(lags);
+    }
+
+    void checkAll() {
+        for (Replica replica : replicas) {
+            Duration lag;
+            try {
+                lag = measureLag(replica.dataSource());
+            } catch (RuntimeException e) {
+                if (lags.remove(replica.name()) != null) {
+                    log.warn("Read replica {} is unreachable, sending its reads to the primary", replica.name(), e);
+                }
+                continue;
+            }
+            if (lag.compareTo(maxLag) > 0) {
+                if (lags.remove(replica.name()) != null) {
+                    log.warn("Read replica {} lags {} behind the primary (max {}), sending its reads to the primary",
+                            replica.name(), lag, maxLag);
+                }
+            } else if (lags.put(replica.name(), lag) == null) {
+                log.info("Read replica {} is serving reads (lag {})", replica.name(), lag);
+            }
+        }
+        healthyReplicas = replicas.stream()
+                .filter(replica -> lags.containsKey(replica.name()))
+                .toList();
+    }
+
+    Duration measureLag(DataSource dataSource) {
+        Double seconds = new JdbcTemplate(dataSource).queryForObject(LAG_QUERY, Double.class);
+        return Duration.ofMillis(Math.round((seconds == null ? 0 : seconds) * 1000));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.bachir.datasource;
+
+import com.bachir.datasource.ReplicaLagMonitor.Replica;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource that sends read-only transactions to the read replicas and everything else to the primary.
+ *
+ * Routing follows the transaction boundaries:
+ * - @Transactional(readOnly = true), which Spring Data uses for every repository read, goes to a replica.
+ * - Any other transaction, and any work outside a transaction, goes to the primary.
+ * - A read-only call made inside a read-write transaction joins it, so it stays on the primary.
+ *
+ * Reads also stay on the primary when PrimaryStickiness is set for the current thread, or when no replica
+ * is within the lag limit of the ReplicaLagMonitor. Healthy replicas share the reads round-robin.
+ *
+ * The routing decision needs the read-only flag of the transaction, which Spring only sets after it has
+ * begun. The data source must therefore be used behind a LazyConnectionDataSourceProxy, which fetches
+ * the real connection at the first statement (see ReadReplicaConfiguration).
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final ReplicaLagMonitor lagMonitor;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaLagMonitor lagMonitor) {
+        this.primary = primary;
+        this.lagMonitor = lagMonitor;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Replica replica : lagMonitor.replicas()) {
+            targets.put(replica.name(), replica.dataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    public ReplicaLagMonitor lagMonitor() {
+        return lagMonitor;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || PrimaryStickiness.isSticky()) {
+            return PRIMARY;
+        }
+        List<Replica> healthy = lagMonitor.healthyReplicas();
+        if (healthy.isEmpty()) {
+            return PRIMARY;
+        }
+        return healthy.get(Math.floorMod(nextReplica.getAndIncrement(), healthy.size())).name();
+    }
+
+    /**
+     * Stops the lag monitor and closes the connection pools of the primary and every replica.
+     */
+    @Override
+    public void close() throws Exception {
+        lagMonitor.close();
+        closeIfPossible(primary);
+        for (Replica replica : lagMonitor.replicas()) {
+            closeIfPossible(replica.dataSource());
+        }
+    }
+
+    private static void closeIfPossible(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.bachir.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// The resource exists but cannot be changed right now (for example while it is moved to another shard); retrying shortly should work.
+@ResponseStatus(code = HttpStatus.SERVICE_UNAVAILABLE)
+public class ResourceUnavailableException extends RuntimeException {
+    public ResourceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package com.bachir.rowmapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates an IndexedRowMapper for a constructor, or for the canonical constructor of a record, at compile time
+ * (see RowMapperProcessor).
+ *
+ * The generated class is named after the type, e.g. CustomerIndexedRowMapper for Customer, in the same package.
+ * It reads column i + 1 of the row into parameter i, with the ResultSet getter of the parameter type, so the
+ * SELECT must list the columns in the order of the parameters: use its SELECT_LIST constant. Each parameter
+ * maps to the column of the same name in snake_case (emailHash: email_hash).
+ *
+ * SQL NULL becomes null for reference types; for a primitive parameter it is an error, never a silent 0.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.CONSTRUCTOR, ElementType.TYPE})
+public @interface GenerateRowMapper {
+}
@@ -0,0 +1,48 @@
+package com.bachir.rowmapper;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A RowMapper that reads the columns by position rather than by name, generated by @GenerateRowMapper.
+ *
+ * A lookup by name costs a hash map lookup per column and row in the JDBC driver; by position it costs nothing,
+ * but a SELECT with its columns in another order would silently map them to the wrong fields. Hence check():
+ * run it at startup on every SELECT the mapper is used with.
+ */
+public interface IndexedRowMapper<T> extends RowMapper<T> {
+
+    /**
+     * @return the columns the mapper reads, in order: column i + 1 of the row is columns().get(i).
+     */
+    List<String> columns();
+
+    /**
+     * Checks that a SELECT returns the columns of the mapper, in its order. The statement is only prepared,
+     * never run: the database describes its result without reading any row.
+     *
+     * @throws IllegalStateException if the columns differ.
+     */
+    static void check(JdbcTemplate jdbcTemplate, String sql, IndexedRowMapper<?> mapper) {
+        List<String> actual = jdbcTemplate.execute((ConnectionCallback<List<String>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                ResultSetMetaData metaData = statement.getMetaData();
+                List<String> columns = new ArrayList<>();
+                for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                    columns.add(metaData.getColumnLabel(column).toLowerCase());
+                }
+                return columns;
+            }
+        });
+        if (!mapper.columns().equals(actual)) {
+            throw new IllegalStateException("%s reads the columns %s by position, but [%s] returns %s"
+                    .formatted(mapper.getClass().getSimpleName(), mapper.columns(), sql.strip(), actual));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.bachir.rowmapper.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.RecordComponentElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the IndexedRowMapper of every constructor or record annotated with @GenerateRowMapper.
+ *
+ * Compiled on its own before the rest of the main sources (see the compile-row-mapper-processor execution in
+ * pom.xml), then run by javac while it compiles them. It only uses javax.lang.model, so that it does not need
+ * the classes it generates code for, nor Spring.
+ */
+@SupportedAnnotationTypes(RowMapperProcessor.ANNOTATION)
+public class RowMapperProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "com.bachir.rowmapper.GenerateRowMapper";
+    static final String SUFFIX = "IndexedRowMapper";
+
+    // ResultSet getter of each type that has one; wrappers are read with the getter of their primitive.
+    private static final Map<String, String> GETTERS = Map.ofEntries(
+            Map.entry("boolean", "getBoolean"),
+            Map.entry("short", "getShort"),
+            Map.entry("int", "getInt"),
+            Map.entry("long", "getLong"),
+            Map.entry("float", "getFloat"),
+            Map.entry("double", "getDouble"),
+            Map.entry("java.lang.Boolean", "getBoolean"),
+            Map.entry("java.lang.Short", "getShort"),
+            Map.entry("java.lang.Integer", "getInt"),
+            Map.entry("java.lang.Long", "getLong"),
+            Map.entry("java.lang.Float", "getFloat"),
+            Map.entry("java.lang.Double", "getDouble"),
+            Map.entry("java.lang.String", "getString"),
+            Map.entry("java.math.BigDecimal", "getBigDecimal"),
+            Map.entry("byte[]", "getBytes"));
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                ExecutableElement constructor = constructorOf(element);
+                if (constructor != null) {
+                    generate((TypeElement) constructor.getEnclosingElement(), constructor);
+                }
+            }
+        }
+        return true;
+    }
+
+    // The annotated constructor, or the canonical constructor of the annotated record.
+    private ExecutableElement constructorOf(Element element) {
+        if (element.getKind() == ElementKind.CONSTRUCTOR) {
+            return (ExecutableElement) element;
+        }
+        if (element.getKind() == ElementKind.RECORD) {
+            List<String> components = ((TypeElement) element).getRecordComponents().stream()
+                    .map(RecordComponentElement::asType).map(TypeMirror::toString).toList();
+            for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+                if (constructor.getParameters().stream().map(p -> p.asType().toString()).toList().equals(components)) {
+                    return constructor;
+                }
+            }
+        }
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "@GenerateRowMapper goes on a constructor or a record", element);
+        return null;
+    }
+
+    private void generate(TypeElement type, ExecutableElement constructor) {
+        if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "@GenerateRowMapper needs a constructor the mapper can call, not a private one", constructor);
+            return;
+        }
+        String packageName = ((PackageElement) processingEnv.getElementUtils().getPackageOf(type)).getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        String simpleName = typeName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1);
+        String mapperName = simpleName.replace('.', '_') + SUFFIX;
+
+        List<String> columns = new ArrayList<>();
+        StringBuilder reads = new StringBuilder();
+        List<String> arguments = new ArrayList<>();
+        List<? extends VariableElement> parameters = constructor.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            VariableElement parameter = parameters.get(i);
+            String column = snakeCase(parameter.getSimpleName().toString());
+            columns.add(column);
+            String read = read(parameter.asType(), i + 1, column, "c" + i);
+            if (read == null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "No ResultSet getter for " + parameter.asType() + " in @GenerateRowMapper", parameter);
+                return;
+            }
+            reads.append(read);
+            arguments.add("c" + i);
+        }
+
+        String source = """
+                package %1$s;
+
+                import com.bachir.rowmapper.IndexedRowMapper;
+
+                import java.sql.ResultSet;
+                import java.sql.SQLException;
+                import java.util.List;
+
+                /**
+                 * Maps the columns %4$s of a row, by position, to a %2$s.
+                 * Generated by RowMapperProcessor from @GenerateRowMapper: do not edit.
+                 */
+                @javax.annotation.processing.Generated("%5$s")
+                public final class %3$s implements IndexedRowMapper<%2$s> {
+
+                    public static final List<String> COLUMNS = List.of(%6$s);
+
+                    // The column list of a SELECT this mapper can map
+                    public static final String SELECT_LIST = "%4$s";
+
+                    public static final %3$s INSTANCE = new %3$s();
+
+                    @Override
+                    public %2$s mapRow(ResultSet rs, int rowNum) throws SQLException {
+                %7$s        return new %2$s(%8$s);
+                    }
+
+                    @Override
+                    public List<String> columns() {
+                        return COLUMNS;
+                    }
+                }
+                """.formatted(
+                packageName,
+                simpleName,
+                mapperName,
+                String.join(", ", columns),
+                RowMapperProcessor.class.getName(),
+                columns.stream().map(column -> '"' + column + '"').collect(Collectors.joining(", ")),
+                reads,
+                String.join(", ", arguments));
+        String qualifiedMapperName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedMapperName, type).openWriter()) {
+            writer.write(source.startsWith("package ;") ? source.substring(source.indexOf('\n') + 1) : source);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The statements reading column `index` into the local variable `variable`.
+    private String read(TypeMirror type, int index, String column, String variable) {
+        String typeName = type.toString();
+        String indent = "        ";
+        String getter = GETTERS.get(typeName);
+        if (type.getKind().isPrimitive()) {
+            if (getter == null) {
+                return null;
+            }
+            return indent + typeName + " " + variable + " = rs." + getter + "(" + index + ");\n"
+                    + indent + "if (rs.wasNull()) {\n"
+                    + indent + "    throw new SQLException(\"Column " + column + " is NULL, which " + typeName + " cannot hold\");\n"
+                    + indent + "}\n";
+        }
+        if (getter != null && typeName.startsWith("java.lang.") && !typeName.equals("java.lang.String")) {
+            String primitive = primitiveOf(typeName);
+            return indent + primitive + " " + variable + "Value = rs." + getter + "(" + index + ");\n"
+                    + indent + typeName + " " + variable + " = rs.wasNull() ? null : " + variable + "Value;\n";
+        }
+        if (getter != null) {
+            return indent + typeName + " " + variable + " = rs." + getter + "(" + index + ");\n";
+        }
+        if (type.getKind() == TypeKind.DECLARED
+                && processingEnv.getTypeUtils().asElement(type).getKind() == ElementKind.ENUM) {
+            return indent + "String " + variable + "Name = rs.getString(" + index + ");\n"
+                    + indent + typeName + " " + variable + " = " + variable + "Name == null ? null : "
+                    + typeName + ".valueOf(" + variable + "Name);\n";
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            // java.time, UUID...: JDBC 4.2 conversions of the driver
+            String erasure = processingEnv.getTypeUtils().erasure(type).toString();
+            return indent + typeName + " " + variable + " = rs.getObject(" + index + ", " + erasure + ".class);\n";
+        }
+        return null;
+    }
+
+    private static String primitiveOf(String wrapper) {
+        return switch (wrapper) {
+            case "java.lang.Boolean" -> "boolean";
+            case "java.lang.Short" -> "short";
+            case "java.lang.Integer" -> "int";
+            case "java.lang.Long" -> "long";
+            case "java.lang.Float" -> "float";
+            default -> "double";
+        };
+    }
+
+    static String snakeCase(String name) {
+        StringBuilder column = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                column.append('_').append(Character.toLowerCase(c));
+            } else {
+                column.append(c);
+            }
+        }
+        return column.toString();
+    }
+}
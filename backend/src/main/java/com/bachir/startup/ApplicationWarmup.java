@@ -0,0 +1,249 @@
+package com.bachir.startup;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerDao;
+import com.bachir.customer.CustomerIndexedRowMapper;
+import com.bachir.customer.CustomerRegistrationRequest;
+import com.bachir.customer.CustomerRowMapper;
+import com.bachir.customer.CustomerService;
+import com.bachir.customer.CustomerUpdateRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the hot paths of the customer API before the instance reports ready, so that the JIT has compiled them
+ * by the time the load balancer sends traffic (customer.warmup.enabled, on in the prod profile).
+ *
+ * Runs when the application is ready, before Spring Boot switches the readiness state to ACCEPTING_TRAFFIC
+ * (/actuator/health/readiness), which therefore waits for it:
+ * - serialization: customers and lists of customers written, and request bodies read, by the same
+ *   HttpMessageConverters as Spring MVC; error bodies through the ObjectMapper;
+ * - row mapping: CustomerRowMapper over customers of the table;
+ * - reads: every read of the CustomerDao in use, for existing and unknown customers;
+ * - validation: an update without any change, which CustomerService rejects before writing.
+ *
+ * Nothing is written: only reads run against the data store. The DAO is called directly, not through the
+ * service, so the warmup does not show up in the hot keys; the one call through the service, the update without
+ * changes, carries no email and records nothing.
+ */
+@Component
+@ConditionalOnProperty(name = "customer.warmup.enabled", havingValue = "true")
+public class ApplicationWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(ApplicationWarmup.class);
+
+    private static final Type CUSTOMER_LIST = new ParameterizedTypeReference<List<Customer>>() { }.getType();
+    private static final byte[] REGISTRATION_JSON =
+            "{\"name\":\"Warmup\",\"email\":\"warmup@example.com\",\"age\":30}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UPDATE_JSON = "{\"age\":31}".getBytes(StandardCharsets.UTF_8);
+
+    private final CustomerDao customerDao;
+    private final CustomerService customerService;
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerRowMapper customerRowMapper;
+    private final ObjectMapper objectMapper;
+    private final List<HttpMessageConverter<?>> messageConverters;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<BootPhaseTimings> timings;
+    private final int iterations;
+    private final int queryIterations;
+
+    public ApplicationWarmup(@Qualifier("customerDao") CustomerDao customerDao,
+                             CustomerService customerService,
+                             JdbcTemplate jdbcTemplate,
+                             CustomerRowMapper customerRowMapper,
+                             ObjectMapper objectMapper,
+                             RequestMappingHandlerAdapter handlerAdapter,
+                             ApplicationEventPublisher eventPublisher,
+                             ObjectProvider<BootPhaseTimings> timings,
+                             @Value("${customer.warmup.iterations:10000}") int iterations,
+                             @Value("${customer.warmup.query-iterations:500}") int queryIterations) {
+        this.customerDao = customerDao;
+        this.customerService = customerService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerRowMapper = customerRowMapper;
+        this.objectMapper = objectMapper;
+        this.messageConverters = handlerAdapter.getMessageConverters();
+        this.eventPublisher = eventPublisher;
+        this.timings = timings;
+        this.iterations = iterations;
+        this.queryIterations = queryIterations;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        // Explicit, so that probes read "not ready" even if something already reported the instance ready
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        timings.ifAvailable(t -> t.begin(BootPhase.WARMUP));
+        long start = System.nanoTime();
+        try {
+            List<Customer> samples = sampleCustomers();
+            warmUpSerialization(samples);
+            warmUpReads(samples);
+        } catch (RuntimeException e) {
+            // A slower start is better than no start
+            log.warn("Warmup stopped early", e);
+        } finally {
+            timings.ifAvailable(t -> t.end(BootPhase.WARMUP));
+        }
+        log.info("Warmup done in {} ms ({} iterations, {} query iterations)",
+                (System.nanoTime() - start) / 1_000_000, iterations, queryIterations);
+        // Spring Boot reports ACCEPTING_TRAFFIC once the ApplicationReadyEvent listeners have returned
+    }
+
+    // Up to 100 customers of the table, mapped by CustomerRowMapper; one made-up customer if the table is empty.
+    private List<Customer> sampleCustomers() {
+        List<Customer> samples = jdbcTemplate.query(
+                "SELECT " + CustomerIndexedRowMapper.SELECT_LIST + " FROM customer ORDER BY id LIMIT 100", customerRowMapper);
+        return samples.isEmpty() ? List.of(new Customer(1L, "Warmup", "warmup@example.com", 30)) : samples;
+    }
+
+    private void warmUpSerialization(List<Customer> samples) {
+        OutputBuffer output = new OutputBuffer();
+        Map<String, Object> errorBody = Map.of("status", 404, "error", "Not Found",
+                "message", "Customer with id [0] not found", "path", "/api/v1/customers/0");
+        for (int i = 0; i < iterations; i++) {
+            write(samples.get(i % samples.size()), Customer.class, output);
+            if (i % 10 == 0) {
+                write(samples, CUSTOMER_LIST, output);
+            }
+            read(REGISTRATION_JSON, CustomerRegistrationRequest.class);
+            read(UPDATE_JSON, CustomerUpdateRequest.class);
+            try {
+                objectMapper.writeValueAsBytes(errorBody);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void warmUpReads(List<Customer> samples) {
+        CustomerUpdateRequest noChange = new CustomerUpdateRequest(null, null, null);
+        for (int i = 0; i < queryIterations; i++) {
+            Customer sample = samples.get(i % samples.size());
+            customerDao.selectCustomerById(sample.getId());
+            customerDao.selectCustomerByEmail(sample.getEmail());
+            customerDao.existsPersonWithEmail(sample.getEmail());
+            customerDao.existsPersonWithId(sample.getId());
+            // Unknown customers, the 404 path
+            customerDao.selectCustomerById(-1L - i);
+            jdbcTemplate.query("SELECT " + CustomerIndexedRowMapper.SELECT_LIST + " FROM customer WHERE id = ?", customerRowMapper, sample.getId());
+            try {
+                // Rejected with "no data changes found" (or not found) before anything is written
+                customerService.updateCustomer(sample.getId().intValue(), noChange);
+            } catch (RuntimeException expected) {
+                // The validation path is what is being warmed up
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(Object value, Type type, OutputBuffer output) {
+        try {
+            for (HttpMessageConverter<?> converter : messageConverters) {
+                if (converter instanceof GenericHttpMessageConverter<?> generic
+                        && generic.canWrite(type, value.getClass(), MediaType.APPLICATION_JSON)) {
+                    ((GenericHttpMessageConverter<Object>) generic).write(value, type, MediaType.APPLICATION_JSON, output.reset());
+                    return;
+                }
+                if (converter.canWrite(value.getClass(), MediaType.APPLICATION_JSON)) {
+                    ((HttpMessageConverter<Object>) converter).write(value, MediaType.APPLICATION_JSON, output.reset());
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void read(byte[] json, Class<?> type) {
+        try {
+            for (HttpMessageConverter<?> converter : messageConverters) {
+                if (converter.canRead(type, MediaType.APPLICATION_JSON)) {
+                    ((HttpMessageConverter<Object>) converter).read((Class<Object>) type, new InputBuffer(json));
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // In-memory HTTP bodies, reused across iterations.
+    private static final class OutputBuffer implements HttpOutputMessage {
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+        private HttpHeaders headers = new HttpHeaders();
+
+        OutputBuffer reset() {
+            body.reset();
+            headers = new HttpHeaders();
+            return this;
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    private record InputBuffer(InputStream body, HttpHeaders headers) implements HttpInputMessage {
+
+        InputBuffer(byte[] json) {
+            this(new ByteArrayInputStream(json), jsonHeaders());
+        }
+
+        private static HttpHeaders jsonHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
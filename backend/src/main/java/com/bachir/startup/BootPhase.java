@@ -0,0 +1,17 @@
+package com.bachir.startup;
+
+/**
+ * The phases of application startup measured by BootPhaseTimings.
+ */
+public enum BootPhase {
+    // From just before the application context refresh until it has completed (includes the two phases below).
+    CONTEXT_REFRESH,
+    // Flyway validating and applying the migrations in db/migration.
+    FLYWAY_MIGRATION,
+    // Building the JPA EntityManagerFactory (Hibernate metamodel, entity mappings, ...).
+    JPA_BOOTSTRAP,
+    // The first HTTP request served after startup, which still pays for cold code paths.
+    FIRST_REQUEST,
+    // ApplicationWarmup running the hot paths before the instance reports ready (customer.warmup.enabled).
+    WARMUP
+}
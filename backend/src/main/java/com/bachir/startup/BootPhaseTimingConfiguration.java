@@ -0,0 +1,118 @@
+package com.bachir.startup;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hooks that report the Flyway, JPA and first request phases to BootPhaseTimings.
+ *
+ * Each hook is a no-op when the context was not started through SpringApplication
+ * (and therefore has no BootPhaseTimings, see BootPhaseTimingListener).
+ */
+@Configuration(proxyBeanMethods = false)
+public class BootPhaseTimingConfiguration {
+
+    // Static, like every BeanPostProcessor bean, so it does not force this configuration class to be created early.
+    @Bean
+    static BeanPostProcessor jpaBootstrapTimingPostProcessor(ObjectProvider<BootPhaseTimings> timings) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                // The EntityManagerFactory is built in afterPropertiesSet, right after this callback.
+                if (bean instanceof AbstractEntityManagerFactoryBean) {
+                    timings.ifAvailable(t -> t.begin(BootPhase.JPA_BOOTSTRAP));
+                }
+                return bean;
+            }
+        };
+    }
+
+    // Hibernate calls the observer once the SessionFactory is built, also when the bootstrap runs in the background.
+    // The timings are looked up here, on the main thread: a bean lookup from the bootstrap thread would
+    // deadlock with the main thread waiting for the EntityManagerFactory.
+    @Bean
+    HibernatePropertiesCustomizer jpaBootstrapTimingCustomizer(ObjectProvider<BootPhaseTimings> timings) {
+        BootPhaseTimings bootPhaseTimings = timings.getIfAvailable();
+        SessionFactoryObserver observer = new SessionFactoryObserver() {
+            @Override
+            public void sessionFactoryCreated(SessionFactory factory) {
+                if (bootPhaseTimings != null) {
+                    bootPhaseTimings.end(BootPhase.JPA_BOOTSTRAP);
+                }
+            }
+        };
+        return properties -> properties.put("hibernate.session_factory_observer", observer);
+    }
+
+    @Bean
+    FlywayMigrationStrategy flywayTimingMigrationStrategy(ObjectProvider<BootPhaseTimings> timings) {
+        return flyway -> {
+            timings.ifAvailable(t -> t.begin(BootPhase.FLYWAY_MIGRATION));
+            try {
+                flyway.migrate();
+            } finally {
+                timings.ifAvailable(t -> t.end(BootPhase.FLYWAY_MIGRATION));
+            }
+        };
+    }
+
+    @Bean
+    FilterRegistrationBean<FirstRequestTimingFilter> firstRequestTimingFilter(ObjectProvider<BootPhaseTimings> timings) {
+        FilterRegistrationBean<FirstRequestTimingFilter> registration =
+                new FilterRegistrationBean<>(new FirstRequestTimingFilter(timings.getIfAvailable()));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    /**
+     * Times the first request, then gets out of the way: later requests only pay for one volatile read.
+     */
+    static class FirstRequestTimingFilter extends OncePerRequestFilter {
+
+        private final BootPhaseTimings timings;
+        private final AtomicBoolean firstRequest;
+
+        FirstRequestTimingFilter(BootPhaseTimings timings) {
+            this.timings = timings;
+            this.firstRequest = new AtomicBoolean(timings != null);
+        }
+
+        @Override
+        protected boolean shouldNotFilter(HttpServletRequest request) {
+            return !firstRequest.get();
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            if (!firstRequest.compareAndSet(true, false)) {
+                chain.doFilter(request, response);
+                return;
+            }
+            timings.begin(BootPhase.FIRST_REQUEST);
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                timings.end(BootPhase.FIRST_REQUEST);
+                logger.info("Boot phases after first request: " + timings.report());
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.bachir.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.event.SpringApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Times the application context refresh and logs the boot phase report once the application is ready.
+ *
+ * Added to the SpringApplication in Main.main rather than declared as a bean, because the refresh
+ * starts before any bean exists. It creates the BootPhaseTimings and registers it in the context so the other
+ * phases can be reported from inside the refresh (see BootPhaseTimingConfiguration).
+ *
+ * With customer.startup.training-run=true the application exits as soon as it is ready. This is
+ * meant for a class data sharing training run, see the README.
+ */
+public class BootPhaseTimingListener implements ApplicationListener<SpringApplicationEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(BootPhaseTimingListener.class);
+
+    static final String TRAINING_RUN_PROPERTY = "customer.startup.training-run";
+
+    @Override
+    public void onApplicationEvent(SpringApplicationEvent event) {
+        if (event instanceof ApplicationPreparedEvent prepared) {
+            ConfigurableListableBeanFactory beanFactory = prepared.getApplicationContext().getBeanFactory();
+            // The test framework can deliver this event twice when it starts the application through Main.main.
+            if (!beanFactory.containsSingleton(BootPhaseTimings.BEAN_NAME)) {
+                BootPhaseTimings timings = new BootPhaseTimings();
+                beanFactory.registerSingleton(BootPhaseTimings.BEAN_NAME, timings);
+                timings.begin(BootPhase.CONTEXT_REFRESH);
+            }
+        } else if (event instanceof ApplicationStartedEvent started) {
+            timings(started.getApplicationContext()).end(BootPhase.CONTEXT_REFRESH);
+        } else if (event instanceof ApplicationReadyEvent ready) {
+            ConfigurableApplicationContext context = ready.getApplicationContext();
+            log.info("Boot phases: {}", timings(context).report());
+            if (context.getEnvironment().getProperty(TRAINING_RUN_PROPERTY, Boolean.class, false)) {
+                log.info("Training run complete, exiting");
+                System.exit(SpringApplication.exit(context));
+            }
+        }
+    }
+
+    private static BootPhaseTimings timings(ConfigurableApplicationContext context) {
+        return context.getBean(BootPhaseTimings.BEAN_NAME, BootPhaseTimings.class);
+    }
+}
@@ -0,0 +1,60 @@
+package com.bachir.startup;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Collects how long each BootPhase took during startup.
+ *
+ * A single instance is registered in the application context by BootPhaseTimingListener before the
+ * context is refreshed, so beans taking part in startup (Flyway, JPA, the first request filter) can
+ * report to it. Phases may end on another thread than the one they started on, hence the synchronization.
+ */
+public class BootPhaseTimings {
+
+    public static final String BEAN_NAME = "bootPhaseTimings";
+
+    private final Map<BootPhase, Long> startNanos = new EnumMap<>(BootPhase.class);
+    private final Map<BootPhase, Duration> durations = new EnumMap<>(BootPhase.class);
+
+    /**
+     * Marks the start of a phase. Starting a phase again after it completed has no effect.
+     */
+    public synchronized void begin(BootPhase phase) {
+        if (!durations.containsKey(phase)) {
+            startNanos.putIfAbsent(phase, System.nanoTime());
+        }
+    }
+
+    /**
+     * Marks the end of a phase that was started with begin. Ending a phase that never began has no effect.
+     */
+    public synchronized void end(BootPhase phase) {
+        Long start = startNanos.remove(phase);
+        if (start != null) {
+            durations.put(phase, Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    public synchronized Optional<Duration> duration(BootPhase phase) {
+        return Optional.ofNullable(durations.get(phase));
+    }
+
+    public synchronized Map<BootPhase, Duration> durations() {
+        return new EnumMap<>(durations);
+    }
+
+    /**
+     * @return a one-line summary such as "JVM uptime 5120 ms, CONTEXT_REFRESH 3012 ms, FLYWAY_MIGRATION 210 ms, ...".
+     */
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder("JVM uptime ")
+                .append(ManagementFactory.getRuntimeMXBean().getUptime()).append(" ms");
+        durations.forEach((phase, duration) ->
+                report.append(", ").append(phase).append(' ').append(duration.toMillis()).append(" ms"));
+        return report.toString();
+    }
+}
@@ -0,0 +1,134 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Copies the customers into the hash-partitioned table created by V5, then swaps the two tables.
+ *
+ * Runs outside a transaction, so that instances still running the previous version keep serving during the copy:
+ * - customers are copied by id in chunks, each in its own short transaction. The rows of a chunk are locked
+ *   FOR SHARE while they are copied, so a concurrent update or delete happens either before or after the copy;
+ * - writes made in the meantime are repeated on the new table by the customer_partitioned_sync trigger of V5,
+ *   and win over the copy;
+ * - the swap locks the customer table for a few milliseconds. When it cannot get the lock quickly it gives up
+ *   and tries again, rather than making every query wait behind a long transaction.
+ *
+ * A Java migration in db/migration, the location Flyway scans for both SQL and Java migrations.
+ */
+public class V6__Swap_In_Partitioned_Customer_Table extends BaseJavaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(V6__Swap_In_Partitioned_Customer_Table.class);
+
+    private static final int CHUNK_SIZE = 10_000;
+    private static final int SWAP_ATTEMPTS = 30;
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+    // Rows already copied by the trigger are newer than the ones read here, so they are kept.
+    private static final String COPY_CHUNK = """
+            WITH chunk AS (
+                SELECT id, name, email, age, email_normalized, email_hash FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                FOR SHARE
+            ), copied AS (
+                INSERT INTO customer_partitioned (id, name, email, age, email_normalized, email_hash)
+                SELECT id, name, email, age, email_normalized, email_hash FROM chunk
+                ON CONFLICT (id) DO NOTHING
+            )
+            SELECT count(*), max(id) FROM chunk
+            """;
+
+    // Dropping customer also drops its sync triggers, the customer_unique_email constraint and the V4 indexes.
+    // The sequence is detached first, or it would be dropped with the table.
+    private static final String[] SWAP = {
+            "SET LOCAL lock_timeout = '2s'",
+            "LOCK TABLE customer IN ACCESS EXCLUSIVE MODE",
+            "ALTER SEQUENCE customer_id_seq OWNED BY NONE",
+            "DROP TABLE customer",
+            "DROP FUNCTION customer_partitioned_sync()",
+            "DROP FUNCTION customer_partitioned_truncate()",
+            "ALTER TABLE customer_partitioned RENAME TO customer",
+            "ALTER TABLE customer RENAME CONSTRAINT customer_partitioned_pkey TO customer_pkey",
+            "ALTER INDEX customer_partitioned_unhashed_idx RENAME TO customer_unhashed_idx",
+            "ALTER TABLE customer_email RENAME CONSTRAINT customer_email_pkey TO customer_unique_email",
+            "ALTER SEQUENCE customer_id_seq OWNED BY customer.id"
+    };
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        long start = System.nanoTime();
+        long copied = copy(connection);
+        log.info("Copied {} customers to the partitioned table in {} s", copied, (System.nanoTime() - start) / 1_000_000_000);
+        swap(connection);
+        // Autovacuum analyzes each partition, but never the partitioned table itself.
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE customer");
+            statement.execute("ANALYZE customer_email");
+        }
+    }
+
+    private long copy(Connection connection) throws SQLException {
+        long afterId = 0;
+        long copied = 0;
+        try (PreparedStatement statement = connection.prepareStatement(COPY_CHUNK)) {
+            while (true) {
+                statement.setLong(1, afterId);
+                statement.setInt(2, CHUNK_SIZE);
+                long rows;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    rows = resultSet.getLong(1);
+                    afterId = resultSet.getLong(2);
+                }
+                copied += rows;
+                if (rows < CHUNK_SIZE) {
+                    return copied;
+                }
+                if (copied % 1_000_000 == 0) {
+                    log.info("{} customers copied to the partitioned table", copied);
+                }
+            }
+        }
+    }
+
+    private void swap(Connection connection) throws SQLException, InterruptedException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try (Statement statement = connection.createStatement()) {
+                    for (String sql : SWAP) {
+                        statement.execute(sql);
+                    }
+                    connection.commit();
+                    return;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    if (!LOCK_NOT_AVAILABLE.equals(e.getSQLState()) || attempt == SWAP_ATTEMPTS) {
+                        throw e;
+                    }
+                    log.info("Customer table busy, swap attempt {} of {} in 1 s", attempt, SWAP_ATTEMPTS);
+                    Thread.sleep(1000);
+                }
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
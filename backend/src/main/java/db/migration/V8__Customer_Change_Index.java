@@ -0,0 +1,95 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the (change_xid, id) index of the change feed (V7) without blocking writes to the customer table.
+ *
+ * CREATE INDEX CONCURRENTLY is not available on a partitioned table, so, like PostgreSQL documents it:
+ * - an invalid index is created on the partitioned table only (ON ONLY), which is instant;
+ * - each partition is indexed CONCURRENTLY, and its index attached to it. The partitioned index becomes valid
+ *   once every partition has one.
+ *
+ * Runs outside a transaction, as CONCURRENTLY requires. If it is interrupted, it picks up where it stopped when
+ * run again: valid partition indexes are kept, an invalid one (a CONCURRENTLY build that failed) is rebuilt.
+ */
+public class V8__Customer_Change_Index extends BaseJavaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(V8__Customer_Change_Index.class);
+
+    private static final String PARTITIONS_SQL =
+            "SELECT inhrelid::regclass::text FROM pg_inherits WHERE inhparent = 'customer'::regclass ORDER BY 1";
+
+    // No row if the index does not exist; otherwise whether it is valid, and whether it is attached already.
+    private static final String INDEX_STATE_SQL = """
+            SELECT i.indisvalid, EXISTS (SELECT 1 FROM pg_inherits h WHERE h.inhrelid = i.indexrelid)
+            FROM pg_index i WHERE i.indexrelid = to_regclass('%s')
+            """;
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX IF NOT EXISTS customer_change_idx ON ONLY customer (change_xid, id)");
+            for (String partition : partitions(statement)) {
+                long start = System.nanoTime();
+                String index = partition + "_change_idx";
+                IndexState state = indexState(statement, index);
+                if (state == IndexState.INVALID) {
+                    statement.execute("DROP INDEX CONCURRENTLY " + index);
+                }
+                if (state != IndexState.VALID && state != IndexState.ATTACHED) {
+                    statement.execute("CREATE INDEX CONCURRENTLY " + index + " ON " + partition + " (change_xid, id)");
+                }
+                if (state != IndexState.ATTACHED) {
+                    statement.execute("ALTER INDEX customer_change_idx ATTACH PARTITION " + index);
+                }
+                log.info("Indexed the changes of {} in {} ms", partition, (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+    }
+
+    private static IndexState indexState(Statement statement, String index) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(INDEX_STATE_SQL.formatted(index))) {
+            if (!resultSet.next()) {
+                return IndexState.MISSING;
+            }
+            if (!resultSet.getBoolean(1)) {
+                return IndexState.INVALID;
+            }
+            return resultSet.getBoolean(2) ? IndexState.ATTACHED : IndexState.VALID;
+        }
+    }
+
+    private enum IndexState {
+        MISSING,
+        INVALID,
+        VALID,
+        ATTACHED
+    }
+
+    private static List<String> partitions(Statement statement) throws SQLException {
+        List<String> partitions = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery(PARTITIONS_SQL)) {
+            while (resultSet.next()) {
+                partitions.add(resultSet.getString(1));
+            }
+        }
+        return partitions;
+    }
+}
@@ -0,0 +1,10 @@
+-- Normalized (trimmed, lower-case) email and a 64-bit hash of it, for case-insensitive lookups on a compact index.
+-- Nullable and without default, so adding them does not rewrite the table. The application fills them on every
+-- insert and update, and CustomerEmailBackfill fills existing rows in small chunks.
+ALTER TABLE customer
+    ADD COLUMN email_normalized TEXT,
+    ADD COLUMN email_hash BIGINT;
+
+-- Statistics on the normalized email of the whole table. The planner ignores the statistics of partial indexes,
+-- so without these it guesses that many rows share an email and scans the table instead of customer_email_unhashed_idx.
+CREATE STATISTICS customer_email_normalized_stats ON (lower(trim(email))) FROM customer;
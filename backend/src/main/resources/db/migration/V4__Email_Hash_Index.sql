@@ -0,0 +1,10 @@
+-- Built CONCURRENTLY so writes continue while the indexes are built; Flyway runs this migration outside a transaction.
+-- An interrupted concurrent build leaves an invalid index behind, hence the DROP before each CREATE.
+-- Lookups check email_hash first (8 bytes per entry instead of the whole email), then compare email_normalized.
+DROP INDEX CONCURRENTLY IF EXISTS customer_email_hash_idx;
+CREATE INDEX CONCURRENTLY customer_email_hash_idx ON customer (email_hash);
+
+-- Rows not backfilled yet are found by their normalized email. Once every row has a hash, this index is empty.
+DROP INDEX CONCURRENTLY IF EXISTS customer_email_unhashed_idx;
+CREATE INDEX CONCURRENTLY customer_email_unhashed_idx ON customer (lower(trim(email)))
+    WHERE email_hash IS NULL;
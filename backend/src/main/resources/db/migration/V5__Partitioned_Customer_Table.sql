@@ -0,0 +1,105 @@
+-- Hash-partitioned replacement of the customer table. V6 copies the customers into it and swaps the two tables.
+-- Each partition is vacuumed and indexed on its own, and a query by id reads a single partition.
+CREATE TABLE customer_partitioned (
+    id BIGINT NOT NULL DEFAULT nextval('customer_id_seq'),
+    name TEXT NOT NULL,
+    email TEXT NOT NULL,
+    age INT NOT NULL,
+    email_normalized TEXT,
+    email_hash BIGINT,
+    CONSTRAINT customer_partitioned_pkey PRIMARY KEY (id)
+) PARTITION BY HASH (id);
+
+DO $$
+BEGIN
+    FOR remainder IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE customer_p%s PARTITION OF customer_partitioned FOR VALUES WITH (MODULUS 16, REMAINDER %s)',
+                       remainder, remainder);
+    END LOOP;
+END $$;
+
+-- Keyset scan of CustomerEmailBackfill. Empties as the backfill progresses.
+CREATE INDEX customer_partitioned_unhashed_idx ON customer_partitioned (id) WHERE email_hash IS NULL;
+
+-- A unique constraint of a partitioned table must contain the partition key, so the email of every customer is
+-- also kept in this table, unique across all partitions. The DAOs look emails up here, then read the customer
+-- from a single partition by id.
+CREATE TABLE customer_email (
+    email TEXT NOT NULL,
+    customer_id BIGINT NOT NULL,
+    email_normalized TEXT,
+    email_hash BIGINT,
+    CONSTRAINT customer_email_pkey PRIMARY KEY (email)
+);
+
+-- The same lookup indexes as V4 had on customer.
+CREATE INDEX customer_email_lookup_hash_idx ON customer_email (email_hash);
+CREATE INDEX customer_email_lookup_unhashed_idx ON customer_email (lower(trim(email))) WHERE email_hash IS NULL;
+CREATE STATISTICS customer_email_lookup_normalized_stats ON (lower(trim(email))) FROM customer_email;
+
+-- Keeps customer_email in line with every write to customer_partitioned, including COPY and writes made outside
+-- the application. A second customer with the same email fails like it did with the customer_unique_email
+-- constraint: with a unique_violation naming that constraint.
+CREATE FUNCTION customer_email_sync() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'DELETE' OR (TG_OP = 'UPDATE' AND NEW.email <> OLD.email) THEN
+        DELETE FROM customer_email WHERE email = OLD.email AND customer_id = OLD.id;
+    END IF;
+    IF TG_OP = 'DELETE' THEN
+        RETURN NULL;
+    END IF;
+    INSERT INTO customer_email (email, customer_id, email_normalized, email_hash)
+    VALUES (NEW.email, NEW.id, NEW.email_normalized, NEW.email_hash)
+    ON CONFLICT (email) DO UPDATE SET email_normalized = EXCLUDED.email_normalized, email_hash = EXCLUDED.email_hash
+        WHERE customer_email.customer_id = EXCLUDED.customer_id;
+    IF NOT FOUND THEN
+        RAISE unique_violation USING
+            MESSAGE = 'duplicate key value violates unique constraint "customer_unique_email"',
+            DETAIL = format('Key (email)=(%s) already exists.', NEW.email),
+            CONSTRAINT = 'customer_unique_email';
+    END IF;
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER customer_email_sync
+    AFTER INSERT OR DELETE OR UPDATE OF email, email_normalized, email_hash ON customer_partitioned
+    FOR EACH ROW EXECUTE FUNCTION customer_email_sync();
+
+CREATE FUNCTION customer_email_truncate() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    TRUNCATE customer_email;
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER customer_email_truncate
+    AFTER TRUNCATE ON customer_partitioned
+    FOR EACH STATEMENT EXECUTE FUNCTION customer_email_truncate();
+
+-- Until V6 swaps the tables, every write to customer is repeated on customer_partitioned, so the copy made by V6
+-- only has to cover the rows that existed before this migration.
+CREATE FUNCTION customer_partitioned_sync() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM customer_partitioned WHERE id = OLD.id;
+    ELSE
+        INSERT INTO customer_partitioned (id, name, email, age, email_normalized, email_hash)
+        VALUES (NEW.id, NEW.name, NEW.email, NEW.age, NEW.email_normalized, NEW.email_hash)
+        ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, email = EXCLUDED.email, age = EXCLUDED.age,
+            email_normalized = EXCLUDED.email_normalized, email_hash = EXCLUDED.email_hash;
+    END IF;
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER customer_partitioned_sync
+    AFTER INSERT OR UPDATE OR DELETE ON customer
+    FOR EACH ROW EXECUTE FUNCTION customer_partitioned_sync();
+
+CREATE FUNCTION customer_partitioned_truncate() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    TRUNCATE customer_partitioned;
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER customer_partitioned_truncate
+    AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT EXECUTE FUNCTION customer_partitioned_truncate();
@@ -0,0 +1,67 @@
+-- Change tracking for GET /api/v1/customers/changes (see CustomerChangeFeed).
+--
+-- Every insert, and every update of name, email or age, stamps the row with the id of the writing transaction.
+-- Transaction ids rather than a sequence or a timestamp: once the oldest running transaction of the database is
+-- past an id, no transaction with that id or a smaller one can still commit, so a reader that stops there never
+-- skips a change committed later. A sequence value or a timestamp is taken before the commit, in another order.
+--
+-- Existing rows get 1 without a table rewrite (a constant default), so a first sync reads them as well.
+ALTER TABLE customer ADD COLUMN change_xid xid8 NOT NULL DEFAULT '1';
+
+-- The (change_xid, id) index of the feed is built by V8, without blocking writes.
+
+-- One row per deleted customer, so clients learn about deletes. Kept for customer.changes.tombstone-retention.
+CREATE TABLE customer_tombstone (
+    customer_id BIGINT NOT NULL,
+    change_xid xid8 NOT NULL,
+    deleted_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX customer_tombstone_change_idx ON customer_tombstone (change_xid, customer_id);
+CREATE INDEX customer_tombstone_deleted_at_idx ON customer_tombstone (deleted_at);
+
+-- Tokens at or below purged_xid may have missed purged tombstones (or a TRUNCATE): their clients must sync again
+-- from the start.
+CREATE TABLE customer_change_horizon (
+    purged_xid xid8 NOT NULL
+);
+
+INSERT INTO customer_change_horizon VALUES ('0');
+
+-- Updates that only touch other columns (the email backfill) or change nothing (JPA writes every column) are not
+-- changes for clients, and keep their transaction id.
+CREATE FUNCTION customer_change_stamp() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND NEW.name IS NOT DISTINCT FROM OLD.name AND NEW.email IS NOT DISTINCT FROM OLD.email
+            AND NEW.age IS NOT DISTINCT FROM OLD.age THEN
+        NEW.change_xid := OLD.change_xid;
+    ELSE
+        NEW.change_xid := pg_current_xact_id();
+    END IF;
+    RETURN NEW;
+END $$;
+
+CREATE TRIGGER customer_change_stamp
+    BEFORE INSERT OR UPDATE ON customer
+    FOR EACH ROW EXECUTE FUNCTION customer_change_stamp();
+
+CREATE FUNCTION customer_change_tombstone() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    INSERT INTO customer_tombstone (customer_id, change_xid) VALUES (OLD.id, pg_current_xact_id());
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER customer_change_tombstone
+    AFTER DELETE ON customer
+    FOR EACH ROW EXECUTE FUNCTION customer_change_tombstone();
+
+-- A TRUNCATE deletes rows without row triggers: every token issued so far becomes stale.
+CREATE FUNCTION customer_change_truncate() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    UPDATE customer_change_horizon SET purged_xid = pg_current_xact_id();
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER customer_change_truncate
+    AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT EXECUTE FUNCTION customer_change_truncate();
@@ -0,0 +1,16 @@
+-- Audit trail of the customer mutations made through CustomerService, written asynchronously by
+-- AuditTableSink (customer.audit.sinks: table).
+--
+-- sequence is the position of the entry in the audit buffer of the instance that wrote it, since it started:
+-- a gap shows entries were dropped or sampled out (customer.audit.overflow).
+CREATE TABLE customer_audit (
+    id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    sequence BIGINT NOT NULL,
+    occurred_at TIMESTAMPTZ NOT NULL,
+    action TEXT NOT NULL,
+    customer_id BIGINT NOT NULL,
+    -- Property names separated by commas, e.g. 'name,age'; empty for a DELETE
+    changed_fields TEXT NOT NULL
+);
+
+CREATE INDEX customer_audit_customer_idx ON customer_audit (customer_id, occurred_at);
@@ -0,0 +1,24 @@
+-- Global state of the sharded customer store (see CustomerShardDirectory).
+
+-- Customer ids, unique across all shards
+CREATE SEQUENCE customer_id_seq;
+
+-- Global email uniqueness index: one row per customer, whatever shard holds it
+CREATE TABLE customer_email_index(
+     email TEXT PRIMARY KEY,
+     customer_id BIGINT NOT NULL
+);
+
+-- Which shard owns each hash bucket. A moving bucket is being copied to another shard and takes no writes.
+CREATE TABLE customer_shard_bucket(
+     bucket SMALLINT PRIMARY KEY,
+     shard INT NOT NULL,
+     moving BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+-- Bumped on every change of customer_shard_bucket, so application instances know when to reload it
+CREATE TABLE customer_shard_map_version(
+     version BIGINT NOT NULL
+);
+
+INSERT INTO customer_shard_map_version(version) VALUES (0);
@@ -0,0 +1,12 @@
+-- One shard of the customer table (see CustomerShardedDataAccessService).
+-- Ids are allocated by the shard directory, and email uniqueness is enforced there as well.
+CREATE TABLE customer(
+     id BIGINT PRIMARY KEY,
+     name TEXT NOT NULL,
+     email TEXT NOT NULL,
+     age INT NOT NULL,
+     -- Hash bucket of the id; buckets are the unit that moves between shards when resharding
+     bucket SMALLINT NOT NULL
+);
+
+CREATE INDEX customer_bucket_idx ON customer(bucket);
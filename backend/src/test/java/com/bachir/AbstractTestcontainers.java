@@ -2,9 +2,11 @@ package com.bachir;
 
 import com.github.javafaker.Faker;
 import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
 import org.junit.jupiter.api.BeforeAll;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -12,6 +14,7 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import javax.sql.DataSource;
+import java.util.Map;
 
 @Testcontainers
 //Used to run integration tests against Docker containers. Can be used with any integration testing framework, such as JUnit, TestNG, or Cucumber.
@@ -22,15 +25,24 @@ public abstract class AbstractTestcontainers {
     @BeforeAll
     static void beforeAll() {
         // Create a new Flyway object and configure it to use the PostgreSQL database container.
-        Flyway flyway = Flyway.configure().dataSource(
-                postgreSQLContainer.getJdbcUrl(),
-                postgreSQLContainer.getUsername(),
-                postgreSQLContainer.getPassword()
-        ).load();
+        Flyway flyway = flyway(DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .driverClassName(postgreSQLContainer.getDriverClassName())
+                .url(postgreSQLContainer.getJdbcUrl())
+                .username(postgreSQLContainer.getUsername())
+                .password(postgreSQLContainer.getPassword())
+                .build()).load();
         // Execute all pending database migrations
         flyway.migrate();
     }
 
+    // Flyway configured like the application's (see FlywayConfig): with a session-level migration lock,
+    // or the CREATE INDEX CONCURRENTLY migrations wait forever. Also used by the tests with their own database.
+    public static FluentConfiguration flyway(DataSource dataSource) {
+        return Flyway.configure().dataSource(dataSource)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"));
+    }
+
     //Initialize the Postgres container
     @Container //Used to mark a field as a container
     protected static final PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:15.3")
@@ -57,7 +69,7 @@ public abstract class AbstractTestcontainers {
         );
     }
     //This is a field to build us the data source
-    private static DataSource getDataSource(){
+    protected static DataSource getDataSource(){
         return DataSourceBuilder.create()
                 .driverClassName(postgreSQLContainer.getDriverClassName())
                 .url(postgreSQLContainer.getJdbcUrl())
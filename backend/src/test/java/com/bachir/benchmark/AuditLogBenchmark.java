@@ -0,0 +1,118 @@
+package com.bachir.benchmark;
+
+import com.bachir.customer.CustomerField;
+import com.bachir.customer.audit.AuditAction;
+import com.bachir.customer.audit.AuditEntry;
+import com.bachir.customer.audit.AuditFileSink;
+import com.bachir.customer.audit.AuditOverflowPolicy;
+import com.bachir.customer.audit.AuditSink;
+import com.bachir.customer.audit.AuditWaitStrategy;
+import com.bachir.customer.audit.CustomerAuditLog;
+import com.bachir.customer.audit.CustomerAuditOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What CustomerAuditLog.record costs the request thread: claiming a slot, filling it and publishing it, while
+ * a writer thread drains the buffer into a sink.
+ *
+ * - sink: "none" is the disabled audit log, the baseline; "discard" a sink that drops the batches, so the
+ *   buffer never fills; "file" the file sink without fsync, in a temporary directory.
+ * - waitStrategy: how the writer waits. With BLOCKING, recording pays for waking the writer up.
+ *
+ * The entries are recorded outside a transaction, like CustomerService.updateCustomer does.
+ *
+ * Benchmarks are not run by surefire. Run them from the IDE through the main method, or with
+ * org.openjdk.jmh.Main on the test classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuditLogBenchmark {
+
+    private static final int CHANGED_FIELDS = AuditEntry.mask(CustomerField.EMAIL) | AuditEntry.mask(CustomerField.AGE);
+
+    @Param({"none", "discard", "file"})
+    public String sink;
+
+    @Param({"SLEEPING", "BLOCKING"})
+    public AuditWaitStrategy waitStrategy;
+
+    private Path directory;
+    private CustomerAuditLog auditLog;
+    private long customerId;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("audit-benchmark");
+        List<AuditSink> sinks = switch (sink) {
+            case "none" -> List.of();
+            case "discard" -> List.of(new DiscardingSink());
+            default -> List.of(new AuditFileSink(directory.resolve("customer-audit.log"), false));
+        };
+        auditLog = new CustomerAuditLog(sinks,
+                new CustomerAuditOptions(65536, waitStrategy, AuditOverflowPolicy.BLOCK, 0.5, 10), null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        auditLog.close();
+        try (var files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        auditLog.record(AuditAction.UPDATE, customerId++, CHANGED_FIELDS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AuditLogBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static final class DiscardingSink implements AuditSink {
+
+        private long lastSequence;
+
+        @Override
+        public String name() {
+            return "discard";
+        }
+
+        @Override
+        public void append(AuditEntry entry) {
+            lastSequence = entry.sequence();
+        }
+
+        @Override
+        public void endOfBatch() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
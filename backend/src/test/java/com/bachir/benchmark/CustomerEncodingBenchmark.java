@@ -0,0 +1,108 @@
+package com.bachir.benchmark;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.codec.CustomerProtobufHttpMessageConverter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of encoding the GET /api/v1/customers response (a List of Customer) with the
+ * same HttpMessageConverters the application uses, for JSON and the binary formats.
+ *
+ * The payload size of each format is printed once per trial, next to the JMH timings.
+ *
+ * Benchmarks are not run by surefire. Run them from the IDE through the main method, or with
+ * org.openjdk.jmh.Main on the test classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerEncodingBenchmark {
+
+    private static final Type CUSTOMER_LIST_TYPE = new ParameterizedTypeReference<List<Customer>>() {}.getType();
+
+    @Param({"1", "100", "10000"})
+    public int listSize;
+
+    @Param({"JSON", "SMILE", "CBOR", "PROTOBUF"})
+    public String format;
+
+    private GenericHttpMessageConverter<Object> converter;
+    private MediaType mediaType;
+    private List<Customer> customers;
+
+    @Setup
+    public void setUp() throws IOException {
+        switch (format) {
+            case "JSON" -> {
+                converter = new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build());
+                mediaType = MediaType.APPLICATION_JSON;
+            }
+            case "SMILE" -> {
+                converter = new MappingJackson2SmileHttpMessageConverter(Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build());
+                mediaType = new MediaType("application", "x-jackson-smile");
+            }
+            case "CBOR" -> {
+                converter = new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build());
+                mediaType = MediaType.APPLICATION_CBOR;
+            }
+            default -> {
+                converter = new CustomerProtobufHttpMessageConverter();
+                mediaType = CustomerProtobufHttpMessageConverter.APPLICATION_PROTOBUF;
+            }
+        }
+
+        // Fixed seed so every format encodes exactly the same data
+        Random random = new Random(42);
+        customers = new ArrayList<>(listSize);
+        for (long id = 1; id <= listSize; id++) {
+            customers.add(new Customer(id, "Customer Name " + random.nextInt(100_000),
+                    "customer." + id + "@amigoscode.com", random.nextInt(16, 99)));
+        }
+
+        System.out.printf("%n%s payload for %d customers: %d bytes%n", format, listSize, encode().getBodyAsBytes().length);
+    }
+
+    @Benchmark
+    public MockHttpOutputMessage encode() throws IOException {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        converter.write(customers, CUSTOMER_LIST_TYPE, mediaType, outputMessage);
+        return outputMessage;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CustomerEncodingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,139 @@
+package com.bachir.benchmark;
+
+import com.bachir.AbstractTestcontainers;
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerJPADataAccessService;
+import com.bachir.customer.CustomerProjectionRepositoryImpl;
+import com.bachir.customer.CustomerRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures selectAllCustomers of the JPA DAO over `rows` customers, in a database of the local Postgres instance
+ * (port 5332, or -Dbenchmark.server.url):
+ * - views: CustomerView records selected with a constructor expression (the default, customer.jpa.read-views);
+ * - entities: managed Customer entities, in a read-only transaction like the DAO's (no snapshots, no flush);
+ * - entitiesReadWrite: managed entities in a read-write transaction, which keeps a snapshot of every row and
+ *   dirty checks them all at the flush before the commit.
+ *
+ * Run it with -prof gc for the allocations per call (gc.alloc.rate.norm).
+ *
+ * Benchmarks are not run by surefire. Run them from the IDE through the main method, or with
+ * org.openjdk.jmh.Main on the test classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerJpaReadBenchmark {
+
+    private static final String SERVER_URL = System.getProperty("benchmark.server.url", "jdbc:postgresql://localhost:5332/");
+    private static final String DATABASE = "customer_bench_jpa_read";
+
+    @Param({"100000"})
+    public int rows;
+
+    private HikariDataSource dataSource;
+    private EntityManagerFactory entityManagerFactory;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+    private CustomerJPADataAccessService views;
+    private CustomerJPADataAccessService entities;
+
+    @Setup
+    public void setUp() {
+        try (HikariDataSource server = newDataSource("customer")) {
+            new JdbcTemplate(server).execute("DROP DATABASE IF EXISTS " + DATABASE + " WITH (FORCE)");
+            new JdbcTemplate(server).execute("CREATE DATABASE " + DATABASE);
+        }
+        dataSource = newDataSource(DATABASE);
+        AbstractTestcontainers.flyway(dataSource).load().migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("""
+                INSERT INTO customer(name, email, age)
+                SELECT 'Customer ' || n, 'customer.' || n || '@amigoscode.com', 18 + n % 60 FROM generate_series(1, ?) n
+                """, rows);
+        jdbcTemplate.execute("VACUUM ANALYZE");
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan("com.bachir.customer");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        CustomerRepository repository = new JpaRepositoryFactory(entityManager).getRepository(CustomerRepository.class,
+                RepositoryFragments.just(new CustomerProjectionRepositoryImpl(entityManager)));
+        views = new CustomerJPADataAccessService(repository, event -> { }, true);
+        entities = new CustomerJPADataAccessService(repository, event -> { }, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManagerFactory.close();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Customer> views() {
+        return readOnly.execute(status -> views.selectAllCustomers());
+    }
+
+    @Benchmark
+    public List<Customer> entities() {
+        return readOnly.execute(status -> entities.selectAllCustomers());
+    }
+
+    @Benchmark
+    public List<Customer> entitiesReadWrite() {
+        return readWrite.execute(status -> entities.selectAllCustomers());
+    }
+
+    private static HikariDataSource newDataSource(String database) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(SERVER_URL + database);
+        dataSource.setUsername("bachir");
+        dataSource.setPassword("password");
+        dataSource.setMaximumPoolSize(2);
+        return dataSource;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CustomerJpaReadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
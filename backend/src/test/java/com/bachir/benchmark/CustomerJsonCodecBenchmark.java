@@ -0,0 +1,105 @@
+package com.bachir.benchmark;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerRegistrationRequest;
+import com.bachir.customer.codec.CustomerJsonHttpMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the hand-written CustomerJsonHttpMessageConverter with Spring's ObjectMapper-based
+ * MappingJackson2HttpMessageConverter, through the same HttpMessageConverter calls Spring MVC makes.
+ *
+ * Run with -prof gc to see the allocation rate (gc.alloc.rate.norm) next to the timings.
+ *
+ * Benchmarks are not run by surefire. Run them from the IDE through the main method, or with
+ * org.openjdk.jmh.Main on the test classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerJsonCodecBenchmark {
+
+    private static final Type CUSTOMER_LIST_TYPE = new ParameterizedTypeReference<List<Customer>>() {}.getType();
+
+    @Param({"CODEC", "OBJECT_MAPPER"})
+    public String converterType;
+
+    private GenericHttpMessageConverter<Object> converter;
+    private Customer customer;
+    private List<Customer> customers;
+    private byte[] registrationJson;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        converter = converterType.equals("CODEC")
+                ? new CustomerJsonHttpMessageConverter(objectMapper.getFactory())
+                : new MappingJackson2HttpMessageConverter(objectMapper);
+
+        Random random = new Random(42);
+        customers = new ArrayList<>(100);
+        for (long id = 1; id <= 100; id++) {
+            customers.add(new Customer(id, "Customer Name " + random.nextInt(100_000),
+                    "customer." + id + "@amigoscode.com", random.nextInt(16, 99)));
+        }
+        customer = customers.get(0);
+        registrationJson = "{\"name\":\"Alex\",\"email\":\"alex@amigoscode.com\",\"age\":21}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public MockHttpOutputMessage writeCustomer() throws IOException {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        converter.write(customer, Customer.class, MediaType.APPLICATION_JSON, outputMessage);
+        return outputMessage;
+    }
+
+    @Benchmark
+    public MockHttpOutputMessage writeCustomerList() throws IOException {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        converter.write(customers, CUSTOMER_LIST_TYPE, MediaType.APPLICATION_JSON, outputMessage);
+        return outputMessage;
+    }
+
+    @Benchmark
+    public Object readRegistrationRequest() throws IOException {
+        MockHttpInputMessage inputMessage = new MockHttpInputMessage(registrationJson);
+        inputMessage.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return converter.read(CustomerRegistrationRequest.class, null, inputMessage);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CustomerJsonCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
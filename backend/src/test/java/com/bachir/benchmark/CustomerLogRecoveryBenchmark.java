@@ -0,0 +1,98 @@
+package com.bachir.benchmark;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.log.CustomerLogDataAccessService;
+import com.bachir.customer.log.CustomerLogOptions;
+import com.bachir.customer.log.FsyncPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the log store takes to start with `records` records in its log: the time to replay the log
+ * and rebuild the maps, from the page cache (the files were just written).
+ *
+ * The log holds `records` writes for records / 2 customers: every customer is inserted, then updated once.
+ * - snapshot=false: everything is replayed from the segments;
+ * - snapshot=true: a snapshot was taken after the writes, so only one record per customer is replayed.
+ *
+ * Writing the log takes a while for large sizes, and the customers must fit in the heap (about 1.5 GB for
+ * 5 million customers). The size the store is meant for:
+ *   java -cp ... org.openjdk.jmh.Main CustomerLogRecoveryBenchmark -p records=10000000
+ *
+ * Benchmarks are not run by surefire. Run them from the IDE through the main method, or with
+ * org.openjdk.jmh.Main on the test classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+public class CustomerLogRecoveryBenchmark {
+
+    private static final CustomerLogOptions OPTIONS = new CustomerLogOptions(
+            64L << 20, FsyncPolicy.INTERVAL, Duration.ofSeconds(1), Long.MAX_VALUE, Duration.ofHours(1));
+
+    @Param({"1000000"})
+    public int records;
+
+    @Param({"false", "true"})
+    public boolean snapshot;
+
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("customer-log-benchmark");
+        try (CustomerLogDataAccessService customerDao = new CustomerLogDataAccessService(directory, OPTIONS, event -> { })) {
+            int customers = records / 2;
+            for (int i = 0; i < customers; i++) {
+                customerDao.insertCustomer(new Customer("Customer " + i, "customer" + i + "@mail.com", 20 + i % 60));
+            }
+            for (long id = 1; id <= customers; id++) {
+                customerDao.updateCustomer(new Customer(id, null, null, 30));
+            }
+            if (snapshot) {
+                customerDao.snapshot();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int recover() {
+        try (CustomerLogDataAccessService customerDao = new CustomerLogDataAccessService(directory, OPTIONS, event -> { })) {
+            return customerDao.existsPersonWithId(records / 2) ? records / 2 : 0;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CustomerLogRecoveryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,150 @@
+package com.bachir.benchmark;
+
+import com.bachir.AbstractTestcontainers;
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerEmails;
+import com.bachir.customer.CustomerJDBCDataAccessService;
+import com.bachir.customer.CustomerRowMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the customer table before (V4) and after (V6) hash partitioning, in a database of the local Postgres
+ * instance (port 5332, or -Dbenchmark.server.url) loaded with `rows` customers:
+ * - insert: one JDBC DAO insert, which on the partitioned table also writes customer_email;
+ * - lookupById and lookupByEmail: the DAO point lookups. The DAO only knows the partitioned layout, so the email
+ *   lookup runs the DAO's query itself, on customer before and on customer_email after;
+ * - vacuum: VACUUM of the whole table after 1% of the customers were updated.
+ *
+ * Loading takes a while for large tables (about a minute per million rows), run it with the size you care about:
+ *   java -cp ... org.openjdk.jmh.Main CustomerPartitioningBenchmark -p rows=50000000
+ *
+ * Benchmarks are not run by surefire. Run them from the IDE through the main method, or with
+ * org.openjdk.jmh.Main on the test classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerPartitioningBenchmark {
+
+    private static final String SERVER_URL = System.getProperty("benchmark.server.url", "jdbc:postgresql://localhost:5332/");
+
+    @Param({"unpartitioned", "partitioned"})
+    public String table;
+
+    @Param({"1000000"})
+    public int rows;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private CustomerJDBCDataAccessService customerDao;
+    private String emailLookupSql;
+
+    @Setup
+    public void setUp() {
+        String database = "customer_bench_" + table;
+        try (HikariDataSource server = newDataSource("customer")) {
+            new JdbcTemplate(server).execute("DROP DATABASE IF EXISTS " + database + " WITH (FORCE)");
+            new JdbcTemplate(server).execute("CREATE DATABASE " + database);
+        }
+
+        dataSource = newDataSource(database);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        FluentConfiguration flyway = AbstractTestcontainers.flyway(dataSource);
+        if ("unpartitioned".equals(table)) {
+            flyway.target("4");
+        }
+        flyway.load().migrate();
+
+        jdbcTemplate.update("""
+                INSERT INTO customer(name, email, age)
+                SELECT 'Customer ' || n, 'customer.' || n || '@amigoscode.com', 18 + n % 60 FROM generate_series(1, ?) n
+                """, rows);
+        jdbcTemplate.execute("VACUUM ANALYZE");
+        customerDao = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper(), event -> { });
+        emailLookupSql = """
+                SELECT EXISTS (SELECT 1 FROM %s e
+                WHERE (e.email_hash = ? AND e.email_normalized = ?) OR (e.email_hash IS NULL AND lower(trim(e.email)) = ?))
+                """.formatted("unpartitioned".equals(table) ? "customer" : "customer_email");
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Customer insert() {
+        return customerDao.insertCustomer(new Customer("Benchmark", "benchmark_" + UUID.randomUUID() + "@amigoscode.com", 30));
+    }
+
+    @Benchmark
+    public Object lookupById() {
+        return customerDao.selectCustomerById(1 + ThreadLocalRandom.current().nextLong(rows));
+    }
+
+    // The query of CustomerJDBCDataAccessService.existsPersonWithEmail, on the table that holds the emails
+    @Benchmark
+    public Boolean lookupByEmail() {
+        String normalized = CustomerEmails.normalize("customer." + (1 + ThreadLocalRandom.current().nextInt(rows)) + "@amigoscode.com");
+        return jdbcTemplate.queryForObject(emailLookupSql, Boolean.class, CustomerEmails.hash(normalized), normalized, normalized);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public void vacuum(DeadRows deadRows) {
+        jdbcTemplate.execute("VACUUM customer");
+    }
+
+    // Updates a fresh 1% of the customers before every vacuum, so each one has the same amount of dead rows to clean up
+    @State(Scope.Benchmark)
+    public static class DeadRows {
+
+        private int round;
+
+        @Setup(Level.Iteration)
+        public void updateOnePercent(CustomerPartitioningBenchmark benchmark) {
+            benchmark.jdbcTemplate.update("UPDATE customer SET age = age + 1 WHERE id % 100 = ?", round++ % 100);
+        }
+    }
+
+    private static HikariDataSource newDataSource(String database) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(SERVER_URL + database);
+        dataSource.setUsername("bachir");
+        dataSource.setPassword("password");
+        dataSource.setMaximumPoolSize(2);
+        return dataSource;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CustomerPartitioningBenchmark.class.getSimpleName()).build()).run();
+    }
+}
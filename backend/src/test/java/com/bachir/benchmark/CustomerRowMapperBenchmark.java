@@ -0,0 +1,147 @@
+package com.bachir.benchmark;
+
+import com.bachir.AbstractTestcontainers;
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerIndexedRowMapper;
+import com.bachir.customer.CustomerRowMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the row mapper generated by @GenerateRowMapper (CustomerRowMapper, by position) with the one it
+ * replaced (by column name), on the SELECT of selectAllCustomers over `rows` customers, in a database of the
+ * local Postgres instance (port 5332, or -Dbenchmark.server.url):
+ * - query*: the whole query through JdbcTemplate, as selectAllCustomers runs it;
+ * - map*: the mapping alone, over a result set read once and kept in memory (scrollable), so that the database
+ *   and the network do not hide the difference.
+ *
+ * Benchmarks are not run by surefire. Run them from the IDE through the main method, or with
+ * org.openjdk.jmh.Main on the test classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerRowMapperBenchmark {
+
+    private static final String SERVER_URL = System.getProperty("benchmark.server.url", "jdbc:postgresql://localhost:5332/");
+    private static final String DATABASE = "customer_bench_row_mapper";
+    private static final String SELECT_ALL_SQL = "SELECT " + CustomerIndexedRowMapper.SELECT_LIST + " FROM customer";
+
+    @Param({"100000"})
+    public int rows;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private final RowMapper<Customer> byPosition = new CustomerRowMapper();
+    private final RowMapper<Customer> byName = new ByNameRowMapper();
+    private Connection connection;
+    private Statement statement;
+    private ResultSet resultSet;
+
+    @Setup
+    public void setUp() throws SQLException {
+        try (HikariDataSource server = newDataSource("customer")) {
+            new JdbcTemplate(server).execute("DROP DATABASE IF EXISTS " + DATABASE + " WITH (FORCE)");
+            new JdbcTemplate(server).execute("CREATE DATABASE " + DATABASE);
+        }
+        dataSource = newDataSource(DATABASE);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        AbstractTestcontainers.flyway(dataSource).load().migrate();
+        jdbcTemplate.update("""
+                INSERT INTO customer(name, email, age)
+                SELECT 'Customer ' || n, 'customer.' || n || '@amigoscode.com', 18 + n % 60 FROM generate_series(1, ?) n
+                """, rows);
+        jdbcTemplate.execute("VACUUM ANALYZE");
+
+        connection = dataSource.getConnection();
+        statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        resultSet = statement.executeQuery(SELECT_ALL_SQL);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        resultSet.close();
+        statement.close();
+        connection.close();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Customer> queryByName() {
+        return jdbcTemplate.query(SELECT_ALL_SQL, byName);
+    }
+
+    @Benchmark
+    public List<Customer> queryByPosition() {
+        return jdbcTemplate.query(SELECT_ALL_SQL, byPosition);
+    }
+
+    @Benchmark
+    public List<Customer> mapByName() throws SQLException {
+        return map(byName);
+    }
+
+    @Benchmark
+    public List<Customer> mapByPosition() throws SQLException {
+        return map(byPosition);
+    }
+
+    private List<Customer> map(RowMapper<Customer> mapper) throws SQLException {
+        List<Customer> customers = new ArrayList<>(rows);
+        resultSet.beforeFirst();
+        int rowNum = 0;
+        while (resultSet.next()) {
+            customers.add(mapper.mapRow(resultSet, rowNum++));
+        }
+        return customers;
+    }
+
+    private static HikariDataSource newDataSource(String database) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(SERVER_URL + database);
+        dataSource.setUsername("bachir");
+        dataSource.setPassword("password");
+        dataSource.setMaximumPoolSize(2);
+        return dataSource;
+    }
+
+    // CustomerRowMapper before @GenerateRowMapper: columns by name, and a NULL age read as 0.
+    private static class ByNameRowMapper implements RowMapper<Customer> {
+
+        @Override
+        public Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new Customer(rs.getLong("id"), rs.getString("name"), rs.getString("email"), rs.getInt("age"));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CustomerRowMapperBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,172 @@
+package com.bachir.benchmark;
+
+import com.bachir.customer.AsyncCustomerDao;
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerDao;
+import com.bachir.customer.CustomerJDBCDataAccessService;
+import com.bachir.customer.CustomerRegistrationRequest;
+import com.bachir.customer.CustomerRowMapper;
+import com.bachir.customer.CustomerService;
+import com.bachir.customer.CustomerUpdateRequest;
+import com.bachir.customer.audit.CustomerAuditLog;
+import com.bachir.customer.hotkey.CustomerHotKeys;
+import com.bachir.customer.index.CustomerIdIndex;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the latency of one CustomerService update and one registration against the local Postgres
+ * (port 5332, or -Dbenchmark.url), with the lookups run one after another (sequential) or in parallel.
+ *
+ * Locally a query takes a fraction of a millisecond; networkLatencyMicros adds a delay to every DAO call
+ * to show what the parallel lookups save when the database is a network hop away.
+ *
+ * Benchmarks are not run by surefire. Run them from the IDE through the main method, or with
+ * org.openjdk.jmh.Main on the test classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerServiceLatencyBenchmark {
+
+    @Param({"sequential", "parallel"})
+    public String lookups;
+
+    @Param({"0", "1000"})
+    public long networkLatencyMicros;
+
+    private HikariDataSource dataSource;
+    private ExecutorService executor;
+    private CustomerService customerService;
+    private int customerId;
+    private int age;
+
+    @Setup
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("benchmark.url", "jdbc:postgresql://localhost:5332/customer"));
+        dataSource.setUsername("bachir");
+        dataSource.setPassword("password");
+        dataSource.setMaximumPoolSize(10);
+
+        CustomerDao jdbcDao = new CustomerJDBCDataAccessService(new JdbcTemplate(dataSource), new CustomerRowMapper(), event -> { });
+        CustomerDao customerDao = new DelayedCustomerDao(jdbcDao, TimeUnit.MICROSECONDS.toNanos(networkLatencyMicros));
+        executor = Executors.newFixedThreadPool(10);
+        AsyncCustomerDao asyncCustomerDao = new AsyncCustomerDao(customerDao, "parallel".equals(lookups) ? executor : Runnable::run);
+        customerService = new CustomerService(customerDao, asyncCustomerDao, new CustomerHotKeys(),
+                CustomerIdIndex.disabled(), CustomerAuditLog.disabled(), new DataSourceTransactionManager(dataSource));
+
+        customerId = jdbcDao.insertCustomer(new Customer("Benchmark", uniqueEmail(), 30)).getId().intValue();
+    }
+
+    @TearDown
+    public void tearDown() {
+        new JdbcTemplate(dataSource).update("DELETE FROM customer WHERE email LIKE 'benchmark_%'");
+        executor.shutdown();
+        dataSource.close();
+    }
+
+    // A new email and age every time, so the update always has changes and checks the email
+    @Benchmark
+    public void update() {
+        customerService.updateCustomer(customerId, new CustomerUpdateRequest(null, uniqueEmail(), 20 + (age++ % 50)));
+    }
+
+    @Benchmark
+    public void register() {
+        customerService.addCustomer(new CustomerRegistrationRequest("Benchmark", uniqueEmail(), 30));
+    }
+
+    private static String uniqueEmail() {
+        return "benchmark_" + UUID.randomUUID() + "@amigoscode.com";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CustomerServiceLatencyBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    // Adds a fixed delay before every call, like a database one network round trip away.
+    private record DelayedCustomerDao(CustomerDao delegate, long delayNanos) implements CustomerDao {
+
+        @Override
+        public List<Customer> selectAllCustomers() {
+            delay();
+            return delegate.selectAllCustomers();
+        }
+
+        @Override
+        public Optional<Customer> selectCustomerById(Long id) {
+            delay();
+            return delegate.selectCustomerById(id);
+        }
+
+        @Override
+        public Optional<Customer> selectCustomerByEmail(String email) {
+            delay();
+            return delegate.selectCustomerByEmail(email);
+        }
+
+        @Override
+        public Customer insertCustomer(Customer customer) {
+            delay();
+            return delegate.insertCustomer(customer);
+        }
+
+        @Override
+        public boolean existsPersonWithEmail(String email) {
+            delay();
+            return delegate.existsPersonWithEmail(email);
+        }
+
+        @Override
+        public boolean existsPersonWithId(long id) {
+            delay();
+            return delegate.existsPersonWithId(id);
+        }
+
+        @Override
+        public boolean deleteCustomerById(long id) {
+            delay();
+            return delegate.deleteCustomerById(id);
+        }
+
+        @Override
+        public void updateCustomer(Customer customer) {
+            delay();
+            delegate.updateCustomer(customer);
+        }
+
+        private void delay() {
+            if (delayNanos > 0) {
+                LockSupport.parkNanos(delayNanos);
+            }
+        }
+    }
+}
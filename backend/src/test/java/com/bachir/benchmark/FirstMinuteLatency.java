@@ -0,0 +1,107 @@
+package com.bachir.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the customer API during the first minute an instance takes traffic, to see what the JIT costs
+ * right after a deploy and what ApplicationWarmup saves. Not a JMH benchmark: the application runs in its own,
+ * freshly started JVM, and this only sends it requests.
+ *
+ * Start the application, then this straight away; it waits for /actuator/health/readiness, like a load balancer,
+ * then sends requests from `clients` threads for 60 seconds and prints p50/p99/max per 10 seconds:
+ *   SPRING_PROFILES_ACTIVE=prod java -jar target/bachir.api-0.0.1-SNAPSHOT.jar [--customer.warmup.enabled=false]
+ *   java -cp target/test-classes:... com.bachir.benchmark.FirstMinuteLatency [base-url] [clients]
+ *
+ * Requests are GET /api/v1/customers/{id} of ids 1 to 100 (existing or not), and GET /api/v1/customers/search?email=,
+ * which is not served by the response cache.
+ */
+public class FirstMinuteLatency {
+
+    private static final int SECONDS = 60;
+    private static final int BUCKET_SECONDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+        long waitStart = System.nanoTime();
+        while (!ready(http, baseUrl)) {
+            Thread.sleep(50);
+        }
+        System.out.printf("Ready after %d ms of polling%n", (System.nanoTime() - waitStart) / 1_000_000);
+
+        int buckets = SECONDS / BUCKET_SECONDS;
+        List<List<Long>> latencies = new ArrayList<>();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            latencies.add(new ArrayList<>());
+        }
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(SECONDS);
+        ExecutorService threads = Executors.newFixedThreadPool(clients);
+        for (int client = 0; client < clients; client++) {
+            threads.execute(() -> {
+                while (true) {
+                    long sent = System.nanoTime();
+                    if (sent >= end) {
+                        return;
+                    }
+                    send(http, baseUrl);
+                    long latency = System.nanoTime() - sent;
+                    List<Long> bucket = latencies.get((int) ((sent - start) / TimeUnit.SECONDS.toNanos(BUCKET_SECONDS)));
+                    synchronized (bucket) {
+                        bucket.add(latency);
+                    }
+                }
+            });
+        }
+        threads.shutdown();
+        threads.awaitTermination(SECONDS + 30, TimeUnit.SECONDS);
+
+        System.out.println("seconds   requests   p50 ms   p99 ms   max ms");
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            long[] sorted = latencies.get(bucket).stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("%3d-%-3d %10d %8.2f %8.2f %8.2f%n", bucket * BUCKET_SECONDS, (bucket + 1) * BUCKET_SECONDS,
+                    sorted.length, millis(sorted, 0.50), millis(sorted, 0.99), millis(sorted, 1.0));
+        }
+    }
+
+    private static boolean ready(HttpClient http, String baseUrl) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health/readiness")).build();
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (Exception notStartedYet) {
+            return false;
+        }
+    }
+
+    private static void send(HttpClient http, String baseUrl) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String path = random.nextBoolean()
+                ? "/api/v1/customers/" + (1 + random.nextInt(100))
+                : "/api/v1/customers/search?email=customer" + random.nextInt(100) + "@mail.com";
+        try {
+            http.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (Exception e) {
+            throw new IllegalStateException("GET " + path + " failed", e);
+        }
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,109 @@
+package com.bachir.customer;
+
+import com.bachir.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the email lookups and the backfill against a database of the local Postgres instance (port 5332)
+ * created for every test and migrated like the application database. Another server can be given with
+ * -Demail.server.url.
+ */
+public class CustomerEmailLookupIntegrationTest {
+
+    private static final String SERVER_URL = System.getProperty("email.server.url", "jdbc:postgresql://localhost:5332/");
+    private static final String DATABASE = "customer_email_it";
+    private static final int LEGACY_ROWS = 20_000;
+
+    private JdbcTemplate jdbcTemplate;
+    private CustomerJDBCDataAccessService underTest;
+
+    @BeforeEach
+    void createDatabase() {
+        JdbcTemplate server = new JdbcTemplate(dataSource("customer"));
+        server.execute("DROP DATABASE IF EXISTS " + DATABASE + " WITH (FORCE)");
+        server.execute("CREATE DATABASE " + DATABASE);
+        DataSource dataSource = dataSource(DATABASE);
+        AbstractTestcontainers.flyway(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        underTest = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper(), mock(ApplicationEventPublisher.class));
+
+        // Rows written before the email columns existed, or loaded in bulk without them
+        jdbcTemplate.update("""
+                INSERT INTO customer(name, email, age)
+                SELECT 'Legacy ' || n, 'Legacy.' || n || '@AmigosCode.com', 30 FROM generate_series(1, ?) n
+                """, LEGACY_ROWS);
+        jdbcTemplate.execute("ANALYZE customer, customer_email");
+    }
+
+    @Test
+    void findsCustomersIgnoringCaseBeforeAndAfterBackfill() throws Exception {
+        // Before the backfill, through the partial index on the unhashed rows
+        assertThat(underTest.existsPersonWithEmail("legacy.42@amigoscode.com")).isTrue();
+        assertThat(plan("legacy.42@amigoscode.com")).contains("customer_email_lookup_unhashed_idx");
+
+        // When
+        long backfilled = backfill().backfill();
+
+        // Then
+        assertThat(backfilled).isEqualTo(LEGACY_ROWS);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM customer WHERE email_hash IS NULL", Long.class)).isZero();
+        assertThat(underTest.selectCustomerByEmail(" LEGACY.42@amigoscode.com")).hasValueSatisfying(
+                customer -> assertThat(customer.getName()).isEqualTo("Legacy 42"));
+        jdbcTemplate.execute("ANALYZE customer, customer_email");
+        assertThat(plan("legacy.42@amigoscode.com")).contains("customer_email_lookup_hash_idx");
+        assertThat(backfill().backfill()).isZero();
+    }
+
+    @Test
+    void insertAndUpdateWriteEmailColumns() {
+        // Given
+        Customer customer = underTest.insertCustomer(new Customer("Alice", "Alice@Example.com", 30));
+
+        // When
+        underTest.updateCustomer(new Customer(customer.getId(), null, "Alicia@Example.com", null));
+
+        // Then
+        assertThat(underTest.existsPersonWithEmail("alice@example.com")).isFalse();
+        assertThat(underTest.selectCustomerByEmail("ALICIA@example.com")).hasValueSatisfying(
+                found -> assertThat(found.getId()).isEqualTo(customer.getId()));
+        assertThat(jdbcTemplate.queryForObject("SELECT email_hash FROM customer WHERE id = ?", Long.class, customer.getId()))
+                .isEqualTo(CustomerEmails.hash("alicia@example.com"));
+    }
+
+    private CustomerEmailBackfill backfill() {
+        return new CustomerEmailBackfill(jdbcTemplate, new DataSourceTransactionManager(jdbcTemplate.getDataSource()),
+                1000, Duration.ZERO);
+    }
+
+    private String plan(String email) {
+        String normalized = CustomerEmails.normalize(email);
+        List<String> lines = jdbcTemplate.queryForList("""
+                EXPLAIN SELECT EXISTS (SELECT 1 FROM customer_email
+                WHERE (email_hash = ? AND email_normalized = ?) OR (email_hash IS NULL AND lower(trim(email)) = ?))
+                """, String.class, CustomerEmails.hash(normalized), normalized, normalized);
+        return String.join("\n", lines);
+    }
+
+    private static DataSource dataSource(String database) {
+        return DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .driverClassName("org.postgresql.Driver")
+                .url(SERVER_URL + database)
+                .username("bachir")
+                .password("password")
+                .build();
+    }
+}
@@ -0,0 +1,42 @@
+package com.bachir.customer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerEmailsTest {
+
+    @Test
+    void normalizeIgnoresCaseAndSurroundingSpaces() {
+        // When
+        String actual = CustomerEmails.normalize("  Alice.Smith@Example.COM ");
+
+        // Then
+        assertThat(actual).isEqualTo("alice.smith@example.com");
+    }
+
+    @Test
+    void hashIsStableAndDiffersBetweenEmails() {
+        // When
+        long alice = CustomerEmails.hash("alice@example.com");
+
+        // Then
+        assertThat(CustomerEmails.hash("alice@example.com")).isEqualTo(alice);
+        assertThat(CustomerEmails.hash("alicia@example.com")).isNotEqualTo(alice);
+    }
+
+    @Test
+    void customerKeepsEmailColumnsInLineWithEmail() {
+        // Given
+        Customer customer = new Customer("Alice", "Alice@Example.com", 30);
+
+        // When
+        customer.setEmail("ALICIA@example.com");
+
+        // Then the entity writes the normalized email and hash of its current email
+        Customer expected = new Customer("Alice", "alicia@example.com", 30);
+        assertThat(customer).usingRecursiveComparison()
+                .ignoringFields("email")
+                .isEqualTo(expected);
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import com.bachir.AbstractTestcontainers;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -20,7 +21,8 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
     void setUp() {
         underTest = new CustomerJDBCDataAccessService(
                 getJdbcTemplate(),
-                customerRowMapper
+                customerRowMapper,
+                event -> {}
         ); //To get fresh new object everytime test is run
 
     }
@@ -47,6 +49,19 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void selectCustomerByIdReadsOnlySelectedColumns() {
+        //Given
+        String email = FAKER.internet().emailAddress() + "_" + UUID.randomUUID();
+        Customer customer = underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        //When
+        Optional<Customer> actual = underTest.selectCustomerById(customer.getId(), Set.of(CustomerField.ID, CustomerField.EMAIL));
+
+        //Then
+        assertThat(actual).contains(new Customer(customer.getId(), null, email, null));
+    }
+
     /**
      *  First, we need to create a new customer,
      *  Add it to the db,
@@ -99,7 +114,22 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
 
     @Test
     void insertCustomer() {
-        //Will be similar to selectCustomerById()
+        //Given
+        String email = FAKER.internet().emailAddress() + "_" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        //When
+        Customer actual = underTest.insertCustomer(customer);
+
+        //Then the generated id comes back with the insert, no need to look the customer up
+        assertThat(actual.getId()).isNotNull();
+        assertThat(underTest.selectCustomerById(actual.getId())).hasValueSatisfying(
+                c -> assertThat(c.getEmail()).isEqualTo(email)
+        );
     }
 
     @Test
@@ -187,11 +217,13 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
                 .orElseThrow();
 
         //When
-        underTest.deleteCustomerById(id);
+        boolean deleted = underTest.deleteCustomerById(id);
 
         //Then
+        assertThat(deleted).isTrue();
         Optional<Customer> actual = underTest.selectCustomerById(id);
         assertThat(actual).isNotPresent();
+        assertThat(underTest.deleteCustomerById(id)).isFalse();
     }
 
     @Test
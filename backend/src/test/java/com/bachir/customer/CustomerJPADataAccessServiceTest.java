@@ -5,8 +5,20 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CustomerJPADataAccessServiceTest {
 
@@ -21,7 +33,7 @@ class CustomerJPADataAccessServiceTest {
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this); // This returns an instance of AutoCloseable
-        underTest = new CustomerJPADataAccessService(customerRepository);
+        underTest = new CustomerJPADataAccessService(customerRepository, event -> {}, true);
     }
 
     //This is so after each test we have a new mock to work with
@@ -32,6 +44,23 @@ class CustomerJPADataAccessServiceTest {
 
     @Test
     void selectAllCustomers() {
+        // Given
+        when(customerRepository.findAllViews()).thenReturn(List.of(new CustomerView(1L, "Alex", "alex@gmail.com", 21)));
+
+        // When
+        List<Customer> actual = underTest.selectAllCustomers();
+
+        // Then
+        verify(customerRepository).findAllViews();
+        verify(customerRepository, never()).findAll();
+        assertThat(actual).containsExactly(new Customer(1L, "Alex", "alex@gmail.com", 21));
+    }
+
+    @Test
+    void selectAllCustomersAsEntities() {
+        // Given
+        underTest = new CustomerJPADataAccessService(customerRepository, event -> {}, false);
+
         // When
         underTest.selectAllCustomers();
 
@@ -49,31 +78,58 @@ class CustomerJPADataAccessServiceTest {
         underTest.selectCustomerById(id);
 
         // Then
-        verify(customerRepository).findById((int) id);
+        verify(customerRepository).findViewById(id);
+        verify(customerRepository, never()).findById((int) id);
+    }
+
+    @Test
+    void selectCustomerByEmail() {
+        // Given
+        when(customerRepository.findCustomerIdByNormalizedEmail(CustomerEmails.hash("alex@gmail.com"), "alex@gmail.com"))
+                .thenReturn(Optional.of(1L));
+        when(customerRepository.findViewById(1L)).thenReturn(Optional.of(new CustomerView(1L, "Alex", "Alex@gmail.com", 21)));
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerByEmail(" ALEX@gmail.com");
+
+        // Then
+        assertThat(actual).contains(new Customer(1L, "Alex", "Alex@gmail.com", 21));
+    }
+
+    @Test
+    void selectCustomersPage() {
+        // When
+        underTest.selectCustomersPage(10, 50);
+
+        // Then
+        verify(customerRepository).findViewsAfter(10, Pageable.ofSize(50));
     }
 
     @Test
     void insertCustomer() {
         // Given
         Customer customer = new Customer("main/bachir","bachir@gmail.com",16);
+        Customer saved = new Customer(1L, "main/bachir","bachir@gmail.com",16);
+        when(customerRepository.save(customer)).thenReturn(saved);
 
         // When
-        underTest.insertCustomer(customer);
+        Customer actual = underTest.insertCustomer(customer);
 
         // Then
         verify(customerRepository).save(customer);
+        assertThat(actual).isSameAs(saved);
     }
 
     @Test
     void existsPersonWithEmail() {
         // Given
-        String email = "email.com";
+        String email = " Email.com";
 
         // When
         underTest.existsPersonWithEmail(email);
 
         // Then
-        verify(customerRepository).existsCustomerByEmail(email);
+        verify(customerRepository).existsCustomerByNormalizedEmail(CustomerEmails.hash("email.com"), "email.com");
     }
 
     @Test
@@ -92,12 +148,16 @@ class CustomerJPADataAccessServiceTest {
     void deleteCustomerById() {
         // Given
         long id=2;
+        Customer customer = new Customer(id, "Ali", "ali@gmail.com", 2);
+        when(customerRepository.findById((int) id)).thenReturn(Optional.of(customer));
 
         // When
-        underTest.deleteCustomerById(id);
+        boolean deleted = underTest.deleteCustomerById(id);
 
         // Then
-        verify(customerRepository).deleteById((int) id);
+        assertThat(deleted).isTrue();
+        verify(customerRepository).delete(customer);
+        assertThat(underTest.deleteCustomerById(3)).isFalse();
     }
 
     @Test
@@ -111,4 +171,25 @@ class CustomerJPADataAccessServiceTest {
         // Then
         verify(customerRepository).save(customer);
     }
-}
\ No newline at end of file
+
+    @Test
+    void everySelectRunsInReadOnlyTransaction() {
+        // Given
+        AnnotationTransactionAttributeSource transactionAttributes = new AnnotationTransactionAttributeSource();
+
+        // When
+        List<Method> reads = Arrays.stream(CustomerJPADataAccessService.class.getDeclaredMethods())
+                .filter(method -> Modifier.isPublic(method.getModifiers()))
+                .filter(method -> method.getName().startsWith("select"))
+                .toList();
+
+        // Then every overload is annotated itself, as calls between them do not go through the proxy,
+        // and only read-only transactions may run on a read replica (see ReplicaRoutingDataSource)
+        assertThat(reads).isNotEmpty().allSatisfy(method -> assertThat(
+                transactionAttributes.getTransactionAttribute(method, CustomerJPADataAccessService.class))
+                .as(method.toString())
+                .isNotNull()
+                .extracting(TransactionAttribute::isReadOnly)
+                .isEqualTo(true));
+    }
+}
@@ -0,0 +1,159 @@
+package com.bachir.customer;
+
+import com.bachir.AbstractTestcontainers;
+import com.bachir.customer.transfer.CustomerCopyService;
+import com.bachir.customer.transfer.CustomerImportResult;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Migrates a database of the local Postgres instance (port 5332) with customers in it to the hash-partitioned
+ * customer table (V5, V6), then runs the DAO and the CSV import against it. The database is created for every
+ * test; another server can be given with -Dpartitioning.server.url.
+ */
+public class CustomerPartitioningIntegrationTest {
+
+    private static final String SERVER_URL = System.getProperty("partitioning.server.url", "jdbc:postgresql://localhost:5332/");
+    private static final String DATABASE = "customer_partitioning_it";
+    private static final int EXISTING_ROWS = 25_000;
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private CustomerJDBCDataAccessService underTest;
+
+    @BeforeEach
+    void createDatabase() {
+        JdbcTemplate server = new JdbcTemplate(dataSource("customer"));
+        server.execute("DROP DATABASE IF EXISTS " + DATABASE + " WITH (FORCE)");
+        server.execute("CREATE DATABASE " + DATABASE);
+        dataSource = dataSource(DATABASE);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        // Customers written before the table was partitioned
+        flyway().target("4").load().migrate();
+        jdbcTemplate.update("""
+                INSERT INTO customer(name, email, age)
+                SELECT 'Existing ' || n, 'existing.' || n || '@amigoscode.com', 30 FROM generate_series(1, ?) n
+                """, EXISTING_ROWS);
+        flyway().load().migrate();
+
+        underTest = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper(), mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    void migrationCopiesCustomersIntoPartitions() {
+        assertThat(jdbcTemplate.queryForObject("SELECT relkind FROM pg_class WHERE relname = 'customer'", String.class))
+                .isEqualTo("p");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM pg_inherits WHERE inhparent = 'customer'::regclass", Integer.class))
+                .isEqualTo(16);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM customer", Integer.class)).isEqualTo(EXISTING_ROWS);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM customer_email", Integer.class)).isEqualTo(EXISTING_ROWS);
+        assertThat(underTest.selectCustomerById(42L)).hasValueSatisfying(
+                customer -> assertThat(customer.getEmail()).isEqualTo("existing.42@amigoscode.com"));
+
+        // The id sequence carries on after the copied customers
+        Customer inserted = underTest.insertCustomer(new Customer("New", "new@amigoscode.com", 20));
+        assertThat(inserted.getId()).isGreaterThan(EXISTING_ROWS);
+    }
+
+    @Test
+    void emailsStayUniqueAcrossPartitions() {
+        // Given
+        Customer customer = underTest.insertCustomer(new Customer("Alex", "alex@amigoscode.com", 20));
+
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Other", "existing.7@amigoscode.com", 20)))
+                .isInstanceOf(DuplicateKeyException.class)
+                .hasMessageContaining("customer_unique_email");
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(customer.getId(), null, "existing.7@amigoscode.com", null)))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        // Deleting a customer, or changing its email, frees the email
+        underTest.deleteCustomerById(7);
+        underTest.updateCustomer(new Customer(customer.getId(), null, "existing.7@amigoscode.com", null));
+        assertThat(underTest.insertCustomer(new Customer("Alex", "alex@amigoscode.com", 20)).getId()).isNotNull();
+        assertThat(underTest.selectCustomerByEmail("Existing.7@AmigosCode.com")).hasValueSatisfying(
+                found -> assertThat(found.getId()).isEqualTo(customer.getId()));
+    }
+
+    @Test
+    void emailLookupReadsOnePartition() {
+        // Given
+        Customer customer = underTest.insertCustomer(new Customer("Alex", "alex@amigoscode.com", 20));
+        String normalized = CustomerEmails.normalize(customer.getEmail());
+
+        // When
+        List<String> plan = jdbcTemplate.queryForList("""
+                EXPLAIN (ANALYZE, COSTS OFF, TIMING OFF)
+                SELECT id, name, email, age FROM customer WHERE id = (SELECT e.customer_id FROM customer_email e
+                WHERE (e.email_hash = ? AND e.email_normalized = ?) OR (e.email_hash IS NULL AND lower(trim(e.email)) = ?)
+                ORDER BY e.customer_id LIMIT 1)
+                """, String.class, CustomerEmails.hash(normalized), normalized, normalized);
+
+        // Then the other 15 partitions are skipped
+        assertThat(plan.stream().filter(line -> line.contains("on customer_p")).count()).isEqualTo(16);
+        assertThat(plan.stream().filter(line -> line.contains("on customer_p") && line.contains("never executed")).count())
+                .isEqualTo(15);
+    }
+
+    @Test
+    void importMergesOnEmailAndTruncateClearsEmails() {
+        // Given
+        DataSource connection = new SingleConnectionDataSource(SERVER_URL + DATABASE, "bachir", "password", true);
+        JdbcTemplate importTemplate = new JdbcTemplate(connection);
+        CustomerCopyService copyService = new CustomerCopyService(importTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(connection)), event -> { });
+        String csv = """
+                email,name,age
+                existing.3@amigoscode.com,Renamed,44
+                imported@amigoscode.com,Imported,22
+                """;
+
+        // When
+        CustomerImportResult result = copyService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        assertThat(result).isEqualTo(new CustomerImportResult(2, 2));
+        assertThat(underTest.selectCustomerById(3L)).hasValueSatisfying(
+                customer -> assertThat(customer.getName()).isEqualTo("Renamed"));
+        assertThat(underTest.existsPersonWithEmail("imported@amigoscode.com")).isTrue();
+
+        // When
+        jdbcTemplate.execute("TRUNCATE customer");
+
+        // Then
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM customer_email", Integer.class)).isZero();
+    }
+
+    private FluentConfiguration flyway() {
+        return AbstractTestcontainers.flyway(dataSource);
+    }
+
+    private static DataSource dataSource(String database) {
+        return DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .driverClassName("org.postgresql.Driver")
+                .url(SERVER_URL + database)
+                .username("bachir")
+                .password("password")
+                .build();
+    }
+}
@@ -4,9 +4,13 @@ import org.junit.jupiter.api.Test;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class CustomerRowMapperTest {
@@ -16,10 +20,10 @@ class CustomerRowMapperTest {
         // Given
         CustomerRowMapper customerRowMapper = new CustomerRowMapper();
         ResultSet resultSet = mock(ResultSet.class);
-        when(resultSet.getLong("id")).thenReturn(1L);
-        when(resultSet.getInt("age")).thenReturn(19);
-        when(resultSet.getString("name")).thenReturn("Jamila");
-        when(resultSet.getString("email")).thenReturn("Jamila@gmail.com");
+        when(resultSet.getLong(1)).thenReturn(1L);
+        when(resultSet.getString(2)).thenReturn("Jamila");
+        when(resultSet.getString(3)).thenReturn("Jamila@gmail.com");
+        when(resultSet.getInt(4)).thenReturn(19);
 
         // When
         Customer actual = customerRowMapper.mapRow(resultSet, 1);
@@ -29,4 +33,38 @@ class CustomerRowMapperTest {
 
         assertThat(actual).isEqualTo(expected);
     }
-}
\ No newline at end of file
+
+    @Test
+    void keepsANullAgeNull() throws SQLException {
+        // Given a row whose age is NULL: getInt returns 0, and wasNull true
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getLong(1)).thenReturn(1L);
+        when(resultSet.getString(2)).thenReturn("Jamila");
+        when(resultSet.getString(3)).thenReturn("Jamila@gmail.com");
+        when(resultSet.getInt(4)).thenReturn(0);
+        when(resultSet.wasNull()).thenReturn(false, true);
+
+        // When
+        Customer actual = new CustomerRowMapper().mapRow(resultSet, 1);
+
+        // Then
+        assertThat(actual.getAge()).isNull();
+        assertThat(actual.getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void mapsOnlySelectedColumns() throws SQLException {
+        // Given a row of SELECT id, email
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getLong(1)).thenReturn(1L);
+        when(resultSet.getString(2)).thenReturn("Jamila@gmail.com");
+
+        // When
+        Customer actual = CustomerRowMapper.forFields(Set.of(CustomerField.ID, CustomerField.EMAIL)).mapRow(resultSet, 1);
+
+        // Then
+        assertThat(actual).isEqualTo(new Customer(1L, null, "Jamila@gmail.com", null));
+        verify(resultSet, never()).getString(3);
+        verify(resultSet, never()).getInt(anyInt());
+    }
+}
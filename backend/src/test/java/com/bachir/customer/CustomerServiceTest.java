@@ -1,5 +1,11 @@
 package com.bachir.customer;
 
+import com.bachir.customer.audit.AuditAction;
+import com.bachir.customer.audit.AuditEntry;
+import com.bachir.customer.audit.CustomerAuditLog;
+import com.bachir.customer.hotkey.CustomerHotKeys;
+import com.bachir.customer.hotkey.HeavyHitters.HotKey;
+import com.bachir.customer.index.CustomerIdIndex;
 import com.bachir.exception.DuplicateResourceException;
 import com.bachir.exception.RequestValidationException;
 import com.bachir.exception.ResourceNotFoundException;
@@ -7,10 +13,17 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -21,6 +34,12 @@ class CustomerServiceTest {
 
     @Mock
     private CustomerDao customerDao;
+    @Mock
+    private CustomerAuditLog auditLog;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private final CustomerHotKeys hotKeys = new CustomerHotKeys();
+    private final CustomerIdIndex idIndex = CustomerIdIndex.disabled();
     private CustomerService underTest;
 
     //Used to close the resource after each test
@@ -29,7 +48,8 @@ class CustomerServiceTest {
     @BeforeEach
     void setUp() {
         //2. autoCloseable = MockitoAnnotations.openMocks(this);   // This returns an instance of AutoCloseable
-        underTest = new CustomerService(customerDao);
+        // A direct executor runs the "parallel" lookups one after another, so the tests stay deterministic
+        underTest = new CustomerService(customerDao, new AsyncCustomerDao(customerDao, Runnable::run), hotKeys, idIndex, auditLog, transactionManager);
     }
 
     //This is so after each test we have a new mock to work with
@@ -47,6 +67,40 @@ class CustomerServiceTest {
         verify(customerDao).selectAllCustomers();
     }
 
+    @Test
+    void getsOnlySelectedFields() {
+        // Given
+        Set<CustomerField> fields = CustomerField.parse("id,email");
+        Customer customer = new Customer(10L, null, "alex@mail.com", null);
+        when(customerDao.selectCustomerById(10L, fields)).thenReturn(Optional.of(customer));
+
+        // When
+        CustomerProjection actual = underTest.getCustomerById(10, fields);
+
+        // Then the DAO was asked for the fields only, and only they are part of the result
+        assertThat(actual).isEqualTo(new CustomerProjection(customer, fields));
+        assertThat(actual.email()).isEqualTo("alex@mail.com");
+        assertThat(actual.name()).isNull();
+        verify(customerDao, never()).selectCustomerById(10L);
+        assertThatThrownBy(() -> CustomerField.parse("id,password"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Unknown field [password], expected some of id, name, email, age");
+    }
+
+    @Test
+    void getsPagesOfBoundedSize() {
+        // When
+        underTest.getCustomersPage(100, 50);
+
+        // Then
+        verify(customerDao).selectCustomersPage(100, 50);
+        assertThatThrownBy(() -> underTest.getCustomersPage(0, 1001))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and 1000");
+        assertThatThrownBy(() -> underTest.getCustomersPage(0, 0))
+                .isInstanceOf(RequestValidationException.class);
+    }
+
     @Test
     void canGetCustomer() {
         // Given
@@ -62,6 +116,54 @@ class CustomerServiceTest {
         assertThat(actual).isEqualTo(customer);
     }
 
+    @Test
+    void answersIdsTheIndexKnowsWithoutQuery() {
+        // Given
+        CustomerIdIndex loadedIndex = mock(CustomerIdIndex.class);
+        when(loadedIndex.lookup(10)).thenReturn(CustomerIdIndex.Lookup.ABSENT);
+        when(loadedIndex.lookup(11)).thenReturn(CustomerIdIndex.Lookup.PRESENT);
+        when(loadedIndex.lookup(12)).thenReturn(CustomerIdIndex.Lookup.PRESENT);
+        when(customerDao.deleteCustomerById(11)).thenReturn(true);
+        when(customerDao.deleteCustomerById(12)).thenReturn(false);
+        underTest = new CustomerService(customerDao, new AsyncCustomerDao(customerDao, Runnable::run), hotKeys, loadedIndex, auditLog, transactionManager);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomerById(10))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Customer with id [10] not found");
+        assertThatThrownBy(() -> underTest.deleteCustomerById(10))
+                .isInstanceOf(ResourceNotFoundException.class);
+        verify(customerDao, never()).deleteCustomerById(10);
+        underTest.deleteCustomerById(11);
+        verify(customerDao, never()).selectCustomerById(any());
+        verify(customerDao, never()).existsPersonWithId(anyLong());
+
+        // And PRESENT is only a hint: an id deleted since is still not found
+        assertThatThrownBy(() -> underTest.deleteCustomerById(12))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Customer with id [12] not found");
+        verify(auditLog).record(AuditAction.DELETE, 11, 0);
+        verifyNoMoreInteractions(auditLog);
+    }
+
+    @Test
+    void countsLookedUpIdsAndEmails() {
+        // Given
+        long id = 10;
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(new Customer(id, "Alex", "alex@mail.com", 19)));
+        when(customerDao.selectCustomerByEmail(any())).thenReturn(Optional.of(new Customer(id, "Alex", "alex@mail.com", 19)));
+
+        // When
+        underTest.getCustomerById(10);
+        underTest.getCustomerById(10);
+        underTest.getCustomerByEmail("Alex@Mail.com ");
+
+        // Then emails are counted normalized
+        assertThat(hotKeys.topCustomerIds()).containsExactly(new HotKey<>(10L, 2));
+        assertThat(hotKeys.topEmails()).containsExactly(new HotKey<>("alex@mail.com", 1));
+    }
+
     @Test
     void willThrowExceptionWhenCantGetCustomer() {
         // Given
@@ -81,6 +183,10 @@ class CustomerServiceTest {
         String email = "alex@mail.com";
         when(customerDao.existsPersonWithEmail(email)).thenReturn(false);
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alex",email, 19);
+        when(customerDao.insertCustomer(any())).thenAnswer(invocation -> {
+            Customer inserted = invocation.getArgument(0);
+            return new Customer(1L, inserted.getName(), inserted.getEmail(), inserted.getAge());
+        });
 
         // When
         underTest.addCustomer(request);
@@ -94,6 +200,8 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
+        verify(auditLog).record(AuditAction.CREATE, 1L, AuditEntry.mask(CustomerField.NAME)
+                | AuditEntry.mask(CustomerField.EMAIL) | AuditEntry.mask(CustomerField.AGE));
     }
 
     @Test
@@ -117,27 +225,28 @@ class CustomerServiceTest {
     void deleteCustomerById() {
         // Given
         long id = 10;
-        when(customerDao.existsPersonWithId(id)).thenReturn(true);
+        when(customerDao.deleteCustomerById(id)).thenReturn(true);
 
         // When
         underTest.deleteCustomerById((int) id);
 
         // Then
         verify(customerDao).deleteCustomerById(id);
+        verify(auditLog).record(AuditAction.DELETE, id, 0);
     }
 
     @Test
     void willThrowDeleteCustomerByIdNotExists() {
         // Given
         long id = 10;
-        when(customerDao.existsPersonWithId(id)).thenReturn(false);
+        when(customerDao.deleteCustomerById(id)).thenReturn(false);
 
         // When
         assertThatThrownBy(()->underTest.deleteCustomerById((int) id))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("Customer with id [%s] not found".formatted(id));
         // Then
-        verify(customerDao, never()).deleteCustomerById(id);
+        verifyNoInteractions(auditLog);
     }
 
     @Test
@@ -165,6 +274,26 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
     }
 
+    @Test
+    void updateWritesInTransactionStartedAfterLookups() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer("Alex","alex@gmail.com",19);
+        when(customerDao.selectCustomerById((long) id)).thenReturn(Optional.of(customer));
+        when(customerDao.existsPersonWithEmail("alexandro@mail.com")).thenReturn(false);
+
+        // When
+        underTest.updateCustomer(id, new CustomerUpdateRequest("Alexandro", "alexandro@mail.com", 23));
+
+        // Then the lookups held no transaction, and the update and its audit entry committed together
+        InOrder inOrder = inOrder(customerDao, transactionManager, auditLog);
+        inOrder.verify(customerDao).selectCustomerById((long) id);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(customerDao).updateCustomer(customer);
+        inOrder.verify(auditLog).record(eq(AuditAction.UPDATE), eq((long) id), anyInt());
+        inOrder.verify(transactionManager).commit(any());
+    }
+
     @Test
     void canUpdateOnyCustomerName() {
         // Given
@@ -185,6 +314,7 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
         assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        verify(auditLog).record(AuditAction.UPDATE, id, AuditEntry.mask(CustomerField.NAME));
     }
 
     @Test
@@ -234,6 +364,27 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
     }
 
+    @Test
+    void canChangeOnlyTheCaseOfCustomerEmail() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer("Alex","alex@gmail.com",19);
+        when(customerDao.selectCustomerById((long) id)).thenReturn(Optional.of(customer));
+
+        String newEmail = "Alex@Gmail.com";
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, newEmail,null);
+
+        // The email lookup ignores case, so it finds the customer itself
+        when(customerDao.existsPersonWithEmail(newEmail)).thenReturn(true);
+        // When
+        underTest.updateCustomer(id ,updateRequest);
+
+        // Then
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        assertThat(customerArgumentCaptor.getValue().getEmail()).isEqualTo(newEmail);
+    }
+
     @Test
     void willThrowWhenTryingToUpdateCustomerEmailWithExistingEmail() {
         // Given
@@ -272,4 +423,31 @@ class CustomerServiceTest {
         // Then
         verify(customerDao, never()).updateCustomer(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateLooksUpCustomerAndEmailInParallel() {
+        // Given a DAO whose customer lookup only returns once the email check has started
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        underTest = new CustomerService(customerDao, new AsyncCustomerDao(customerDao, executor), hotKeys, idIndex, auditLog, transactionManager);
+        int id = 10;
+        Customer customer = new Customer("Alex","alex@gmail.com",19);
+        String newEmail = "Alexandro@mail.com";
+        CountDownLatch emailCheckStarted = new CountDownLatch(1);
+        when(customerDao.selectCustomerById((long) id)).thenAnswer(invocation -> {
+            assertThat(emailCheckStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            return Optional.of(customer);
+        });
+        when(customerDao.existsPersonWithEmail(newEmail)).thenAnswer(invocation -> {
+            emailCheckStarted.countDown();
+            return false;
+        });
+
+        // When
+        underTest.updateCustomer(id, new CustomerUpdateRequest(null, newEmail, null));
+
+        // Then
+        verify(customerDao).updateCustomer(customer);
+        assertThat(customer.getEmail()).isEqualTo(newEmail);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,212 @@
+package com.bachir.customer.audit;
+
+import com.bachir.customer.CustomerField;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerAuditLogTest {
+
+    @Test
+    void everySinkWritesEveryEntryInOrder() throws Exception {
+        // Given
+        CollectingSink first = new CollectingSink("first");
+        CollectingSink second = new CollectingSink("second");
+        CustomerAuditLog underTest = new CustomerAuditLog(List.of(first, second), options(1024, AuditOverflowPolicy.BLOCK), null);
+        ExecutorService requests = Executors.newFixedThreadPool(4);
+
+        // When: 4 threads record 10 000 entries each, through a buffer of 1024
+        for (int thread = 0; thread < 4; thread++) {
+            requests.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    underTest.record(AuditAction.UPDATE, i, AuditEntry.mask(CustomerField.AGE));
+                }
+            });
+        }
+        requests.shutdown();
+        assertThat(requests.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        underTest.close();
+
+        // Then
+        assertThat(underTest.recorded()).isEqualTo(40_000);
+        assertThat(underTest.dropped()).isZero();
+        for (CollectingSink sink : List.of(first, second)) {
+            assertThat(sink.sequences).hasSize(40_000);
+            for (int i = 0; i < 40_000; i++) {
+                assertThat(sink.sequences.get(i)).isEqualTo(i);
+            }
+            assertThat(sink.batches.get()).isPositive().isLessThanOrEqualTo(40_000);
+        }
+    }
+
+    @Test
+    void dropsEntriesWhenTheBufferIsFull() throws Exception {
+        // Given a sink that is stuck on its first batch
+        CollectingSink sink = new CollectingSink("stuck");
+        CustomerAuditLog underTest = new CustomerAuditLog(List.of(sink), options(8, AuditOverflowPolicy.DROP), null);
+        underTest.record(AuditAction.CREATE, 1, 0);
+        assertThat(sink.stuck.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            underTest.record(AuditAction.UPDATE, 1, 0);
+        }
+
+        // Then: the slot of the first entry is only released once its batch is written, 7 more fill the buffer
+        assertThat(underTest.recorded()).isEqualTo(8);
+        assertThat(underTest.dropped()).isEqualTo(13);
+        sink.release.countDown();
+        underTest.close();
+        assertThat(sink.sequences).hasSize(8);
+    }
+
+    @Test
+    void samplesEntriesAboveTheThreshold() throws Exception {
+        // Given a sink that is stuck, and a buffer that samples one entry in 4 once half full
+        CollectingSink sink = new CollectingSink("stuck");
+        CustomerAuditLog underTest = new CustomerAuditLog(List.of(sink),
+                new CustomerAuditOptions(16, AuditWaitStrategy.SLEEPING, AuditOverflowPolicy.SAMPLE, 0.5, 4), null);
+        underTest.record(AuditAction.CREATE, 1, 0);
+        assertThat(sink.stuck.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        for (int i = 0; i < 24; i++) {
+            underTest.record(AuditAction.UPDATE, 1, 0);
+        }
+
+        // Then: every entry up to the threshold (8), then one in 4 of the other 17
+        assertThat(underTest.recorded()).isEqualTo(8 + 5);
+        assertThat(underTest.sampledOut()).isEqualTo(12);
+        sink.release.countDown();
+        underTest.close();
+    }
+
+    @Test
+    void blockedRequestsGoOnOnceTheSinkCatchesUp() throws Exception {
+        // Given
+        CollectingSink sink = new CollectingSink("stuck");
+        CustomerAuditLog underTest = new CustomerAuditLog(List.of(sink), options(4, AuditOverflowPolicy.BLOCK), null);
+        underTest.record(AuditAction.CREATE, 1, 0);
+        assertThat(sink.stuck.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread request = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                underTest.record(AuditAction.UPDATE, 1, 0);
+            }
+        });
+
+        // When
+        request.start();
+        request.join(200);
+        boolean blocked = request.isAlive();
+        sink.release.countDown();
+        request.join(5000);
+        underTest.close();
+
+        // Then
+        assertThat(blocked).isTrue();
+        assertThat(request.isAlive()).isFalse();
+        assertThat(underTest.dropped()).isZero();
+        assertThat(sink.sequences).hasSize(11);
+    }
+
+    @Test
+    void retriesFailedBatches() throws Exception {
+        // Given a sink whose first two batch writes fail
+        CollectingSink sink = new CollectingSink("flaky");
+        sink.failures.set(2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CustomerAuditLog underTest = new CustomerAuditLog(List.of(sink), options(64, AuditOverflowPolicy.BLOCK), registry);
+
+        // When
+        underTest.record(AuditAction.DELETE, 7, 0);
+        underTest.close();
+
+        // Then
+        assertThat(sink.sequences).containsExactly(0L);
+        assertThat(registry.get("customer.audit.sink.failures").tag("sink", "flaky").functionCounter().count()).isEqualTo(2);
+        assertThat(registry.get("customer.audit.entries").tag("outcome", "recorded").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void fileSinkAppendsJsonLines(@TempDir Path directory) throws Exception {
+        // Given
+        Path file = directory.resolve("audit").resolve("customer-audit.log");
+        CustomerAuditLog underTest = new CustomerAuditLog(List.of(new AuditFileSink(file, false)),
+                options(64, AuditOverflowPolicy.BLOCK), null);
+
+        // When
+        underTest.record(AuditAction.UPDATE, 42, AuditEntry.mask(CustomerField.NAME) | AuditEntry.mask(CustomerField.AGE));
+        underTest.record(AuditAction.DELETE, 43, 0);
+        underTest.close();
+
+        // Then
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).startsWith("{\"sequence\":0,\"time\":\"")
+                .endsWith("\",\"action\":\"UPDATE\",\"customerId\":42,\"fields\":[\"name\",\"age\"]}");
+        assertThat(lines.get(1)).startsWith("{\"sequence\":1,")
+                .endsWith("\"action\":\"DELETE\",\"customerId\":43,\"fields\":[]}");
+    }
+
+    private static CustomerAuditOptions options(int bufferSize, AuditOverflowPolicy overflow) {
+        return new CustomerAuditOptions(bufferSize, AuditWaitStrategy.BLOCKING, overflow, 0.5, 10);
+    }
+
+    // Keeps the sequences it wrote; a "stuck" sink blocks in its first batch until released.
+    private static class CollectingSink implements AuditSink {
+
+        private final String name;
+        private final List<Long> sequences = new ArrayList<>();
+        private final List<Long> batch = new ArrayList<>();
+        private final AtomicInteger batches = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final CountDownLatch stuck = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        CollectingSink(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void append(AuditEntry entry) {
+            batch.add(entry.sequence());
+        }
+
+        @Override
+        public void endOfBatch() throws Exception {
+            if ("stuck".equals(name)) {
+                stuck.countDown();
+                release.await();
+            }
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("Sink down");
+            }
+            synchronized (sequences) {
+                sequences.addAll(batch);
+            }
+            batch.clear();
+            batches.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
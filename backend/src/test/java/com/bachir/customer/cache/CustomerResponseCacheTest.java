@@ -0,0 +1,154 @@
+package com.bachir.customer.cache;
+
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.hotkey.CustomerHotKeys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerResponseCacheTest {
+
+    private static final byte[] JSON = "{\"id\":1,\"name\":\"Alex\",\"email\":\"alex@mail.com\",\"age\":22}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private CustomerResponseCache underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerResponseCache(64 * 1024, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void canCacheCustomerResponse() throws IOException {
+        // Given
+        long version = underTest.customerVersion(1);
+
+        // When
+        underTest.putCustomer(1, version, JSON);
+
+        // Then
+        var actual = underTest.getCustomer(1);
+        assertThat(actual).isNotNull();
+        assertThat(actual.json()).isEqualTo(JSON);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(actual.gzip()))) {
+            assertThat(gzip.readAllBytes()).isEqualTo(JSON);
+        }
+    }
+
+    @Test
+    void willNotCacheResponseComputedBeforeAWrite() {
+        // Given a read that started before the customer was updated
+        long version = underTest.customerVersion(1);
+        underTest.onCustomerChanged(CustomerChangedEvent.updated(1L));
+
+        // When
+        underTest.putCustomer(1, version, JSON);
+
+        // Then
+        assertThat(underTest.getCustomer(1)).isNull();
+    }
+
+    @Test
+    void writesInvalidateCustomerAndList() {
+        // Given
+        underTest.putCustomer(1, underTest.customerVersion(1), JSON);
+        underTest.putCustomerList(underTest.customerListVersion(), JSON);
+
+        // When
+        underTest.onCustomerChanged(CustomerChangedEvent.deleted(1L));
+
+        // Then
+        assertThat(underTest.getCustomer(1)).isNull();
+        assertThat(underTest.getCustomerList()).isNull();
+        assertThat(underTest.usedBytes()).isZero();
+    }
+
+    @Test
+    void insertWithUnknownIdOnlyInvalidatesList() {
+        // Given
+        underTest.putCustomer(1, underTest.customerVersion(1), JSON);
+        underTest.putCustomerList(underTest.customerListVersion(), JSON);
+
+        // When
+        underTest.onCustomerChanged(CustomerChangedEvent.inserted(null));
+
+        // Then
+        assertThat(underTest.getCustomer(1)).isNotNull();
+        assertThat(underTest.getCustomerList()).isNull();
+    }
+
+    @Test
+    void evictsWhenOverMemoryBudget() {
+        // Given a budget that fits only a few entries
+        underTest = new CustomerResponseCache(1024, Duration.ofMinutes(1));
+
+        // When
+        for (long id = 1; id <= 50; id++) {
+            underTest.putCustomer(id, underTest.customerVersion(id), JSON);
+        }
+
+        // Then
+        assertThat(underTest.usedBytes()).isLessThanOrEqualTo(1024);
+        assertThat(underTest.size()).isBetween(1, 49);
+    }
+
+    @Test
+    void onlyAdmitsFrequentCustomersWhenFull() {
+        // Given a full cache, and a customer requested several times
+        CustomerHotKeys hotKeys = new CustomerHotKeys();
+        underTest = new CustomerResponseCache(1024, hotKeys, 2, Duration.ofMinutes(1));
+        for (long id = 1; id <= 50; id++) {
+            underTest.putCustomer(id, underTest.customerVersion(id), JSON);
+        }
+        int sizeWhenFull = underTest.size();
+        hotKeys.recordCustomerId(100);
+        hotKeys.recordCustomerId(100);
+
+        // When
+        underTest.putCustomer(101, underTest.customerVersion(101), JSON);
+        underTest.putCustomer(100, underTest.customerVersion(100), JSON);
+
+        // Then the customer requested once is not cached, the frequent one is
+        assertThat(underTest.getCustomer(101)).isNull();
+        assertThat(underTest.getCustomer(100)).isNotNull();
+        assertThat(underTest.size()).isLessThanOrEqualTo(sizeWhenFull);
+        hotKeys.close();
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() {
+        // Given entries no write of this instance will ever invalidate
+        underTest = new CustomerResponseCache(64 * 1024, Duration.ZERO);
+        underTest.putCustomer(1, underTest.customerVersion(1), JSON);
+        underTest.putCustomerList(underTest.customerListVersion(), JSON);
+
+        // When
+        var customer = underTest.getCustomer(1);
+        var list = underTest.getCustomerList();
+
+        // Then
+        assertThat(customer).isNull();
+        assertThat(list).isNull();
+        assertThat(underTest.usedBytes()).isZero();
+    }
+
+    @Test
+    void sendsGzipOnlyWhenAccepted() {
+        assertThat(CustomerResponseCacheFilter.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(CustomerResponseCacheFilter.acceptsGzip("deflate, gzip;q=0.5")).isTrue();
+        assertThat(CustomerResponseCacheFilter.acceptsGzip("*")).isTrue();
+        assertThat(CustomerResponseCacheFilter.acceptsGzip(null)).isFalse();
+        assertThat(CustomerResponseCacheFilter.acceptsGzip("identity")).isFalse();
+        assertThat(CustomerResponseCacheFilter.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(CustomerResponseCacheFilter.acceptsGzip("GZIP ; Q=0.0, br")).isFalse();
+        assertThat(CustomerResponseCacheFilter.acceptsGzip("*;q=0.1, gzip;q=0")).isFalse();
+        assertThat(CustomerResponseCacheFilter.acceptsGzip("br, *;q=0")).isFalse();
+    }
+}
@@ -0,0 +1,68 @@
+package com.bachir.customer.cache;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.CustomerRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerSecondLevelCacheInvalidatorTest {
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+    @Mock
+    private SessionFactory sessionFactory;
+    @Mock
+    private Cache cache;
+    private CustomerSecondLevelCacheInvalidator underTest;
+
+    @BeforeEach
+    void setUp() {
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getCache()).thenReturn(cache);
+        underTest = new CustomerSecondLevelCacheInvalidator(entityManagerFactory);
+    }
+
+    @Test
+    void updateEvictsCustomerAndQueries() {
+        // When
+        underTest.onCustomerChanged(CustomerChangedEvent.updated(1L));
+
+        // Then
+        verify(cache).evictEntityData(Customer.class, 1L);
+        verify(cache, never()).evictEntityData(Customer.class);
+        verify(cache).evictQueryRegion(CustomerRepository.QUERY_CACHE_REGION);
+        verify(cache).evictDefaultQueryRegion();
+    }
+
+    @Test
+    void insertWithoutIdOnlyEvictsQueries() {
+        // When a DAO that does not return generated keys inserts a customer
+        underTest.onCustomerChanged(CustomerChangedEvent.inserted(null));
+
+        // Then
+        verify(cache, never()).evictEntityData(Customer.class);
+        verify(cache).evictQueryRegion(CustomerRepository.QUERY_CACHE_REGION);
+    }
+
+    @Test
+    void bulkChangeEvictsAllCustomers() {
+        // When
+        underTest.onCustomerChanged(CustomerChangedEvent.bulk());
+
+        // Then
+        verify(cache).evictEntityData(Customer.class);
+        verify(cache).evictQueryRegion(CustomerRepository.QUERY_CACHE_REGION);
+    }
+}
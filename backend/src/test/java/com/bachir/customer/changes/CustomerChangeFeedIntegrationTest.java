@@ -0,0 +1,150 @@
+package com.bachir.customer.changes;
+
+import com.bachir.AbstractTestcontainers;
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerJDBCDataAccessService;
+import com.bachir.customer.CustomerRowMapper;
+import com.bachir.exception.ResourceGoneException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the change feed against a database of the local Postgres instance (port 5332) created for every test and
+ * migrated like the application database, written through the JDBC DAO. Another server can be given with
+ * -Dchanges.server.url.
+ */
+public class CustomerChangeFeedIntegrationTest {
+
+    private static final String SERVER_URL = System.getProperty("changes.server.url", "jdbc:postgresql://localhost:5332/");
+    private static final String DATABASE = "customer_changes_it";
+
+    private JdbcTemplate jdbcTemplate;
+    private CustomerJDBCDataAccessService customerDao;
+    private CustomerChangeFeed underTest;
+
+    @BeforeEach
+    void createDatabase() {
+        JdbcTemplate server = new JdbcTemplate(dataSource("customer"));
+        server.execute("DROP DATABASE IF EXISTS " + DATABASE + " WITH (FORCE)");
+        server.execute("CREATE DATABASE " + DATABASE);
+        DataSource dataSource = dataSource(DATABASE);
+        AbstractTestcontainers.flyway(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        customerDao = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper(), mock(ApplicationEventPublisher.class));
+        underTest = new CustomerChangeFeed(jdbcTemplate, "jdbc", Duration.ofDays(30), Duration.ofHours(1));
+    }
+
+    @Test
+    void returnsOnlyTheChangesSinceTheToken() {
+        // Given
+        Customer alice = customerDao.insertCustomer(new Customer("Alice", "alice@mail.com", 30));
+        Customer bob = customerDao.insertCustomer(new Customer("Bob", "bob@mail.com", 40));
+        Customer carol = customerDao.insertCustomer(new Customer("Carol", "carol@mail.com", 50));
+        CustomerChanges fullSync = underTest.changesSince(CustomerChangeToken.START, 1000);
+
+        // When
+        customerDao.updateCustomer(new Customer(alice.getId(), "Alicia", null, null));
+        customerDao.deleteCustomerById(bob.getId());
+        Customer dave = customerDao.insertCustomer(new Customer("Dave", "dave@mail.com", 60));
+        CustomerChanges changes = underTest.changesSince(CustomerChangeToken.parse(fullSync.token()), 1000);
+
+        // Then
+        assertThat(fullSync.updated()).containsExactly(alice, bob, carol);
+        assertThat(fullSync.hasMore()).isFalse();
+        assertThat(changes.updated()).extracting(Customer::getName).containsExactly("Alicia", "Dave");
+        assertThat(changes.updated()).extracting(Customer::getId).containsExactly(alice.getId(), dave.getId());
+        assertThat(changes.deleted()).containsExactly(bob.getId());
+        assertThat(underTest.changesSince(CustomerChangeToken.parse(changes.token()), 1000).updated()).isEmpty();
+    }
+
+    @Test
+    void pagesThroughTheChanges() {
+        // Given
+        jdbcTemplate.update("""
+                INSERT INTO customer(name, email, age)
+                SELECT 'Customer ' || n, 'customer' || n || '@mail.com', 30 FROM generate_series(1, 2500) n
+                """);
+        jdbcTemplate.update("DELETE FROM customer WHERE id % 10 = 0");
+
+        // When
+        CustomerChanges page = underTest.changesSince(CustomerChangeToken.START, 1000);
+        int pages = 1;
+        int updated = page.updated().size();
+        int deleted = page.deleted().size();
+        while (page.hasMore()) {
+            page = underTest.changesSince(CustomerChangeToken.parse(page.token()), 1000);
+            pages++;
+            updated += page.updated().size();
+            deleted += page.deleted().size();
+        }
+
+        // Then: the 2250 remaining rows, and the 250 tombstones of the deleting transaction
+        assertThat(pages).isEqualTo(3);
+        assertThat(updated).isEqualTo(2250);
+        assertThat(deleted).isEqualTo(250);
+    }
+
+    @Test
+    void readsTheChangesFromTheIndexes() {
+        // Given: a client in sync with a large table, then a few updates
+        jdbcTemplate.update("""
+                INSERT INTO customer(name, email, age)
+                SELECT 'Customer ' || n, 'customer' || n || '@mail.com', 30 FROM generate_series(1, 50000) n
+                """);
+        long syncedXid = xmin() - 1;
+        jdbcTemplate.update("UPDATE customer SET age = 31 WHERE id <= 10");
+        jdbcTemplate.execute("ANALYZE customer, customer_tombstone");
+
+        // When
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + CustomerChangeFeed.CHANGES_SQL, String.class,
+                syncedXid, Long.MAX_VALUE, xmin(), syncedXid, Long.MAX_VALUE, xmin(), 1000);
+
+        // Then: only the index entries after the token are read (the empty tombstone table may be scanned)
+        assertThat(String.join("\n", plan)).contains("Index Scan using customer_p0_change_idx")
+                .doesNotContain("Seq Scan on customer_p");
+    }
+
+    @Test
+    void expiresTokensOlderThanThePurgedTombstones() {
+        // Given
+        Customer alice = customerDao.insertCustomer(new Customer("Alice", "alice@mail.com", 30));
+        CustomerChanges sync = underTest.changesSince(CustomerChangeToken.START, 1000);
+        customerDao.deleteCustomerById(alice.getId());
+        jdbcTemplate.update("UPDATE customer_tombstone SET deleted_at = now() - interval '31 days'");
+
+        // When
+        int purged = underTest.purgeTombstones();
+
+        // Then
+        assertThat(purged).isEqualTo(1);
+        assertThatThrownBy(() -> underTest.changesSince(CustomerChangeToken.parse(sync.token()), 1000))
+                .isInstanceOf(ResourceGoneException.class);
+        assertThat(underTest.changesSince(CustomerChangeToken.START, 1000).updated()).isEmpty();
+    }
+
+    private long xmin() {
+        return jdbcTemplate.queryForObject("SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint", Long.class);
+    }
+
+    private static DataSource dataSource(String database) {
+        return DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .driverClassName("org.postgresql.Driver")
+                .url(SERVER_URL + database)
+                .username("bachir")
+                .password("password")
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.bachir.customer.changes;
+
+import com.bachir.customer.Customer;
+import com.bachir.exception.RequestValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerChangeTokenTest {
+
+    @Test
+    void encodesToAnOpaqueUrlSafeToken() {
+        // Given
+        CustomerChangeToken token = new CustomerChangeToken(7_000_000_123L, Long.MAX_VALUE);
+
+        // When
+        String encoded = token.encode();
+
+        // Then
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+        assertThat(CustomerChangeToken.parse(encoded)).isEqualTo(token);
+    }
+
+    @Test
+    void noTokenStartsFromTheBeginning() {
+        assertThat(CustomerChangeToken.parse(null)).isEqualTo(CustomerChangeToken.START);
+        assertThat(CustomerChangeToken.parse(" ")).isEqualTo(CustomerChangeToken.START);
+    }
+
+    @Test
+    void rejectsTokensItDidNotIssue() {
+        assertThatThrownBy(() -> CustomerChangeToken.parse("not a token"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Invalid change token [not a token]");
+        assertThatThrownBy(() -> CustomerChangeToken.parse("Mjo1OjY")) // "2:5:6", another version
+                .isInstanceOf(RequestValidationException.class);
+    }
+
+    @Test
+    void pageKeepsTheLastChangeOfEachCustomer() {
+        // Given: customer 1 updated then deleted, customer 2 deleted then inserted again in one transaction (its row
+        // and tombstone come in any order), customer 3 updated
+        Customer two = new Customer(2L, "Bob", "bob@mail.com", 40);
+        Customer three = new Customer(3L, "Carol", "carol@mail.com", 50);
+        List<CustomerChangeFeed.Change> changes = List.of(
+                new CustomerChangeFeed.Change(10, new Customer(1L, "Alice", "alice@mail.com", 30), 1),
+                new CustomerChangeFeed.Change(11, two, 2),
+                new CustomerChangeFeed.Change(11, null, 2),
+                new CustomerChangeFeed.Change(12, null, 1),
+                new CustomerChangeFeed.Change(12, three, 3));
+
+        // When
+        CustomerChanges page = CustomerChangeFeed.toPage(changes, new CustomerChangeToken(12, 3), true);
+
+        // Then
+        assertThat(page.updated()).containsExactly(two, three);
+        assertThat(page.deleted()).containsExactly(1L);
+        assertThat(CustomerChangeToken.parse(page.token())).isEqualTo(new CustomerChangeToken(12, 3));
+        assertThat(page.hasMore()).isTrue();
+    }
+}
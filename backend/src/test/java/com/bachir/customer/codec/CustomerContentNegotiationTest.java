@@ -0,0 +1,122 @@
+package com.bachir.customer.codec;
+
+import com.bachir.config.WebConfig;
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerController;
+import com.bachir.customer.CustomerRegistrationRequest;
+import com.bachir.customer.CustomerService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The customer endpoints with the message converters of WebConfig, answering in the format of the Accept header.
+ */
+class CustomerContentNegotiationTest {
+
+    private static final Customer ALEX = new Customer(1L, "Alex", "alex@gmail.com", 21);
+
+    private final CustomerService customerService = mock(CustomerService.class);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new CustomerController(customerService))
+            .setMessageConverters(converters().toArray(HttpMessageConverter[]::new))
+            .build();
+
+    @Test
+    void answersInAcceptedFormat() throws Exception {
+        // Given
+        when(customerService.getCustomerById(1)).thenReturn(ALEX);
+        when(customerService.getAllCustomers()).thenReturn(List.of(ALEX));
+
+        // When
+        byte[] json = body(get("/api/v1/customers/1"), MediaType.APPLICATION_JSON);
+        byte[] smile = body(get("/api/v1/customers/1").accept("application/x-jackson-smile"), new MediaType("application", "x-jackson-smile"));
+        byte[] cbor = body(get("/api/v1/customers/1").accept(MediaType.APPLICATION_CBOR), MediaType.APPLICATION_CBOR);
+        byte[] protobuf = body(get("/api/v1/customers/1").accept(CustomerProtobufHttpMessageConverter.APPLICATION_PROTOBUF),
+                CustomerProtobufHttpMessageConverter.APPLICATION_PROTOBUF);
+        byte[] protobufList = body(get("/api/v1/customers")
+                        .header("Accept", "application/json;q=0.5, application/x-protobuf"),
+                CustomerProtobufHttpMessageConverter.APPLICATION_PROTOBUF);
+
+        // Then
+        assertThat(new ObjectMapper().readValue(json, Customer.class)).isEqualTo(ALEX);
+        assertThat(new ObjectMapper(new SmileFactory()).readValue(smile, Customer.class)).isEqualTo(ALEX);
+        assertThat(new ObjectMapper(new CBORFactory()).readValue(cbor, Customer.class)).isEqualTo(ALEX);
+        assertThat(CustomerProtobufCodec.readCustomer(CodedInputStream.newInstance(protobuf))).isEqualTo(ALEX);
+        assertThat(CustomerProtobufCodec.readCustomerList(CodedInputStream.newInstance(protobufList))).containsExactly(ALEX);
+    }
+
+    @Test
+    void readsProtobufRequests() throws Exception {
+        // Given
+        when(customerService.addCustomer(new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21))).thenReturn(ALEX);
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(request);
+        out.writeString(CustomerProtobufCodec.REQUEST_NAME, "Alex");
+        out.writeString(CustomerProtobufCodec.REQUEST_EMAIL, "alex@gmail.com");
+        out.writeInt32(CustomerProtobufCodec.REQUEST_AGE, 21);
+        out.flush();
+
+        // When
+        mockMvc.perform(post("/api/v1/customers")
+                        .contentType(CustomerProtobufHttpMessageConverter.APPLICATION_PROTOBUF)
+                        .content(request.toByteArray()))
+                .andExpect(status().isCreated());
+
+        // Then
+        verify(customerService).addCustomer(new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21));
+    }
+
+    @Test
+    void rejectsFormatsItCannotWrite() throws Exception {
+        // Given
+        when(customerService.getCustomerById(1)).thenReturn(ALEX);
+
+        // When Then
+        mockMvc.perform(get("/api/v1/customers/1").accept(MediaType.APPLICATION_XML))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    private byte[] body(RequestBuilder request, MediaType expected) throws Exception {
+        MvcResult result = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(expected))
+                .andReturn();
+        return result.getResponse().getContentAsByteArray();
+    }
+
+    // The converters Spring MVC ends up with: Jackson for every format, then WebConfig's customizations
+    private static List<HttpMessageConverter<?>> converters() {
+        WebConfig webConfig = new WebConfig();
+        List<HttpMessageConverter<?>> converters = new ArrayList<>();
+        converters.add(new MappingJackson2HttpMessageConverter(
+                Jackson2ObjectMapperBuilder.json().build()));
+        converters.add(webConfig.smileHttpMessageConverter(Jackson2ObjectMapperBuilder.smile()));
+        converters.add(webConfig.cborHttpMessageConverter(Jackson2ObjectMapperBuilder.cbor()));
+        webConfig.extendMessageConverters(converters);
+        return converters;
+    }
+}
@@ -0,0 +1,120 @@
+package com.bachir.customer.codec;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerField;
+import com.bachir.customer.CustomerProjection;
+import com.bachir.customer.CustomerRegistrationRequest;
+import com.bachir.customer.CustomerUpdateRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerJsonHttpMessageConverterTest {
+
+    private static final Type CUSTOMER_LIST_TYPE = new ParameterizedTypeReference<List<Customer>>() {}.getType();
+    private static final Type PROJECTION_LIST_TYPE = new ParameterizedTypeReference<List<CustomerProjection>>() {}.getType();
+
+    // Same configuration as the ObjectMapper Spring Boot builds by default
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final CustomerJsonHttpMessageConverter underTest = new CustomerJsonHttpMessageConverter(objectMapper.getFactory());
+
+    @Test
+    void writesSameBytesAsObjectMapper() throws IOException {
+        // Given
+        List<Customer> customers = Arrays.asList(
+                new Customer(1L, "Alex", "alex@gmail.com", 21),
+                new Customer(Long.MAX_VALUE, "Zoë \"Quote\" \\ Tab\t Ünïcode 😀", "zoe@mail.com", 0),
+                new Customer(null, null, null, null),
+                null
+        );
+
+        // When
+        MockHttpOutputMessage list = new MockHttpOutputMessage();
+        underTest.write(customers, CUSTOMER_LIST_TYPE, MediaType.APPLICATION_JSON, list);
+        MockHttpOutputMessage single = new MockHttpOutputMessage();
+        underTest.write(customers.get(1), Customer.class, MediaType.APPLICATION_JSON, single);
+
+        // Then
+        assertThat(list.getBodyAsBytes()).isEqualTo(objectMapper.writeValueAsBytes(customers));
+        assertThat(single.getBodyAsBytes()).isEqualTo(objectMapper.writeValueAsBytes(customers.get(1)));
+    }
+
+    @Test
+    void writesOnlySelectedFieldsLikeObjectMapper() throws IOException {
+        // Given fields asked for out of order, and customers read with only those columns
+        Set<CustomerField> fields = CustomerField.parse("email, id");
+        List<CustomerProjection> projections = List.of(
+                new CustomerProjection(new Customer(1L, null, "alex@gmail.com", null), fields),
+                new CustomerProjection(new Customer(2L, "Jamila", "jamila@gmail.com", 30), fields));
+
+        // When
+        MockHttpOutputMessage list = new MockHttpOutputMessage();
+        underTest.write(projections, PROJECTION_LIST_TYPE, MediaType.APPLICATION_JSON, list);
+        MockHttpOutputMessage single = new MockHttpOutputMessage();
+        underTest.write(projections.get(1), CustomerProjection.class, MediaType.APPLICATION_JSON, single);
+
+        // Then
+        assertThat(list.getBodyAsString()).isEqualTo("[{\"id\":1,\"email\":\"alex@gmail.com\"},{\"id\":2,\"email\":\"jamila@gmail.com\"}]");
+        assertThat(list.getBodyAsBytes()).isEqualTo(objectMapper.writeValueAsBytes(projections));
+        assertThat(single.getBodyAsBytes()).isEqualTo(objectMapper.writeValueAsBytes(projections.get(1)));
+    }
+
+    @Test
+    void readsRequestsLikeObjectMapper() throws IOException {
+        // Given unknown fields, nested values and a number sent as a string
+        String json = """
+                {"extra": {"nested": [1, 2]}, "name": "Alex", "email": "alex@gmail.com", "age": "21", "other": null}
+                """;
+
+        // When
+        Object registration = underTest.read(CustomerRegistrationRequest.class, null, input(json));
+        Object update = underTest.read(CustomerUpdateRequest.class, null, input("{\"age\": 30}"));
+
+        // Then
+        assertThat(registration)
+                .isEqualTo(objectMapper.readValue(json, CustomerRegistrationRequest.class))
+                .isEqualTo(new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21));
+        assertThat(update).isEqualTo(new CustomerUpdateRequest(null, null, 30));
+    }
+
+    @Test
+    void willThrowWhenJsonIsMalformed() {
+        assertThatThrownBy(() -> underTest.read(CustomerRegistrationRequest.class, null, input("{\"name\": ")))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+        assertThatThrownBy(() -> underTest.read(CustomerRegistrationRequest.class, null, input("[1]")))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+        assertThatThrownBy(() -> underTest.read(CustomerUpdateRequest.class, null, input("{\"age\": \"old\"}")))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+    }
+
+    @Test
+    void onlyHandlesCustomerTypes() {
+        assertThat(underTest.canWrite(CUSTOMER_LIST_TYPE, List.class, MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(underTest.canWrite(Customer.class, MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(underTest.canWrite(CustomerRegistrationRequest.class, MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(underTest.canWrite(String.class, MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(underTest.canWrite(Customer.class, MediaType.APPLICATION_XML)).isFalse();
+        assertThat(underTest.canRead(CustomerUpdateRequest.class, null, MediaType.APPLICATION_JSON)).isTrue();
+    }
+
+    private static MockHttpInputMessage input(String json) {
+        MockHttpInputMessage message = new MockHttpInputMessage(json.getBytes(StandardCharsets.UTF_8));
+        message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return message;
+    }
+}
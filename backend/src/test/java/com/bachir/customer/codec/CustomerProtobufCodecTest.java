@@ -0,0 +1,98 @@
+package com.bachir.customer.codec;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerRegistrationRequest;
+import com.bachir.customer.CustomerUpdateRequest;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerProtobufCodecTest {
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(CodedOutputStream out) throws IOException;
+    }
+
+    @Test
+    void readsWhatItWrites() throws IOException {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(1L, "Alex", "alex@gmail.com", 21),
+                new Customer(Long.MAX_VALUE, "Zoë Ünïcode 😀", "zoe@mail.com", 0),
+                new Customer(null, null, null, null));
+
+        // When
+        byte[] list = encode(out -> CustomerProtobufCodec.writeCustomerList(out, customers));
+        byte[] single = encode(out -> CustomerProtobufCodec.writeCustomer(out, customers.get(1)));
+
+        // Then
+        assertThat(CustomerProtobufCodec.readCustomerList(CodedInputStream.newInstance(list))).isEqualTo(customers);
+        assertThat(CustomerProtobufCodec.readCustomer(CodedInputStream.newInstance(single))).isEqualTo(customers.get(1));
+    }
+
+    @Test
+    void readsRequests() throws IOException {
+        // Given
+        byte[] request = encode(out -> {
+            out.writeString(CustomerProtobufCodec.REQUEST_NAME, "Alex");
+            out.writeString(CustomerProtobufCodec.REQUEST_EMAIL, "alex@gmail.com");
+            out.writeInt32(CustomerProtobufCodec.REQUEST_AGE, 21);
+        });
+
+        // When
+        CustomerRegistrationRequest registration = CustomerProtobufCodec.readRegistrationRequest(CodedInputStream.newInstance(request));
+        CustomerUpdateRequest update = CustomerProtobufCodec.readUpdateRequest(CodedInputStream.newInstance(request));
+
+        // Then
+        assertThat(registration).isEqualTo(new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21));
+        assertThat(update).isEqualTo(new CustomerUpdateRequest("Alex", "alex@gmail.com", 21));
+    }
+
+    @Test
+    void skipsUnknownFieldsOfEveryWireType() throws IOException {
+        // Given fields added by a newer schema, and known field numbers sent with another wire type
+        byte[] customer = encode(out -> {
+            out.writeInt64(CustomerProtobufCodec.CUSTOMER_ID, 7);
+            out.writeFixed64(10, 123L);
+            out.writeBytes(11, ByteString.copyFromUtf8("unknown"));
+            out.writeFixed32(12, 5);
+            out.writeUInt64(13, 99L);
+            out.writeString(CustomerProtobufCodec.CUSTOMER_NAME, "Alex");
+            out.writeString(CustomerProtobufCodec.CUSTOMER_AGE, "not a varint");
+            out.writeFixed64(CustomerProtobufCodec.CUSTOMER_EMAIL, 1L);
+            out.writeInt32(CustomerProtobufCodec.CUSTOMER_AGE, 21);
+        });
+        byte[] list = encode(out -> {
+            out.writeFixed32(CustomerProtobufCodec.CUSTOMER_LIST_CUSTOMERS, 1);
+            out.writeByteArray(CustomerProtobufCodec.CUSTOMER_LIST_CUSTOMERS, customer);
+            out.writeString(2, "unknown");
+        });
+
+        // When
+        Customer actual = CustomerProtobufCodec.readCustomer(CodedInputStream.newInstance(customer));
+        List<Customer> actualList = CustomerProtobufCodec.readCustomerList(CodedInputStream.newInstance(list));
+
+        // Then
+        assertThat(actual.getId()).isEqualTo(7);
+        assertThat(actual.getName()).isEqualTo("Alex");
+        assertThat(actual.getEmail()).isNull();
+        assertThat(actual.getAge()).isEqualTo(21);
+        assertThat(actualList).containsExactly(actual);
+    }
+
+    private static byte[] encode(Writer writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        writer.write(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
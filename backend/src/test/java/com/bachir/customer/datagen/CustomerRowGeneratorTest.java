@@ -0,0 +1,54 @@
+package com.bachir.customer.datagen;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerRowGeneratorTest {
+
+    private final CustomerRowGenerator underTest = new CustomerRowGenerator(42);
+
+    @Test
+    void sameSeedGeneratesSameRowsWhateverTheBatches() throws IOException {
+        // Given
+        CustomerRowGenerator other = new CustomerRowGenerator(42);
+
+        // When
+        String allAtOnce = read(underTest.rows(0, 10_000));
+        String inBatches = read(other.rows(0, 3_333)) + read(other.rows(3_333, 7_000)) + read(other.rows(7_000, 10_000));
+
+        // Then
+        assertThat(inBatches).isEqualTo(allAtOnce);
+    }
+
+    @Test
+    void generatesValidRowsWithUniqueEmails() throws IOException {
+        // When
+        List<String> rows = read(underTest.rows(0, 50_000)).lines().toList();
+
+        // Then
+        assertThat(rows).hasSize(50_000);
+        Set<String> emails = new HashSet<>();
+        for (String row : rows) {
+            String[] columns = row.split(",");
+            assertThat(columns).hasSize(3);
+            assertThat(columns[0]).contains(" ");
+            assertThat(columns[1]).matches("[a-z]+\\.[a-z]+\\.\\d+@[^,@]+");
+            assertThat(Integer.parseInt(columns[2])).isBetween(16, 98);
+            emails.add(columns[1]);
+        }
+        assertThat(emails).hasSize(rows.size());
+        assertThat(rows.get(0)).isEqualTo(underTest.row(0));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,101 @@
+package com.bachir.customer.hotkey;
+
+import com.bachir.customer.hotkey.HeavyHitters.HotKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeavyHittersTest {
+
+    @Test
+    void sketchNeverUnderestimates() {
+        // Given
+        CountMinSketch underTest = new CountMinSketch(256);
+
+        // When far more keys are counted than the sketch has counters
+        for (long key = 0; key < 10_000; key++) {
+            for (int i = 0; i < key % 5; i++) {
+                underTest.increment(key);
+            }
+        }
+
+        // Then
+        for (long key = 0; key < 10_000; key++) {
+            assertThat(underTest.estimate(key)).isGreaterThanOrEqualTo(key % 5);
+        }
+    }
+
+    @Test
+    void findsHotKeysAmongLongTail() {
+        // Given 10 keys taking half of the traffic, and 100 000 keys requested about once each
+        HeavyHitters<Long> underTest = new HeavyHitters<>(10, 4096, Long::longValue);
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 200_000; i++) {
+            underTest.record(i % 2 == 0 ? random.nextInt(10) : 1_000L + random.nextInt(100_000));
+            if (i % 10_000 == 0) {
+                underTest.drain();
+            }
+        }
+
+        // Then
+        List<HotKey<Long>> top = underTest.top();
+        assertThat(top).extracting(HotKey::key).containsExactlyInAnyOrder(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(top.get(0).count()).isBetween(9_000L, 12_000L);
+    }
+
+    @Test
+    void decayLetsNewHotKeysTakeOver() {
+        // Given a key that was hot
+        HeavyHitters<String> underTest = new HeavyHitters<>(1, 1024, String::hashCode);
+        for (int i = 0; i < 1_000; i++) {
+            underTest.record("old@mail.com");
+        }
+        underTest.drain();
+
+        // When the traffic moves to another key, across a few decays
+        for (int round = 0; round < 3; round++) {
+            underTest.decay();
+            for (int i = 0; i < 300; i++) {
+                underTest.record("new@mail.com");
+            }
+        }
+
+        // Then
+        assertThat(underTest.top()).extracting(HotKey::key).containsExactly("new@mail.com");
+        assertThat(underTest.estimate("old@mail.com")).isEqualTo(125);
+        assertThat(underTest.admit("new@mail.com", "old@mail.com")).isTrue();
+    }
+
+    @Test
+    void concurrentRecordsAreNotLost() throws Exception {
+        // Given
+        HeavyHitters<Long> underTest = new HeavyHitters<>(10, 1024, Long::longValue);
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+
+        // When
+        List<Future<?>> recorders = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            recorders.add(threads.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    underTest.record(7L);
+                }
+            }));
+        }
+        for (Future<?> recorder : recorders) {
+            recorder.get();
+        }
+        threads.shutdown();
+
+        // Then
+        assertThat(underTest.top()).containsExactly(new HotKey<>(7L, 40_000));
+    }
+}
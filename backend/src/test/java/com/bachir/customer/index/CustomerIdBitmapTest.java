@@ -0,0 +1,72 @@
+package com.bachir.customer.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerIdBitmapTest {
+
+    @Test
+    void matchesBitSetThroughAddsAndRemoves() {
+        // Given ids dense in some chunks and sparse in others, so that chunks switch between arrays and bitmaps
+        CustomerIdBitmap underTest = new CustomerIdBitmap();
+        BitSet expected = new BitSet();
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 200_000; i++) {
+            int id = random.nextBoolean() ? random.nextInt(10_000) : 100_000 + random.nextInt(1_000_000);
+            if (random.nextInt(3) == 0) {
+                underTest.remove(id);
+                expected.clear(id);
+            } else {
+                underTest.add(id);
+                expected.set(id);
+            }
+        }
+
+        // Then
+        for (int id = 0; id < 1_200_000; id++) {
+            assertThat(underTest.contains(id)).as("id %d", id).isEqualTo(expected.get(id));
+        }
+        assertThat(underTest.cardinality()).isEqualTo(expected.cardinality());
+    }
+
+    @Test
+    void builderCompressesDenseAndSparseIds() {
+        // Given
+        CustomerIdBitmap.Builder builder = CustomerIdBitmap.builder();
+
+        // When a million consecutive ids, then ids 100 000 apart
+        for (long id = 1; id <= 1_000_000; id++) {
+            builder.add(id);
+        }
+        for (long id = 2_000_000; id < 12_000_000; id += 100_000) {
+            builder.add(id);
+        }
+        CustomerIdBitmap underTest = builder.build();
+
+        // Then dense ids take about one bit each, sparse ids two bytes each
+        assertThat(underTest.cardinality()).isEqualTo(1_000_100);
+        assertThat(underTest.contains(500_000)).isTrue();
+        assertThat(underTest.contains(1_000_001)).isFalse();
+        assertThat(underTest.contains(2_100_000)).isTrue();
+        assertThat(underTest.contains(2_100_001)).isFalse();
+        assertThat(underTest.sizeInBytes()).isLessThan(1_000_000 / 8 + 16 * 1024 + 200);
+    }
+
+    @Test
+    void builderRejectsIdsOutOfOrder() {
+        // Given
+        CustomerIdBitmap.Builder builder = CustomerIdBitmap.builder();
+        builder.add(5);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> builder.add(5)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,100 @@
+package com.bachir.customer.index;
+
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.index.CustomerIdIndex.Lookup;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CustomerIdIndexTest {
+
+    // The ids the customer table holds at the next load
+    private final AtomicReference<List<Long>> tableIds = new AtomicReference<>(List.of());
+    private final CustomerIdIndex underTest = new CustomerIdIndex(jdbcTemplate(), true, "jpa", Duration.ofMinutes(1));
+
+    @Test
+    void knowsNothingBeforeSecondLoad() {
+        // Given
+        tableIds.set(List.of(1L, 2L, 4L));
+
+        // When
+        underTest.load();
+
+        // Then
+        assertThat(underTest.lookup(3)).isEqualTo(Lookup.UNKNOWN);
+        assertThat(underTest.lookup(4)).isEqualTo(Lookup.UNKNOWN);
+    }
+
+    @Test
+    void answersIdsUpToHighestIdOfPreviousLoad() {
+        // Given
+        tableIds.set(List.of(1L, 2L, 4L));
+        underTest.load();
+        tableIds.set(List.of(1L, 2L, 4L, 5L, 6L));
+
+        // When
+        underTest.load();
+
+        // Then ids up to 4 are known, later ones may have been inserted by another instance since
+        assertThat(underTest.lookup(1)).isEqualTo(Lookup.PRESENT);
+        assertThat(underTest.lookup(3)).isEqualTo(Lookup.ABSENT);
+        assertThat(underTest.lookup(4)).isEqualTo(Lookup.PRESENT);
+        assertThat(underTest.lookup(5)).isEqualTo(Lookup.UNKNOWN);
+    }
+
+    @Test
+    void followsWritesOfThisInstance() {
+        // Given
+        tableIds.set(List.of(1L, 2L, 3L, 4L));
+        underTest.load();
+        underTest.load();
+
+        // When
+        underTest.onCustomerChanged(CustomerChangedEvent.deleted(2L));
+        underTest.onCustomerChanged(CustomerChangedEvent.inserted(3L));
+
+        // Then
+        assertThat(underTest.lookup(2)).isEqualTo(Lookup.ABSENT);
+        assertThat(underTest.lookup(3)).isEqualTo(Lookup.PRESENT);
+    }
+
+    @Test
+    void forgetsEverythingOnBulkChange() {
+        // Given
+        tableIds.set(List.of(1L, 4L));
+        underTest.load();
+        underTest.load();
+
+        // When
+        underTest.onCustomerChanged(CustomerChangedEvent.bulk());
+
+        // Then
+        assertThat(underTest.lookup(2)).isEqualTo(Lookup.UNKNOWN);
+    }
+
+    private JdbcTemplate jdbcTemplate() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (long id : tableIds.get()) {
+                ResultSet resultSet = mock(ResultSet.class);
+                when(resultSet.getLong(1)).thenReturn(id);
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        return jdbcTemplate;
+    }
+}
@@ -0,0 +1,97 @@
+package com.bachir.customer.invalidation;
+
+import com.bachir.customer.CustomerChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerInvalidationBusTest {
+
+    private final List<Object> published = new ArrayList<>();
+    // Not started: receive is called directly
+    private final CustomerInvalidationBus underTest = new CustomerInvalidationBus(
+            "jdbc:postgresql://localhost:5332/customer", "bachir", "password", Duration.ofMillis(10),
+            published::add, null);
+
+    @Test
+    void runsWheneverCachesAreOn() {
+        // Given
+        ApplicationContextRunner context = new ApplicationContextRunner()
+                .withInitializer(running -> running.getBeanFactory()
+                        .setConversionService(ApplicationConversionService.getSharedInstance()))
+                .withUserConfiguration(CustomerInvalidationBus.class)
+                .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+                .withPropertyValues("spring.datasource.url=jdbc:postgresql://localhost:5332/customer",
+                        "spring.datasource.username=bachir", "spring.datasource.password=password");
+        String[] noCaches = {"customer.response-cache.enabled=false", "customer.id-index.enabled=false"};
+
+        // Then on with the default caches, or with the near-cache alone, and off without any unless forced
+        context.run(running -> assertThat(running).hasSingleBean(CustomerInvalidationBus.class));
+        context.withPropertyValues(noCaches)
+                .run(running -> assertThat(running).doesNotHaveBean(CustomerInvalidationBus.class));
+        context.withPropertyValues(noCaches).withPropertyValues("customer.near-cache.enabled=true")
+                .run(running -> assertThat(running).hasSingleBean(CustomerInvalidationBus.class));
+        context.withPropertyValues(noCaches).withPropertyValues("customer.invalidation-bus.enabled=true")
+                .run(running -> assertThat(running).hasSingleBean(CustomerInvalidationBus.class));
+        context.withPropertyValues("customer.invalidation-bus.enabled=false")
+                .run(running -> assertThat(running).doesNotHaveBean(CustomerInvalidationBus.class));
+    }
+
+    @Test
+    void encodesLastChangeOfEveryCustomer() {
+        // When
+        List<String> messages = CustomerInvalidationBus.encode(List.of(
+                CustomerChangedEvent.inserted(12L),
+                CustomerChangedEvent.updated(13L),
+                CustomerChangedEvent.updated(12L),
+                CustomerChangedEvent.deleted(14L)), false);
+
+        // Then
+        assertThat(messages).containsExactly("U13,U12,D14");
+        assertThat(CustomerInvalidationBus.decode(messages.get(0))).containsExactly(
+                CustomerChangedEvent.updated(13L), CustomerChangedEvent.updated(12L), CustomerChangedEvent.deleted(14L));
+    }
+
+    @Test
+    void splitsLargeBatchesAndFlushesForBulkChanges() {
+        // Given
+        List<CustomerChangedEvent> updates = LongStream.rangeClosed(1_000_000, 1_010_000)
+                .mapToObj(CustomerChangedEvent::updated).toList();
+
+        // When
+        List<String> messages = CustomerInvalidationBus.encode(updates, false);
+
+        // Then
+        assertThat(messages).hasSizeGreaterThan(1)
+                .allSatisfy(message -> assertThat(message.length()).isLessThanOrEqualTo(CustomerInvalidationBus.MAX_ENTRIES_LENGTH));
+        assertThat(messages.stream().mapToLong(message -> message.split(",").length).sum()).isEqualTo(updates.size());
+        assertThat(CustomerInvalidationBus.encode(List.of(CustomerChangedEvent.updated(1L), CustomerChangedEvent.bulk()), false))
+                .containsExactly(CustomerInvalidationBus.FLUSH);
+        assertThat(CustomerInvalidationBus.encode(List.of(CustomerChangedEvent.updated(1L)), true))
+                .containsExactly(CustomerInvalidationBus.FLUSH);
+    }
+
+    @Test
+    void flushesWhenMessagesOfAnInstanceWereMissed() {
+        // When
+        underTest.receive("v1|other|0|U1");
+        underTest.receive("v1|other|1|D2");
+        underTest.receive("v1|other|3|U3");
+        underTest.receive("v1|" + underTest.nodeId() + "|0|U4");
+
+        // Then
+        assertThat(published).containsExactly(
+                CustomerChangedEvent.updated(1L), CustomerChangedEvent.deleted(2L), CustomerChangedEvent.bulk());
+        assertThat(underTest.received()).isEqualTo(3);
+        assertThat(underTest.missed()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,97 @@
+package com.bachir.customer.limit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the limit with a simulated backend: a database with a fixed number of connections,
+ * where requests beyond that number queue and their latency grows accordingly.
+ */
+class AdaptiveConcurrencyLimitTest {
+
+    private static final int CONNECTIONS = 10;
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    void limitGrowsWhileDatabaseKeepsUp() {
+        // Given
+        AdaptiveConcurrencyLimit underTest = newLimit();
+
+        // When requests never wait for a connection
+        for (int i = 0; i < 200; i++) {
+            underTest.onSample(5 * MILLIS, underTest.limit(), false);
+        }
+
+        // Then
+        assertThat(underTest.limit()).isEqualTo(200);
+    }
+
+    @Test
+    void limitConvergesWhenRequestsQueueForConnections() {
+        // Given a first request that ran alone and measured the no-load latency
+        AdaptiveConcurrencyLimit underTest = newLimit();
+        underTest.onSample(5 * MILLIS, 1, false);
+
+        // When more requests are offered than the database has connections
+        simulate(underTest, 5 * MILLIS, 500);
+
+        // Then the limit settles around the number of connections, plus the latency tolerance and a small queue
+        assertThat(underTest.limit()).isBetween(CONNECTIONS, 4 * CONNECTIONS);
+    }
+
+    @Test
+    void limitRecoversWhenDatabaseBecomesSlower() {
+        // Given a limit that settled while the database was fast
+        AdaptiveConcurrencyLimit underTest = newLimit();
+        simulate(underTest, 5 * MILLIS, 500);
+
+        // When every query becomes ten times slower
+        simulate(underTest, 50 * MILLIS, 500);
+
+        // Then the limit first drops, measures the new no-load latency, and settles at the same concurrency
+        assertThat(underTest.limit()).isBetween(CONNECTIONS, 4 * CONNECTIONS);
+    }
+
+    @Test
+    void failuresCutLimit() {
+        // Given
+        AdaptiveConcurrencyLimit underTest = newLimit();
+
+        // When
+        underTest.onSample(5 * MILLIS, 20, true);
+
+        // Then
+        assertThat(underTest.limit()).isEqualTo(18);
+    }
+
+    @Test
+    void shedsRequestsAboveLimit() {
+        // Given
+        AdaptiveConcurrencyLimit underTest = new AdaptiveConcurrencyLimit(1, 1, 10, 2.0, 0.2);
+        AdaptiveConcurrencyLimit.Permit permit = underTest.tryAcquire();
+
+        // When
+        AdaptiveConcurrencyLimit.Permit rejected = underTest.tryAcquire();
+
+        // Then
+        assertThat(permit).isNotNull();
+        assertThat(rejected).isNull();
+        assertThat(underTest.rejected()).isEqualTo(1);
+        underTest.release(permit, false);
+        assertThat(underTest.inFlight()).isZero();
+    }
+
+    private static AdaptiveConcurrencyLimit newLimit() {
+        return new AdaptiveConcurrencyLimit(20, 4, 200, 2.0, 0.2);
+    }
+
+    // Offers more requests than the limit allows: every sample ran with the limit fully used.
+    private static void simulate(AdaptiveConcurrencyLimit limit, long queryTimeNanos, int samples) {
+        for (int i = 0; i < samples; i++) {
+            int inFlight = limit.limit();
+            long rtt = queryTimeNanos * Math.max(1, inFlight) / Math.min(Math.max(1, inFlight), CONNECTIONS);
+            limit.onSample(rtt, inFlight, false);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.bachir.customer.limit;
+
+import com.bachir.customer.CustomerDao;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class ConcurrencyLimitFilterTest {
+
+    private static final int CONNECTIONS = 10;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shedsRequestsAboveLimitWithRetryAfter() throws Exception {
+        // Given a limit of one request, held by a request that has not finished
+        ConcurrencyLimitFilter underTest = newFilter(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Thread running = new Thread(() -> {
+            try {
+                underTest.doFilter(get(), new MockHttpServletResponse(), (request, response) -> {
+                    started.countDown();
+                    await(finish);
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        running.start();
+        started.await();
+
+        // When
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        underTest.doFilter(get(), shed, (request, response) -> {
+            throw new AssertionError("shed request reached the controller");
+        });
+
+        // Then
+        assertThat(shed.getStatus()).isEqualTo(429);
+        assertThat(shed.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(meterRegistry.get("customer.concurrency.rejected").tag("kind", "read").functionCounter().count())
+                .isEqualTo(1);
+
+        // And writes have their own limit
+        MockHttpServletResponse write = new MockHttpServletResponse();
+        underTest.doFilter(new MockHttpServletRequest("POST", "/api/v1/customers"), write, (request, response) -> { });
+        assertThat(write.getStatus()).isEqualTo(200);
+
+        finish.countDown();
+        running.join();
+    }
+
+    @Test
+    void leavesOtherPathsAlone() throws Exception {
+        // Given
+        ConcurrencyLimitFilter underTest = newFilter(1, 1);
+        FilterChain chain = (request, response) -> { };
+
+        // When
+        underTest.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), new MockHttpServletResponse(), chain);
+
+        // Then
+        assertThat(underTest.readLimit().rejected()).isZero();
+        assertThat(underTest.readLimit().inFlight()).isZero();
+    }
+
+    @Test
+    void leavesTransferEndpointsAlone() throws Exception {
+        // Given
+        ConcurrencyLimitFilter underTest = newFilter(1, 1);
+        List<Integer> inFlight = new ArrayList<>();
+        FilterChain chain = (request, response) ->
+                inFlight.add(underTest.readLimit().inFlight() + underTest.writeLimit().inFlight());
+
+        // When
+        underTest.doFilter(new MockHttpServletRequest("GET", "/api/v1/customers/export"), new MockHttpServletResponse(), chain);
+        underTest.doFilter(new MockHttpServletRequest("POST", "/api/v1/customers/import"), new MockHttpServletResponse(), chain);
+
+        // Then neither took a permit, so neither fed the latency samples
+        assertThat(inFlight).containsExactly(0, 0);
+    }
+
+    @Test
+    void limitConvergesWhenDaoBecomesSlow() throws Exception {
+        // Given a CustomerDao backed by a database with 10 connections and 20 ms queries
+        Semaphore connections = new Semaphore(CONNECTIONS);
+        CustomerDao customerDao = mock(CustomerDao.class, withSettings().stubOnly());
+        when(customerDao.selectAllCustomers()).thenAnswer(invocation -> {
+            connections.acquire();
+            try {
+                Thread.sleep(20);
+            } finally {
+                connections.release();
+            }
+            return List.of();
+        });
+        ConcurrencyLimitFilter underTest = newFilter(20, 4);
+        FilterChain controller = (request, response) -> customerDao.selectAllCustomers();
+
+        // When 40 clients send requests as fast as they can, pausing briefly when shed
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Thread client = new Thread(() -> {
+                while (running.get()) {
+                    try {
+                        MockHttpServletResponse response = new MockHttpServletResponse();
+                        underTest.doFilter(get(), response, controller);
+                        if (response.getStatus() == 429) {
+                            Thread.sleep(5);
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            client.start();
+            clients.add(client);
+        }
+        Thread.sleep(3000);
+        running.set(false);
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        // Then the limit settled near the number of connections instead of letting every client queue
+        // (loose bounds: on a busy machine, scheduling delays look like database latency too)
+        assertThat(underTest.readLimit().limit()).isBetween(CONNECTIONS / 2, 4 * CONNECTIONS);
+        assertThat(underTest.readLimit().rejected()).isPositive();
+        assertThat(underTest.writeLimit().rejected()).isZero();
+    }
+
+    private ConcurrencyLimitFilter newFilter(int initialLimit, int minLimit) {
+        return new ConcurrencyLimitFilter(meterRegistry, initialLimit, minLimit, 200, 2.0, 0.2, Duration.ofSeconds(2));
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/api/v1/customers");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.bachir.customer.log;
+
+import com.bachir.customer.Customer;
+import com.bachir.exception.DuplicateResourceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerLogDataAccessServiceTest {
+
+    // The smallest segment allowed, so that a few thousand customers fill several segments
+    private static final long SEGMENT_SIZE = CustomerLogRecord.MAX_SIZE;
+
+    @TempDir
+    Path directory;
+
+    private CustomerLogDataAccessService underTest;
+
+    @AfterEach
+    void tearDown() {
+        if (underTest != null) {
+            underTest.close();
+        }
+    }
+
+    @Test
+    void customersSurviveRestart() {
+        // Given
+        underTest = open(FsyncPolicy.PER_WRITE);
+        Customer alex = underTest.insertCustomer(new Customer("Alex", "alex@mail.com", 22));
+        Customer jamila = underTest.insertCustomer(new Customer("Jamila", "jamila@mail.com", 24));
+
+        // When
+        List<Customer> recovered = reopen(FsyncPolicy.PER_WRITE).selectAllCustomers();
+
+        // Then
+        assertThat(recovered).usingRecursiveFieldByFieldElementComparator().containsExactly(alex, jamila);
+    }
+
+    @Test
+    void updatesAndDeletesSurviveRestart() {
+        // Given
+        underTest = open(FsyncPolicy.INTERVAL);
+        Customer alex = underTest.insertCustomer(new Customer("Alex", "alex@mail.com", 22));
+        Customer jamila = underTest.insertCustomer(new Customer("Jamila", "jamila@mail.com", 24));
+        underTest.updateCustomer(new Customer(alex.getId(), null, "ALEX@new.com", 23));
+        underTest.deleteCustomerById(jamila.getId());
+
+        // When
+        reopen(FsyncPolicy.INTERVAL);
+
+        // Then the email index was rebuilt too, and the id of the deleted customer is not given out again
+        assertThat(underTest.selectAllCustomers())
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(new Customer(alex.getId(), "Alex", "ALEX@new.com", 23));
+        assertThat(underTest.existsPersonWithEmail(" alex@NEW.com")).isTrue();
+        assertThat(underTest.existsPersonWithEmail("alex@mail.com")).isFalse();
+        assertThat(underTest.existsPersonWithEmail("jamila@mail.com")).isFalse();
+        assertThat(underTest.insertCustomer(new Customer("Ali", "ali@mail.com", 30)).getId())
+                .isEqualTo(jamila.getId() + 1);
+    }
+
+    @Test
+    void rejectsEmailOfAnotherCustomer() {
+        // Given
+        underTest = open(FsyncPolicy.GROUP_COMMIT);
+        underTest.insertCustomer(new Customer("Alex", "alex@mail.com", 22));
+        Customer jamila = underTest.insertCustomer(new Customer("Jamila", "jamila@mail.com", 24));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Other", " Alex@Mail.com", 30)))
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("Email already taken");
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(jamila.getId(), null, "alex@mail.com", null)))
+                .isInstanceOf(DuplicateResourceException.class);
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void dropsRecordTornByCrash() throws IOException {
+        // Given a log whose last record was only half written
+        underTest = open(FsyncPolicy.PER_WRITE);
+        underTest.insertCustomer(new Customer("Alex", "alex@mail.com", 22));
+        underTest.insertCustomer(new Customer("Jamila", "jamila@mail.com", 24));
+        underTest.close();
+        underTest = null;
+        Path segment = CustomerLogSegment.path(directory, 0);
+        byte[] torn = CustomerLogRecord.put(new Customer(3L, "Ali", "ali@mail.com", 30)).encode();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            long end = firstZeroOffset(segment);
+            channel.write(ByteBuffer.wrap(torn, 0, torn.length / 2), end);
+        }
+
+        // When
+        reopen(FsyncPolicy.PER_WRITE);
+        Customer ali = underTest.insertCustomer(new Customer("Ali", "ali@mail.com", 30));
+        reopen(FsyncPolicy.PER_WRITE);
+
+        // Then the torn record is gone, and the record written over it is read back whole
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getName).containsExactly("Alex", "Jamila", "Ali");
+        assertThat(ali.getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void snapshotReplacesSegments() throws IOException {
+        // Given customers spread over several segments, most of them updated since
+        underTest = open(FsyncPolicy.INTERVAL);
+        for (int i = 0; i < 5_000; i++) {
+            underTest.insertCustomer(new Customer("Customer " + i, "customer" + i + "@mail.com", 20));
+        }
+        for (long id = 1; id <= 5_000; id += 2) {
+            underTest.updateCustomer(new Customer(id, null, null, 21));
+        }
+        assertThat(files(".log")).hasSizeGreaterThan(2);
+
+        // When
+        underTest.snapshot();
+        underTest.deleteCustomerById(5_000);
+
+        // Then only the segment started with the snapshot is left, and the state is recovered from both
+        assertThat(files(".log")).hasSize(1);
+        assertThat(files(".snapshot")).hasSize(1);
+        reopen(FsyncPolicy.INTERVAL);
+        assertThat(underTest.selectAllCustomers()).hasSize(4_999);
+        assertThat(underTest.selectCustomerById(1L)).get().extracting(Customer::getAge).isEqualTo(21);
+        assertThat(underTest.selectCustomerById(2L)).get().extracting(Customer::getAge).isEqualTo(20);
+        assertThat(underTest.insertCustomer(new Customer("Ali", "ali@mail.com", 30)).getId()).isEqualTo(5_001L);
+    }
+
+    @Test
+    void snapshotKeepsHighestIdOfDeletedCustomers() {
+        // Given
+        underTest = open(FsyncPolicy.PER_WRITE);
+        underTest.insertCustomer(new Customer("Alex", "alex@mail.com", 22));
+        Customer jamila = underTest.insertCustomer(new Customer("Jamila", "jamila@mail.com", 24));
+        underTest.deleteCustomerById(jamila.getId());
+
+        // When
+        underTest.snapshot();
+        reopen(FsyncPolicy.PER_WRITE);
+
+        // Then
+        assertThat(underTest.insertCustomer(new Customer("Ali", "ali@mail.com", 30)).getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void concurrentWritersShareGroupCommits() throws Exception {
+        // Given
+        underTest = open(FsyncPolicy.GROUP_COMMIT);
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+
+        // When
+        List<Future<Customer>> inserts = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            int n = i;
+            inserts.add(writers.submit(() -> underTest.insertCustomer(new Customer("Customer " + n, "customer" + n + "@mail.com", 20))));
+        }
+        for (Future<Customer> insert : inserts) {
+            insert.get();
+        }
+        writers.shutdown();
+
+        // Then every customer got its own id, and all of them were written
+        assertThat(inserts).extracting(Future::get).extracting(Customer::getId).doesNotHaveDuplicates();
+        assertThat(reopen(FsyncPolicy.GROUP_COMMIT).selectAllCustomers()).hasSize(2_000);
+    }
+
+    private CustomerLogDataAccessService open(FsyncPolicy fsync) {
+        CustomerLogOptions options = new CustomerLogOptions(SEGMENT_SIZE, fsync, Duration.ofMillis(10),
+                Long.MAX_VALUE, Duration.ofHours(1));
+        return new CustomerLogDataAccessService(directory, options, event -> { });
+    }
+
+    private CustomerLogDataAccessService reopen(FsyncPolicy fsync) {
+        if (underTest != null) {
+            underTest.close();
+        }
+        underTest = open(fsync);
+        return underTest;
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(suffix)).toList();
+        }
+    }
+
+    private static long firstZeroOffset(Path segment) throws IOException {
+        byte[] bytes = Files.readAllBytes(segment);
+        int index = 0;
+        while (ByteBuffer.wrap(bytes).getInt(index) != 0) {
+            index += CustomerLogRecord.sizeAt(ByteBuffer.wrap(bytes), index);
+        }
+        return index;
+    }
+}
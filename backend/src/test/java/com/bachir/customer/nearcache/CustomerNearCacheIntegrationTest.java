@@ -0,0 +1,176 @@
+package com.bachir.customer.nearcache;
+
+import com.bachir.AbstractTestcontainers;
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.CustomerJDBCDataAccessService;
+import com.bachir.customer.CustomerRowMapper;
+import com.bachir.customer.invalidation.CustomerInvalidationBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two instances of the application in one JVM, each with its own near-cache and invalidation bus, sharing a database
+ * of the local Postgres instance (port 5332) created for every test. Another server can be given with
+ * -Dnearcache.server.url.
+ */
+public class CustomerNearCacheIntegrationTest {
+
+    private static final String SERVER_URL = System.getProperty("nearcache.server.url", "jdbc:postgresql://localhost:5332/");
+    private static final String DATABASE = "customer_near_cache_it";
+    private static final Duration BATCH_WINDOW = Duration.ofMillis(50);
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    private JdbcTemplate jdbcTemplate;
+    private Node first;
+    private Node second;
+
+    // One instance: its DAO publishes to its near-cache and its bus, which publishes the writes of others to its near-cache
+    private static final class Node implements AutoCloseable {
+
+        private CustomerNearCache nearCache;
+        private final CustomerInvalidationBus bus;
+
+        private Node(JdbcTemplate jdbcTemplate) {
+            this.bus = new CustomerInvalidationBus(SERVER_URL + DATABASE, "bachir", "password", BATCH_WINDOW,
+                    event -> nearCache.onCustomerChanged((CustomerChangedEvent) event), null);
+            CustomerJDBCDataAccessService store = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper(),
+                    event -> {
+                        nearCache.onCustomerChanged((CustomerChangedEvent) event);
+                        bus.onCustomerChanged((CustomerChangedEvent) event);
+                    });
+            this.nearCache = new CustomerNearCache(store, 1000, Duration.ofMinutes(5), null);
+            bus.start();
+        }
+
+        private String name(long id) {
+            return nearCache.selectCustomerById(id).orElseThrow().getName();
+        }
+
+        @Override
+        public void close() {
+            bus.close();
+        }
+    }
+
+    @BeforeEach
+    void createDatabase() {
+        JdbcTemplate server = new JdbcTemplate(dataSource("customer"));
+        server.execute("DROP DATABASE IF EXISTS " + DATABASE + " WITH (FORCE)");
+        server.execute("CREATE DATABASE " + DATABASE);
+        DataSource dataSource = dataSource(DATABASE);
+        AbstractTestcontainers.flyway(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        first = new Node(jdbcTemplate);
+        second = new Node(jdbcTemplate);
+        // Every listener flushes once it is connected: from then on, no message is missed
+        eventually(() -> first.nearCache.flushes() == 1 && second.nearCache.flushes() == 1);
+    }
+
+    @AfterEach
+    void stopNodes() {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void dropsCustomersUpdatedOnAnotherInstance() {
+        // Given
+        long id = first.nearCache.insertCustomer(new Customer("Alex", "alex@gmail.com", 21)).getId();
+        assertThat(second.name(id)).isEqualTo("Alex");
+        assertThat(second.name(id)).isEqualTo("Alex");
+        assertThat(second.nearCache.hits()).isEqualTo(1);
+
+        // When
+        first.nearCache.updateCustomer(new Customer(id, "Alexandre", null, null));
+
+        // Then
+        eventually(() -> second.name(id).equals("Alexandre"));
+        assertThat(second.nearCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void batchesInvalidationsOfManyWrites() {
+        // Given
+        jdbcTemplate.update("""
+                INSERT INTO customer(name, email, age)
+                SELECT 'Customer ' || n, 'customer.' || n || '@gmail.com', 30 FROM generate_series(1, 500) n
+                """);
+        for (long id = 1; id <= 500; id++) {
+            second.name(id);
+        }
+        assertThat(second.nearCache.size()).isEqualTo(500);
+
+        // When
+        long start = System.nanoTime();
+        for (long id = 1; id <= 500; id++) {
+            first.nearCache.updateCustomer(new Customer(id, "Updated " + id, null, null));
+        }
+        eventually(() -> second.nearCache.size() == 0);
+        long elapsedNanos = System.nanoTime() - start;
+
+        // Then at most one message was sent per batch window
+        assertThat(second.name(500)).isEqualTo("Updated 500");
+        assertThat(first.bus.sent()).isLessThan(500)
+                .isLessThanOrEqualTo(elapsedNanos / BATCH_WINDOW.toNanos() + 1);
+        assertThat(second.bus.received()).isEqualTo(first.bus.sent());
+    }
+
+    @Test
+    void flushesAfterLosingConnection() {
+        // Given
+        long id = first.nearCache.insertCustomer(new Customer("Alex", "alex@gmail.com", 21)).getId();
+        assertThat(second.name(id)).isEqualTo("Alex");
+
+        // When both listeners are disconnected, and the update is sent while they may be away
+        jdbcTemplate.queryForList("""
+                SELECT pg_terminate_backend(pid) FROM pg_stat_activity
+                WHERE application_name = 'customer-invalidation-listener' AND datname = ?
+                """, DATABASE);
+        first.nearCache.updateCustomer(new Customer(id, "Alexandre", null, null));
+
+        // Then they reconnect and drop everything they cached
+        eventually(() -> second.nearCache.flushes() == 2);
+        eventually(() -> second.name(id).equals("Alexandre"));
+        assertThat(listeners()).isEqualTo(2);
+    }
+
+    private long listeners() {
+        return jdbcTemplate.queryForObject("""
+                SELECT count(*) FROM pg_stat_activity
+                WHERE application_name = 'customer-invalidation-listener' AND datname = ?
+                """, Long.class, DATABASE);
+    }
+
+    private static void eventually(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within %s", TIMEOUT).isLessThan(deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static DataSource dataSource(String database) {
+        return DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .driverClassName("org.postgresql.Driver")
+                .url(SERVER_URL + database)
+                .username("bachir")
+                .password("password")
+                .build();
+    }
+}
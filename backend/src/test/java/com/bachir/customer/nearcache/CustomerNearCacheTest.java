@@ -0,0 +1,98 @@
+package com.bachir.customer.nearcache;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerChangedEvent;
+import com.bachir.customer.CustomerDao;
+import com.bachir.datasource.PrimaryStickiness;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerNearCacheTest {
+
+    private final CustomerDao store = mock(CustomerDao.class);
+    private final CustomerNearCache underTest = new CustomerNearCache(store, 100, Duration.ofMinutes(5), null);
+
+    @AfterEach
+    void clearStickiness() {
+        PrimaryStickiness.clear();
+    }
+
+    @Test
+    void servesCopiesOfCachedCustomers() {
+        // Given
+        when(store.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "Alex", "alex@gmail.com", 21)));
+        underTest.selectCustomerById(1L).orElseThrow().setName("Changed by the caller");
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(customer -> assertThat(customer.getName()).isEqualTo("Alex"));
+        verify(store, times(1)).selectCustomerById(1L);
+        assertThat(underTest.hits()).isEqualTo(1);
+        assertThat(underTest.misses()).isEqualTo(1);
+    }
+
+    @Test
+    void neverServesReadThatRacedInvalidation() {
+        // Given a read that gets the old row, while the update commits and is invalidated before it is cached
+        when(store.selectCustomerById(1L)).thenAnswer(invocation -> {
+            underTest.onCustomerChanged(CustomerChangedEvent.updated(1L));
+            return Optional.of(new Customer(1L, "Old name", "alex@gmail.com", 21));
+        }).thenReturn(Optional.of(new Customer(1L, "New name", "alex@gmail.com", 21)));
+        underTest.selectCustomerById(1L);
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(customer -> assertThat(customer.getName()).isEqualTo("New name"));
+        assertThat(underTest.hits()).isZero();
+    }
+
+    @Test
+    void dropsInvalidatedAndFlushedCustomers() {
+        // Given
+        when(store.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "Alex", "alex@gmail.com", 21)));
+        when(store.selectCustomerById(2L)).thenReturn(Optional.of(new Customer(2L, "Jamila", "jamila@gmail.com", 22)));
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(2L);
+
+        // When
+        underTest.onCustomerChanged(CustomerChangedEvent.deleted(1L));
+
+        // Then
+        assertThat(underTest.size()).isEqualTo(1);
+
+        // When
+        underTest.onCustomerChanged(CustomerChangedEvent.bulk());
+
+        // Then
+        assertThat(underTest.size()).isZero();
+        assertThat(underTest.flushes()).isEqualTo(1);
+    }
+
+    @Test
+    void readsStoreBeforeWrites() {
+        // Given
+        when(store.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "Alex", "alex@gmail.com", 21)));
+        underTest.selectCustomerById(1L);
+
+        // When
+        PrimaryStickiness.stick();
+        underTest.selectCustomerById(1L);
+
+        // Then
+        verify(store, times(2)).selectCustomerById(1L);
+        assertThat(underTest.hits()).isZero();
+    }
+}
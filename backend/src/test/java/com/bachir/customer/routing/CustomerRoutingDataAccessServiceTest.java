@@ -0,0 +1,95 @@
+package com.bachir.customer.routing;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerDao;
+import com.bachir.exception.RequestValidationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerRoutingDataAccessServiceTest {
+
+    private final CustomerDao jpa = mock(CustomerDao.class);
+    private final CustomerDao jdbc = mock(CustomerDao.class);
+    private final BeanFactory beanFactory = mock(BeanFactory.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CustomerRoutingDataAccessService underTest;
+
+    CustomerRoutingDataAccessServiceTest() {
+        when(beanFactory.getBean("jpa", CustomerDao.class)).thenReturn(jpa);
+        when(beanFactory.getBean("jdbc", CustomerDao.class)).thenReturn(jdbc);
+        underTest = new CustomerRoutingDataAccessService(beanFactory, List.of("jpa", "jdbc"), "jpa",
+                new MockEnvironment().withProperty("customer.routing.routes.select-all", "jdbc"), meterRegistry);
+    }
+
+    @Test
+    void sendsEveryOperationToItsBackend() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(jdbc.selectAllCustomers()).thenReturn(List.of(customer));
+        when(jpa.existsPersonWithId(1)).thenReturn(true);
+
+        // When
+        List<Customer> all = underTest.selectAllCustomers();
+        boolean exists = underTest.existsPersonWithId(1);
+
+        // Then
+        assertThat(all).containsExactly(customer);
+        assertThat(exists).isTrue();
+        verify(jpa, never()).selectAllCustomers();
+        assertThat(underTest.routes()).containsEntry(CustomerOperation.SELECT_ALL, "jdbc")
+                .containsEntry(CustomerOperation.EXISTS_BY_ID, "jpa");
+        assertThat(meterRegistry.get("customer.routing.latency")
+                .tags("operation", "select-all", "backend", "jdbc").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsBackendsOverDifferentDataStores() {
+        // When
+        // Then
+        assertThatThrownBy(() -> new CustomerRoutingDataAccessService(beanFactory, List.of("jpa", "jdbc", "list"), "jpa",
+                new MockEnvironment(), meterRegistry))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("customer.routing.backends [jpa, jdbc, list] do not share a data store");
+    }
+
+    @Test
+    void reroutesWhileRunning() {
+        // When
+        underTest.reroute(Map.of(CustomerOperation.SELECT_ALL, "jpa", CustomerOperation.UPDATE, "jdbc"));
+        underTest.selectAllCustomers();
+        underTest.updateCustomer(new Customer(1L, "Alex", "alex@gmail.com", 21));
+
+        // Then
+        verify(jpa).selectAllCustomers();
+        verify(jdbc).updateCustomer(new Customer(1L, "Alex", "alex@gmail.com", 21));
+        assertThat(meterRegistry.get("customer.routing.latency")
+                .tags("operation", "update", "backend", "jdbc").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsUnknownBackendsWithoutChangingAnything() {
+        // When
+        assertThatThrownBy(() -> underTest.reroute(Map.of(
+                CustomerOperation.SELECT_BY_ID, "jdbc", CustomerOperation.INSERT, "sharded")))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Unknown backend [sharded], expected one of jpa, jdbc");
+
+        // Then
+        assertThat(underTest.routes()).containsEntry(CustomerOperation.SELECT_BY_ID, "jpa")
+                .containsEntry(CustomerOperation.INSERT, "jpa");
+        assertThatThrownBy(() -> CustomerOperation.parse("select-everything"))
+                .isInstanceOf(RequestValidationException.class);
+    }
+}
@@ -0,0 +1,71 @@
+package com.bachir.customer.shard;
+
+import com.bachir.customer.shard.CustomerResharder.Move;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerResharderTest {
+
+    @Test
+    void planSpreadsBucketsEvenlyOverNewShards() {
+        // Given two shards owning all buckets
+        Map<Integer, List<Integer>> bucketsByShard = roundRobin(2);
+
+        // When a third shard is added
+        List<Move> moves = CustomerResharder.plan(bucketsByShard, 3);
+
+        // Then
+        Map<Integer, Integer> counts = applyMoves(bucketsByShard, moves);
+        assertThat(counts).containsEntry(0, 342).containsEntry(1, 341).containsEntry(2, 341);
+        assertThat(moves).allSatisfy(move -> assertThat(move.toShard()).isEqualTo(2));
+    }
+
+    @Test
+    void planMovesNothingWhenBalanced() {
+        // When
+        List<Move> moves = CustomerResharder.plan(roundRobin(4), 4);
+
+        // Then
+        assertThat(moves).isEmpty();
+    }
+
+    @Test
+    void bucketsAreSpreadEvenly() {
+        // Given
+        int[] counts = new int[CustomerShardDirectory.BUCKETS];
+
+        // When
+        for (long id = 1; id <= 1_024_000; id++) {
+            counts[CustomerShardDirectory.bucketOf(id)]++;
+        }
+
+        // Then every bucket holds close to 1000 sequential ids
+        assertThat(IntStream.of(counts).min().orElseThrow()).isGreaterThan(850);
+        assertThat(IntStream.of(counts).max().orElseThrow()).isLessThan(1150);
+    }
+
+    private static Map<Integer, List<Integer>> roundRobin(int shards) {
+        Map<Integer, List<Integer>> bucketsByShard = new HashMap<>();
+        for (int bucket = 0; bucket < CustomerShardDirectory.BUCKETS; bucket++) {
+            bucketsByShard.computeIfAbsent(bucket % shards, shard -> new ArrayList<>()).add(bucket);
+        }
+        return bucketsByShard;
+    }
+
+    private static Map<Integer, Integer> applyMoves(Map<Integer, List<Integer>> bucketsByShard, List<Move> moves) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        bucketsByShard.forEach((shard, buckets) -> counts.put(shard, buckets.size()));
+        for (Move move : moves) {
+            counts.merge(move.fromShard(), -move.buckets().size(), Integer::sum);
+            counts.merge(move.toShard(), move.buckets().size(), Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,267 @@
+package com.bachir.customer.shard;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerRowMapper;
+import com.bachir.exception.DuplicateResourceException;
+import com.github.javafaker.Faker;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the sharded store against several databases of the local Postgres instance (port 5332):
+ * a directory and up to three shards, recreated for every test. Another server can be given with -Dshard.server.url.
+ */
+public class CustomerShardedDataAccessServiceIntegrationTest {
+
+    private static final String SERVER_URL = System.getProperty("shard.server.url", "jdbc:postgresql://localhost:5332/");
+    private static final String DIRECTORY = "customer_shard_it_directory";
+    private static final List<String> SHARDS = List.of("customer_shard_it_0", "customer_shard_it_1", "customer_shard_it_2");
+
+    private final Faker faker = new Faker();
+    private final List<AutoCloseable> closeables = new ArrayList<>();
+    private CustomerShardDirectory directory;
+    private CustomerShards shards;
+
+    @BeforeEach
+    void createDatabases() {
+        JdbcTemplate server = new JdbcTemplate(dataSource("customer"));
+        for (String database : concat(DIRECTORY, SHARDS)) {
+            server.execute("DROP DATABASE IF EXISTS " + database + " WITH (FORCE)");
+            server.execute("CREATE DATABASE " + database);
+        }
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        for (AutoCloseable closeable : closeables) {
+            closeable.close();
+        }
+    }
+
+    @Test
+    void canStoreCustomersAcrossShards() {
+        // Given
+        CustomerShardedDataAccessService underTest = dao(2);
+        List<Customer> inserted = insertCustomers(underTest, 200);
+
+        // When
+        List<Customer> all = underTest.selectAllCustomers();
+
+        // Then
+        assertThat(all).extracting(Customer::getId)
+                .containsExactlyElementsOf(inserted.stream().map(Customer::getId).sorted().toList());
+        assertThat(countOnShard(0)).isBetween(60L, 140L);
+        assertThat(countOnShard(1)).isEqualTo(200 - countOnShard(0));
+        Customer first = inserted.get(0);
+        assertThat(underTest.selectCustomerById(first.getId())).hasValueSatisfying(customer -> {
+            assertThat(customer.getEmail()).isEqualTo(first.getEmail());
+            assertThat(customer.getAge()).isEqualTo(first.getAge());
+        });
+        assertThat(underTest.existsPersonWithId(first.getId())).isTrue();
+        assertThat(underTest.existsPersonWithEmail(first.getEmail())).isTrue();
+    }
+
+    @Test
+    void emailIsUniqueAcrossShards() {
+        // Given
+        CustomerShardedDataAccessService underTest = dao(2);
+        String email = uniqueEmail();
+        underTest.insertCustomer(new Customer("First", email, 20));
+
+        // When / Then: the second customer gets another id, so most likely another shard
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Second", email, 30)))
+                .isInstanceOf(DuplicateResourceException.class);
+        assertThat(underTest.selectAllCustomers()).hasSize(1);
+    }
+
+    @Test
+    void updateAndDeleteKeepEmailIndexInSync() {
+        // Given
+        CustomerShardedDataAccessService underTest = dao(2);
+        Customer customer = new Customer("Alex", uniqueEmail(), 22);
+        underTest.insertCustomer(customer);
+        String oldEmail = customer.getEmail();
+        String newEmail = uniqueEmail();
+
+        // When
+        underTest.updateCustomer(new Customer(customer.getId(), null, newEmail, 23));
+
+        // Then
+        assertThat(underTest.existsPersonWithEmail(oldEmail)).isFalse();
+        assertThat(underTest.existsPersonWithEmail(newEmail)).isTrue();
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValueSatisfying(updated -> {
+            assertThat(updated.getName()).isEqualTo("Alex");
+            assertThat(updated.getAge()).isEqualTo(23);
+        });
+
+        // When
+        underTest.deleteCustomerById(customer.getId());
+
+        // Then
+        assertThat(underTest.existsPersonWithId(customer.getId())).isFalse();
+        assertThat(underTest.existsPersonWithEmail(newEmail)).isFalse();
+    }
+
+    @Test
+    void canPageThroughAllShards() {
+        // Given
+        CustomerShardedDataAccessService underTest = dao(2);
+        List<Long> ids = insertCustomers(underTest, 25).stream().map(Customer::getId).sorted().toList();
+
+        // When
+        List<Long> paged = new ArrayList<>();
+        long afterId = 0;
+        List<Customer> page;
+        do {
+            page = underTest.selectCustomersPage(afterId, 10);
+            page.forEach(customer -> paged.add(customer.getId()));
+            afterId = page.isEmpty() ? afterId : page.get(page.size() - 1).getId();
+        } while (page.size() == 10);
+
+        // Then
+        assertThat(paged).containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    void rebalanceMovesCustomersToNewShardWhileReadsContinue() throws Exception {
+        // Given customers on two shards
+        List<Customer> inserted = insertCustomers(dao(2), 300);
+
+        // When a third shard is added and rebalanced, with reads running meanwhile
+        CustomerShardedDataAccessService underTest = dao(3);
+        CustomerResharder resharder = new CustomerResharder(directory, shards);
+        AtomicBoolean rebalancing = new AtomicBoolean(true);
+        AtomicInteger missedReads = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (rebalancing.get()) {
+                for (Customer customer : inserted) {
+                    if (underTest.selectCustomerById(customer.getId()).isEmpty()) {
+                        missedReads.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+        CustomerResharder.ReshardResult result = resharder.rebalance();
+        rebalancing.set(false);
+        reader.join();
+
+        // Then
+        assertThat(result.bucketsMoved()).isEqualTo(341);
+        assertThat(missedReads).hasValue(0);
+        assertThat(countOnShard(2)).isEqualTo(result.customersMoved()).isPositive();
+        assertThat(countOnShard(0) + countOnShard(1) + countOnShard(2)).isEqualTo(300);
+        assertThat(underTest.selectAllCustomers()).hasSize(300);
+        assertThat(resharder.rebalance().bucketsMoved()).isZero();
+
+        // And writes work again once the buckets are in place
+        underTest.insertCustomer(new Customer("After", uniqueEmail(), 40));
+        assertThat(underTest.selectAllCustomers()).hasSize(301);
+    }
+
+    // Opens the directory and the first shardCount shards, like CustomerShardingConfiguration does.
+    private CustomerShardedDataAccessService dao(int shardCount) {
+        List<DataSource> shardDataSources = new ArrayList<>();
+        for (String shard : SHARDS.subList(0, shardCount)) {
+            DataSource dataSource = dataSource(shard);
+            Flyway.configure().dataSource(dataSource).locations("classpath:db/shard").load().migrate();
+            shardDataSources.add(dataSource);
+        }
+        DataSource directoryDataSource = dataSource(DIRECTORY);
+        Flyway.configure().dataSource(directoryDataSource).locations("classpath:db/shard-directory").load().migrate();
+        shards = new CustomerShards(shardDataSources);
+        directory = new CustomerShardDirectory(directoryDataSource, shardCount, 0);
+        closeables.add(shards);
+        closeables.add(directory);
+        return new CustomerShardedDataAccessService(directory, shards, new CustomerRowMapper(),
+                mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    void reconcilesEmailIndexAfterLostDirectoryCommits() {
+        // Given writes whose shard part committed while the directory transaction rolled back
+        CustomerShardedDataAccessService underTest = dao(2);
+        List<Customer> untouched = insertCustomers(underTest, 20);
+        String unindexedEmail = uniqueEmail();
+        long unindexed = directory.nextId();
+        assertThatThrownBy(() -> directory.write(unindexed, shard -> {
+            directory.claimEmail(unindexedEmail, unindexed);
+            shards.shard(shard).update("INSERT INTO customer(id, name, email, age, bucket) VALUES (?, ?, ?, ?, ?)",
+                    unindexed, "Alex", unindexedEmail, 22, CustomerShardDirectory.bucketOf(unindexed));
+            throw new IllegalStateException("Directory connection lost");
+        })).isInstanceOf(IllegalStateException.class);
+        Customer deleted = untouched.remove(0);
+        assertThatThrownBy(() -> directory.write(deleted.getId(), shard -> {
+            shards.shard(shard).update("DELETE FROM customer WHERE id = ?", deleted.getId());
+            directory.releaseEmail(deleted.getEmail());
+            throw new IllegalStateException("Directory connection lost");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(underTest.existsPersonWithEmail(unindexedEmail)).isFalse();
+        assertThat(underTest.existsPersonWithEmail(deleted.getEmail())).isTrue();
+
+        // When
+        CustomerShardEmailReconciler.ReconcileResult result = new CustomerShardEmailReconciler(directory, shards).reconcile();
+
+        // Then
+        assertThat(result).isEqualTo(new CustomerShardEmailReconciler.ReconcileResult(1, 1, 0, 0));
+        assertThat(underTest.existsPersonWithEmail(unindexedEmail)).isTrue();
+        assertThat(underTest.selectCustomerByEmail(unindexedEmail)).hasValueSatisfying(
+                customer -> assertThat(customer.getId()).isEqualTo(unindexed));
+        assertThat(underTest.existsPersonWithEmail(deleted.getEmail())).isFalse();
+        assertThat(untouched).allSatisfy(customer -> assertThat(underTest.existsPersonWithEmail(customer.getEmail())).isTrue());
+        assertThat(new CustomerShardEmailReconciler(directory, shards).reconcile())
+                .isEqualTo(new CustomerShardEmailReconciler.ReconcileResult(0, 0, 0, 0));
+    }
+
+    private List<Customer> insertCustomers(CustomerShardedDataAccessService dao, int count) {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer(faker.name().fullName(), uniqueEmail(), faker.number().numberBetween(18, 90));
+            dao.insertCustomer(customer);
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    private long countOnShard(int shard) {
+        return new JdbcTemplate(dataSource(SHARDS.get(shard))).queryForObject("SELECT count(*) FROM customer", Long.class);
+    }
+
+    private static String uniqueEmail() {
+        return "shard_" + UUID.randomUUID() + "@amigoscode.com";
+    }
+
+    private static DataSource dataSource(String database) {
+        return DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .driverClassName("org.postgresql.Driver")
+                .url(SERVER_URL + database)
+                .username("bachir")
+                .password("password")
+                .build();
+    }
+
+    private static List<String> concat(String first, List<String> rest) {
+        List<String> all = new ArrayList<>();
+        all.add(first);
+        all.addAll(rest);
+        return all;
+    }
+}
@@ -0,0 +1,103 @@
+package com.bachir.customer.transfer;
+
+import com.bachir.AbstractTestcontainers;
+import com.bachir.exception.RequestValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerCopyServiceTest extends AbstractTestcontainers {
+
+    private CustomerCopyService underTest;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // The import needs the COPY and the merge on the same connection, so share one DataSource
+        DataSource dataSource = getDataSource();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        underTest = new CustomerCopyService(
+                jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                event -> {}
+        );
+    }
+
+    @Test
+    void importCsv() {
+        // Given
+        String email1 = UUID.randomUUID() + "@mail.com";
+        String email2 = UUID.randomUUID() + "@mail.com";
+        String csv = """
+                email,name,age
+                %s,Alex,22
+                %s,Jamila,24
+                """.formatted(email1, email2);
+
+        // When
+        CustomerImportResult actual = underTest.importCsv(stream(csv));
+
+        // Then
+        assertThat(actual).isEqualTo(new CustomerImportResult(2, 2));
+        assertThat(countByEmail(email1)).isEqualTo(1);
+        assertThat(countByEmail(email2)).isEqualTo(1);
+    }
+
+    @Test
+    void importCsvUpdatesCustomersWithExistingEmail() {
+        // Given
+        String email = UUID.randomUUID() + "@mail.com";
+        underTest.importCsv(stream("name,email,age\nAlex,%s,22\n".formatted(email)));
+
+        // When
+        underTest.importCsv(stream("name,email,age\nAlexandro,%s,23\nAlexandro Jr,%s,3\n".formatted(email, email)));
+
+        // Then
+        assertThat(countByEmail(email)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM customer WHERE email = ?", String.class, email))
+                .isEqualTo("Alexandro Jr"); // Last row in the file wins
+    }
+
+    @Test
+    void willThrowWhenCsvHeaderHasUnknownColumn() {
+        assertThatThrownBy(() -> underTest.importCsv(stream("name,email,phone\n")))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Unknown CSV column [phone]");
+    }
+
+    @Test
+    void exportCsv() {
+        // Given
+        String email = UUID.randomUUID() + "@mail.com";
+        underTest.importCsv(stream("name,email,age\nAlex,%s,22\n".formatted(email)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long rows = underTest.exportCsv(out);
+
+        // Then
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertThat(rows).isPositive();
+        assertThat(csv).startsWith("id,name,email,age\n");
+        assertThat(csv).contains(",Alex,%s,22\n".formatted(email));
+    }
+
+    private Integer countByEmail(String email) {
+        return jdbcTemplate.queryForObject("SELECT count(id) FROM customer WHERE email = ?", Integer.class, email);
+    }
+
+    private static ByteArrayInputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,32 @@
+package com.bachir.customer.transfer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerExportFormatTest {
+
+    @Test
+    void picksMostAcceptedFormat() throws Exception {
+        assertThat(CustomerExportFormat.fromAcceptHeader(null)).isEqualTo(CustomerExportFormat.CSV);
+        assertThat(CustomerExportFormat.fromAcceptHeader("*/*")).isEqualTo(CustomerExportFormat.CSV);
+        assertThat(CustomerExportFormat.fromAcceptHeader("text/csv;q=0.5, application/cbor"))
+                .isEqualTo(CustomerExportFormat.CBOR);
+        assertThat(CustomerExportFormat.fromAcceptHeader("application/*, application/x-protobuf"))
+                .isEqualTo(CustomerExportFormat.PROTOBUF);
+        assertThat(CustomerExportFormat.fromAcceptHeader("text/csv;q=0, */*;q=0.1"))
+                .isEqualTo(CustomerExportFormat.JSON);
+    }
+
+    @Test
+    void rejectsUnacceptableAndInvalidHeaders() {
+        assertThatThrownBy(() -> CustomerExportFormat.fromAcceptHeader("application/xml"))
+                .isInstanceOf(HttpMediaTypeNotAcceptableException.class);
+        assertThatThrownBy(() -> CustomerExportFormat.fromAcceptHeader("text/csv;q=0"))
+                .isInstanceOf(HttpMediaTypeNotAcceptableException.class);
+        assertThatThrownBy(() -> CustomerExportFormat.fromAcceptHeader("not a media type"))
+                .isInstanceOf(HttpMediaTypeNotAcceptableException.class);
+    }
+}
@@ -0,0 +1,47 @@
+package com.bachir.datasource;
+
+import com.bachir.customer.CustomerChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrimaryStickinessFilterTest {
+
+    private final PrimaryStickinessFilter underTest = new PrimaryStickinessFilter(Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        PrimaryStickiness.clear();
+    }
+
+    @Test
+    void writeDuringRequestSticksToPrimary() {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), response));
+
+        // When
+        underTest.onCustomerChanged(CustomerChangedEvent.updated(1L));
+
+        // Then
+        assertThat(PrimaryStickiness.isSticky()).isTrue();
+        assertThat(response.getCookie(PrimaryStickinessFilter.COOKIE_NAME)).isNotNull();
+    }
+
+    @Test
+    void writeOutsideRequestLeavesThreadAlone() {
+        // When a thread no filter clears publishes a write, such as the invalidation bus listener
+        underTest.onCustomerChanged(CustomerChangedEvent.updated(1L));
+
+        // Then
+        assertThat(PrimaryStickiness.isSticky()).isFalse();
+    }
+}
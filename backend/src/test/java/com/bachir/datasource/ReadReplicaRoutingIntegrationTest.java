@@ -0,0 +1,105 @@
+package com.bachir.datasource;
+
+import com.bachir.customer.CustomerRegistrationRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Runs against two local Postgres instances: the usual one on port 5332 and a streaming replica of it
+ * on port 5333 (see the README). Another replica URL can be given with -Dreplica.url.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "customer.read-replicas.enabled=true",
+        "customer.read-replicas.urls=${replica.url:jdbc:postgresql://localhost:5333/customer}",
+        "customer.read-replicas.check-interval=200ms"
+})
+public class ReadReplicaRoutingIntegrationTest {
+
+    private static final String IN_RECOVERY = "SELECT pg_is_in_recovery()";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void waitForReplica() throws InterruptedException {
+        ReplicaLagMonitor lagMonitor = replicaRoutingDataSource.lagMonitor();
+        for (int i = 0; i < 50 && lagMonitor.healthyReplicas().isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(lagMonitor.healthyReplicas()).as("a replica within the lag limit").isNotEmpty();
+    }
+
+    @AfterEach
+    void tearDown() {
+        PrimaryStickiness.clear();
+    }
+
+    @Test
+    void readOnlyTransactionRunsOnReplica() {
+        assertThat(inRecovery(true)).isTrue();
+    }
+
+    @Test
+    void readWriteTransactionRunsOnPrimary() {
+        assertThat(inRecovery(false)).isFalse();
+    }
+
+    @Test
+    void stickyReadRunsOnPrimary() {
+        // Given
+        PrimaryStickiness.stick();
+
+        // When
+        boolean inRecovery = inRecovery(true);
+
+        // Then
+        assertThat(inRecovery).isFalse();
+    }
+
+    @Test
+    void writeMakesClientStickToPrimary() {
+        // Given
+        String email = "replica_" + UUID.randomUUID() + "@amigoscode.com";
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Replica Test", email, 30);
+
+        // When
+        webTestClient.post()
+                .uri("/api/v1/customers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectCookie()
+                .exists(PrimaryStickinessFilter.COOKIE_NAME);
+    }
+
+    private boolean inRecovery(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return Boolean.TRUE.equals(transaction.execute(status -> jdbcTemplate.queryForObject(IN_RECOVERY, Boolean.class)));
+    }
+}
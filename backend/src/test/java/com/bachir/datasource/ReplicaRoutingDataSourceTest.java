@@ -0,0 +1,120 @@
+package com.bachir.datasource;
+
+import com.bachir.datasource.ReplicaLagMonitor.Replica;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica0 = mock(DataSource.class);
+    private final DataSource replica1 = mock(DataSource.class);
+    // Lag each replica reports on the next check; a missing entry makes the check fail.
+    private final Map<DataSource, Duration> reportedLags = new HashMap<>();
+    private ReplicaLagMonitor lagMonitor;
+    private ReplicaRoutingDataSource underTest;
+
+    @BeforeEach
+    void setUp() {
+        lagMonitor = new ReplicaLagMonitor(
+                List.of(new Replica("replica-0", replica0), new Replica("replica-1", replica1)),
+                Duration.ofSeconds(5)) {
+            @Override
+            Duration measureLag(DataSource dataSource) {
+                Duration lag = reportedLags.get(dataSource);
+                if (lag == null) {
+                    throw new IllegalStateException("replica down");
+                }
+                return lag;
+            }
+        };
+        underTest = new ReplicaRoutingDataSource(primary, lagMonitor);
+        reportedLags.put(replica0, Duration.ZERO);
+        reportedLags.put(replica1, Duration.ofMillis(200));
+        lagMonitor.checkAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        PrimaryStickiness.clear();
+    }
+
+    @Test
+    void readOnlyTransactionsAreSpreadOverReplicas() {
+        // Given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // When
+        Object first = underTest.determineCurrentLookupKey();
+        Object second = underTest.determineCurrentLookupKey();
+
+        // Then
+        assertThat(List.of(first, second)).containsExactlyInAnyOrder("replica-0", "replica-1");
+    }
+
+    @Test
+    void writesGoToPrimary() {
+        // When no read-only transaction is active
+        Object key = underTest.determineCurrentLookupKey();
+
+        // Then
+        assertThat(key).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void stickyReadsGoToPrimary() {
+        // Given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        PrimaryStickiness.stick();
+
+        // When
+        Object key = underTest.determineCurrentLookupKey();
+
+        // Then
+        assertThat(key).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void laggingOrUnreachableReplicasAreSkipped() {
+        // Given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        reportedLags.put(replica0, Duration.ofSeconds(30));
+        reportedLags.remove(replica1);
+
+        // When
+        lagMonitor.checkAll();
+
+        // Then
+        assertThat(lagMonitor.healthyReplicas()).isEmpty();
+        assertThat(underTest.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void replicaServesReadsAgainOnceCaughtUp() {
+        // Given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        reportedLags.put(replica0, Duration.ofSeconds(30));
+        reportedLags.remove(replica1);
+        lagMonitor.checkAll();
+
+        // When
+        reportedLags.put(replica0, Duration.ofMillis(10));
+        lagMonitor.checkAll();
+
+        // Then
+        assertThat(underTest.determineCurrentLookupKey()).isEqualTo("replica-0");
+        assertThat(lagMonitor.lags()).containsOnlyKeys("replica-0");
+    }
+}
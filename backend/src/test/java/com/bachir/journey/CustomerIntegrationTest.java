@@ -10,10 +10,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
 import java.util.Random;
 import java.util.UUID;
 
@@ -42,45 +42,31 @@ public class CustomerIntegrationTest {
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(name, email, age);
 
-        //send a post
-        webTestClient.post() //Create a new WebClient instance and configures it to perform a POST request.
+        //send a post, which answers with the created customer and where to find it
+        EntityExchangeResult<Customer> created = webTestClient.post() //Create a new WebClient instance and configures it to perform a POST request.
                 .uri(CUSTOMER_URI) //Set the request URI to /api/v1/customers.
                 .accept(MediaType.APPLICATION_JSON) // Set the accepted media type to APPLICATION_JSON. This means that the test client will only accept responses in JSON format.
                 .contentType(MediaType.APPLICATION_JSON) // Set the request content type to APPLICATION_JSON. This means that the test client will send the request body in JSON format.
                 .body(Mono.just(request), CustomerRegistrationRequest.class) // Set the request body to the request object, which is a CustomerRegistrationRequest object. The Mono.just() method creates a Mono instance that emits the request object.
                 .exchange() // Perform the request and returns a Flux instance that emits the response.
 
-                // Assert that the response status code is 200 OK.
+                // Assert that the response status code is 201 Created.
                 .expectStatus()
-                .isOk();
-
-        //get all the customers
-
-        List<Customer> allCustomers = webTestClient.get()
-                .uri(CUSTOMER_URI)
-                .accept(MediaType.APPLICATION_JSON)
-                .exchange()
-                .expectStatus()
-                .isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {})
-                .returnResult()
-                .getResponseBody();
-
-        //Make user that customer is present
-        Customer expectedCustomer = new Customer(name, email, age);
-        assertThat(allCustomers).usingRecursiveFieldByFieldElementComparatorIgnoringFields("id").contains(expectedCustomer);
+                .isCreated()
+                .expectBody(Customer.class)
+                .returnResult();
 
-        //get customer by id
-        Long id = allCustomers.stream()
-                        .filter(c->c.getEmail().equals(email))
-                                .map(Customer::getId)
-                                        .findFirst()
-                                                .orElseThrow();
+        Long id = created.getResponseBody().getId();
 
-        expectedCustomer.setId(id);
+        //Make sure the response holds the customer, with its generated id
+        Customer expectedCustomer = new Customer(id, name, email, age);
+        assertThat(id).isNotNull();
+        assertThat(created.getResponseBody()).isEqualTo(expectedCustomer);
+        assertThat(created.getResponseHeaders().getLocation()).hasPath(CUSTOMER_URI + "/" + id);
 
+        //get customer by the URI from the Location header
         webTestClient.get()
-                .uri(CUSTOMER_URI+"/{id}", id)
+                .uri(created.getResponseHeaders().getLocation())
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
@@ -102,36 +88,21 @@ public class CustomerIntegrationTest {
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(name, email, age);
 
-        //send a post
-        webTestClient.post() //Create a new WebClient instance and configures it to perform a POST request.
+        //send a post, which answers with the created customer and where to find it
+        EntityExchangeResult<Customer> created = webTestClient.post() //Create a new WebClient instance and configures it to perform a POST request.
                 .uri(CUSTOMER_URI) //Set the request URI to /api/v1/customers.
                 .accept(MediaType.APPLICATION_JSON) // Set the accepted media type to APPLICATION_JSON. This means that the test client will only accept responses in JSON format.
                 .contentType(MediaType.APPLICATION_JSON) // Set the request content type to APPLICATION_JSON. This means that the test client will send the request body in JSON format.
                 .body(Mono.just(request), CustomerRegistrationRequest.class) // Set the request body to the request object, which is a CustomerRegistrationRequest object. The Mono.just() method creates a Mono instance that emits the request object.
                 .exchange() // Perform the request and returns a Flux instance that emits the response.
 
-                // Assert that the response status code is 200 OK.
-                .expectStatus()
-                .isOk();
-
-        //get all the customers
-
-        List<Customer> allCustomers = webTestClient.get()
-                .uri(CUSTOMER_URI)
-                .accept(MediaType.APPLICATION_JSON)
-                .exchange()
+                // Assert that the response status code is 201 Created.
                 .expectStatus()
-                .isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {})
-                .returnResult()
-                .getResponseBody();
-
+                .isCreated()
+                .expectBody(Customer.class)
+                .returnResult();
 
-        Long id = allCustomers.stream()
-                .filter(c->c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
+        Long id = created.getResponseBody().getId();
 
         //delete customer
         webTestClient.delete()
@@ -162,35 +133,21 @@ public class CustomerIntegrationTest {
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(name, email, age);
 
-        //send a post
-        webTestClient.post() //Create a new WebClient instance and configures it to perform a POST request.
+        //send a post, which answers with the created customer and where to find it
+        EntityExchangeResult<Customer> created = webTestClient.post() //Create a new WebClient instance and configures it to perform a POST request.
                 .uri(CUSTOMER_URI) //Set the request URI to /api/v1/customers.
                 .accept(MediaType.APPLICATION_JSON) // Set the accepted media type to APPLICATION_JSON. This means that the test client will only accept responses in JSON format.
                 .contentType(MediaType.APPLICATION_JSON) // Set the request content type to APPLICATION_JSON. This means that the test client will send the request body in JSON format.
                 .body(Mono.just(request), CustomerRegistrationRequest.class) // Set the request body to the request object, which is a CustomerRegistrationRequest object. The Mono.just() method creates a Mono instance that emits the request object.
                 .exchange() // Perform the request and returns a Flux instance that emits the response.
 
-                // Assert that the response status code is 200 OK.
+                // Assert that the response status code is 201 Created.
                 .expectStatus()
-                .isOk();
-
-        //get all the customers
-
-        List<Customer> allCustomers = webTestClient.get()
-                .uri(CUSTOMER_URI)
-                .accept(MediaType.APPLICATION_JSON)
-                .exchange()
-                .expectStatus()
-                .isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {})
-                .returnResult()
-                .getResponseBody();
+                .isCreated()
+                .expectBody(Customer.class)
+                .returnResult();
 
-        Long id = allCustomers.stream()
-                .filter(c->c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
+        Long id = created.getResponseBody().getId();
 
         //update customer
         String newName = "Abdoul Bachir";
@@ -0,0 +1,98 @@
+package com.bachir.rowmapper;
+
+import com.bachir.AbstractTestcontainers;
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerIndexedRowMapper;
+import com.bachir.customer.CustomerJDBCDataAccessService;
+import com.bachir.customer.CustomerRowMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks the generated CustomerIndexedRowMapper against the SELECTs of a database of the local Postgres instance
+ * (port 5332), created for every test and migrated like the application database. Another server can be given
+ * with -Drowmapper.server.url.
+ */
+public class IndexedRowMapperIntegrationTest {
+
+    private static final String SERVER_URL = System.getProperty("rowmapper.server.url", "jdbc:postgresql://localhost:5332/");
+    private static final String DATABASE = "customer_row_mapper_it";
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createDatabase() {
+        JdbcTemplate server = new JdbcTemplate(dataSource("customer"));
+        server.execute("DROP DATABASE IF EXISTS " + DATABASE + " WITH (FORCE)");
+        server.execute("CREATE DATABASE " + DATABASE);
+        DataSource dataSource = dataSource(DATABASE);
+        AbstractTestcontainers.flyway(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    void theDaoSelectsMatchTheMapper() {
+        // Given: the DAO checks its SELECTs when it is created
+        CustomerJDBCDataAccessService underTest =
+                new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper(), mock(ApplicationEventPublisher.class));
+        Long id = jdbcTemplate.queryForObject(
+                "INSERT INTO customer(name, email, age) VALUES ('Alice', 'alice@example.com', 30) RETURNING id", Long.class);
+
+        // When
+        Customer actual = underTest.selectCustomerById(id).orElseThrow();
+
+        // Then
+        assertThat(actual).isEqualTo(new Customer(id, "Alice", "alice@example.com", 30));
+        assertThat(underTest.selectAllCustomers()).containsExactly(actual);
+    }
+
+    @Test
+    void rejectsASelectWithTheColumnsInAnotherOrder() {
+        // Given
+        String sql = "SELECT id, email, name, age FROM customer";
+
+        // When / Then
+        assertThatThrownBy(() -> IndexedRowMapper.check(jdbcTemplate, sql, CustomerIndexedRowMapper.INSTANCE))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("CustomerIndexedRowMapper reads the columns [id, name, email, age] by position, "
+                        + "but [SELECT id, email, name, age FROM customer] returns [id, email, name, age]");
+    }
+
+    @Test
+    void mapsAProjectionAndKeepsNullsNull() {
+        // Given a projection in the order of the mapper, with a NULL age every other row
+        String sql = "SELECT n AS id, 'Customer ' || n AS name, 'customer' || n || '@example.com' AS email, "
+                + "CASE WHEN n % 2 = 0 THEN 20 + n END AS age FROM generate_series(1, 3) n";
+
+        // When
+        IndexedRowMapper.check(jdbcTemplate, sql, CustomerIndexedRowMapper.INSTANCE);
+        List<Customer> actual = jdbcTemplate.query(sql, CustomerIndexedRowMapper.INSTANCE);
+
+        // Then
+        assertThat(actual).containsExactly(
+                new Customer(1L, "Customer 1", "customer1@example.com", null),
+                new Customer(2L, "Customer 2", "customer2@example.com", 22),
+                new Customer(3L, "Customer 3", "customer3@example.com", null));
+    }
+
+    private static DataSource dataSource(String database) {
+        return DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .driverClassName("org.postgresql.Driver")
+                .url(SERVER_URL + database)
+                .username("bachir")
+                .password("password")
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.bachir.startup;
+
+import com.bachir.customer.Customer;
+import com.bachir.customer.CustomerDao;
+import com.bachir.customer.CustomerRowMapper;
+import com.bachir.customer.CustomerService;
+import com.bachir.customer.CustomerUpdateRequest;
+import com.bachir.exception.RequestValidationException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ApplicationWarmupTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private CustomerService customerService;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void runsReadsOnlyAndTimesTheWarmup() {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        RequestMappingHandlerAdapter handlerAdapter = new RequestMappingHandlerAdapter();
+        handlerAdapter.setMessageConverters(List.of(new MappingJackson2HttpMessageConverter(objectMapper)));
+        Customer customer = new Customer(7L, "Alex", "alex@mail.com", 30);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of(customer));
+        doThrow(new RequestValidationException("no data changes found"))
+                .when(customerService).updateCustomer(eq(7), any());
+        BootPhaseTimings timings = new BootPhaseTimings();
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean(BootPhaseTimings.BEAN_NAME, timings);
+
+        ApplicationWarmup underTest = new ApplicationWarmup(customerDao, customerService, jdbcTemplate,
+                new CustomerRowMapper(), objectMapper, handlerAdapter, eventPublisher,
+                beans.getBeanProvider(BootPhaseTimings.class), 100, 10);
+
+        // When
+        underTest.warmUp();
+
+        // Then the instance is not ready while warming up
+        ArgumentCaptor<AvailabilityChangeEvent<?>> event = ArgumentCaptor.forClass(AvailabilityChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getState()).isEqualTo(ReadinessState.REFUSING_TRAFFIC);
+        assertThat(timings.duration(BootPhase.WARMUP)).isPresent();
+
+        // And only reads reached the data store, and the update carried no change
+        verify(customerDao, times(10)).selectCustomerById(7L);
+        verify(customerDao, times(10)).selectCustomerByEmail("alex@mail.com");
+        verify(customerDao, never()).insertCustomer(any());
+        verify(customerDao, never()).updateCustomer(any());
+        verify(customerDao, never()).deleteCustomerById(anyLong());
+        verify(customerService, times(10)).updateCustomer(7, new CustomerUpdateRequest(null, null, null));
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+}
@@ -0,0 +1,52 @@
+package com.bachir.startup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BootPhaseTimingsTest {
+
+    private final BootPhaseTimings underTest = new BootPhaseTimings();
+
+    @Test
+    void recordsPhaseDuration() throws InterruptedException {
+        // When
+        underTest.begin(BootPhase.FLYWAY_MIGRATION);
+        Thread.sleep(5);
+        underTest.end(BootPhase.FLYWAY_MIGRATION);
+
+        // Then
+        assertThat(underTest.duration(BootPhase.FLYWAY_MIGRATION))
+                .hasValueSatisfying(duration -> assertThat(duration.toMillis()).isGreaterThanOrEqualTo(5));
+        assertThat(underTest.report()).contains("FLYWAY_MIGRATION");
+    }
+
+    @Test
+    void phaseCanEndOnAnotherThread() {
+        // Given the JPA bootstrap runs in the background in deferred mode
+        underTest.begin(BootPhase.JPA_BOOTSTRAP);
+
+        // When
+        CompletableFuture.runAsync(() -> underTest.end(BootPhase.JPA_BOOTSTRAP)).join();
+
+        // Then
+        assertThat(underTest.duration(BootPhase.JPA_BOOTSTRAP)).isPresent();
+    }
+
+    @Test
+    void ignoresEndWithoutBeginAndRepeatedPhases() {
+        // When
+        underTest.end(BootPhase.FIRST_REQUEST);
+        underTest.begin(BootPhase.CONTEXT_REFRESH);
+        underTest.end(BootPhase.CONTEXT_REFRESH);
+        var first = underTest.duration(BootPhase.CONTEXT_REFRESH);
+        underTest.begin(BootPhase.CONTEXT_REFRESH);
+        underTest.end(BootPhase.CONTEXT_REFRESH);
+
+        // Then
+        assertThat(underTest.duration(BootPhase.FIRST_REQUEST)).isEmpty();
+        assertThat(underTest.duration(BootPhase.CONTEXT_REFRESH)).isEqualTo(first);
+    }
+}
@@ -0,0 +1,57 @@
+package com.bachir.startup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Boots the application through Main.main in the production startup mode and checks every boot phase
+ * stays within budget, so startup regressions fail the build.
+ * The budgets can be tuned per machine with -Dstartup.budget.*-ms.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, useMainMethod = SpringBootTest.UseMainMethod.ALWAYS)
+@ActiveProfiles("prod")
+public class StartupIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private BootPhaseTimings bootPhaseTimings;
+
+    @Test
+    void bootPhasesStayWithinBudget() {
+        // When the first request is served
+        webTestClient.get()
+                .uri("/api/v1/customers")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // Then every phase was measured, and is part of the report the application logs
+        assertThat(bootPhaseTimings.durations()).containsOnlyKeys(BootPhase.values());
+        assertThat(bootPhaseTimings.report()).startsWith("JVM uptime ")
+                .contains(Arrays.stream(BootPhase.values()).map(phase -> phase + " ").toList());
+        assertWithinBudget(BootPhase.CONTEXT_REFRESH, 20_000);
+        assertWithinBudget(BootPhase.FLYWAY_MIGRATION, 5_000);
+        assertWithinBudget(BootPhase.JPA_BOOTSTRAP, 10_000);
+        assertWithinBudget(BootPhase.FIRST_REQUEST, 5_000);
+        assertWithinBudget(BootPhase.WARMUP, 60_000);
+    }
+
+    private void assertWithinBudget(BootPhase phase, long defaultBudgetMillis) {
+        String property = "startup.budget." + phase.name().toLowerCase().replace('_', '-') + "-ms";
+        long budgetMillis = Long.getLong(property, defaultBudgetMillis);
+        assertThat(bootPhaseTimings.duration(phase))
+                .as("%s (budget set by -D%s)", phase, property)
+                .hasValueSatisfying(duration -> assertThat(duration).isLessThanOrEqualTo(Duration.ofMillis(budgetMillis)));
+    }
+}